@@ -0,0 +1,133 @@
+package com.stock.orderbook.benchmark;
+
+import com.stock.orderbook.config.CsvQuoteFileLoader;
+import com.stock.orderbook.config.CsvQuoteParser;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.CheckpointBuilder;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.TopOrdersFinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * BenchmarkQuotes generates the synthetic quotes of the benchmarks. <br>
+ * - Lines have the format of the quotes CSV file, in startTime order, the symbols being interleaved <br>
+ * - Random values are drawn from a fixed seed, so every run benchmarks the same quotes <br>
+ * - Quotes start every 1 ms on average and last up to 5 s, i.e. a book of about 2500 active orders per symbol <br>
+ */
+final class BenchmarkQuotes {
+    static final long SEED = 20210218L;
+    static final String SYMBOL_NAME = "BENCH";
+
+    private static final String DATE = "2021-02-18T";
+    // 09:30:00 in milliseconds of the day
+    private static final long MARKET_OPEN_MILLIS = (9 * 3600 + 30 * 60) * 1000L;
+    private static final String[] MARKET_CENTERS = {"Q", "N", "P", "Z", "K"};
+    private static final String[] QUOTE_CONDITIONS = {"R", "Y", "O"};
+
+    private BenchmarkQuotes() {
+    }
+
+    /**
+     * @param symbolCount - number of symbols, named SYMBOL_NAME followed by their number
+     * @param quoteCount - total number of quotes
+     * @return byte[] - CSV lines of the quotes, without header
+     */
+    static byte[] csv(int symbolCount, int quoteCount) {
+        Random random = new Random(SEED);
+        StringBuilder lines = new StringBuilder(quoteCount * 96);
+        long startMillis = MARKET_OPEN_MILLIS;
+        for (int i = 0; i < quoteCount; i++) {
+            startMillis += random.nextInt(3);
+            long endMillis = startMillis + 1 + random.nextInt(5000);
+            int symbol = random.nextInt(symbolCount);
+            // prices around 100.00 + symbol number, bids in cents below and asks in cents above it
+            int midCents = 10_000 + symbol * 100;
+            lines.append(SYMBOL_NAME).append(symbolCount > 1 ? String.valueOf(symbol) : "").append(',')
+                    .append(MARKET_CENTERS[random.nextInt(MARKET_CENTERS.length)]).append(',')
+                    .append(100 * (1 + random.nextInt(50))).append(',')
+                    .append(100 * (1 + random.nextInt(50))).append(',');
+            appendCents(lines, midCents - random.nextInt(50)).append(',');
+            appendCents(lines, midCents + 1 + random.nextInt(50)).append(',');
+            appendTime(lines, startMillis).append(',');
+            appendTime(lines, endMillis).append(',')
+                    .append(QUOTE_CONDITIONS[random.nextInt(QUOTE_CONDITIONS.length)]).append(',')
+                    .append(i + 1).append(",A\n");
+        }
+        return lines.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param quoteCount - number of quotes of the symbol
+     * @return QuoteStore - the quotes of a single symbol, parsed from csv and indexed like the loaded ones
+     */
+    static QuoteStore quotes(int quoteCount) {
+        byte[] csv = csv(1, quoteCount);
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        try {
+            csvQuoteParser.parse(ByteBuffer.wrap(csv), 0, csv.length, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        QuoteStore quotes = csvQuoteParser.getSymbolToQuotesMap().get(SYMBOL_NAME);
+        quotes.trimToSize();
+        quotes.indexEndTimes();
+        return quotes;
+    }
+
+    /**
+     * Creates the symbol of the quotes with its initial empty snapshot and its checkpoints pinned, as loaded by
+     * CsvQuoteFileLoader
+     * @param quotes - quotes of the symbol
+     * @param ordersCacheManager - manager of the orders cache of the symbol
+     * @param checkpointQuotes - number of quotes between checkpoints, 0 for the initial snapshot only
+     * @return Symbol - the initialized symbol
+     */
+    static Symbol symbol(QuoteStore quotes, OrdersCacheManager ordersCacheManager, int checkpointQuotes) {
+        Symbol symbol = Symbol.builder()
+                .symbol(SYMBOL_NAME)
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, CsvQuoteFileLoader.TIMESTAMP_01_JAN_2021,
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        new CheckpointBuilder(new TopOrdersFinder(), ordersCacheManager, checkpointQuotes, Duration.ZERO)
+                .buildCheckpoints(symbol);
+        return symbol;
+    }
+
+    /**
+     * @param random - source of the timestamps
+     * @param quotes - quotes of the symbol
+     * @param count - number of timestamps
+     * @return long[] - timestamps in epoch nanoseconds drawn uniformly between the first and the last startTime
+     */
+    static long[] timestamps(Random random, QuoteStore quotes, int count) {
+        long first = quotes.getStartTime(0);
+        long range = quotes.getStartTime(quotes.size() - 1) - first;
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = first + (long) (random.nextDouble() * range);
+        }
+        return timestamps;
+    }
+
+    private static StringBuilder appendCents(StringBuilder line, int cents) {
+        return line.append(cents / 100).append('.').append(cents % 100 < 10 ? "0" : "").append(cents % 100);
+    }
+
+    private static StringBuilder appendTime(StringBuilder line, long millisOfDay) {
+        return line.append(DATE)
+                .append(String.format("%02d:%02d:%02d.%03dZ", millisOfDay / 3_600_000, millisOfDay / 60_000 % 60,
+                        millisOfDay / 1000 % 60, millisOfDay % 1000));
+    }
+}
@@ -0,0 +1,76 @@
+package com.stock.orderbook.benchmark;
+
+import com.stock.orderbook.config.CsvQuoteParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CsvQuoteParserBenchmark measures the parsing throughput of the quotes CSV file, i.e. the work CsvQuoteFileLoader
+ * runs on each chunk of the memory mapped file, in milliseconds per file of quoteCount quotes. <br>
+ * - parse: eager load, every field decoded into the QuoteStore of its symbol <br>
+ * - index: lazy load, only the symbol and the line range of each line <br>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvQuoteParserBenchmark {
+    @Param({"100", "10000"})
+    private int symbolCount;
+
+    @Param({"1000000"})
+    private int quoteCount;
+
+    private Path csvFile;
+    private FileChannel fileChannel;
+    private MappedByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        csvFile = Files.createTempFile("quotes-benchmark", ".csv");
+        Files.write(csvFile, BenchmarkQuotes.csv(symbolCount, quoteCount));
+        fileChannel = FileChannel.open(csvFile, StandardOpenOption.READ);
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+        buffer.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileChannel.close();
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    public CsvQuoteParser parse() throws IOException {
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        csvQuoteParser.parse(buffer, 0, buffer.limit(), 0);
+        return csvQuoteParser;
+    }
+
+    @Benchmark
+    public CsvQuoteParser index() throws IOException {
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        csvQuoteParser.index(buffer, 0, buffer.limit(), 0);
+        return csvQuoteParser;
+    }
+}
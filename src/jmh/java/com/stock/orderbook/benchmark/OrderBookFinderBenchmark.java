@@ -0,0 +1,115 @@
+package com.stock.orderbook.benchmark;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.OrderBookFinder;
+import com.stock.orderbook.service.OrderBookMetrics;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.SymbolLanes;
+import com.stock.orderbook.service.TopOrdersFinder;
+import com.stock.orderbook.utils.ResponseBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderBookFinderBenchmark measures the order book requests of OrderBookFinder, as served by the controller, at
+ * random timestamps of a symbol. <br>
+ * - warm: every timestamp has its snapshot cached, the request only renders the top bids and asks <br>
+ * - cold: the cache holds the pinned checkpoints only, the request replays the quotes from the nearest checkpoint
+ * and publishes the snapshot <br>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookFinderBenchmark {
+    private static final int TIMESTAMP_COUNT = 4096;
+    private static final int TOP_ORDERS_LIMIT = 5;
+
+    @Param({"200000"})
+    private int quoteCount;
+
+    @Param({"10000"})
+    private int checkpointQuotes;
+
+    private final Map<String, Symbol> symbolMap = new ConcurrentHashMap<>();
+    private final ResponseBuffer buffer = new ResponseBuffer();
+    private QuoteStore quotes;
+    private NavigableMap<Long, OrdersSnapshot> checkpoints;
+    private OrderBookFinder orderBookFinder;
+    private long[] timestamps;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+        OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, symbolLanes);
+        quotes = BenchmarkQuotes.quotes(quoteCount);
+        Symbol symbol = BenchmarkQuotes.symbol(quotes, ordersCacheManager, checkpointQuotes);
+        checkpoints = new TreeMap<>(symbol.getOrdersCache());
+        symbolMap.put(symbol.getSymbol(), symbol);
+        orderBookFinder = new OrderBookFinder(new TopOrdersFinder(), ordersCacheManager,
+                new OrderBookMetrics(new SimpleMeterRegistry(), ordersCacheManager, symbolLanes), symbolMap,
+                TOP_ORDERS_LIMIT, symbolLanes);
+        timestamps = BenchmarkQuotes.timestamps(new Random(BenchmarkQuotes.SEED), quotes, TIMESTAMP_COUNT);
+        // caches the snapshots of all the timestamps for the warm requests
+        for (long timestamp : timestamps) {
+            orderBookFinder.findOrders(symbol, timestamp);
+        }
+    }
+
+    /**
+     * Cache of the cold requests, reset to the pinned checkpoints before each request. The reset is not measured.
+     */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void reset(OrderBookFinderBenchmark benchmark) {
+            benchmark.symbolMap.put(BenchmarkQuotes.SYMBOL_NAME, Symbol.builder()
+                    .symbol(BenchmarkQuotes.SYMBOL_NAME)
+                    .quotes(benchmark.quotes)
+                    .ordersCache(new ConcurrentSkipListMap<>(benchmark.checkpoints))
+                    .build());
+        }
+    }
+
+    private ResponseBuffer appendOrderBook() {
+        next = (next + 1) & (TIMESTAMP_COUNT - 1);
+        orderBookFinder.appendOrderBook(BenchmarkQuotes.SYMBOL_NAME, timestamps[next], buffer.reset());
+        return buffer;
+    }
+
+    @Benchmark
+    public ResponseBuffer warm() {
+        return appendOrderBook();
+    }
+
+    @Benchmark
+    public ResponseBuffer cold(ColdCache coldCache) {
+        return appendOrderBook();
+    }
+}
@@ -0,0 +1,88 @@
+package com.stock.orderbook.benchmark;
+
+import com.stock.orderbook.config.CsvQuoteFileLoader;
+import com.stock.orderbook.model.OrderType;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.TopOrdersFinder;
+import com.stock.orderbook.utils.OutputFormatter;
+import com.stock.orderbook.utils.ResponseBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OutputFormatterBenchmark measures the rendering of the top 5 bids and asks of a book. <br>
+ * - appendOrderBook: the text response, into a reused ResponseBuffer <br>
+ * - appendJsonOrders: the JSON arrays of the batch and stream responses <br>
+ * - formatPrices: the String.format rendering of the same prices, as reference of appendPrice <br>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputFormatterBenchmark {
+    private static final int TOP_ORDERS_LIMIT = 5;
+
+    private final ResponseBuffer buffer = new ResponseBuffer();
+    private QuoteStore quotes;
+    private OrdersSnapshot orders;
+    private int[] topBids;
+    private int[] topAsks;
+
+    @Setup
+    public void setUp() {
+        quotes = BenchmarkQuotes.quotes(20000);
+        Symbol symbol = Symbol.builder()
+                .symbol(BenchmarkQuotes.SYMBOL_NAME)
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        orders = new TopOrdersFinder().findTopOrders(new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0),
+                CsvQuoteFileLoader.TIMESTAMP_01_JAN_2021, symbol, quotes.getStartTime(quotes.size() / 2));
+        topBids = orders.getBids().topRows(TOP_ORDERS_LIMIT);
+        topAsks = orders.getAsks().topRows(TOP_ORDERS_LIMIT);
+    }
+
+    @Benchmark
+    public ResponseBuffer appendOrderBook() {
+        buffer.reset();
+        OutputFormatter.appendBids(buffer, quotes, orders, TOP_ORDERS_LIMIT);
+        buffer.append('\n');
+        OutputFormatter.appendAsks(buffer, quotes, orders, TOP_ORDERS_LIMIT);
+        return buffer;
+    }
+
+    @Benchmark
+    public ResponseBuffer appendJsonOrders() {
+        buffer.reset();
+        OutputFormatter.appendJsonOrders(buffer, quotes, topBids, OrderType.BIDS);
+        OutputFormatter.appendJsonOrders(buffer, quotes, topAsks, OrderType.ASKS);
+        return buffer;
+    }
+
+    @Benchmark
+    public void formatPrices(Blackhole blackhole) {
+        for (int row : topBids) {
+            blackhole.consume(OutputFormatter.formatPrice(quotes.getBidPrice(row)));
+        }
+        for (int row : topAsks) {
+            blackhole.consume(OutputFormatter.formatPrice(quotes.getAskPrice(row)));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.stock.orderbook.benchmark;
+
+import com.stock.orderbook.config.CsvQuoteFileLoader;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.TopOrdersFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TopOrdersFinderBenchmark measures findTopOrders deriving the book at a timestamp from a cached book replayQuotes
+ * quotes before it. <br>
+ * 10000 quotes is the default interval of the pinned checkpoints, i.e. the longest replay of a request on the
+ * loaded quotes. <br>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopOrdersFinderBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int replayQuotes;
+
+    @Param({"200000"})
+    private int quoteCount;
+
+    private final TopOrdersFinder topOrdersFinder = new TopOrdersFinder();
+    private Symbol symbol;
+    private OrdersSnapshot cachedOrders;
+    private long cachedTimestamp;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        QuoteStore quotes = BenchmarkQuotes.quotes(quoteCount);
+        symbol = Symbol.builder()
+                .symbol(BenchmarkQuotes.SYMBOL_NAME)
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        int cachedRow = quotes.size() / 2;
+        cachedTimestamp = quotes.getStartTime(cachedRow);
+        cachedOrders = topOrdersFinder.findTopOrders(new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0),
+                CsvQuoteFileLoader.TIMESTAMP_01_JAN_2021, symbol, cachedTimestamp);
+        timestamp = quotes.getStartTime(cachedOrders.getQuotesIndex() + replayQuotes - 1);
+    }
+
+    @Benchmark
+    public OrdersSnapshot findTopOrders() {
+        return topOrdersFinder.findTopOrders(cachedOrders, cachedTimestamp, symbol, timestamp);
+    }
+}
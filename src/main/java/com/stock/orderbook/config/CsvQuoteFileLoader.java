@@ -1,7 +1,15 @@
 package com.stock.orderbook.config;
 
-import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.StringDictionary;
 import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.model.TopOfBookSeries;
+import com.stock.orderbook.service.CheckpointBuilder;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.SymbolLanes;
+import com.stock.orderbook.utils.TimestampParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,33 +17,55 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.TreeMap;
+import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * CsvQuoteFileLoader class is used to perform the following actions. <br>
- * - Read the input CSV file that contains quotes <br>
- * - Group all the quotes into symbolToQuotesMap <br>
- * - Load the Symbol objects for each symbol associated into symbolMap <br>
+ * - Read the input CSV file that contains quotes, memory mapped and parsed from bytes by CsvQuoteParser <br>
+ * - The file is split into line aligned chunks which are parsed in parallel on a fork join pool <br>
+ * - Merge the quotes of each symbol from all the chunks into columnar QuoteStore in startTime order <br>
+ * - Load the Symbol objects for each symbol associated into symbolMap, with the TopOfBookSeries of their quotes <br>
+ * - Build the checkpoints of each symbol with CheckpointBuilder, before the symbolMap is returned or in a background
+ * thread <br>
+ * - Write the quotes and checkpoints to a QuoteSnapshotFile in a background thread, from which the symbols are loaded
+ * on the next restarts instead of the CSV file, as long as the CSV file is unchanged. The loaded quotes are frozen
+ * before the symbolMap is returned, so the quotes ingested meanwhile are not written <br>
+ * - Open the QuoteJournal of the quotes ingested live at the position of the loaded snapshot, from where QuoteIngester
+ * replays it. With a journal, the snapshot is written by the compactions of the journal instead <br>
+ * With quotes.load.lazy, the file is only indexed: the lines of each symbol are located in a single pass reading
+ * their symbol field, and the symbolMap is a LazySymbolMap, which parses and checkpoints the quotes of a symbol when
+ * it is first requested. The snapshot file is not used then. <br>
  */
 @Configuration
 public class CsvQuoteFileLoader {
     private static final Logger log = LoggerFactory.getLogger(CsvQuoteFileLoader.class);
-    public static final String TIMESTAMP_01_JAN_2021 = "2021-01-01T00:00:00";
+    public static final long TIMESTAMP_01_JAN_2021 = TimestampParser.parse("2021-01-01T00:00:00");
+    // window mapped at a chunk boundary to look for the start of next line
+    private static final int LINE_SEARCH_WINDOW_SIZE = 64 * 1024;
 
     /**
      * Input CSV file resource. Filename is pulled from application.properties.
@@ -49,62 +79,381 @@ public class CsvQuoteFileLoader {
     private String CSV_FILE_DELIMITER;
 
     /**
-     * Required Limit of Top Orders. Limit value is pulled from application.properties.
+     * Size in bytes of the chunks parsed in parallel. Size is pulled from application.properties.
      */
-    @Value("${top.orders.limit}")
-    private Integer TOP_ORDERS_LIMIT;
+    @Value("${quotes.load.chunk.size:67108864}")
+    private Integer LOAD_CHUNK_SIZE;
+
+    /**
+     * Number of threads used to load the file, 0 for number of available processors. Value is pulled from
+     * application.properties.
+     */
+    @Value("${quotes.load.parallelism:0}")
+    private Integer LOAD_PARALLELISM;
+
+    /**
+     * Path of the binary snapshot file of the loaded quotes, empty to always parse the CSV file. Path is pulled from
+     * application.properties.
+     */
+    @Value("${quotes.snapshot.file:}")
+    private String SNAPSHOT_FILE;
+
+    /**
+     * Whether the symbols are loaded on their first request instead of at startup. Value is pulled from
+     * application.properties.
+     */
+    @Value("${quotes.load.lazy:false}")
+    private Boolean LOAD_LAZY;
+
+    /**
+     * Time after the last request of a lazily loaded symbol from when it is unloaded, 0 to keep it loaded. Value is
+     * pulled from application.properties.
+     */
+    @Value("${quotes.load.lazy.idle.timeout:30m}")
+    private Duration LAZY_IDLE_TIMEOUT;
+
+    /**
+     * Directory of the journal of the quotes ingested live, empty to disable it. Path is pulled from
+     * application.properties.
+     */
+    @Value("${quotes.journal.dir:}")
+    private String JOURNAL_DIR;
+
+    /**
+     * Size in bytes from which the journal starts a new segment file. Size is pulled from application.properties.
+     */
+    @Value("${quotes.journal.segment.size:67108864}")
+    private Long JOURNAL_SEGMENT_SIZE;
+
+    /**
+     * Time the journal waits for more ingested batches before forcing them to disk together. Value is pulled from
+     * application.properties.
+     */
+    @Value("${quotes.journal.group.commit.delay:0ms}")
+    private Duration JOURNAL_GROUP_COMMIT_DELAY;
+
+    /**
+     * Bytes appended to the journal since its last compaction into the snapshot file from which it is compacted again.
+     * Size is pulled from application.properties.
+     */
+    @Value("${quotes.journal.compaction.size:268435456}")
+    private Long JOURNAL_COMPACTION_SIZE;
+
+    /**
+     * Whether checkpoints are built in a background thread, while requests are already served. Value is pulled from
+     * application.properties.
+     */
+    @Value("${orders.checkpoint.background:false}")
+    private Boolean CHECKPOINT_IN_BACKGROUND;
+
+    /**
+     * Journal of the quotes ingested live, opened once the symbols are loaded
+     * @return QuoteJournal - the journal, disabled if no directory is configured
+     */
+    @Bean
+    public QuoteJournal quoteJournal() {
+        return new QuoteJournal(JOURNAL_DIR.isEmpty() ? null : Paths.get(JOURNAL_DIR), JOURNAL_SEGMENT_SIZE,
+                JOURNAL_GROUP_COMMIT_DELAY.toNanos(), JOURNAL_COMPACTION_SIZE);
+    }
 
     /**
      * Symbol map is loaded from input CSV file in this method and a bean is created.
+     * @param ordersCacheManager - manager of the orders caches, in which the initial checkpoints are pinned
+     * @param checkpointBuilder - builder of the checkpoints of each symbol
+     * @param quoteJournal - journal of the quotes ingested live, opened on top of the loaded quotes
+     * @param symbolLanes - lanes the checkpoints of each loaded symbol are built on
      * @return Map<String, Symbol> Map of Symbol objects for each symbol
      * @throws Exception is thrown if file is missing or failure to parse the CSV file.
      */
     @Bean("symbolMap")
-    public Map<String, Symbol> symbolMap() throws Exception {
+    public Map<String, Symbol> symbolMap(OrdersCacheManager ordersCacheManager, CheckpointBuilder checkpointBuilder,
+                                         QuoteJournal quoteJournal, SymbolLanes symbolLanes) throws Exception {
         log.info("Started Building Symbol Map");
-        Map<String, List<Quote>> symbolToQuotesMap = buildQuotesMapFromFile();
-        Map<String, Symbol> symbolMap = symbolToQuotesMap
-                .entrySet()
-                .stream()
-                .map(mapToSymbol)
-                .collect(Collectors.toMap(Symbol::getSymbol, Function.identity()));
+        int parallelism = LOAD_PARALLELISM > 0 ? LOAD_PARALLELISM : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool loaderPool = new ForkJoinPool(parallelism);
+        try {
+            Path csvFilePath = Paths.get(csvFileResource.getURI());
+            if (LOAD_LAZY) {
+                LazySymbolMap symbolMap = lazySymbolMap(csvFilePath, loaderPool, ordersCacheManager,
+                        checkpointBuilder);
+                quoteJournal.open(0, null, null);
+                return symbolMap;
+            }
+            QuoteSnapshotFile snapshotFile = SNAPSHOT_FILE.isEmpty() ? null : new QuoteSnapshotFile(
+                    Paths.get(SNAPSHOT_FILE), checkpointBuilder.getIntervalQuotes(),
+                    checkpointBuilder.getIntervalNanos());
+            QuoteSnapshotFile.Source snapshotSource = snapshotSource(snapshotFile, csvFilePath);
+            QuoteSnapshotFile.Contents snapshot = loaderPool.submit(() -> loadSnapshot(snapshotFile, snapshotSource))
+                    .get();
+            Map<String, QuoteStore> symbolToQuotesMap = snapshot != null
+                    ? snapshot.getQuotes() : buildQuotesMapFromFile(loaderPool);
+            Map<String, NavigableMap<Long, OrdersSnapshot>> checkpoints = snapshot != null
+                    ? snapshot.getCheckpoints() : Collections.emptyMap();
+            Map<String, Symbol> symbolMap = loaderPool.submit(() -> symbolToQuotesMap
+                    .entrySet()
+                    .parallelStream()
+                    .map(entry -> initializeCache(mapToSymbol.apply(entry), ordersCacheManager,
+                            checkpoints.get(entry.getKey())))
+                    .collect(Collectors.toConcurrentMap(Symbol::getSymbol, Function.identity())))
+                    .get();
+
+            log.info("Completed Building Symbol Map. Map Size: {}", symbolMap.size());
+            quoteJournal.open(snapshot != null ? snapshot.getJournalPosition() : 0,
+                    snapshotSource != null ? snapshotFile : null, snapshotSource);
 
-        log.info("Completed Building Symbol Map. Map Size: {}", symbolMap.size());
-        symbolMap.forEach(this::initializeCache);
+            if (snapshot != null && snapshot.isWithCheckpoints()) {
+                log.info("Loaded Checkpoints from Quote Snapshot File");
+                quoteJournal.setBaseLoaded(true);
+                return symbolMap;
+            }
+            // the journal writes the snapshot once it is consistent with the journaled quotes. Without journal, the
+            // snapshot is written from views of the loaded quotes, frozen before any quote is ingested, as the quotes
+            // ingested meanwhile would not be replayed on restart
+            Runnable snapshotWriter;
+            if (quoteJournal.isEnabled()) {
+                snapshotWriter = () -> quoteJournal.setBaseLoaded(false);
+            } else {
+                Map<String, QuoteStore> loadedQuotes = QuoteSnapshotFile.freezeQuotes(symbolMap);
+                snapshotWriter = () -> writeSnapshot(snapshotFile, snapshotSource,
+                        QuoteSnapshotFile.frozenSymbols(symbolMap, loadedQuotes, symbolLanes));
+            }
+            if (CHECKPOINT_IN_BACKGROUND) {
+                Thread checkpointThread = new Thread(() -> {
+                    buildCheckpoints(symbolMap, checkpointBuilder, symbolLanes);
+                    snapshotWriter.run();
+                }, "checkpoint-builder");
+                checkpointThread.setDaemon(true);
+                checkpointThread.start();
+            } else {
+                loaderPool.submit(() -> buildCheckpoints(symbolMap, checkpointBuilder, symbolLanes)).get();
+                Thread snapshotThread = new Thread(snapshotWriter, "quote-snapshot-writer");
+                snapshotThread.setDaemon(true);
+                snapshotThread.start();
+            }
+            return symbolMap;
+        } finally {
+            loaderPool.shutdown();
+        }
+    }
 
-        return symbolMap;
+    /**
+     * Indexes the CSV file and returns a map loading each symbol from its indexed lines on first use
+     * @return LazySymbolMap - map of the symbols of the CSV file, none of them loaded yet
+     */
+    private LazySymbolMap lazySymbolMap(Path csvFilePath, ForkJoinPool loaderPool,
+                                        OrdersCacheManager ordersCacheManager, CheckpointBuilder checkpointBuilder)
+            throws IOException {
+        log.info("Indexing CSV Quotes File: {}", csvFilePath);
+        Map<String, QuoteLineRanges> symbolToLineRanges = indexCsvFile(csvFilePath, loaderPool);
+        log.info("Completed Building Lazy Symbol Map. Map Size: {}", symbolToLineRanges.size());
+        return new LazySymbolMap(symbolToLineRanges.keySet(),
+                symbolName -> loadSymbol(csvFilePath, symbolName, symbolToLineRanges.get(symbolName),
+                        ordersCacheManager, checkpointBuilder),
+                ordersCacheManager::discard, LAZY_IDLE_TIMEOUT.toNanos());
     }
 
-    private Map<String, List<Quote>> buildQuotesMapFromFile() throws Exception {
+    /**
+     * Indexes the lines of each symbol of the CSV file, in chunks of about LOAD_CHUNK_SIZE bytes indexed in parallel
+     * on loaderPool
+     * @return Map<String, QuoteLineRanges> - file ranges of the lines of each symbol
+     * @throws IOException - is thrown if file is missing at csvFilePath or a line has no symbol
+     */
+    private Map<String, QuoteLineRanges> indexCsvFile(Path csvFilePath, ForkJoinPool loaderPool) throws IOException {
+        long startNanos = System.nanoTime();
+        try (FileChannel fileChannel = FileChannel.open(csvFilePath, StandardOpenOption.READ)) {
+            List<Callable<CsvQuoteParser>> chunkIndexers = splitIntoChunks(fileChannel, fileChannel.size())
+                    .stream()
+                    .map(chunk -> (Callable<CsvQuoteParser>) () -> {
+                        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(CSV_FILE_DELIMITER);
+                        MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, chunk[0],
+                                chunk[1] - chunk[0]);
+                        csvQuoteParser.index(buffer, 0, (int) (chunk[1] - chunk[0]), chunk[0]);
+                        return csvQuoteParser;
+                    })
+                    .collect(Collectors.toList());
+            Map<String, QuoteLineRanges> symbolToLineRanges = new HashMap<>();
+            long rowCount = 0;
+            for (Future<CsvQuoteParser> indexedChunk : loaderPool.invokeAll(chunkIndexers)) {
+                CsvQuoteParser csvQuoteParser = indexedChunk.get();
+                rowCount += csvQuoteParser.getRowCount();
+                csvQuoteParser.getSymbolToLineRangesMap().forEach((symbol, lineRanges) -> symbolToLineRanges
+                        .computeIfAbsent(symbol, key -> new QuoteLineRanges()).addAll(lineRanges));
+            }
+            symbolToLineRanges.values().forEach(QuoteLineRanges::trimToSize);
+            log.info("Indexed {} quotes of {} symbols in {} line ranges ({} KB, {} ms)", rowCount,
+                    symbolToLineRanges.size(),
+                    symbolToLineRanges.values().stream().mapToLong(QuoteLineRanges::size).sum(),
+                    symbolToLineRanges.values().stream().mapToLong(QuoteLineRanges::estimatedBytes).sum() / 1024,
+                    elapsedMillis(startNanos));
+            return symbolToLineRanges;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing CSV File", e);
+        } catch (ExecutionException e) {
+            log.error("Failed to index CSV File. Please verify the contents and retry. {}",
+                    e.getCause().getMessage());
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses the indexed lines of a symbol, mapping the file by windows of at least LOAD_CHUNK_SIZE bytes, then
+     * initializes its cache and builds its checkpoints
+     * @return Symbol - the loaded symbol
+     * @throws UncheckedIOException - is thrown if the file cannot be read or a line is not a valid quote
+     */
+    private Symbol loadSymbol(Path csvFilePath, String symbolName, QuoteLineRanges lineRanges,
+                              OrdersCacheManager ordersCacheManager, CheckpointBuilder checkpointBuilder) {
+        long startNanos = System.nanoTime();
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(CSV_FILE_DELIMITER);
+        try (FileChannel fileChannel = FileChannel.open(csvFilePath, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            long windowEnd = 0;
+            for (int range = 0; range < lineRanges.size(); range++) {
+                long start = lineRanges.getStart(range);
+                long end = lineRanges.getEnd(range);
+                if (window == null || start < windowStart || end > windowEnd) {
+                    windowStart = start;
+                    windowEnd = Math.min(fileSize, start + Math.max(LOAD_CHUNK_SIZE, end - start));
+                    window = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+                }
+                csvQuoteParser.parse(window, (int) (start - windowStart), (int) (end - windowStart), windowStart);
+            }
+        } catch (IOException e) {
+            log.error("Failed to load symbol {} from CSV File. {}", symbolName, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+        QuoteStore quoteStore = csvQuoteParser.getSymbolToQuotesMap().get(symbolName);
+        if (quoteStore.sortByStartTime()) {
+            log.warn("Quotes of symbol {} are not in startTime order in CSV file, sorted them", symbolName);
+        }
+        quoteStore.trimToSize();
+        quoteStore.indexEndTimes();
+        Symbol symbol = initializeCache(mapToSymbol.apply(Map.entry(symbolName, quoteStore)), ordersCacheManager,
+                null);
+        int checkpointCount = checkpointBuilder.buildCheckpoints(symbol);
+        log.info("Loaded symbol {}: {} quotes, {} checkpoints ({} ms)", symbolName, quoteStore.size(),
+                checkpointCount, elapsedMillis(startNanos));
+        return symbol;
+    }
+
+    /**
+     * @return QuoteSnapshotFile.Source - the CSV file as source of the snapshot, null if there is no snapshot file or
+     * the CSV file is missing, which is then reported by parsing it
+     */
+    private QuoteSnapshotFile.Source snapshotSource(QuoteSnapshotFile snapshotFile, Path csvFilePath) {
+        if (snapshotFile == null) {
+            return null;
+        }
+        try {
+            return new QuoteSnapshotFile.Source(csvFilePath, CSV_FILE_DELIMITER.charAt(0));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loads the quotes from the snapshot file, falling back to the CSV file if the snapshot is missing, stale or
+     * corrupted
+     * @return QuoteSnapshotFile.Contents - loaded quotes and checkpoints, null if they are to be parsed from CSV file
+     */
+    private QuoteSnapshotFile.Contents loadSnapshot(QuoteSnapshotFile snapshotFile,
+                                                    QuoteSnapshotFile.Source snapshotSource) {
+        if (snapshotSource == null) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            QuoteSnapshotFile.Contents snapshot = snapshotFile.load(snapshotSource);
+            if (snapshot != null) {
+                log.info("Successfully loaded quote snapshot file: {}", snapshotFile.getPath());
+                log.info("Total Symbols Found: {}", snapshot.getQuotes().size());
+                log.info("Total Quotes Loaded: {} ({} ms)", sumOfSizesOfMapOfStores(snapshot.getQuotes()),
+                        elapsedMillis(startNanos));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("Failed to load quote snapshot file, parsing CSV file instead. {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the loaded quotes and their checkpoints to the snapshot file, if any
+     */
+    private void writeSnapshot(QuoteSnapshotFile snapshotFile, QuoteSnapshotFile.Source snapshotSource,
+                               Map<String, Symbol> symbolMap) {
+        if (snapshotSource == null) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            snapshotFile.write(snapshotSource, symbolMap);
+            log.info("Completed Writing Quote Snapshot File: {} ({} ms)", snapshotFile.getPath(),
+                    elapsedMillis(startNanos));
+        } catch (IOException e) {
+            log.warn("Failed to write quote snapshot file {}. {}", snapshotFile.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the checkpoints of all the symbols in parallel, each on its lane as it may be served meanwhile
+     * @param symbolMap - symbols with loaded quotes and initialized caches
+     * @param checkpointBuilder - builder of the checkpoints of each symbol
+     * @param symbolLanes - lanes of the symbols
+     */
+    private void buildCheckpoints(Map<String, Symbol> symbolMap, CheckpointBuilder checkpointBuilder,
+                                  SymbolLanes symbolLanes) {
+        long startNanos = System.nanoTime();
+        int checkpointCount = symbolMap.values()
+                .parallelStream()
+                .mapToInt(symbol -> symbolLanes.call(symbol.getSymbol(),
+                        () -> checkpointBuilder.buildCheckpoints(symbol)))
+                .sum();
+        log.info("Completed Building Checkpoints. Checkpoints: {} ({} ms)", checkpointCount,
+                elapsedMillis(startNanos));
+    }
+
+    private Map<String, QuoteStore> buildQuotesMapFromFile(ForkJoinPool loaderPool) throws Exception {
         String csvFilePath = Paths.get(csvFileResource.getURI()).toString();
         log.info("Parsing CSV Quotes File: " + csvFilePath);
 
-        return readCsvFile(csvFilePath);
+        return readCsvFile(csvFilePath, loaderPool);
     }
 
     /**
-     * Method to parse CSV File
+     * Method to parse CSV File. <br>
+     * 1. The file is split into chunks of about LOAD_CHUNK_SIZE bytes, each starting and ending at a line boundary <br>
+     * 2. Each chunk is memory mapped and parsed straight from bytes by its own CsvQuoteParser on loaderPool <br>
+     * 3. The quotes of each symbol are merged from the chunks in file order and sorted by startTime if needed, then
+     * indexed by endTime <br>
      * @param csvFilePath - path to CSV file
-     * @return Map<String, List<Quote>> - All quotes associated to a symbol
+     * @param loaderPool - pool on which the chunks are parsed and merged
+     * @return Map<String, QuoteStore> - All quotes associated to a symbol
      * @throws IOException - is thrown if file is missing at csvFilePath or failure to parse the CSV file.
      */
-    private Map<String, List<Quote>> readCsvFile(String csvFilePath) throws IOException {
-        Map<String, List<Quote>> symbolToQuotesMap;
+    private Map<String, QuoteStore> readCsvFile(String csvFilePath, ForkJoinPool loaderPool) throws IOException {
+        long startNanos = System.nanoTime();
+        Map<String, QuoteStore> symbolToQuotesMap;
+        long fileSize;
+        int chunkCount;
 
-        try {
-            File csvFile = new File(csvFilePath);
-            InputStream fileInputStream = new FileInputStream(csvFile);
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(fileInputStream));
-
-            symbolToQuotesMap = bufferedReader
-                    .lines()
-                    .skip(1)
-                    .map(mapCsvLineToQuote)
-                    .collect(Collectors.groupingBy(Quote::getSymbol,
-                            Collectors.mapping(Function.identity(), Collectors.toList())));
-
-            bufferedReader.close();
-        } catch (FileNotFoundException e) {
+        try (FileChannel fileChannel = FileChannel.open(Paths.get(csvFilePath), StandardOpenOption.READ)) {
+            fileSize = fileChannel.size();
+            List<long[]> chunks = splitIntoChunks(fileChannel, fileSize);
+            chunkCount = chunks.size();
+
+            List<Callable<CsvQuoteParser>> chunkParsers = chunks.stream()
+                    .map(chunk -> (Callable<CsvQuoteParser>) () -> parseChunk(fileChannel, chunk[0], chunk[1]))
+                    .collect(Collectors.toList());
+            List<CsvQuoteParser> parsedChunks = new ArrayList<>();
+            for (Future<CsvQuoteParser> parsedChunk : loaderPool.invokeAll(chunkParsers)) {
+                parsedChunks.add(parsedChunk.get());
+            }
+            symbolToQuotesMap = mergeChunks(parsedChunks, loaderPool);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             e.printStackTrace();
             log.error("Missing input quotes_2021-02-18.csv file. " +
                     "Please copy file to src/main/resources folder and retry. {}", e.getMessage());
@@ -113,73 +462,176 @@ public class CsvQuoteFileLoader {
             e.printStackTrace();
             log.error("Failed to parse CSV File. Please verify the contents and retry. {}", e.getMessage());
             throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing CSV File", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            log.error("Failed to parse CSV File. Please verify the contents and retry. {}", cause.getMessage());
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
         }
 
+        long quotesCount = sumOfSizesOfMapOfStores(symbolToQuotesMap);
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
         log.info("Successfully parsed and loaded CSV quotes file");
         log.info("Total Symbols Found: {}", symbolToQuotesMap.size());
-        log.info("Total Quotes Loaded: {}", sumOfLengthsOfMapOfLists(symbolToQuotesMap));
+        log.info("Total Quotes Loaded: {}", quotesCount);
+        log.info("Load Throughput: {} rows/s, {} KB/s ({} chunks, parallelism {}, {} ms)",
+                Math.round(quotesCount / seconds), Math.round(fileSize / seconds / 1024), chunkCount,
+                loaderPool.getParallelism(), Math.round(seconds * 1000));
         return symbolToQuotesMap;
     }
 
     /**
-     * Adds all the lengths of list value objects in a map
-     * @param mapOfLists - input map to calculated the sum
-     * @return int sum of lengths of list value objects in mapOfLists
+     * Splits the file after the header line into chunks of about LOAD_CHUNK_SIZE bytes. Each chunk boundary is moved
+     * to the start of the next line, so that every line belongs to exactly one chunk.
+     * @return List<long[]> - start (inclusive) and end (exclusive) file offsets of each chunk
+     */
+    private List<long[]> splitIntoChunks(FileChannel fileChannel, long fileSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long chunkSize = Math.max(LINE_SEARCH_WINDOW_SIZE, LOAD_CHUNK_SIZE);
+        long start = nextLineStart(fileChannel, 0, fileSize);
+        while (start < fileSize) {
+            long end = start + chunkSize >= fileSize
+                    ? fileSize : nextLineStart(fileChannel, start + chunkSize, fileSize);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return long - file offset after the first new line at or after position, or fileSize if there is none
+     * @throws IOException - is thrown if no line end is found within LINE_SEARCH_WINDOW_SIZE bytes
+     */
+    private static long nextLineStart(FileChannel fileChannel, long position, long fileSize) throws IOException {
+        int windowSize = (int) Math.min(LINE_SEARCH_WINDOW_SIZE, fileSize - position);
+        ByteBuffer window = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+        for (int i = 0; i < windowSize; i++) {
+            if (window.get(i) == '\n') {
+                return position + i + 1;
+            }
+        }
+        if (position + windowSize == fileSize) {
+            return fileSize;
+        }
+        throw new IOException("No line end found in " + windowSize + " bytes starting at byte offset " + position);
+    }
+
+    /**
+     * Maps the chunk of file and parses its lines into quote stores of the chunk
+     * @return CsvQuoteParser - parser holding the quote stores of the chunk
      */
-    private int sumOfLengthsOfMapOfLists(Map<String, List<Quote>> mapOfLists) {
-        return mapOfLists.values().stream().mapToInt(List::size).sum();
+    private CsvQuoteParser parseChunk(FileChannel fileChannel, long start, long end) {
+        try {
+            CsvQuoteParser csvQuoteParser = new CsvQuoteParser(CSV_FILE_DELIMITER);
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            csvQuoteParser.parse(buffer, 0, (int) (end - start), start);
+            return csvQuoteParser;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Function to build Quote object for each line of the input CSV file
+     * Merges the quote stores of each symbol from all the chunks, in chunk order, into a store using dictionaries
+     * shared by all the symbols. Symbols are merged in parallel on loaderPool.
+     * @param parsedChunks - parsers of chunks in file order
+     * @return Map<String, QuoteStore> - All quotes associated to a symbol in startTime order
      */
-    private final Function<String, Quote> mapCsvLineToQuote = (line) -> {
-        String[] cols = line.split(CSV_FILE_DELIMITER);
+    private Map<String, QuoteStore> mergeChunks(List<CsvQuoteParser> parsedChunks, ForkJoinPool loaderPool)
+            throws InterruptedException, ExecutionException {
+        // dictionaries are shared by all the symbols as the distinct values are few
+        StringDictionary marketCenterDictionary = new StringDictionary();
+        StringDictionary quoteConditionsDictionary = new StringDictionary();
+        StringDictionary sipfeedDictionary = new StringDictionary();
 
-        return Quote.builder()
-                .symbol(cols[0])
-                .marketCenter(cols[1])
-                .bidQuantity(Integer.parseInt(cols[2]))
-                .askQuantity(Integer.parseInt(cols[3]))
-                .bidPrice(Double.parseDouble(cols[4]))
-                .askPrice(Double.parseDouble(cols[5]))
-                .startTime(cols[6])
-                .endTime(cols[7])
-                .quoteConditions(cols[8])
-                .sipfeedSeq(Integer.parseInt(cols[9]))
-                .sipfeed(cols[10])
-                .build();
-    };
+        Map<String, List<QuoteStore>> symbolToChunkStores = new HashMap<>();
+        Map<QuoteStore, int[][]> chunkStoreCodes = new HashMap<>();
+        for (CsvQuoteParser parsedChunk : parsedChunks) {
+            Map<String, QuoteStore> chunkStores = parsedChunk.getSymbolToQuotesMap();
+            if (chunkStores.isEmpty()) {
+                continue;
+            }
+            // all the stores of a chunk share the dictionaries of the chunk parser
+            QuoteStore anyStore = chunkStores.values().iterator().next();
+            int[][] codes = {
+                    marketCenterDictionary.encodeAll(anyStore.getMarketCenterDictionary()),
+                    quoteConditionsDictionary.encodeAll(anyStore.getQuoteConditionsDictionary()),
+                    sipfeedDictionary.encodeAll(anyStore.getSipfeedDictionary())};
+            chunkStores.forEach((symbol, chunkStore) -> {
+                symbolToChunkStores.computeIfAbsent(symbol, key -> new ArrayList<>()).add(chunkStore);
+                chunkStoreCodes.put(chunkStore, codes);
+            });
+        }
+
+        return loaderPool.submit(() -> symbolToChunkStores
+                .entrySet()
+                .parallelStream()
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, entry -> {
+                    QuoteStore quoteStore = new QuoteStore(marketCenterDictionary, quoteConditionsDictionary,
+                            sipfeedDictionary);
+                    quoteStore.ensureCapacity(entry.getValue().stream().mapToInt(QuoteStore::size).sum());
+                    for (QuoteStore chunkStore : entry.getValue()) {
+                        int[][] codes = chunkStoreCodes.get(chunkStore);
+                        quoteStore.addAll(chunkStore, codes[0], codes[1], codes[2]);
+                    }
+                    if (quoteStore.sortByStartTime()) {
+                        log.warn("Quotes of symbol {} are not in startTime order in CSV file, sorted them",
+                                entry.getKey());
+                    }
+                    quoteStore.trimToSize();
+                    quoteStore.indexEndTimes();
+                    return quoteStore;
+                })))
+                .get();
+    }
 
     /**
-     * Function to build Symbol objects for each symbol
+     * @param startNanos - System.nanoTime() at the start of a step
+     * @return long - milliseconds elapsed since startNanos
      */
-    private final Function<Map.Entry<String, List<Quote>>, Symbol> mapToSymbol = (entry) -> Symbol.builder()
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds all the sizes of quote stores in a map
+     * @param mapOfStores - input map to calculated the sum
+     * @return long sum of sizes of quote stores in mapOfStores
+     */
+    private long sumOfSizesOfMapOfStores(Map<String, QuoteStore> mapOfStores) {
+        return mapOfStores.values().stream().mapToLong(QuoteStore::size).sum();
+    }
+
+    /**
+     * Function to build Symbol objects for each symbol, precomputing the best bid and ask series of its quotes
+     */
+    private final Function<Map.Entry<String, QuoteStore>, Symbol> mapToSymbol = (entry) -> Symbol.builder()
             .symbol(entry.getKey())
             .quotes(entry.getValue())
-            .asksCache(new TreeMap<>())
-            .bidsCache(new TreeMap<>())
-            .quotesIndex(new HashMap<>())
+            .ordersCache(new ConcurrentSkipListMap<>())
+            .topOfBook(TopOfBookSeries.of(entry.getValue()))
             .build();
 
     /**
-     * Initializes the caches and quotes index for each symbol
-     * @param symbolName - name of symbol
-     * @param symbol - Symbol object for which caches are to be updated
+     * Initializes the cache for each symbol
+     * @param symbol - Symbol object for which cache is to be updated
+     * @param ordersCacheManager - manager of the orders caches
+     * @param checkpoints - checkpoints of the symbol loaded from snapshot file, null if they are to be built
+     * @return Symbol - the initialized symbol
      */
-    private void initializeCache(String symbolName, Symbol symbol) {
-        // Negative bid price is used for comparing to simulate MaxHeap because bids should be ordered from high to low.
-        // In case of tie, the startTime is used and the older startTime is selected.
-        PriorityQueue<Quote> bidsQueue = new PriorityQueue<>(TOP_ORDERS_LIMIT,
-                Comparator.comparing(Quote::getNegativeBidPrice).thenComparing(Quote::getStartTime));
-
-        // Ask price is used for comparison to simulate MinHeap followed by startTime in case of duplicates.
-        PriorityQueue<Quote> asksQueue = new PriorityQueue<>(TOP_ORDERS_LIMIT,
-                Comparator.comparing(Quote::getAskPrice).thenComparing(Quote::getStartTime));
-
-        // Storing a dummy initial quote for random timestamp i.e. TIMESTAMP_01_JAN_2021
-        symbol.getBidsCache().put(TIMESTAMP_01_JAN_2021, bidsQueue);
-        symbol.getAsksCache().put(TIMESTAMP_01_JAN_2021, asksQueue);
-        symbol.getQuotesIndex().put(TIMESTAMP_01_JAN_2021, 0);
+    private Symbol initializeCache(Symbol symbol, OrdersCacheManager ordersCacheManager,
+                                   NavigableMap<Long, OrdersSnapshot> checkpoints) {
+        if (checkpoints != null && !checkpoints.isEmpty()) {
+            // the loaded checkpoints start with the initial snapshot
+            checkpoints.forEach((timestamp, checkpoint) -> ordersCacheManager.pin(symbol, timestamp, checkpoint));
+            return symbol;
+        }
+        // Storing a dummy initial snapshot without orders for random timestamp i.e. TIMESTAMP_01_JAN_2021,
+        // from where the quotes are loaded starting at index 0. It is pinned, so that it is never evicted.
+        OrdersSnapshot emptyOrders = new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true);
+        ordersCacheManager.pin(symbol, TIMESTAMP_01_JAN_2021, emptyOrders);
+        return symbol;
     }
 }
@@ -0,0 +1,298 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.StringDictionary;
+import com.stock.orderbook.utils.ByteCharSequence;
+import com.stock.orderbook.utils.TimestampParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CsvQuoteParser parses the lines of input CSV quotes file straight from the bytes of the (memory mapped) file. <br>
+ * - Fields are located by scanning for delimiter bytes, no String is created per line or field <br>
+ * - Numbers and timestamps are decoded in place from the bytes <br>
+ * - Symbols and dictionary coded columns are looked up by content, a String is only created for a new value <br>
+ * - Each line is appended to the QuoteStore of its symbol <br>
+ * - Alternatively, lines are only indexed: the file range of each line is added to the QuoteLineRanges of its symbol,
+ * reading no more than the symbol field <br>
+ * A parser either parses or indexes lines, and is not thread safe. <br>
+ */
+public class CsvQuoteParser {
+    /**
+     * Number of columns in the CSV file: symbol, marketCenter, bidQuantity, askQuantity, bidPrice, askPrice,
+     * startTime, endTime, quoteConditions, sipfeedSeq, sipfeed
+     */
+    private static final int COLUMN_COUNT = 11;
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    // mantissa and power of ten below these limits are exact doubles, hence their division is correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_SCALE = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_EXACT_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final byte delimiter;
+    private final StringDictionary symbolDictionary = new StringDictionary();
+    private final List<QuoteStore> stores = new ArrayList<>();
+    private final List<QuoteLineRanges> lineRanges = new ArrayList<>();
+    private final StringDictionary marketCenterDictionary;
+    private final StringDictionary quoteConditionsDictionary;
+    private final StringDictionary sipfeedDictionary;
+
+    private final ByteCharSequence field = new ByteCharSequence();
+    // start index of each field of the current line, followed by the index after the last field
+    private final int[] fieldStarts = new int[COLUMN_COUNT + 1];
+    private long rowCount;
+
+    /**
+     * Creates a parser with its own dictionaries
+     * @param delimiter - single character CSV delimiter
+     */
+    public CsvQuoteParser(String delimiter) {
+        this(delimiter, new StringDictionary(), new StringDictionary(), new StringDictionary());
+    }
+
+    /**
+     * Creates a parser appending to stores that share the given dictionaries
+     * @param delimiter - single character CSV delimiter
+     */
+    public CsvQuoteParser(String delimiter, StringDictionary marketCenterDictionary,
+                          StringDictionary quoteConditionsDictionary, StringDictionary sipfeedDictionary) {
+        if (delimiter == null || delimiter.length() != 1 || delimiter.charAt(0) > 0x7f) {
+            throw new IllegalArgumentException("CSV file delimiter must be a single ASCII character: " + delimiter);
+        }
+        this.delimiter = (byte) delimiter.charAt(0);
+        this.marketCenterDictionary = marketCenterDictionary;
+        this.quoteConditionsDictionary = quoteConditionsDictionary;
+        this.sipfeedDictionary = sipfeedDictionary;
+    }
+
+    /**
+     * Parses all the lines in the given range of buffer. Empty lines are skipped.
+     * @param buffer - buffer with the file contents
+     * @param start - absolute index in buffer of the first line
+     * @param end - absolute index in buffer after the last line
+     * @param fileOffset - offset in file of index 0 of the buffer, used in error messages
+     * @throws IOException - is thrown if a line is not a valid quote
+     */
+    public void parse(ByteBuffer buffer, int start, int end, long fileOffset) throws IOException {
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != NEW_LINE) {
+                lineEnd++;
+            }
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == CARRIAGE_RETURN) {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                parseLine(buffer, lineStart, lineEnd, fileOffset);
+            }
+            lineStart = nextLineStart;
+        }
+    }
+
+    /**
+     * Indexes all the lines in the given range of buffer by symbol, without parsing the other fields. Empty lines are
+     * skipped.
+     * @param buffer - buffer with the file contents
+     * @param start - absolute index in buffer of the first line
+     * @param end - absolute index in buffer after the last line
+     * @param fileOffset - offset in file of index 0 of the buffer
+     * @throws IOException - is thrown if a line has no symbol field
+     */
+    public void index(ByteBuffer buffer, int start, int end, long fileOffset) throws IOException {
+        int lineStart = start;
+        while (lineStart < end) {
+            int symbolEnd = -1;
+            int lineEnd = lineStart;
+            byte c;
+            while (lineEnd < end && (c = buffer.get(lineEnd)) != NEW_LINE) {
+                if (c == delimiter && symbolEnd < 0) {
+                    symbolEnd = lineEnd;
+                }
+                lineEnd++;
+            }
+            int nextLineStart = Math.min(lineEnd + 1, end);
+            if (lineEnd > lineStart && !(lineEnd == lineStart + 1 && buffer.get(lineStart) == CARRIAGE_RETURN)) {
+                if (symbolEnd < 0) {
+                    throw malformedLine(buffer, lineStart, lineEnd, fileOffset, "expected " + COLUMN_COUNT
+                            + " columns");
+                }
+                int code = symbolDictionary.encode(field.set(buffer, lineStart, symbolEnd - lineStart));
+                if (code == lineRanges.size()) {
+                    lineRanges.add(new QuoteLineRanges());
+                }
+                lineRanges.get(code).addLine(fileOffset + lineStart, fileOffset + nextLineStart);
+                rowCount++;
+            }
+            lineStart = nextLineStart;
+        }
+    }
+
+    private void parseLine(ByteBuffer buffer, int lineStart, int lineEnd, long fileOffset) throws IOException {
+        int column = 0;
+        fieldStarts[0] = lineStart;
+        for (int i = lineStart; i < lineEnd && column < COLUMN_COUNT; i++) {
+            if (buffer.get(i) == delimiter) {
+                fieldStarts[++column] = i + 1;
+            }
+        }
+        if (column < COLUMN_COUNT - 1) {
+            throw malformedLine(buffer, lineStart, lineEnd, fileOffset, "expected " + COLUMN_COUNT + " columns");
+        }
+        if (column == COLUMN_COUNT - 1) {
+            // the last field ends with the line, extra columns are ignored otherwise
+            fieldStarts[COLUMN_COUNT] = lineEnd + 1;
+        }
+
+        QuoteStore store = storeOf(fieldAt(buffer, 0));
+        int marketCenter = marketCenterDictionary.encode(fieldAt(buffer, 1));
+        int bidQuantity = parseInt(fieldAt(buffer, 2));
+        int askQuantity = parseInt(fieldAt(buffer, 3));
+        double bidPrice = parseDouble(fieldAt(buffer, 4));
+        double askPrice = parseDouble(fieldAt(buffer, 5));
+        long startTime = TimestampParser.parse(fieldAt(buffer, 6));
+        long endTime = TimestampParser.parse(fieldAt(buffer, 7));
+        int quoteConditions = quoteConditionsDictionary.encode(fieldAt(buffer, 8));
+        int sipfeedSeq = parseInt(fieldAt(buffer, 9));
+        int sipfeed = sipfeedDictionary.encode(fieldAt(buffer, 10));
+
+        if (bidQuantity < 0 || askQuantity < 0 || sipfeedSeq < 0 || Double.isNaN(bidPrice) || Double.isNaN(askPrice)
+                || startTime == TimestampParser.INVALID_TIMESTAMP || endTime == TimestampParser.INVALID_TIMESTAMP) {
+            throw malformedLine(buffer, lineStart, lineEnd, fileOffset, "invalid number or timestamp");
+        }
+        store.add(marketCenter, bidQuantity, askQuantity, bidPrice, askPrice, startTime, endTime, quoteConditions,
+                sipfeedSeq, sipfeed);
+        rowCount++;
+    }
+
+    private ByteCharSequence fieldAt(ByteBuffer buffer, int column) {
+        int start = fieldStarts[column];
+        return field.set(buffer, start, fieldStarts[column + 1] - 1 - start);
+    }
+
+    private QuoteStore storeOf(CharSequence symbol) {
+        int code = symbolDictionary.encode(symbol);
+        if (code == stores.size()) {
+            stores.add(new QuoteStore(marketCenterDictionary, quoteConditionsDictionary, sipfeedDictionary));
+        }
+        return stores.get(code);
+    }
+
+    /**
+     * @return int - value of non negative integer or -1 if text is not a valid non negative integer
+     */
+    static int parseInt(CharSequence text) {
+        int length = text.length();
+        if (length == 0 || length > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * Decodes a plain decimal number e.g. 128.25 exactly as Double.parseDouble would, falling back to it for other
+     * formats (exponents, long mantissas).
+     * @return double - value of text or NaN if text is not a valid number
+     */
+    static double parseDouble(CharSequence text) {
+        int length = text.length();
+        int position = 0;
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; position < length; position++) {
+            char c = text.charAt(position);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return parseDoubleSlow(text);
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return parseDoubleSlow(text);
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (scale > MAX_EXACT_SCALE) {
+            return parseDoubleSlow(text);
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(CharSequence text) {
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private IOException malformedLine(ByteBuffer buffer, int lineStart, int lineEnd, long fileOffset,
+                                      String reason) {
+        return new IOException(String.format("Malformed quote at byte offset %d (%s): %s", fileOffset + lineStart,
+                reason, field.set(buffer, lineStart, lineEnd - lineStart)));
+    }
+
+    /**
+     * @return Map<String, QuoteStore> - quote store of each symbol parsed so far
+     */
+    public Map<String, QuoteStore> getSymbolToQuotesMap() {
+        Map<String, QuoteStore> symbolToQuotesMap = new HashMap<>();
+        for (int code = 0; code < stores.size(); code++) {
+            symbolToQuotesMap.put(symbolDictionary.decode(code), stores.get(code));
+        }
+        return symbolToQuotesMap;
+    }
+
+    /**
+     * @return Map<String, QuoteLineRanges> - line ranges of each symbol indexed so far
+     */
+    public Map<String, QuoteLineRanges> getSymbolToLineRangesMap() {
+        Map<String, QuoteLineRanges> symbolToLineRangesMap = new HashMap<>();
+        for (int code = 0; code < lineRanges.size(); code++) {
+            symbolToLineRangesMap.put(symbolDictionary.decode(code), lineRanges.get(code));
+        }
+        return symbolToLineRangesMap;
+    }
+
+    /**
+     * @return long - number of quotes parsed or indexed so far
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+}
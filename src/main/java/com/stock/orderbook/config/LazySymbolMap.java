@@ -0,0 +1,185 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * LazySymbolMap is the symbol map of lazily loaded symbols. <br>
+ * - The names of the symbols are known upfront from an index of the quotes file, so containsKey, keySet and size never
+ * load a symbol <br>
+ * - get loads the symbol on its first use: concurrent first requests of a symbol wait for a single load, while other
+ * symbols are loaded in parallel <br>
+ * - Symbols not read for idleTimeout are unloaded by a background thread, and loaded again on their next use. Requests
+ * still running on an unloaded symbol complete with it. Symbols with quotes appended since their load are kept
+ * loaded, as their appended quotes are not in the quotes file <br>
+ * The map is unmodifiable. It is meant to be read by key, iterating its entries loads all the symbols. <br>
+ */
+public class LazySymbolMap extends AbstractMap<String, Symbol> implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LazySymbolMap.class);
+    // resolution of the last access time, so that frequent reads of a symbol do not contend on the field
+    private static final long ACCESS_RESOLUTION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Set<String> symbolNames;
+    private final Function<String, Symbol> loader;
+    private final Consumer<Symbol> unloader;
+    private final long idleTimeoutNanos;
+    private final Map<String, LoadedSymbol> loadedSymbols = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService idleSweeper;
+
+    /**
+     * @param symbolNames - names of all the symbols of the quotes file
+     * @param loader - loads the symbol of a name, called once per load of a symbol
+     * @param unloader - releases the resources of an unloaded symbol e.g. its cached snapshots
+     * @param idleTimeoutNanos - time after the last read of a symbol from when it is unloaded, 0 to keep the loaded
+     *                         symbols
+     */
+    public LazySymbolMap(Set<String> symbolNames, Function<String, Symbol> loader, Consumer<Symbol> unloader,
+                         long idleTimeoutNanos) {
+        this.symbolNames = Collections.unmodifiableSet(symbolNames);
+        this.loader = loader;
+        this.unloader = unloader;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        if (idleTimeoutNanos > 0) {
+            idleSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "idle-symbol-unloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long periodNanos = Math.max(idleTimeoutNanos / 4, ACCESS_RESOLUTION_NANOS);
+            idleSweeper.scheduleWithFixedDelay(() -> unloadIdleSymbols(System.nanoTime()), periodNanos, periodNanos,
+                    TimeUnit.NANOSECONDS);
+        } else {
+            idleSweeper = null;
+        }
+    }
+
+    /**
+     * @param key - name of the symbol
+     * @return Symbol - the loaded symbol, null if the quotes file has no such symbol
+     */
+    @Override
+    public Symbol get(Object key) {
+        if (!symbolNames.contains(key)) {
+            return null;
+        }
+        String symbolName = (String) key;
+        return loadedSymbols.computeIfAbsent(symbolName, LoadedSymbol::new).get();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return symbolNames.contains(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return symbolNames;
+    }
+
+    @Override
+    public int size() {
+        return symbolNames.size();
+    }
+
+    @Override
+    public Set<Entry<String, Symbol>> entrySet() {
+        return symbolNames.stream()
+                .map(symbolName -> new SimpleImmutableEntry<>(symbolName, get(symbolName)))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @return int - number of symbols currently loaded
+     */
+    public int getLoadedCount() {
+        return (int) loadedSymbols.values().stream().filter(LoadedSymbol::isLoaded).count();
+    }
+
+    /**
+     * Unloads the symbols which have not been read for idleTimeout
+     * @param nowNanos - current System.nanoTime()
+     * @return int - number of unloaded symbols
+     */
+    int unloadIdleSymbols(long nowNanos) {
+        int unloadedCount = 0;
+        for (LoadedSymbol loadedSymbol : loadedSymbols.values()) {
+            if (loadedSymbol.unloadIfIdle(nowNanos)) {
+                unloadedCount++;
+            }
+        }
+        if (unloadedCount > 0) {
+            log.info("Unloaded {} idle symbols, {} symbols remain loaded", unloadedCount, getLoadedCount());
+        }
+        return unloadedCount;
+    }
+
+    @Override
+    public void close() {
+        if (idleSweeper != null) {
+            idleSweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Holder of a symbol, which serializes its loads and unloads
+     */
+    private final class LoadedSymbol {
+        private final String symbolName;
+        private volatile Symbol symbol;
+        private volatile long lastAccessNanos;
+        // number of quotes of the symbol in the quotes file
+        private int loadedQuotes;
+
+        private LoadedSymbol(String symbolName) {
+            this.symbolName = symbolName;
+        }
+
+        private Symbol get() {
+            Symbol loadedSymbol = symbol;
+            if (loadedSymbol == null) {
+                synchronized (this) {
+                    loadedSymbol = symbol;
+                    if (loadedSymbol == null) {
+                        loadedSymbol = loader.apply(symbolName);
+                        loadedQuotes = loadedSymbol.getQuotes().size();
+                        lastAccessNanos = System.nanoTime();
+                        symbol = loadedSymbol;
+                    }
+                }
+            }
+            long nowNanos = System.nanoTime();
+            if (nowNanos - lastAccessNanos > ACCESS_RESOLUTION_NANOS) {
+                lastAccessNanos = nowNanos;
+            }
+            return loadedSymbol;
+        }
+
+        private boolean isLoaded() {
+            return symbol != null;
+        }
+
+        private synchronized boolean unloadIfIdle(long nowNanos) {
+            Symbol loadedSymbol = symbol;
+            if (loadedSymbol == null || nowNanos - lastAccessNanos < idleTimeoutNanos
+                    || loadedSymbol.getQuotes().size() != loadedQuotes) {
+                return false;
+            }
+            symbol = null;
+            unloader.accept(loadedSymbol);
+            return true;
+        }
+    }
+}
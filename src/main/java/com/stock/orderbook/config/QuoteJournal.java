@@ -0,0 +1,573 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.StringDictionary;
+import com.stock.orderbook.model.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * QuoteJournal is the write-ahead journal of the quotes ingested live, replayed on restart on top of the quotes loaded
+ * from the CSV file or the QuoteSnapshotFile. <br>
+ * - Each ingested batch is appended as a record: its length, CRC32C checksum, and for each symbol its name,
+ * dictionaries and quote columns <br>
+ * - Records are appended to segment files of about quotes.journal.segment.size bytes, each named after the journal
+ * position of its first byte. A position is the number of bytes written to the journal before it <br>
+ * - Group commit: appends only write the records to the file, while a sync thread forces the written records to disk
+ * and wakes up the appenders waiting for them. Records appended while a force is running are forced together by the
+ * next force, which first waits quotes.journal.group.commit.delay for more records: a longer delay trades the latency
+ * of each batch for fewer forces <br>
+ * - Compaction writes all the quotes and checkpoints to the snapshot file, along with the position from which the
+ * journal is replayed on top of them, then deletes the segments before that position. Recovery replays about
+ * quotes.journal.compaction.size bytes at most <br>
+ * - Quotes still held in the reorder buffers at a compaction are appended as a buffered record first in the new
+ * segment, which is only replayed when recovery starts from it <br>
+ * On recovery, a torn record at the end of the last segment, from a crash while it was written, is truncated. A
+ * journal without directory is disabled: appends are not written and nothing is replayed. <br>
+ */
+public class QuoteJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(QuoteJournal.class);
+
+    // "OBQJ" in file byte order
+    private static final int MAGIC = 0x4A51424F;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INGESTED_RECORD = 0;
+    private static final int BUFFERED_RECORD = 1;
+    private static final String SEGMENT_PREFIX = "quotes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long groupCommitDelayNanos;
+    private final long compactionBytes;
+    // held while forcing a segment, so that it is not closed meanwhile
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private long segmentPosition;
+    private long writtenPosition;
+    private long durablePosition;
+    private IOException failure;
+    private boolean closed;
+    private Thread syncThread;
+
+    private long replayPosition;
+    private volatile long compactedPosition;
+    private QuoteSnapshotFile snapshotFile;
+    private QuoteSnapshotFile.Source snapshotSource;
+    private volatile boolean baseLoaded;
+    private volatile boolean baseCompacted;
+
+    /**
+     * @param directory - directory of the segment files, null to disable the journal
+     * @param segmentBytes - size in bytes of the records of a segment from which the next record starts a new segment
+     * @param groupCommitDelayNanos - time waited for more records before forcing the written records to disk
+     * @param compactionBytes - bytes appended since the last compaction from which the journal is compacted
+     */
+    public QuoteJournal(Path directory, long segmentBytes, long groupCommitDelayNanos, long compactionBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitDelayNanos = groupCommitDelayNanos;
+        this.compactionBytes = compactionBytes;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Opens the journal on top of the loaded quotes, before any replay or append. Segments before basePosition,
+     * already in the snapshot, are deleted and a torn record at the end of the last segment is truncated.
+     * @param basePosition - journal position of the loaded snapshot, 0 if the quotes are parsed from the CSV file
+     * @param snapshotFile - snapshot file the journal is compacted into, null if it is never compacted
+     * @param snapshotSource - CSV file the snapshot is written from
+     * @throws IOException - is thrown if the journal cannot be read or written
+     */
+    public void open(long basePosition, QuoteSnapshotFile snapshotFile, QuoteSnapshotFile.Source snapshotSource)
+            throws IOException {
+        if (directory == null) {
+            return;
+        }
+        this.snapshotFile = snapshotFile;
+        this.snapshotSource = snapshotSource;
+        if (snapshotFile == null) {
+            log.warn("Quote journal {} is never compacted without quote snapshot file, recovery replays all of it",
+                    directory);
+        }
+        Files.createDirectories(directory);
+        List<Long> segments = segmentPositions();
+        while (segments.size() > 1 && segments.get(1) <= basePosition) {
+            Files.delete(segmentPath(segments.remove(0)));
+        }
+        long endPosition = basePosition;
+        if (!segments.isEmpty()) {
+            long lastSegment = segments.get(segments.size() - 1);
+            endPosition = truncateTornRecord(lastSegment);
+            if (segments.get(0) > basePosition) {
+                log.warn("Quote journal {} starts at position {} after the position {} of the loaded quotes: the "
+                        + "quotes compacted into a snapshot which is not loaded are lost", directory, segments.get(0),
+                        basePosition);
+            }
+        }
+        synchronized (this) {
+            if (endPosition > basePosition) {
+                long lastSegment = segments.get(segments.size() - 1);
+                channel = FileChannel.open(segmentPath(lastSegment), StandardOpenOption.WRITE);
+                channel.position(endPosition - lastSegment);
+                segmentPosition = lastSegment;
+                writtenPosition = endPosition;
+                durablePosition = endPosition;
+            } else {
+                // the loaded snapshot holds all the journaled quotes
+                for (long segment : segments) {
+                    Files.delete(segmentPath(segment));
+                }
+                segments.clear();
+                startSegment(basePosition);
+            }
+        }
+        replayPosition = segments.isEmpty() ? basePosition : Math.max(basePosition, segments.get(0));
+        compactedPosition = replayPosition;
+
+        syncThread = new Thread(this::syncRecords, "quote-journal-sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /**
+     * Replays the journaled quotes from the position of the loaded quotes, in the order they were appended
+     * @param consumer - applies the quotes of each record to the symbols, by symbol name
+     * @return int - number of replayed records
+     * @throws IOException - is thrown if a segment cannot be read or a record before the last one is corrupted
+     */
+    public int replay(Consumer<Map<String, QuoteStore>> consumer) throws IOException {
+        if (directory == null) {
+            return 0;
+        }
+        List<Long> segments = segmentPositions();
+        int recordCount = 0;
+        boolean replaying = false;
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            long segmentEnd = i + 1 < segments.size() ? segments.get(i + 1) : Long.MAX_VALUE;
+            if (segmentEnd <= replayPosition) {
+                continue;
+            }
+            try (FileChannel segmentChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                ByteBuffer buffer = mapSegment(segmentChannel, segment);
+                while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                    long position = segment + buffer.position();
+                    ByteBuffer payload = nextRecord(buffer);
+                    if (payload == null) {
+                        throw new IOException("Corrupted record at position " + position + " of quote journal "
+                                + directory);
+                    }
+                    if (position < replayPosition) {
+                        continue;
+                    }
+                    // buffered quotes are also in the records before, hence only replayed as the first record
+                    if (payload.getInt() == INGESTED_RECORD || !replaying) {
+                        consumer.accept(readQuotes(payload));
+                        recordCount++;
+                    }
+                    replaying = true;
+                }
+            }
+        }
+        log.info("Replayed {} records of quote journal {} from position {}", recordCount, directory, replayPosition);
+        return recordCount;
+    }
+
+    /**
+     * Writes a record of quotes at the end of the journal, without waiting for it to be forced to disk
+     * @param symbolToQuotesMap - quotes of each symbol, which dictionaries are not modified while written
+     * @param buffered - true for the quotes held in the reorder buffers at a compaction
+     * @return long - journal position after the record, to be passed to awaitDurable
+     * @throws IOException - is thrown if the record cannot be written, the journal failing from then on
+     */
+    public long append(Map<String, QuoteStore> symbolToQuotesMap, boolean buffered) throws IOException {
+        if (directory == null) {
+            return 0;
+        }
+        ByteBuffer record = writeRecord(symbolToQuotesMap, buffered ? BUFFERED_RECORD : INGESTED_RECORD);
+        synchronized (this) {
+            checkWritable();
+            try {
+                long segmentRecordBytes = writtenPosition - segmentPosition - SEGMENT_HEADER_BYTES;
+                if (segmentRecordBytes > 0 && segmentRecordBytes >= segmentBytes) {
+                    startSegment(writtenPosition);
+                }
+                QuoteSnapshotFile.writeFully(channel, record);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            writtenPosition += record.limit();
+            notifyAll();
+            return writtenPosition;
+        }
+    }
+
+    /**
+     * Waits until the records before position are forced to disk, by the sync thread
+     * @param position - journal position returned by append
+     * @throws IOException - is thrown if the records could not be forced to disk
+     */
+    public synchronized void awaitDurable(long position) throws IOException {
+        while (durablePosition < position) {
+            if (failure != null) {
+                throw new IOException("Failed to force quote journal to disk", failure);
+            }
+            if (closed) {
+                throw new IOException("Quote journal is closed");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for quote journal");
+            }
+        }
+    }
+
+    /**
+     * Marks the symbols as loaded with their checkpoints, from when the journal may be compacted
+     * @param compacted - whether the snapshot file already holds the loaded quotes and checkpoints, else they are
+     *                  written by the first compaction
+     */
+    public void setBaseLoaded(boolean compacted) {
+        baseCompacted = compacted;
+        baseLoaded = true;
+    }
+
+    /**
+     * @return boolean - true if the loaded quotes are not in the snapshot file yet, or at least compactionBytes were
+     * appended since the last compaction
+     */
+    public boolean isCompactionDue() {
+        if (directory == null || snapshotFile == null || !baseLoaded) {
+            return false;
+        }
+        synchronized (this) {
+            return !baseCompacted || writtenPosition - compactedPosition >= compactionBytes;
+        }
+    }
+
+    /**
+     * Starts a new segment, the records appended from then on being replayed on top of the next compaction
+     * @return long - journal position of the new segment
+     * @throws IOException - is thrown if the segment cannot be created
+     */
+    public synchronized long startSegment() throws IOException {
+        checkWritable();
+        try {
+            startSegment(writtenPosition);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        return segmentPosition;
+    }
+
+    /**
+     * Writes the snapshot of the symbols, then deletes the segments before position
+     * @param symbolMap - symbols with the quotes and checkpoints appended before position, not modified while written
+     * @param position - journal position returned by startSegment, from which the journal is replayed on top of the
+     *                 snapshot
+     * @throws IOException - is thrown if the snapshot cannot be written
+     */
+    public void compact(Map<String, Symbol> symbolMap, long position) throws IOException {
+        long startNanos = System.nanoTime();
+        snapshotFile.write(snapshotSource, symbolMap, position);
+        compactedPosition = position;
+        baseCompacted = true;
+        int deletedCount = 0;
+        for (long segment : segmentPositions()) {
+            if (segment < position) {
+                Files.delete(segmentPath(segment));
+                deletedCount++;
+            }
+        }
+        log.info("Compacted quote journal {} into {} up to position {}, deleted {} segments ({} ms)", directory,
+                snapshotFile.getPath(), position, deletedCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Forces the written records to disk and closes the journal
+     */
+    @Override
+    public void close() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        if (syncThread != null) {
+            try {
+                syncThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (syncLock) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Loop of the sync thread: forces the records written since the last force, until the journal is closed
+     */
+    private void syncRecords() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && failure == null && durablePosition == writtenPosition) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (failure != null || durablePosition == writtenPosition) {
+                    return;
+                }
+            }
+            if (groupCommitDelayNanos > 0) {
+                LockSupport.parkNanos(groupCommitDelayNanos);
+            }
+            long position;
+            FileChannel syncedChannel;
+            synchronized (this) {
+                position = writtenPosition;
+                syncedChannel = channel;
+            }
+            try {
+                synchronized (syncLock) {
+                    // a segment closed since was forced before it was closed
+                    if (syncedChannel.isOpen()) {
+                        syncedChannel.force(false);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Failed to force quote journal {} to disk. {}", directory, e.getMessage());
+                synchronized (this) {
+                    fail(e);
+                }
+                return;
+            }
+            synchronized (this) {
+                durablePosition = Math.max(durablePosition, position);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Forces and closes the current segment, then creates the segment at position. Called holding the monitor.
+     */
+    private void startSegment(long position) throws IOException {
+        if (channel != null) {
+            synchronized (syncLock) {
+                channel.force(false);
+                channel.close();
+            }
+            durablePosition = writtenPosition;
+            notifyAll();
+        }
+        channel = FileChannel.open(segmentPath(position), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = QuoteSnapshotFile.allocate(SEGMENT_HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(position);
+        QuoteSnapshotFile.writeFully(channel, header.flip());
+        channel.force(true);
+        forceDirectory();
+        segmentPosition = position;
+        writtenPosition = position + SEGMENT_HEADER_BYTES;
+        durablePosition = writtenPosition;
+    }
+
+    private void checkWritable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Quote journal failed", failure);
+        }
+        if (closed || channel == null) {
+            throw new IOException("Quote journal is not open");
+        }
+    }
+
+    /**
+     * Fails the journal, waking up the appenders waiting for their records. Called holding the monitor.
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Truncates the last segment after its last complete record
+     * @return long - journal position after the last complete record
+     */
+    private long truncateTornRecord(long segment) throws IOException {
+        try (FileChannel segmentChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = mapSegment(segmentChannel, segment);
+            while (buffer.remaining() >= RECORD_HEADER_BYTES && nextRecord(buffer) != null) {
+                // skipped
+            }
+            if (buffer.position() < segmentChannel.size()) {
+                log.warn("Truncating torn record of {} bytes at the end of quote journal segment {}",
+                        segmentChannel.size() - buffer.position(), segmentPath(segment));
+                segmentChannel.truncate(buffer.position());
+                segmentChannel.force(true);
+            }
+            return segment + buffer.position();
+        }
+    }
+
+    /**
+     * Maps a segment and checks its header
+     * @return ByteBuffer - segment positioned at its first record
+     */
+    private ByteBuffer mapSegment(FileChannel segmentChannel, long segment) throws IOException {
+        long size = segmentChannel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Quote journal segment is too large: " + segmentPath(segment));
+        }
+        ByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                .order(QuoteSnapshotFile.BYTE_ORDER);
+        if (size < SEGMENT_HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != segment) {
+            throw new IOException("Not a quote journal segment of version " + VERSION + ": " + segmentPath(segment));
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads the record at the position of buffer, moving the position after it if it is complete
+     * @return ByteBuffer - payload of the record, null if it is torn or corrupted
+     */
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        if (length < Integer.BYTES || length > buffer.limit() - start - RECORD_HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = buffer.duplicate().position(start + RECORD_HEADER_BYTES)
+                .limit(start + RECORD_HEADER_BYTES + length).slice().order(buffer.order());
+        if (QuoteSnapshotFile.checksum(payload.duplicate()) != buffer.getInt(start + Integer.BYTES)) {
+            return null;
+        }
+        buffer.position(start + RECORD_HEADER_BYTES + length);
+        return payload;
+    }
+
+    /**
+     * Renders a record: length and checksum of the payload, then the payload with the type of record and the name,
+     * dictionaries, row count and columns of each symbol
+     */
+    private static ByteBuffer writeRecord(Map<String, QuoteStore> symbolToQuotesMap, int type) throws IOException {
+        List<byte[]> names = new ArrayList<>(symbolToQuotesMap.size());
+        List<ByteBuffer> dictionaries = new ArrayList<>(symbolToQuotesMap.size());
+        long bytes = RECORD_HEADER_BYTES + 2 * Integer.BYTES;
+        for (Map.Entry<String, QuoteStore> entry : symbolToQuotesMap.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer symbolDictionaries = QuoteSnapshotFile.writeDictionaries(entry.getValue());
+            names.add(name);
+            dictionaries.add(symbolDictionaries);
+            bytes += 2 * Integer.BYTES + name.length + symbolDictionaries.remaining()
+                    + QuoteStore.columnBytes(entry.getValue().size());
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Batch of quotes is too large for a quote journal record");
+        }
+        ByteBuffer record = QuoteSnapshotFile.allocate((int) bytes);
+        record.position(RECORD_HEADER_BYTES);
+        record.putInt(type).putInt(symbolToQuotesMap.size());
+        int i = 0;
+        for (QuoteStore quotes : symbolToQuotesMap.values()) {
+            record.putInt(names.get(i).length).put(names.get(i));
+            record.put(dictionaries.get(i));
+            record.putInt(quotes.size());
+            quotes.writeColumns(record);
+            i++;
+        }
+        record.flip();
+        ByteBuffer payload = record.duplicate().position(RECORD_HEADER_BYTES);
+        record.putInt(0, record.limit() - RECORD_HEADER_BYTES);
+        record.putInt(Integer.BYTES, QuoteSnapshotFile.checksum(payload));
+        return record;
+    }
+
+    /**
+     * Reads the quotes of each symbol of a record payload positioned after its type
+     */
+    private static Map<String, QuoteStore> readQuotes(ByteBuffer payload) {
+        int symbolCount = payload.getInt();
+        Map<String, QuoteStore> symbolToQuotesMap = new LinkedHashMap<>();
+        for (int i = 0; i < symbolCount; i++) {
+            String symbolName = QuoteSnapshotFile.readString(payload);
+            StringDictionary marketCenterDictionary = QuoteSnapshotFile.readDictionary(payload);
+            StringDictionary quoteConditionsDictionary = QuoteSnapshotFile.readDictionary(payload);
+            StringDictionary sipfeedDictionary = QuoteSnapshotFile.readDictionary(payload);
+            symbolToQuotesMap.put(symbolName, QuoteStore.readColumns(payload, payload.getInt(),
+                    marketCenterDictionary, quoteConditionsDictionary, sipfeedDictionary));
+        }
+        return symbolToQuotesMap;
+    }
+
+    /**
+     * @return List<Long> - journal positions of the segment files, in ascending order
+     */
+    private List<Long> segmentPositions() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private Path segmentPath(long position) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, position, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Forces the directory entry of a new segment to disk, where the platform supports it
+     */
+    private void forceDirectory() {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot force quote journal directory {}. {}", directory, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.stock.orderbook.config;
+
+import java.util.Arrays;
+
+/**
+ * QuoteLineRanges is the index of the lines of a symbol in the CSV quotes file, from which its quotes are parsed when
+ * the symbol is first used. <br>
+ * - Each range is the start (inclusive) and end (exclusive) file offsets of consecutive lines of the symbol <br>
+ * - Adjacent lines are merged into one range, so a file grouped by symbol needs only a few ranges per symbol <br>
+ * - Ranges are added in file order, and never span two chunks of the file, so that each range fits in a mapped
+ * buffer <br>
+ */
+public final class QuoteLineRanges {
+    private static final int INITIAL_CAPACITY = 4;
+
+    // start and end offsets of each range
+    private long[] bounds = new long[2 * INITIAL_CAPACITY];
+    private int size;
+    private int rowCount;
+
+    /**
+     * Adds a line after all the ranges, merging it with the last range if it starts where the last range ends
+     * @param start - file offset of the line
+     * @param end - file offset after the line, including its line end
+     */
+    public void addLine(long start, long end) {
+        rowCount++;
+        if (size > 0 && bounds[2 * size - 1] == start) {
+            bounds[2 * size - 1] = end;
+            return;
+        }
+        ensureCapacity(size + 1);
+        bounds[2 * size] = start;
+        bounds[2 * size + 1] = end;
+        size++;
+    }
+
+    /**
+     * Adds all the ranges of other after the ranges of this index, without merging them since they are from another
+     * chunk
+     * @param other - ranges of a later chunk of the file
+     */
+    public void addAll(QuoteLineRanges other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.bounds, 0, bounds, 2 * size, 2 * other.size);
+        size += other.size;
+        rowCount += other.rowCount;
+    }
+
+    /**
+     * Releases the spare capacity once all the lines are added
+     */
+    public void trimToSize() {
+        if (bounds.length != 2 * size) {
+            bounds = Arrays.copyOf(bounds, 2 * size);
+        }
+    }
+
+    /**
+     * @return int - number of ranges
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return int - number of lines in all the ranges
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getStart(int range) {
+        return bounds[2 * range];
+    }
+
+    public long getEnd(int range) {
+        return bounds[2 * range + 1];
+    }
+
+    /**
+     * @return long - estimated heap bytes of the index
+     */
+    public long estimatedBytes() {
+        return 48 + (long) Long.BYTES * bounds.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (2 * capacity > bounds.length) {
+            bounds = Arrays.copyOf(bounds, Math.max(2 * capacity, 2 * bounds.length));
+        }
+    }
+}
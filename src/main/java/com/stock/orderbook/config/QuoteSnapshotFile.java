@@ -0,0 +1,619 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.StringDictionary;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.SymbolLanes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * QuoteSnapshotFile is a binary file of the parsed and indexed quotes of all the symbols and of their checkpoints,
+ * from which the symbols are loaded on restart instead of parsing the CSV file again. <br>
+ * - Fixed size header: magic, format version, size/last modified time/CRC32C hash of the CSV file it is written from,
+ * CSV delimiter, checkpoint intervals, offset of the directory and position of the QuoteJournal the snapshot
+ * includes the quotes of <br>
+ * - Sections: dictionaries, then one per symbol, each followed by its CRC32C checksum <br>
+ * - Directory: offset and length of the dictionaries section, and name, offset and length of each symbol section <br>
+ * - Symbol section: columns and endTime index of its QuoteStore, followed by its pinned checkpoints, each written as
+ * the rows removed from and added to each side of the previous checkpoint <br>
+ * Sections are memory mapped and read in bulk, in parallel. A snapshot is stale if the format version, the delimiter
+ * or the CSV file differ: the size must be equal and the last modified time too, unless the hash of the CSV file is
+ * equal e.g. a copy of the same file. Checkpoints are only loaded if they were built with the same intervals. <br>
+ * The file is written to a temporary file which replaces the snapshot once complete, so a snapshot is never partially
+ * written. <br>
+ */
+public class QuoteSnapshotFile {
+    private static final Logger log = LoggerFactory.getLogger(QuoteSnapshotFile.class);
+
+    /**
+     * Format version, to be incremented on any change of the layout
+     */
+    public static final int VERSION = 2;
+
+    // "OBQS" in file byte order
+    private static final int MAGIC = 0x5351424F;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int HEADER_BYTES = 72;
+    private static final int HEADER_CHECKSUM_OFFSET = HEADER_BYTES - Integer.BYTES;
+    // size of the file windows mapped to hash the CSV file
+    private static final int HASH_WINDOW_SIZE = 1 << 30;
+
+    private final Path path;
+    private final int checkpointIntervalQuotes;
+    private final long checkpointIntervalNanos;
+
+    /**
+     * @param path - path of the snapshot file
+     * @param checkpointIntervalQuotes - number of quotes between checkpoints, as configured for CheckpointBuilder
+     * @param checkpointIntervalNanos - market time between checkpoints, as configured for CheckpointBuilder
+     */
+    public QuoteSnapshotFile(Path path, int checkpointIntervalQuotes, long checkpointIntervalNanos) {
+        this.path = path;
+        this.checkpointIntervalQuotes = checkpointIntervalQuotes;
+        this.checkpointIntervalNanos = checkpointIntervalNanos;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Loads the symbols of the snapshot, if it is not stale. Symbol sections are read in parallel, on the fork join
+     * pool of the calling thread when called from one of its tasks.
+     * @param source - CSV file the symbols are otherwise parsed from
+     * @return Contents - quotes and checkpoints of the snapshot, null if the snapshot is missing or stale
+     * @throws IOException - is thrown if the snapshot cannot be read or is corrupted
+     */
+    public Contents load(Source source) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a quote snapshot file: " + path);
+            }
+            // the header of other versions may have another size, hence it is not checked
+            if (header.getInt(4) != VERSION) {
+                log.info("Quote snapshot file {} is stale: format version {} instead of {}", path, header.getInt(4),
+                        VERSION);
+                return null;
+            }
+            if (checksum(header.duplicate().limit(HEADER_CHECKSUM_OFFSET)) != header.getInt(HEADER_CHECKSUM_OFFSET)) {
+                throw new IOException("Corrupted header of quote snapshot file: " + path);
+            }
+            String staleReason = staleReason(header, source);
+            if (staleReason != null) {
+                log.info("Quote snapshot file {} is stale: {}", path, staleReason);
+                return null;
+            }
+            boolean withCheckpoints = header.getInt(36) == checkpointIntervalQuotes
+                    && header.getLong(40) == checkpointIntervalNanos;
+
+            long directoryOffset = header.getLong(48);
+            ByteBuffer directory = map(channel, directoryOffset, channel.size() - directoryOffset);
+            if (checksum(directory.duplicate()) != header.getInt(56)) {
+                throw new IOException("Corrupted directory of quote snapshot file: " + path);
+            }
+            ByteBuffer dictionariesSection = verifiedSection(mapSection(channel, directory));
+            StringDictionary marketCenterDictionary = readDictionary(dictionariesSection);
+            StringDictionary quoteConditionsDictionary = readDictionary(dictionariesSection);
+            StringDictionary sipfeedDictionary = readDictionary(dictionariesSection);
+
+            int symbolCount = directory.getInt();
+            List<String> symbolNames = new ArrayList<>(symbolCount);
+            List<ByteBuffer> symbolSections = new ArrayList<>(symbolCount);
+            for (int i = 0; i < symbolCount; i++) {
+                symbolNames.add(readString(directory));
+                symbolSections.add(mapSection(channel, directory));
+            }
+
+            Contents contents = new Contents(withCheckpoints, header.getLong(60));
+            try {
+                IntStream.range(0, symbolCount).parallel().forEach(i -> {
+                    try {
+                        ByteBuffer section = verifiedSection(symbolSections.get(i));
+                        QuoteStore quoteStore = QuoteStore.readColumns(section, section.getInt(),
+                                marketCenterDictionary, quoteConditionsDictionary, sipfeedDictionary);
+                        contents.quotes.put(symbolNames.get(i), quoteStore);
+                        if (withCheckpoints) {
+                            contents.checkpoints.put(symbolNames.get(i), readCheckpoints(section, quoteStore));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return contents;
+        } catch (NoSuchFileException e) {
+            log.info("Quote snapshot file {} not found", path);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the quotes and the pinned checkpoints of the symbols, replacing the snapshot once complete
+     * @param source - CSV file the symbols are parsed from
+     * @param symbolMap - loaded symbols, which quotes share the same dictionaries
+     * @throws IOException - is thrown if the snapshot cannot be written
+     */
+    public void write(Source source, Map<String, Symbol> symbolMap) throws IOException {
+        write(source, symbolMap, 0);
+    }
+
+    /**
+     * Writes the quotes and the pinned checkpoints of the symbols, replacing the snapshot once complete
+     * @param source - CSV file the symbols are parsed from
+     * @param symbolMap - symbols not modified while written, which quotes share the same dictionaries
+     * @param journalPosition - position of the QuoteJournal from which the quotes ingested after the snapshot are
+     *                        replayed
+     * @throws IOException - is thrown if the snapshot cannot be written
+     */
+    public void write(Source source, Map<String, Symbol> symbolMap, long journalPosition) throws IOException {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_BYTES);
+            List<String> symbolNames = new ArrayList<>(symbolMap.keySet());
+            List<long[]> sections = new ArrayList<>(symbolNames.size() + 1);
+
+            QuoteStore anyStore = symbolMap.isEmpty() ? new QuoteStore()
+                    : symbolMap.values().iterator().next().getQuotes();
+            sections.add(writeSection(channel, writeDictionaries(anyStore)));
+            for (String symbolName : symbolNames) {
+                sections.add(writeSection(channel, writeSymbol(symbolMap.get(symbolName))));
+            }
+
+            long directoryOffset = channel.position();
+            ByteBuffer directory = writeDirectory(symbolNames, sections);
+            int directoryChecksum = checksum(directory.duplicate());
+            writeFully(channel, directory);
+
+            ByteBuffer header = allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(source.getSize())
+                    .putLong(source.getLastModified())
+                    .putLong(source.getHash())
+                    .putInt(source.getDelimiter())
+                    .putInt(checkpointIntervalQuotes)
+                    .putLong(checkpointIntervalNanos)
+                    .putLong(directoryOffset)
+                    .putInt(directoryChecksum)
+                    .putLong(journalPosition);
+            header.putInt(checksum(header.duplicate().flip()));
+            channel.position(0);
+            writeFully(channel, header.flip());
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Freezes the quotes of the symbols, e.g. to write them while quotes are ingested. Not to be called while quotes
+     * are appended.
+     * @param symbolMap - loaded symbols, which quotes share the same dictionaries
+     * @return Map<String, QuoteStore> - views of the current quotes of each symbol, with copies of the dictionaries,
+     * not affected by the quotes appended later
+     * @throws IllegalStateException - is thrown if the symbols do not share their dictionaries
+     */
+    public static Map<String, QuoteStore> freezeQuotes(Map<String, Symbol> symbolMap) {
+        Map<String, QuoteStore> frozenQuotes = new HashMap<>();
+        QuoteStore anyQuotes = null;
+        StringDictionary[] dictionaries = null;
+        for (Symbol symbol : symbolMap.values()) {
+            QuoteStore quotes = symbol.getQuotes();
+            if (anyQuotes == null) {
+                anyQuotes = quotes;
+                dictionaries = new StringDictionary[]{quotes.getMarketCenterDictionary().copy(),
+                        quotes.getQuoteConditionsDictionary().copy(), quotes.getSipfeedDictionary().copy()};
+            } else if (quotes.getMarketCenterDictionary() != anyQuotes.getMarketCenterDictionary()
+                    || quotes.getQuoteConditionsDictionary() != anyQuotes.getQuoteConditionsDictionary()
+                    || quotes.getSipfeedDictionary() != anyQuotes.getSipfeedDictionary()) {
+                throw new IllegalStateException("Quotes of symbol " + symbol.getSymbol()
+                        + " do not share the dictionaries of the other symbols");
+            }
+            frozenQuotes.put(symbol.getSymbol(), quotes.view(dictionaries[0], dictionaries[1], dictionaries[2]));
+        }
+        return frozenQuotes;
+    }
+
+    /**
+     * Symbols of frozen quotes, with the pinned checkpoints of the live symbols which only include frozen quotes, e.g.
+     * once the checkpoints are built in the background
+     * @param symbolMap - live symbols
+     * @param frozenQuotes - quotes of the symbols frozen by freezeQuotes
+     * @param symbolLanes - lanes the ordersCache of each live symbol is read on
+     * @return Map<String, Symbol> - symbols to write, not modified by the live symbols
+     */
+    public static Map<String, Symbol> frozenSymbols(Map<String, Symbol> symbolMap,
+                                                    Map<String, QuoteStore> frozenQuotes, SymbolLanes symbolLanes) {
+        Map<String, Symbol> frozenSymbols = new HashMap<>();
+        for (Symbol symbol : symbolMap.values()) {
+            QuoteStore quotes = frozenQuotes.get(symbol.getSymbol());
+            if (quotes == null) {
+                // a symbol ingested after the quotes were frozen
+                continue;
+            }
+            ConcurrentSkipListMap<Long, OrdersSnapshot> checkpoints = new ConcurrentSkipListMap<>();
+            symbolLanes.run(symbol.getSymbol(), () -> symbol.getOrdersCache().forEach((timestamp, orders) -> {
+                if (orders.isPinned() && orders.getQuotesIndex() <= quotes.size()) {
+                    checkpoints.put(timestamp, orders);
+                }
+            }));
+            frozenSymbols.put(symbol.getSymbol(), Symbol.builder()
+                    .symbol(symbol.getSymbol())
+                    .quotes(quotes)
+                    .ordersCache(checkpoints)
+                    .build());
+        }
+        return frozenSymbols;
+    }
+
+    /**
+     * @return String - why the snapshot with header is stale for source, null if it is not
+     */
+    private static String staleReason(ByteBuffer header, Source source) throws IOException {
+        if (header.getInt(32) != source.getDelimiter()) {
+            return "written with another CSV delimiter";
+        }
+        if (header.getLong(8) != source.getSize()) {
+            return "CSV file size changed";
+        }
+        if (header.getLong(16) != source.getLastModified() && header.getLong(24) != source.getHash()) {
+            return "CSV file content changed";
+        }
+        return null;
+    }
+
+    /**
+     * Renders the values of the dictionaries of the store in code order, e.g. for the records of QuoteJournal too
+     */
+    static ByteBuffer writeDictionaries(QuoteStore quoteStore) {
+        StringDictionary[] dictionaries = {quoteStore.getMarketCenterDictionary(),
+                quoteStore.getQuoteConditionsDictionary(), quoteStore.getSipfeedDictionary()};
+        List<byte[]> values = new ArrayList<>();
+        int bytes = Integer.BYTES * dictionaries.length;
+        for (StringDictionary dictionary : dictionaries) {
+            for (int code = 0; code < dictionary.size(); code++) {
+                byte[] value = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+                values.add(value);
+                bytes += Integer.BYTES + value.length;
+            }
+        }
+        ByteBuffer section = allocate(bytes);
+        int valueIndex = 0;
+        for (StringDictionary dictionary : dictionaries) {
+            section.putInt(dictionary.size());
+            for (int code = 0; code < dictionary.size(); code++) {
+                byte[] value = values.get(valueIndex++);
+                section.putInt(value.length).put(value);
+            }
+        }
+        return section.flip();
+    }
+
+    static StringDictionary readDictionary(ByteBuffer section) {
+        StringDictionary dictionary = new StringDictionary();
+        int size = section.getInt();
+        for (int code = 0; code < size; code++) {
+            // values are encoded in code order, hence they get back their codes
+            dictionary.encode(readString(section));
+        }
+        return dictionary;
+    }
+
+    /**
+     * Renders the section of a symbol: row count, columns, and each pinned checkpoint as its timestamp, quotes
+     * index and the changes of each side from the previous checkpoint
+     */
+    private static ByteBuffer writeSymbol(Symbol symbol) throws IOException {
+        QuoteStore quoteStore = symbol.getQuotes();
+        List<Long> timestamps = new ArrayList<>();
+        List<OrdersSnapshot> checkpoints = new ArrayList<>();
+        List<int[][]> changes = new ArrayList<>();
+        long bytes = Integer.BYTES + QuoteStore.columnBytes(quoteStore.size()) + Integer.BYTES;
+        int[] bids = new int[0];
+        int[] asks = new int[0];
+        for (Map.Entry<Long, OrdersSnapshot> entry : symbol.getOrdersCache().entrySet()) {
+            OrdersSnapshot checkpoint = entry.getValue();
+            if (!checkpoint.isPinned()) {
+                continue;
+            }
+            int[] nextBids = sortedRows(checkpoint.getBids());
+            int[] nextAsks = sortedRows(checkpoint.getAsks());
+            int[][] checkpointChanges = {removedRows(bids, nextBids), removedRows(nextBids, bids),
+                    removedRows(asks, nextAsks), removedRows(nextAsks, asks)};
+            bids = nextBids;
+            asks = nextAsks;
+            timestamps.add(entry.getKey());
+            checkpoints.add(checkpoint);
+            changes.add(checkpointChanges);
+            bytes += Long.BYTES + Integer.BYTES;
+            for (int[] rows : checkpointChanges) {
+                bytes += Integer.BYTES + (long) Integer.BYTES * rows.length;
+            }
+        }
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Symbol " + symbol.getSymbol() + " is too large for a quote snapshot file");
+        }
+
+        ByteBuffer section = allocate((int) bytes);
+        section.putInt(quoteStore.size());
+        quoteStore.writeColumns(section);
+        section.putInt(checkpoints.size());
+        for (int i = 0; i < checkpoints.size(); i++) {
+            section.putLong(timestamps.get(i)).putInt(checkpoints.get(i).getQuotesIndex());
+            for (int[] rows : changes.get(i)) {
+                section.putInt(rows.length).asIntBuffer().put(rows);
+                section.position(section.position() + Integer.BYTES * rows.length);
+            }
+        }
+        return section.flip();
+    }
+
+    private static NavigableMap<Long, OrdersSnapshot> readCheckpoints(ByteBuffer section, QuoteStore quoteStore) {
+        NavigableMap<Long, OrdersSnapshot> checkpoints = new TreeMap<>();
+        int checkpointCount = section.getInt();
+        OrdersTreap bids = OrdersTreap.EMPTY;
+        OrdersTreap asks = OrdersTreap.EMPTY;
+        for (int i = 0; i < checkpointCount; i++) {
+            long timestamp = section.getLong();
+            int quotesIndex = section.getInt();
+            bids = applyChanges(bids, quoteStore::compareBids, section);
+            asks = applyChanges(asks, quoteStore::compareAsks, section);
+            checkpoints.put(timestamp, new OrdersSnapshot(bids, asks, quotesIndex, true));
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Derives the next checkpoint of a side from the previous one, sharing its unchanged nodes
+     */
+    private static OrdersTreap applyChanges(OrdersTreap orders, IntBinaryOperator ordersComparator,
+                                            ByteBuffer section) {
+        OrdersTreap.Editor editor = orders.edit(ordersComparator);
+        for (int removedCount = section.getInt(); removedCount > 0; removedCount--) {
+            editor.remove(section.getInt());
+        }
+        for (int addedCount = section.getInt(); addedCount > 0; addedCount--) {
+            editor.insert(section.getInt());
+        }
+        return editor.build();
+    }
+
+    private static int[] sortedRows(OrdersTreap orders) {
+        int[] rows = orders.topRows(orders.size());
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * @return int[] - rows of sorted rows which are not in sorted otherRows
+     */
+    private static int[] removedRows(int[] rows, int[] otherRows) {
+        int[] removed = new int[rows.length];
+        int removedCount = 0;
+        int other = 0;
+        for (int row : rows) {
+            while (other < otherRows.length && otherRows[other] < row) {
+                other++;
+            }
+            if (other == otherRows.length || otherRows[other] != row) {
+                removed[removedCount++] = row;
+            }
+        }
+        return Arrays.copyOf(removed, removedCount);
+    }
+
+    private static ByteBuffer writeDirectory(List<String> symbolNames, List<long[]> sections) {
+        List<byte[]> names = new ArrayList<>(symbolNames.size());
+        int bytes = 2 * Long.BYTES + Integer.BYTES;
+        for (String symbolName : symbolNames) {
+            byte[] name = symbolName.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            bytes += Integer.BYTES + name.length + 2 * Long.BYTES;
+        }
+        ByteBuffer directory = allocate(bytes);
+        directory.putLong(sections.get(0)[0]).putLong(sections.get(0)[1]);
+        directory.putInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            directory.putInt(names.get(i).length).put(names.get(i));
+            directory.putLong(sections.get(i + 1)[0]).putLong(sections.get(i + 1)[1]);
+        }
+        return directory.flip();
+    }
+
+    /**
+     * Writes the section followed by its checksum
+     * @return long[] - offset and length of the written section, including its checksum
+     */
+    private static long[] writeSection(FileChannel channel, ByteBuffer section) throws IOException {
+        long offset = channel.position();
+        int checksum = checksum(section.duplicate());
+        writeFully(channel, section);
+        writeFully(channel, allocate(Integer.BYTES).putInt(checksum).flip());
+        return new long[]{offset, channel.position() - offset};
+    }
+
+    /**
+     * Maps the section at the offset and length read from directory
+     * @return ByteBuffer - section followed by its checksum
+     */
+    private ByteBuffer mapSection(FileChannel channel, ByteBuffer directory) throws IOException {
+        long offset = directory.getLong();
+        long length = directory.getLong();
+        if (length < Integer.BYTES) {
+            throw new IOException("Truncated section in quote snapshot file: " + path);
+        }
+        return map(channel, offset, length);
+    }
+
+    /**
+     * @param section - mapped section followed by its checksum
+     * @return ByteBuffer - section without its checksum
+     * @throws IOException - is thrown if the checksum of the section does not match
+     */
+    private ByteBuffer verifiedSection(ByteBuffer section) throws IOException {
+        int length = section.limit() - Integer.BYTES;
+        ByteBuffer body = section.duplicate().limit(length).order(BYTE_ORDER);
+        if (checksum(body.duplicate()) != section.getInt(length)) {
+            throw new IOException("Corrupted section in quote snapshot file: " + path);
+        }
+        return body;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > channel.size()) {
+            throw new IOException("Truncated quote snapshot file");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(BYTE_ORDER);
+    }
+
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocate(bytes).order(BYTE_ORDER);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Source CSV file of a snapshot. Its hash is only computed when it is needed, at most once.
+     */
+    public static final class Source {
+        private final Path csvFile;
+        private final char delimiter;
+        private final long size;
+        private final long lastModified;
+        private long hash;
+        private boolean hashed;
+
+        /**
+         * @param csvFile - path of the CSV file
+         * @param delimiter - CSV delimiter
+         * @throws IOException - is thrown if the attributes of the file cannot be read
+         */
+        public Source(Path csvFile, char delimiter) throws IOException {
+            this.csvFile = csvFile;
+            this.delimiter = delimiter;
+            this.size = Files.size(csvFile);
+            this.lastModified = Files.getLastModifiedTime(csvFile).toMillis();
+        }
+
+        public char getDelimiter() {
+            return delimiter;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return long - CRC32C of the content of the file, mapped by windows of HASH_WINDOW_SIZE bytes
+         * @throws IOException - is thrown if the file cannot be read
+         */
+        public synchronized long getHash() throws IOException {
+            if (!hashed) {
+                CRC32C crc = new CRC32C();
+                try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+                    for (long position = 0; position < size; position += HASH_WINDOW_SIZE) {
+                        crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                Math.min(HASH_WINDOW_SIZE, size - position)));
+                    }
+                }
+                hash = crc.getValue();
+                hashed = true;
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Quotes and checkpoints of the symbols loaded from a snapshot
+     */
+    public static final class Contents {
+        private final boolean withCheckpoints;
+        private final long journalPosition;
+        private final Map<String, QuoteStore> quotes = new ConcurrentHashMap<>();
+        private final Map<String, NavigableMap<Long, OrdersSnapshot>> checkpoints = new ConcurrentHashMap<>();
+
+        private Contents(boolean withCheckpoints, long journalPosition) {
+            this.withCheckpoints = withCheckpoints;
+            this.journalPosition = journalPosition;
+        }
+
+        /**
+         * @return boolean - false if the checkpoints were built with other intervals, and have to be built again
+         */
+        public boolean isWithCheckpoints() {
+            return withCheckpoints;
+        }
+
+        /**
+         * @return long - position of the QuoteJournal from which the quotes ingested after the snapshot are replayed
+         */
+        public long getJournalPosition() {
+            return journalPosition;
+        }
+
+        /**
+         * @return Map<String, QuoteStore> - all quotes associated to a symbol, in startTime order and indexed
+         */
+        public Map<String, QuoteStore> getQuotes() {
+            return quotes;
+        }
+
+        /**
+         * @return Map<String, NavigableMap<Long, OrdersSnapshot>> - pinned checkpoints of each symbol by timestamp,
+         * empty if not isWithCheckpoints()
+         */
+        public Map<String, NavigableMap<Long, OrdersSnapshot>> getCheckpoints() {
+            return checkpoints;
+        }
+    }
+}
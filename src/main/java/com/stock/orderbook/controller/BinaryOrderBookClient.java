@@ -0,0 +1,124 @@
+package com.stock.orderbook.controller;
+
+import com.stock.orderbook.model.TopOrders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * BinaryOrderBookClient queries BinaryOrderBookServer over a blocking connection. <br>
+ * - symbolId resolves a symbol name once, the queries then refer to the symbol by its id <br>
+ * - query pipelines the queries of many timestamps: they are written in windows of MAX_PIPELINED_QUERIES frames
+ * before their responses are read, so a batch costs a few round trips instead of one per query <br>
+ * A client is not thread safe, each thread is to open its own connection. <br>
+ */
+public class BinaryOrderBookClient implements AutoCloseable {
+    /**
+     * Queries written before their responses are read, bounded so that the client does not block writing queries
+     * while the server waits for the client to read their responses
+     */
+    private static final int MAX_PIPELINED_QUERIES = 1024;
+
+    private static final int INPUT_BUFFER_BYTES = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocate(MAX_PIPELINED_QUERIES * BinaryProtocol.QUERY_BYTES);
+    // responses read and not consumed yet, in read mode
+    private ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_BYTES).flip();
+    private int nextRequestId;
+
+    public BinaryOrderBookClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * @param symbolName - name of the symbol
+     * @return int - id of the symbol in the queries, -1 if the symbol is unknown
+     * @throws IOException - if the connection fails
+     */
+    public int symbolId(String symbolName) throws IOException {
+        output.clear();
+        BinaryProtocol.putSymbol(output, nextRequestId++, symbolName);
+        write();
+        ByteBuffer response = readResponse();
+        response.position(response.position() + BinaryProtocol.RESPONSE_HEADER_BYTES - 1);
+        byte status = response.get();
+        int symbolId = response.getInt();
+        return status == BinaryProtocol.STATUS_OK ? symbolId : -1;
+    }
+
+    /**
+     * @param symbolId - id of the symbol returned by symbolId
+     * @param timestamp - epoch nanoseconds of the order book
+     * @return TopOrders - top bids and asks of the symbol at timestamp
+     * @throws IOException - if the connection fails
+     */
+    public TopOrders query(int symbolId, long timestamp) throws IOException {
+        return query(symbolId, new long[]{timestamp})[0];
+    }
+
+    /**
+     * Pipelines the queries of a symbol at many timestamps
+     * @param symbolId - id of the symbol returned by symbolId
+     * @param timestamps - epoch nanoseconds of the order books
+     * @return TopOrders[] - top bids and asks of the symbol at each timestamp, in the order of the timestamps
+     * @throws IOException - if the connection fails
+     */
+    public TopOrders[] query(int symbolId, long[] timestamps) throws IOException {
+        TopOrders[] topOrders = new TopOrders[timestamps.length];
+        for (int from = 0; from < timestamps.length; from += MAX_PIPELINED_QUERIES) {
+            int to = Math.min(from + MAX_PIPELINED_QUERIES, timestamps.length);
+            int firstRequestId = nextRequestId;
+            output.clear();
+            for (int i = from; i < to; i++) {
+                BinaryProtocol.putQuery(output, nextRequestId++, symbolId, timestamps[i]);
+            }
+            write();
+            for (int i = from; i < to; i++) {
+                topOrders[i] = BinaryProtocol.getTopOrders(readResponse());
+                if (topOrders[i].getRequestId() != firstRequestId + i - from) {
+                    throw new IOException("Response to request " + topOrders[i].getRequestId() + " out of order");
+                }
+            }
+        }
+        return topOrders;
+    }
+
+    private void write() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+    }
+
+    /**
+     * Reads until the input holds a complete response
+     * @return ByteBuffer - the input, with the response at its position
+     */
+    private ByteBuffer readResponse() throws IOException {
+        int length;
+        while ((length = BinaryProtocol.responseLength(input)) == 0 || input.remaining() < length) {
+            if (length > input.capacity()) {
+                // a response with more orders than the input holds
+                input = ByteBuffer.allocate(length).put(input).flip();
+            }
+            input.compact();
+            int read = channel.read(input);
+            input.flip();
+            if (read < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+        return input;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,467 @@
+package com.stock.orderbook.controller;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.OrderBookFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BinaryOrderBookServer serves the top bids and asks of the symbols over TCP in the frames of BinaryProtocol, for
+ * clients sending many small queries, without the HTTP parsing and text rendering of OrderBookController. <br>
+ * - Disabled unless binary.server.port is set, 0 binding an ephemeral port <br>
+ * - An acceptor thread hands the connections round robin to binary.server.threads IO loops, each multiplexing its
+ * connections on a Selector. The IO loops only read the frames and write the responses <br>
+ * - Queries are answered on binary.server.workers worker threads, as a query may load a symbol, replay quotes or
+ * wait for a concurrent identical query, which would stall all the connections of an IO loop <br>
+ * - Clients may pipeline queries: the responses of a connection are queued in request order, and the completed ones
+ * at the head of the queue are copied into the output buffer of the connection, which is written at once <br>
+ * - A connection is not read while its responses are not written, or while MAX_PENDING_RESPONSES of its queries are
+ * not answered, so a client which does not read its responses stalls its own queries only, and the buffers of a
+ * connection stay bounded <br>
+ * - Queries are answered by OrderBookFinder through the same snapshots as the REST requests <br>
+ */
+@Component
+public class BinaryOrderBookServer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(BinaryOrderBookServer.class);
+
+    private static final int INPUT_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Frames are not answered any more once this many response bytes are waiting to be written
+     */
+    private static final int OUTPUT_HIGH_WATER_BYTES = 64 * 1024;
+
+    /**
+     * Frames are not read any more once this many responses of a connection are waiting to be answered or written
+     */
+    private static final int MAX_PENDING_RESPONSES = 1024;
+
+    private final OrderBookFinder orderBookFinder;
+
+    private final Map<String, Symbol> symbolMap;
+
+    private final int topOrdersLimit;
+
+    // ids of the symbols handed to the clients, the same on every connection
+    private final Map<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    private final List<String> symbolNames = new CopyOnWriteArrayList<>();
+
+    private final ServerSocketChannel serverChannel;
+    private final IoLoop[] ioLoops;
+    private final ExecutorService workers;
+    private final Thread acceptorThread;
+    private volatile boolean closed;
+
+    public BinaryOrderBookServer(OrderBookFinder orderBookFinder, Map<String, Symbol> symbolMap,
+                                 @Value("${top.orders.limit}") int topOrdersLimit,
+                                 @Value("${binary.server.port:-1}") int port,
+                                 @Value("${binary.server.threads:0}") int threads,
+                                 @Value("${binary.server.workers:0}") int workerCount) {
+        this.orderBookFinder = orderBookFinder;
+        this.symbolMap = symbolMap;
+        this.topOrdersLimit = topOrdersLimit;
+        if (port < 0) {
+            serverChannel = null;
+            ioLoops = new IoLoop[0];
+            workers = null;
+            acceptorThread = null;
+            return;
+        }
+        if (topOrdersLimit > BinaryProtocol.MAX_ORDER_COUNT) {
+            throw new IllegalArgumentException("top.orders.limit " + topOrdersLimit + " exceeds the "
+                    + BinaryProtocol.MAX_ORDER_COUNT + " orders of a side of the binary protocol");
+        }
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(
+                workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "binary-order-book-worker-" + workerIds.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            ioLoops = new IoLoop[threads > 0 ? threads : Runtime.getRuntime().availableProcessors()];
+            for (int i = 0; i < ioLoops.length; i++) {
+                ioLoops[i] = new IoLoop(Selector.open(), "binary-order-book-io-" + i);
+                ioLoops[i].thread.start();
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Binary order book server could not listen on port " + port, e);
+        }
+        acceptorThread = new Thread(this::acceptConnections, "binary-order-book-acceptor");
+        acceptorThread.setDaemon(true);
+        acceptorThread.start();
+        log.info("Binary order book server listening on port {} with {} IO threads", getPort(), ioLoops.length);
+    }
+
+    /**
+     * @return int - port the server listens on, -1 if disabled
+     */
+    public int getPort() {
+        return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+    }
+
+    private void acceptConnections() {
+        int next = 0;
+        while (!closed) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                ioLoops[next].register(channel);
+                next = (next + 1) % ioLoops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Binary order book connection could not be accepted", e);
+            }
+        }
+    }
+
+    /**
+     * Id of a symbol, the same for every client
+     * @param symbolName - name of the symbol
+     * @return int - id of the symbol, -1 if the symbol is unknown
+     */
+    int symbolId(String symbolName) {
+        Integer symbolId = symbolIds.get(symbolName);
+        if (symbolId != null) {
+            return symbolId;
+        }
+        if (!symbolMap.containsKey(symbolName)) {
+            return -1;
+        }
+        synchronized (symbolNames) {
+            return symbolIds.computeIfAbsent(symbolName, name -> {
+                symbolNames.add(name);
+                return symbolNames.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Queues the responses of the complete frames of the input buffer, the queries being answered on the workers,
+     * until MAX_PENDING_RESPONSES responses are queued
+     * @return boolean - false if a frame is malformed, the connection being closed
+     */
+    private boolean answerFrames(IoLoop ioLoop, Connection connection) {
+        ByteBuffer input = connection.input;
+        while (input.remaining() > 0 && connection.pending.size() < MAX_PENDING_RESPONSES) {
+            int position = input.position();
+            byte type = input.get(position);
+            if (type == BinaryProtocol.QUERY) {
+                if (input.remaining() < BinaryProtocol.QUERY_BYTES) {
+                    return true;
+                }
+                input.get();
+                int requestId = input.getInt();
+                int symbolId = input.getInt();
+                long timestamp = input.getLong();
+                CompletableFuture<ByteBuffer> response = CompletableFuture.supplyAsync(
+                        () -> answerQuery(requestId, symbolId, timestamp), workers);
+                response.whenComplete((answer, e) -> ioLoop.ready(connection));
+                connection.pending.add(response);
+            } else if (type == BinaryProtocol.SYMBOL) {
+                if (input.remaining() < BinaryProtocol.SYMBOL_HEADER_BYTES) {
+                    return true;
+                }
+                int length = input.getShort(position + BinaryProtocol.SYMBOL_HEADER_BYTES - Short.BYTES);
+                if (length < 0 || length > BinaryProtocol.MAX_SYMBOL_BYTES) {
+                    return false;
+                }
+                if (input.remaining() < BinaryProtocol.SYMBOL_HEADER_BYTES + length) {
+                    return true;
+                }
+                input.get();
+                int requestId = input.getInt();
+                input.getShort();
+                String symbolName = new String(input.array(), input.position(), length, StandardCharsets.UTF_8);
+                input.position(input.position() + length);
+                int symbolId = symbolId(symbolName);
+                connection.pending.add(CompletableFuture.completedFuture(
+                        ByteBuffer.allocate(BinaryProtocol.RESPONSE_HEADER_BYTES + Integer.BYTES)
+                                .put(BinaryProtocol.SYMBOL)
+                                .putInt(requestId)
+                                .put(symbolId < 0 ? BinaryProtocol.STATUS_UNKNOWN_SYMBOL : BinaryProtocol.STATUS_OK)
+                                .putInt(symbolId)
+                                .flip()));
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Answers a query, on a worker
+     * @return ByteBuffer - the response, in read mode
+     */
+    private ByteBuffer answerQuery(int requestId, int symbolId, long timestamp) {
+        Symbol symbol = symbolId >= 0 && symbolId < symbolNames.size()
+                ? symbolMap.get(symbolNames.get(symbolId)) : null;
+        OrdersSnapshot orders = symbol == null ? null : orderBookFinder.findOrders(symbol, timestamp);
+        if (orders == null) {
+            return ByteBuffer.allocate(BinaryProtocol.RESPONSE_HEADER_BYTES)
+                    .put(BinaryProtocol.QUERY)
+                    .putInt(requestId)
+                    .put(symbol == null
+                            ? BinaryProtocol.STATUS_UNKNOWN_SYMBOL : BinaryProtocol.STATUS_TOO_OLD_TIMESTAMP)
+                    .flip();
+        }
+        QuoteStore quotes = symbol.getQuotes();
+        int[] topBids = orders.getBids().topRows(topOrdersLimit);
+        int[] topAsks = orders.getAsks().topRows(topOrdersLimit);
+        ByteBuffer output = ByteBuffer.allocate(BinaryProtocol.RESPONSE_HEADER_BYTES
+                + BinaryProtocol.ORDER_COUNTS_BYTES + (topBids.length + topAsks.length) * BinaryProtocol.ORDER_BYTES);
+        output.put(BinaryProtocol.QUERY)
+                .putInt(requestId)
+                .put(BinaryProtocol.STATUS_OK)
+                .putShort((short) topBids.length)
+                .putShort((short) topAsks.length);
+        for (int row : topBids) {
+            output.putDouble(quotes.getBidPrice(row)).putInt(quotes.getBidQuantity(row));
+        }
+        for (int row : topAsks) {
+            output.putDouble(quotes.getAskPrice(row)).putInt(quotes.getAskQuantity(row));
+        }
+        return output.flip();
+    }
+
+    /**
+     * Stops accepting connections and closes all the connections
+     */
+    @Override
+    public void close() {
+        if (closed || serverChannel == null) {
+            return;
+        }
+        closed = true;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.warn("Binary order book server could not be closed", e);
+        }
+        for (IoLoop ioLoop : ioLoops) {
+            if (ioLoop != null) {
+                ioLoop.selector.wakeup();
+            }
+        }
+        for (IoLoop ioLoop : ioLoops) {
+            if (ioLoop != null) {
+                try {
+                    ioLoop.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * Buffers of a connection, only used by the IO loop of the connection
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        // complete frames to answer and the start of the next one, in read mode between reads
+        private ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_BYTES).flip();
+        // responses not copied into the output yet, in request order, completed by the workers
+        private final Queue<CompletableFuture<ByteBuffer>> pending = new ArrayDeque<>();
+        // responses not written yet, in write mode
+        private ByteBuffer output = ByteBuffer.allocate(OUTPUT_HIGH_WATER_BYTES);
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Copies the completed responses at the head of the pending responses into the output, until the output
+         * reaches its high water mark
+         * @return boolean - whether the output reached its high water mark before a completed response
+         * @throws CompletionException - is thrown if a query failed, the connection being closed
+         */
+        private boolean collectResponses() {
+            for (CompletableFuture<ByteBuffer> response; (response = pending.peek()) != null && response.isDone(); ) {
+                if (output.position() >= OUTPUT_HIGH_WATER_BYTES) {
+                    return true;
+                }
+                ByteBuffer answer = response.join();
+                if (output.remaining() < answer.remaining()) {
+                    int capacity = Math.max(output.capacity() * 2, output.position() + answer.remaining());
+                    output = ByteBuffer.allocate(capacity).put(output.flip());
+                }
+                output.put(answer);
+                pending.remove();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Thread multiplexing its connections on a selector
+     */
+    private final class IoLoop {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> acceptedChannels = new ConcurrentLinkedQueue<>();
+        // connections with responses completed by the workers
+        private final Queue<Connection> readyConnections = new ConcurrentLinkedQueue<>();
+
+        private IoLoop(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+        }
+
+        private void register(SocketChannel channel) {
+            acceptedChannels.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Called by a worker once it answered a query of the connection
+         */
+        private void ready(Connection connection) {
+            readyConnections.add(connection);
+            selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    for (SocketChannel channel; (channel = acceptedChannels.poll()) != null; ) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        serve(key, (Connection) key.attachment(), key.isReadable());
+                    }
+                    for (Connection connection; (connection = readyConnections.poll()) != null; ) {
+                        SelectionKey key = connection.channel.keyFor(selector);
+                        if (key != null && key.isValid()) {
+                            serve(key, connection, false);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Binary order book IO loop failed", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeConnection(key, (Connection) key.attachment());
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    log.warn("Binary order book selector could not be closed", e);
+                }
+            }
+        }
+
+        private void serve(SelectionKey key, Connection connection, boolean readable) {
+            try {
+                if (!serve(key, connection, readable ? connection.channel : null)) {
+                    closeConnection(key, connection);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Binary order book connection closed: {}", e.toString());
+                closeConnection(key, connection);
+            }
+        }
+
+        /**
+         * Reads the queries of a readable connection, then queues them and writes the completed responses, as long
+         * as the responses are written. The connection then waits to be writable if responses are not written, or
+         * to be readable unless MAX_PENDING_RESPONSES responses are pending, in which case it waits for the workers.
+         * @param channel - channel to read, null if the connection is not readable
+         * @return boolean - false if the connection is to be closed
+         */
+        private boolean serve(SelectionKey key, Connection connection, SocketChannel channel) throws IOException {
+            if (channel != null) {
+                connection.input.compact();
+                int read = channel.read(connection.input);
+                connection.input.flip();
+                if (read < 0) {
+                    return false;
+                }
+            }
+            int position;
+            do {
+                position = connection.input.position();
+                if (!answerFrames(this, connection)) {
+                    return false;
+                }
+                if (!writeResponses(connection)) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return true;
+                }
+                // written responses may have made room for more frames
+            } while (connection.input.position() != position);
+            key.interestOps(connection.pending.size() < MAX_PENDING_RESPONSES ? SelectionKey.OP_READ : 0);
+            return true;
+        }
+
+        /**
+         * Writes the completed responses. If they are not all written, the client does not queue more queries until
+         * it reads their responses.
+         * @return boolean - whether all the completed responses were written
+         */
+        private boolean writeResponses(Connection connection) throws IOException {
+            boolean outputFull;
+            do {
+                outputFull = connection.collectResponses();
+                ByteBuffer output = connection.output;
+                if (output.position() > 0) {
+                    connection.channel.write(output.flip());
+                    output.compact();
+                }
+                if (output.position() > 0) {
+                    return false;
+                }
+            } while (outputFull);
+            return true;
+        }
+
+        private void closeConnection(SelectionKey key, Connection connection) {
+            key.cancel();
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                log.debug("Binary order book connection could not be closed: {}", e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.stock.orderbook.controller;
+
+import com.stock.orderbook.model.TopOrders;
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BinaryProtocol defines the frames of the binary order book protocol of BinaryOrderBookServer. <br>
+ * All the numbers are big endian. Each request frame starts with its type and a request id chosen by the client,
+ * which the response echoes. Responses are written in request order, so a client may pipeline any number of
+ * requests before reading their responses. <br>
+ * Requests: <br>
+ * - SYMBOL: [byte 2][int requestId][short length][UTF-8 symbol name], answered with the id of the symbol to use in
+ * the queries <br>
+ * - QUERY: [byte 1][int requestId][int symbolId][long timestamp in epoch nanoseconds], 17 bytes <br>
+ * Responses: [byte type][int requestId][byte status] followed by <br>
+ * - SYMBOL: [int symbolId] <br>
+ * - QUERY: [unsigned short bidCount][unsigned short askCount] then bidCount times [double price][int quantity] and
+ * askCount times the same for the asks, best first, if the status is OK <br>
+ */
+@UtilityClass
+public class BinaryProtocol {
+    public static final byte QUERY = 1;
+    public static final byte SYMBOL = 2;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_UNKNOWN_SYMBOL = 1;
+    public static final byte STATUS_TOO_OLD_TIMESTAMP = 2;
+
+    public static final int QUERY_BYTES = 17;
+    public static final int SYMBOL_HEADER_BYTES = 7;
+    public static final int MAX_SYMBOL_BYTES = 256;
+    public static final int RESPONSE_HEADER_BYTES = 6;
+    public static final int ORDER_COUNTS_BYTES = 4;
+    public static final int ORDER_BYTES = 12;
+    /**
+     * Largest number of orders of a side in a QUERY response, i.e. the largest top.orders.limit of the server
+     */
+    public static final int MAX_ORDER_COUNT = 0xFFFF;
+
+    /**
+     * @param buffer - buffer the request is written to
+     * @param requestId - id of the request, echoed by its response
+     * @param symbolId - id of the symbol returned by a SYMBOL request
+     * @param timestamp - epoch nanoseconds of the order book
+     */
+    public void putQuery(ByteBuffer buffer, int requestId, int symbolId, long timestamp) {
+        buffer.put(QUERY).putInt(requestId).putInt(symbolId).putLong(timestamp);
+    }
+
+    /**
+     * @param buffer - buffer the request is written to
+     * @param requestId - id of the request, echoed by its response
+     * @param symbolName - name of the symbol, at most MAX_SYMBOL_BYTES bytes in UTF-8
+     */
+    public void putSymbol(ByteBuffer buffer, int requestId, String symbolName) {
+        byte[] name = symbolName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol name is longer than " + MAX_SYMBOL_BYTES + " bytes");
+        }
+        buffer.put(SYMBOL).putInt(requestId).putShort((short) name.length).put(name);
+    }
+
+    /**
+     * @param buffer - buffer with the start of a response at its position
+     * @return int - length of the response, 0 if the buffer does not hold enough bytes to tell
+     */
+    public int responseLength(ByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.remaining() < RESPONSE_HEADER_BYTES) {
+            return 0;
+        }
+        if (buffer.get(position) == SYMBOL) {
+            return RESPONSE_HEADER_BYTES + Integer.BYTES;
+        }
+        if (buffer.get(position + RESPONSE_HEADER_BYTES - 1) != STATUS_OK) {
+            return RESPONSE_HEADER_BYTES;
+        }
+        if (buffer.remaining() < RESPONSE_HEADER_BYTES + ORDER_COUNTS_BYTES) {
+            return 0;
+        }
+        int bidCount = Short.toUnsignedInt(buffer.getShort(position + RESPONSE_HEADER_BYTES));
+        int askCount = Short.toUnsignedInt(buffer.getShort(position + RESPONSE_HEADER_BYTES + Short.BYTES));
+        int orderCount = bidCount + askCount;
+        return RESPONSE_HEADER_BYTES + ORDER_COUNTS_BYTES + orderCount * ORDER_BYTES;
+    }
+
+    /**
+     * Reads a QUERY response, which must be complete in the buffer
+     * @param buffer - buffer with the response at its position
+     * @return TopOrders - the top orders of the response
+     */
+    public TopOrders getTopOrders(ByteBuffer buffer) {
+        buffer.get();
+        int requestId = buffer.getInt();
+        byte status = buffer.get();
+        if (status != STATUS_OK) {
+            return TopOrders.builder().requestId(requestId).status(status).build();
+        }
+        int bidCount = Short.toUnsignedInt(buffer.getShort());
+        int askCount = Short.toUnsignedInt(buffer.getShort());
+        double[] bidPrices = new double[bidCount];
+        int[] bidQuantities = new int[bidCount];
+        double[] askPrices = new double[askCount];
+        int[] askQuantities = new int[askCount];
+        for (int i = 0; i < bidCount; i++) {
+            bidPrices[i] = buffer.getDouble();
+            bidQuantities[i] = buffer.getInt();
+        }
+        for (int i = 0; i < askCount; i++) {
+            askPrices[i] = buffer.getDouble();
+            askQuantities[i] = buffer.getInt();
+        }
+        return TopOrders.builder()
+                .requestId(requestId)
+                .status(status)
+                .bidPrices(bidPrices)
+                .bidQuantities(bidQuantities)
+                .askPrices(askPrices)
+                .askQuantities(askQuantities)
+                .build();
+    }
+}
@@ -1,35 +1,89 @@
 package com.stock.orderbook.controller;
 
-import com.stock.orderbook.config.TopOrderFinderStrategyFactory;
+import com.stock.orderbook.model.CacheStats;
+import com.stock.orderbook.model.IngestResult;
 import com.stock.orderbook.model.OrderBookRequest;
-import com.stock.orderbook.model.OrderType;
+import com.stock.orderbook.model.RenderedOrderBook;
+import com.stock.orderbook.service.OrderBookFinder;
+import com.stock.orderbook.service.OrderBookMetrics;
+import com.stock.orderbook.service.OrderBookResponseCache;
+import com.stock.orderbook.service.OrderBookStreamer;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.QuoteIngester;
 import com.stock.orderbook.service.RequestValidator;
+import com.stock.orderbook.service.RequestValidatorImpl;
+import com.stock.orderbook.service.SymbolLanes;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.TimestampParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 
 /**
  * OrderBookController Rest Controller Class. <br>
- * - Creates endpoints for and directs requests to appropriate strategy implementations <br>
+ * - Creates endpoints for and directs requests to OrderBookFinder, which finds both sides of the book at once <br>
+ * - Single order book requests are served from the rendered responses of OrderBookResponseCache, with ETags <br>
+ * - When SymbolLanes is enabled, they are served asynchronously on the lane of their symbol instead of the request
+ * thread. The other requests read the caches on the lanes through the services <br>
+ * - Top of book requests are answered from the precomputed best bid and ask series of OrderBookFinder <br>
+ * - Quotes received live are posted to QuoteIngester <br>
+ * - The latency of the validation of the requests is recorded in OrderBookMetrics, along with the latency of the
+ * other stages recorded by the services <br>
  */
 @RestController
 public class OrderBookController {
     private static final Logger log = LoggerFactory.getLogger(OrderBookController.class);
 
-    private final TopOrderFinderStrategyFactory topOrderFinderStrategyFactory;
+    private static final String TEXT_PLAIN_UTF8 = "text/plain;charset=UTF-8";
+
+    private final OrderBookFinder orderBookFinder;
 
     private final RequestValidator requestValidator;
 
-    public OrderBookController(TopOrderFinderStrategyFactory topOrderFinderStrategyFactory,
-                               RequestValidator requestValidator) {
-        this.topOrderFinderStrategyFactory = topOrderFinderStrategyFactory;
+    private final OrderBookStreamer orderBookStreamer;
+
+    private final OrdersCacheManager ordersCacheManager;
+
+    private final QuoteIngester quoteIngester;
+
+    private final OrderBookMetrics orderBookMetrics;
+
+    private final OrderBookResponseCache orderBookResponseCache;
+
+    private final SymbolLanes symbolLanes;
+
+    public OrderBookController(OrderBookFinder orderBookFinder, RequestValidator requestValidator,
+                               OrderBookStreamer orderBookStreamer, OrdersCacheManager ordersCacheManager,
+                               QuoteIngester quoteIngester, OrderBookMetrics orderBookMetrics,
+                               OrderBookResponseCache orderBookResponseCache, SymbolLanes symbolLanes) {
+        this.orderBookFinder = orderBookFinder;
+        this.orderBookStreamer = orderBookStreamer;
         this.requestValidator = requestValidator;
+        this.ordersCacheManager = ordersCacheManager;
+        this.quoteIngester = quoteIngester;
+        this.orderBookMetrics = orderBookMetrics;
+        this.orderBookResponseCache = orderBookResponseCache;
+        this.symbolLanes = symbolLanes;
     }
 
     /**
@@ -44,29 +98,256 @@ public class OrderBookController {
     /**
      * POST /orderbook endpoint to get top bids and top asks for user request for given symbol
      * and timestamp.
+     * The response of a valid request is served from OrderBookResponseCache and tagged with its ETag. It is rendered
+     * once by the concurrent identical requests, and written to the servlet output stream as is.
      * @param orderBookRequest - An OrderBookRequest class object with symbol and timestamp
-     * @return String Response to request as below example.
+     * @param response - Response to request as below example.
      *
      * Best Bids: 128.31 (100); 128.31 (700); 128.31 (300); 128.31 (200); 128.31 (300)
      * Best Asks: 128.33 (100); 128.33 (700); 128.33 (300); 128.33 (100); 128.33 (100)
+     * @return DeferredResult - response completed on the lane of the symbol when SymbolLanes is enabled, null if
+     * written to response
      */
     @PostMapping(path = "/orderbook", consumes = "application/json", produces = "text/plain")
-    public String createPerson(@RequestBody OrderBookRequest orderBookRequest) {
-        String validatorResponse = requestValidator.validateSymbol(orderBookRequest.getSymbol());
+    public DeferredResult<ResponseEntity<byte[]>> createPerson(@RequestBody OrderBookRequest orderBookRequest,
+                                                               HttpServletResponse response) throws IOException {
+        return writeOrderBook(orderBookRequest.getSymbol(), orderBookRequest.getTimestamp(), null, response);
+    }
+
+    /**
+     * GET /orderbook endpoint, the cacheable equivalent of POST /orderbook: a request with the If-None-Match header
+     * of the current response is answered with 304 Not Modified and no body
+     * @param symbol - symbol of the order book
+     * @param timestamp - timestamp of the order book
+     * @param request - Request, with the optional If-None-Match header
+     * @param response - Response to request as POST /orderbook
+     * @return DeferredResult - response completed on the lane of the symbol as POST /orderbook, null if written to
+     * response
+     */
+    @GetMapping(path = "/orderbook", produces = "text/plain")
+    public DeferredResult<ResponseEntity<byte[]>> orderBook(@RequestParam("symbol") String symbol,
+                                                            @RequestParam("timestamp") String timestamp,
+                                                            HttpServletRequest request,
+                                                            HttpServletResponse response) throws IOException {
+        return writeOrderBook(symbol, timestamp, request, response);
+    }
+
+    /**
+     * Writes the order book of symbol at timestamp, or the validation error
+     * @param conditionalRequest - GET request, with the optional If-None-Match header, null for POST requests which
+     * are answered in full
+     * @return DeferredResult - response completed on the lane of the symbol when SymbolLanes is enabled, null if
+     * written to response
+     */
+    private DeferredResult<ResponseEntity<byte[]>> writeOrderBook(String symbol, String timestamp,
+                                                                  HttpServletRequest conditionalRequest,
+                                                                  HttpServletResponse response) throws IOException {
+        long startNanos = System.nanoTime();
+        String validatorResponse = requestValidator.validateSymbol(symbol);
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateTimestamp(timestamp);
+        }
+        orderBookMetrics.recordStage(OrderBookMetrics.Stage.VALIDATE, System.nanoTime() - startNanos);
         if (!validatorResponse.isEmpty()) {
-            return validatorResponse;
+            writeResponse(response, ResponseBuffer.forCurrentThread().appendUtf8(validatorResponse));
+            return null;
+        }
+        long parsedTimestamp = TimestampParser.parse(timestamp);
+        if (symbolLanes.isEnabled()) {
+            return orderBookOnLane(symbol, parsedTimestamp, conditionalRequest);
+        }
+        RenderedOrderBook orderBook = orderBookResponseCache.getOrderBook(symbol, parsedTimestamp);
+        // sets the ETag header, and the 304 status if If-None-Match matches it
+        if (conditionalRequest != null
+                && new ServletWebRequest(conditionalRequest, response).checkNotModified(orderBook.getEtag())) {
+            return null;
+        }
+        response.setContentType(TEXT_PLAIN_UTF8);
+        response.setContentLength(orderBook.getBody().length);
+        response.getOutputStream().write(orderBook.getBody());
+        return null;
+    }
+
+    /**
+     * Renders the order book on the lane of the symbol, the request being completed asynchronously once rendered
+     * @param conditionalRequest - GET request, with the optional If-None-Match header, null for POST requests
+     */
+    private DeferredResult<ResponseEntity<byte[]>> orderBookOnLane(String symbol, long timestamp,
+                                                                   HttpServletRequest conditionalRequest) {
+        DeferredResult<ResponseEntity<byte[]>> deferredResult = new DeferredResult<>();
+        // only reads the conditional headers of the request, the status is set on the response entity
+        ServletWebRequest webRequest = conditionalRequest == null ? null : new ServletWebRequest(conditionalRequest);
+        symbolLanes.submit(symbol, () -> orderBookResponseCache.getOrderBook(symbol, timestamp))
+                .whenComplete((orderBook, e) -> {
+                    if (e != null) {
+                        deferredResult.setErrorResult(e);
+                    } else if (webRequest != null && webRequest.checkNotModified(orderBook.getEtag())) {
+                        deferredResult.setResult(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(orderBook.getEtag())
+                                .build());
+                    } else {
+                        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok();
+                        if (webRequest != null) {
+                            responseBuilder.eTag(orderBook.getEtag());
+                        }
+                        deferredResult.setResult(responseBuilder
+                                .contentType(MediaType.parseMediaType(TEXT_PLAIN_UTF8))
+                                .body(orderBook.getBody()));
+                    }
+                });
+        return deferredResult;
+    }
+
+    /**
+     * GET /orderbook/top endpoint to get the best bid and the best ask of a symbol at a timestamp, found by binary
+     * search of the series precomputed at load instead of replaying the quotes
+     * @param symbol - symbol of the order book
+     * @param timestamp - timestamp of the order book
+     * @param response - Response to request as below example.
+     *
+     * Best Bids: 128.31 (100)
+     * Best Asks: 128.33 (100)
+     */
+    @GetMapping(path = "/orderbook/top", produces = "text/plain")
+    public void topOfBook(@RequestParam("symbol") String symbol, @RequestParam("timestamp") String timestamp,
+                          HttpServletResponse response) throws IOException {
+        String validatorResponse = requestValidator.validateSymbol(symbol);
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateTimestamp(timestamp);
         }
+        ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+        if (validatorResponse.isEmpty()) {
+            orderBookFinder.appendTopOfBook(symbol, TimestampParser.parse(timestamp), buffer);
+        } else {
+            buffer.appendUtf8(validatorResponse);
+        }
+        writeResponse(response, buffer);
+    }
+
+    /**
+     * POST /orderbook/batch endpoint to get top bids and top asks for a batch of requests, e.g. the lookups of a
+     * backtest. The requests of each symbol are answered in a single sweep over its quotes.
+     * @param orderBookRequests - array of OrderBookRequest objects with symbol and timestamp
+     * @return String[] - response to each request, in request order, as the response of POST /orderbook
+     */
+    @PostMapping(path = "/orderbook/batch", consumes = "application/json", produces = "application/json")
+    public String[] orderBooks(@RequestBody List<OrderBookRequest> orderBookRequests) {
         Instant start = Instant.now();
-        String topBids = topOrderFinderStrategyFactory.findStrategy(OrderType.BIDS)
-                .topOrders(orderBookRequest.getSymbol(), orderBookRequest.getTimestamp());
+        int requestCount = orderBookRequests.size();
+        String[] symbolNames = new String[requestCount];
+        long[] timestamps = new long[requestCount];
+        String[] validatorResponses = new String[requestCount];
+        for (int i = 0; i < requestCount; i++) {
+            OrderBookRequest orderBookRequest = orderBookRequests.get(i);
+            String symbolName = orderBookRequest == null ? null : orderBookRequest.getSymbol();
+            String validatorResponse = requestValidator.validateSymbol(symbolName);
+            if (validatorResponse.isEmpty()) {
+                validatorResponse = requestValidator.validateTimestamp(orderBookRequest.getTimestamp());
+            }
+            if (validatorResponse.isEmpty()) {
+                symbolNames[i] = symbolName;
+                timestamps[i] = TimestampParser.parse(orderBookRequest.getTimestamp());
+            } else {
+                validatorResponses[i] = validatorResponse;
+            }
+        }
+
+        String[] orderBooks = orderBookFinder.findOrderBooks(symbolNames, timestamps);
+        for (int i = 0; i < requestCount; i++) {
+            if (validatorResponses[i] != null) {
+                orderBooks[i] = validatorResponses[i];
+            }
+        }
+        log.info("Batch Execution Time: {} ({} requests)", Duration.between(start, Instant.now()).toMillis(),
+                requestCount);
+        return orderBooks;
+    }
+
+    /**
+     * GET /orderbook/stream endpoint to stream the top bids and top asks of a symbol over a range of market time, as
+     * newline delimited JSON with one line per point e.g.
+     *
+     * {"timestamp":"2021-02-18T10:10:10Z","bids":[{"price":128.31,"quantity":100}],"asks":[{"price":128.33,...}]}
+     * @param symbol - symbol of the order book
+     * @param start - timestamp of the first point
+     * @param end - timestamp after which no point is streamed
+     * @param step - market time between points e.g. 1s or 500ms, or "change" (default) for a point at every change
+     *             of the top orders
+     * @return ResponseEntity - body streamed asynchronously as the book is replayed, or the validation failure with
+     * bad request status
+     */
+    @GetMapping(path = "/orderbook/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamOrderBooks(
+            @RequestParam("symbol") String symbol, @RequestParam("start") String start,
+            @RequestParam("end") String end,
+            @RequestParam(name = "step", defaultValue = RequestValidatorImpl.ON_CHANGE_STEP) String step) {
+        String validatorResponse = requestValidator.validateSymbol(symbol);
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateTimestamp(start);
+        }
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateTimestamp(end);
+        }
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateRange(start, end);
+        }
+        if (validatorResponse.isEmpty()) {
+            validatorResponse = requestValidator.validateStep(step);
+        }
+        if (!validatorResponse.isEmpty()) {
+            byte[] body = validatorResponse.getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.parseMediaType(TEXT_PLAIN_UTF8))
+                    .body(outputStream -> outputStream.write(body));
+        }
+        long startTimestamp = TimestampParser.parse(start);
+        long endTimestamp = TimestampParser.parse(end);
+        long stepNanos = RequestValidatorImpl.ON_CHANGE_STEP.equals(step) ? 0
+                : DurationStyle.detectAndParse(step).toNanos();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(outputStream -> {
+                    long pointCount = orderBookStreamer.streamOrderBooks(symbol, startTimestamp,
+                            endTimestamp, stepNanos, outputStream);
+                    log.info("Streamed {} points of {} from {} to {}", pointCount, symbol, start, end);
+                });
+    }
 
-        String topAsks = topOrderFinderStrategyFactory.findStrategy(OrderType.ASKS)
-                .topOrders(orderBookRequest.getSymbol(), orderBookRequest.getTimestamp());
+    /**
+     * GET /orderbook/cache endpoint to get the metrics of bids/asks caches i.e. entry count, estimated bytes,
+     * hit ratio and evictions
+     * @return CacheStats - current metrics of the caches
+     */
+    @GetMapping(path = "/orderbook/cache", produces = "application/json")
+    public CacheStats cacheStats() {
+        return ordersCacheManager.getStats();
+    }
 
-        Instant finish = Instant.now();
-        log.info("Execution Time: {}", Duration.between(start, finish).toMillis());
-        log.debug("Result: {}, {}", topBids, topAsks);
+    /**
+     * POST /quotes endpoint to append quotes received live, as lines in the format of the quotes file. The quotes are
+     * visible to the requests once appended, see QuoteIngester.
+     * @param lines - lines of quotes, optionally starting with the header line
+     * @return ResponseEntity - IngestResult with the number of quotes appended, buffered and rejected, or the parse
+     * failure with bad request status, nothing being ingested then
+     */
+    @PostMapping(path = "/quotes", consumes = {"text/csv", "text/plain"})
+    public ResponseEntity<Object> ingestQuotes(@RequestBody byte[] lines) {
+        Instant start = Instant.now();
+        try {
+            IngestResult ingestResult = quoteIngester.ingest(ByteBuffer.wrap(lines));
+            log.info("Ingestion Time: {}", Duration.between(start, Instant.now()).toMillis());
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(ingestResult);
+        } catch (IOException e) {
+            log.error("Request validation failed: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.parseMediaType(TEXT_PLAIN_UTF8))
+                    .body("Request validation failed: " + e.getMessage());
+        }
+    }
 
-        return topBids + "\n" + topAsks;
+    private void writeResponse(HttpServletResponse response, ResponseBuffer buffer) throws IOException {
+        response.setContentType(TEXT_PLAIN_UTF8);
+        response.setContentLength(buffer.length());
+        buffer.writeTo(response.getOutputStream());
     }
 }
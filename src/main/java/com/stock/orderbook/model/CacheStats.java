@@ -0,0 +1,27 @@
+package com.stock.orderbook.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * CacheStats - Metrics of the bids/asks snapshot caches, returned by GET /orderbook/cache <br>
+ * - entryCount: number of cached snapshots which can be evicted <br>
+ * - pinnedCount: number of checkpoint snapshots which are never evicted <br>
+ * - estimatedBytes: estimated heap bytes of all cached snapshots <br>
+ * - maxBytes: memory budget of the caches <br>
+ * - hits/misses: requests answered from cache / computed from an earlier snapshot <br>
+ * - hitRatio: hits / (hits + misses), 0 before the first request <br>
+ * - evictions: number of snapshots evicted so far <br>
+ */
+@Data
+@Builder
+public class CacheStats {
+    private long entryCount;
+    private long pinnedCount;
+    private long estimatedBytes;
+    private long maxBytes;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions;
+}
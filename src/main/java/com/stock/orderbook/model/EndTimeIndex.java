@@ -0,0 +1,144 @@
+package com.stock.orderbook.model;
+
+import java.util.Arrays;
+
+/**
+ * EndTimeIndex Class <br>
+ * Immutable version of the index of the rows of a QuoteStore in endTime order. <br>
+ * - The index is split in settled rows, ending before the startTime of the last quote, and active rows ending at or
+ * after it <br>
+ * - Quotes are appended in startTime order and no quote ends before it starts, so no appended row is ever placed
+ * before a settled row: appending a batch only merges it with the active rows, and moves the rows ending before the
+ * batch starts to the settled rows <br>
+ * - Settled rows are kept in an array shared by the versions of the index, each version reading only its own settled
+ * count, so an append costs O(active rows + batch) instead of sorting the whole index again <br>
+ * A version is never modified once published, so a request reads positions of the same version without locking
+ * while newer versions are appended. <br>
+ */
+public final class EndTimeIndex {
+    private final long[] endTimes;
+    private final int[] settledRows;
+    private final int settledCount;
+    private final int[] activeRows;
+
+    private EndTimeIndex(long[] endTimes, int[] settledRows, int settledCount, int[] activeRows) {
+        this.endTimes = endTimes;
+        this.settledRows = settledRows;
+        this.settledCount = settledCount;
+        this.activeRows = activeRows;
+    }
+
+    /**
+     * @param endTimes - endTime column of the store, holding at least the indexed rows
+     * @param rows - all the rows of the store in endTime order, owned by the index
+     * @param settleBefore - startTime of the last quote of the store
+     * @return EndTimeIndex - index of the rows
+     */
+    static EndTimeIndex of(long[] endTimes, int[] rows, long settleBefore) {
+        int settledCount = firstPositionEndingFrom(endTimes, rows, settleBefore);
+        return new EndTimeIndex(endTimes, rows, settledCount, Arrays.copyOfRange(rows, settledCount, rows.length));
+    }
+
+    /**
+     * Derives the index of the store once rows [fromRow, toRow) are appended
+     * @param endTimes - endTime column of the store, holding at least the appended rows
+     * @param fromRow - first appended row i.e. size of the indexed store
+     * @param toRow - row after the last appended row
+     * @param settleBefore - startTime of the first appended row, at or before the endTime of all appended rows
+     * @return EndTimeIndex - new version of the index, this version being unchanged
+     */
+    EndTimeIndex append(long[] endTimes, int fromRow, int toRow, long settleBefore) {
+        int settling = firstPositionEndingFrom(endTimes, activeRows, settleBefore);
+        int[] rows = settledRows;
+        if (settledCount + settling > rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(settledCount + settling, 2 * rows.length));
+        }
+        // written past settledCount, which no published version reads
+        System.arraycopy(activeRows, 0, rows, settledCount, settling);
+
+        int appendedCount = toRow - fromRow;
+        int[] appended = new int[appendedCount];
+        for (int i = 0; i < appendedCount; i++) {
+            appended[i] = fromRow + i;
+        }
+        QuoteStore.mergeSortByTime(endTimes, appended, new int[appendedCount], 0, appendedCount);
+
+        int[] active = new int[activeRows.length - settling + appendedCount];
+        int left = settling;
+        int right = 0;
+        for (int i = 0; i < active.length; i++) {
+            if (right >= appendedCount
+                    || (left < activeRows.length && endTimes[activeRows[left]] <= endTimes[appended[right]])) {
+                active[i] = activeRows[left++];
+            } else {
+                active[i] = appended[right++];
+            }
+        }
+        return new EndTimeIndex(endTimes, rows, settledCount + settling, active);
+    }
+
+    private static int firstPositionEndingFrom(long[] endTimes, int[] rows, long timestamp) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (endTimes[rows[middle]] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return int - number of indexed rows
+     */
+    public int size() {
+        return settledCount + activeRows.length;
+    }
+
+    /**
+     * @param position - position in endTime order
+     * @return int - row of the quote at position in endTime order
+     */
+    public int getRow(int position) {
+        return position < settledCount ? settledRows[position] : activeRows[position - settledCount];
+    }
+
+    /**
+     * Binary search of the index
+     * @param timestamp - epoch nanoseconds
+     * @return int - first position in endTime order of a quote ending after timestamp, size if there is none
+     */
+    public int firstPositionAfter(long timestamp) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (endTimes[getRow(middle)] <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return long - earliest endTime after timestamp, Long.MAX_VALUE if none
+     */
+    public long nextEndTimeAfter(long timestamp) {
+        int position = firstPositionAfter(timestamp);
+        return position < size() ? endTimes[getRow(position)] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Copies the rows in endTime order
+     * @param rows - array of at least size() rows
+     */
+    void copyRows(int[] rows) {
+        System.arraycopy(settledRows, 0, rows, 0, settledCount);
+        System.arraycopy(activeRows, 0, rows, settledCount, activeRows.length);
+    }
+}
@@ -0,0 +1,19 @@
+package com.stock.orderbook.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * IngestResult - Outcome of a batch of quotes posted to POST /quotes <br>
+ * - appended: quotes appended to the quote stores, visible to the requests <br>
+ * - buffered: quotes held in the reorder buffers of their symbols, appended once later quotes arrive <br>
+ * - rejected: quotes starting before the last appended quote of their symbol, or of a symbol which cannot be added
+ * <br>
+ */
+@Data
+@Builder
+public class IngestResult {
+    private long appended;
+    private long buffered;
+    private long rejected;
+}
@@ -0,0 +1,13 @@
+package com.stock.orderbook.model;
+
+import lombok.Data;
+
+/**
+ * OrderBookKey - Symbol and timestamp of an order book, identifying the concurrent computations of the same book
+ * and its rendered response <br>
+ */
+@Data
+public class OrderBookKey {
+    private final String symbol;
+    private final long timestamp;
+}
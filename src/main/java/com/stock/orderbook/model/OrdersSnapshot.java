@@ -0,0 +1,120 @@
+package com.stock.orderbook.model;
+
+/**
+ * OrdersSnapshot Class <br>
+ * Immutable book i.e. bids and asks of a symbol at a timestamp, as published in the symbol ordersCache. <br>
+ * - bids/asks - persistent treaps of the rows in QuoteStore of the active quotes at the timestamp, in priority order of
+ * each side i.e. best order first. They share most of their nodes with the snapshot they are derived from <br>
+ * - quotesIndex - index of the first quote starting after the timestamp, from where later timestamps continue. Both
+ * sides are derived in the same scan of the quotes, hence they share the index <br>
+ * - pinned - pinned snapshots are checkpoints which are never evicted from cache <br>
+ * A snapshot misses the quotes appended later at or before its timestamp. It is then no longer current, but it is
+ * still a valid base for its timestamp and later ones, since the quotes from quotesIndex are replayed. <br>
+ * The orders of a snapshot are never modified after it is created, so it can be read by any number of request threads
+ * without locking. <br>
+ */
+public final class OrdersSnapshot {
+    /**
+     * Estimated bytes of a cached snapshot besides its orders i.e. snapshot and treap headers, cache map node and key
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 176;
+
+    private final OrdersTreap bids;
+    private final OrdersTreap asks;
+    private final int quotesIndex;
+    private final boolean pinned;
+    // cache metadata: set when the snapshot is read from cache and cleared by the eviction clock
+    private volatile boolean referenced;
+
+    /**
+     * @param bids - rows of active quotes in bids priority order
+     * @param asks - rows of active quotes in asks priority order
+     * @param quotesIndex - index of the first quote starting after the timestamp of snapshot
+     */
+    public OrdersSnapshot(OrdersTreap bids, OrdersTreap asks, int quotesIndex) {
+        this(bids, asks, quotesIndex, false);
+    }
+
+    /**
+     * @param bids - rows of active quotes in bids priority order
+     * @param asks - rows of active quotes in asks priority order
+     * @param quotesIndex - index of the first quote starting after the timestamp of snapshot
+     * @param pinned - true if the snapshot must never be evicted from cache
+     */
+    public OrdersSnapshot(OrdersTreap bids, OrdersTreap asks, int quotesIndex, boolean pinned) {
+        this.bids = bids;
+        this.asks = asks;
+        this.quotesIndex = quotesIndex;
+        this.pinned = pinned;
+    }
+
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    /**
+     * @return OrdersSnapshot - pinned snapshot sharing the orders of this snapshot
+     */
+    public OrdersSnapshot pinned() {
+        return pinned ? this : new OrdersSnapshot(bids, asks, quotesIndex, true);
+    }
+
+    public boolean isReferenced() {
+        return referenced;
+    }
+
+    public void setReferenced(boolean referenced) {
+        // skips the write when unchanged, so that frequent readers do not contend on the field
+        if (this.referenced != referenced) {
+            this.referenced = referenced;
+        }
+    }
+
+    /**
+     * @return long - estimated heap bytes retained by the snapshot in cache, counting all the treap nodes reachable
+     * from it. Nodes shared with other cached snapshots are counted by each of them, so the cache budget never
+     * undercounts the nodes a snapshot keeps alive once the snapshot it is derived from is evicted
+     */
+    public long estimatedBytes() {
+        return ENTRY_OVERHEAD_BYTES + OrdersTreap.NODE_BYTES * ((long) bids.size() + asks.size());
+    }
+
+    public OrdersTreap getBids() {
+        return bids;
+    }
+
+    public OrdersTreap getAsks() {
+        return asks;
+    }
+
+    /**
+     * @param orderType - side of the book
+     * @return OrdersTreap - bids or asks
+     */
+    public OrdersTreap getOrders(OrderType orderType) {
+        return orderType == OrderType.BIDS ? bids : asks;
+    }
+
+    public int getQuotesIndex() {
+        return quotesIndex;
+    }
+
+    /**
+     * @param quotes - quote store of the symbol, in startTime order
+     * @param timestamp - epoch nanoseconds of the snapshot
+     * @return boolean - false if quotes starting at or before timestamp were appended after the snapshot was derived
+     */
+    public boolean isCurrent(QuoteStore quotes, long timestamp) {
+        return isCurrent(quotes, quotesIndex, timestamp);
+    }
+
+    /**
+     * @param quotes - quote store of the symbol, in startTime order
+     * @param quotesIndex - first row not started at timestamp when the orders were derived
+     * @param timestamp - epoch nanoseconds of the orders
+     * @return boolean - false if quotes starting at or before timestamp were appended from quotesIndex since
+     */
+    public static boolean isCurrent(QuoteStore quotes, int quotesIndex, long timestamp) {
+        return quotesIndex >= quotes.size() || quotes.getStartTime(quotesIndex) > timestamp;
+    }
+}
@@ -0,0 +1,304 @@
+package com.stock.orderbook.model;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * OrdersTreap Class <br>
+ * Persistent (immutable, structurally shared) treap of the rows of active quotes, in priority order of one side. <br>
+ * - Nodes are never modified once a treap is built, an Editor copies only the path from the root to the changed
+ * nodes, so a new book shares all the other nodes with the book it is derived from <br>
+ * - Nodes created by an Editor are updated in place until it builds the treap, so a path is copied at most once per
+ * edit, however many changes go through it <br>
+ * - Rows are removed by handle i.e. the row itself, which is looked up by its position in priority order <br>
+ * - Each node keeps the size of its subtree, so the order at a position is found in O(log n) <br>
+ * - Node priorities are a hash of the row, hence the shape of the treap does not depend on a random generator <br>
+ * Inserting or removing a quote costs O(log n) new nodes, so deriving a book costs O(changes * log n), and at most
+ * O(book size), instead of copying the whole book. <br>
+ */
+public final class OrdersTreap {
+    /**
+     * Estimated heap bytes of a node: header, owner, row, priority, size and two references
+     */
+    public static final long NODE_BYTES = 40;
+
+    public static final OrdersTreap EMPTY = new OrdersTreap(null, 0);
+
+    private final Node root;
+    private final int newNodes;
+
+    private OrdersTreap(Node root, int newNodes) {
+        this.root = root;
+        this.newNodes = newNodes;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * @return int - number of nodes created by the editor of this treap, i.e. nodes not shared with the treap it is
+     * derived from
+     */
+    public int getNewNodes() {
+        return newNodes;
+    }
+
+    /**
+     * @param position - position in priority order, 0 being the best order
+     * @return int - row at position
+     */
+    public int getRow(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " out of " + size() + " orders");
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position == leftSize) {
+                return node.row;
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Peeks the best orders without modifying the treap, visiting O(limit + log n) nodes
+     * @param limit - maximum number of orders
+     * @return int[] - rows of upto limit best orders
+     */
+    public int[] topRows(int limit) {
+        return topRows(root, limit);
+    }
+
+    private static int[] topRows(Node root, int limit) {
+        int[] topRows = new int[Math.min(limit, size(root))];
+        fillTopRows(root, topRows, 0);
+        return topRows;
+    }
+
+    /**
+     * Fills rows from position with the rows of the subtree in order, until rows is full
+     * @return int - next position to fill
+     */
+    private static int fillTopRows(Node node, int[] rows, int position) {
+        if (node == null || position >= rows.length) {
+            return position;
+        }
+        position = fillTopRows(node.left, rows, position);
+        if (position < rows.length) {
+            rows[position++] = node.row;
+            position = fillTopRows(node.right, rows, position);
+        }
+        return position;
+    }
+
+    /**
+     * @param ordersComparator - priority order of the rows, the same for all the edits of a treap
+     * @return Editor - editor deriving a new treap from this one, which is left unchanged
+     */
+    public Editor edit(IntBinaryOperator ordersComparator) {
+        return new Editor(root, ordersComparator);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * @return int - priority of the row in the heap order of the treap (murmur3 finalizer)
+     */
+    private static int priority(int row) {
+        int hash = row * 0x9e3779b9;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * Editor derives a new treap with path copying. An editor is not thread safe, the treaps it builds are.
+     */
+    public static final class Editor {
+        private final IntBinaryOperator ordersComparator;
+        // owner of the nodes created since the last build, which can be updated in place
+        private Object owner = new Object();
+        private Node root;
+        private int newNodes;
+        // results of split
+        private Node splitLeft;
+        private Node splitRight;
+
+        private Editor(Node root, IntBinaryOperator ordersComparator) {
+            this.root = root;
+            this.ordersComparator = ordersComparator;
+        }
+
+        /**
+         * Adds the row of a quote, which must not be in the treap already
+         * @param row - row of the quote
+         */
+        public Editor insert(int row) {
+            root = insert(root, row, priority(row));
+            return this;
+        }
+
+        /**
+         * Removes the row of a quote, if it is in the treap
+         * @param row - row of the quote
+         */
+        public Editor remove(int row) {
+            root = remove(root, row);
+            return this;
+        }
+
+        public int size() {
+            return OrdersTreap.size(root);
+        }
+
+        /**
+         * Peeks the best orders of the edited treap, e.g. to follow a book as it is edited without building it
+         * @param limit - maximum number of orders
+         * @return int[] - rows of upto limit best orders
+         */
+        public int[] topRows(int limit) {
+            return OrdersTreap.topRows(root, limit);
+        }
+
+        /**
+         * @return int - row of the best order of the edited treap, -1 if it is empty
+         */
+        public int bestRow() {
+            Node node = root;
+            if (node == null) {
+                return -1;
+            }
+            while (node.left != null) {
+                node = node.left;
+            }
+            return node.row;
+        }
+
+        /**
+         * @return OrdersTreap - the edited treap, sharing the unchanged nodes with the treap it is derived from
+         */
+        public OrdersTreap build() {
+            // the nodes of a built treap are shared from now on
+            owner = new Object();
+            return new OrdersTreap(root, newNodes);
+        }
+
+        private int compare(int row1, int row2) {
+            int result = ordersComparator.applyAsInt(row1, row2);
+            // rows are unique, so that equal orders have a stable position
+            return result != 0 ? result : Integer.compare(row1, row2);
+        }
+
+        private Node insert(Node node, int row, int priority) {
+            if (node == null) {
+                return newNode(row, priority, null, null);
+            }
+            if (priority > node.priority) {
+                split(node, row);
+                return newNode(row, priority, splitLeft, splitRight);
+            }
+            if (compare(row, node.row) < 0) {
+                return copy(node, insert(node.left, row, priority), node.right);
+            }
+            return copy(node, node.left, insert(node.right, row, priority));
+        }
+
+        /**
+         * Splits the subtree into splitLeft with the rows before row and splitRight with the rows after row
+         */
+        private void split(Node node, int row) {
+            if (node == null) {
+                splitLeft = null;
+                splitRight = null;
+            } else if (compare(node.row, row) < 0) {
+                split(node.right, row);
+                splitLeft = copy(node, node.left, splitLeft);
+            } else {
+                split(node.left, row);
+                splitRight = copy(node, splitRight, node.right);
+            }
+        }
+
+        private Node remove(Node node, int row) {
+            if (node == null) {
+                return null;
+            }
+            int result = compare(row, node.row);
+            if (result == 0) {
+                return merge(node.left, node.right);
+            }
+            if (result < 0) {
+                return copy(node, remove(node.left, row), node.right);
+            }
+            return copy(node, node.left, remove(node.right, row));
+        }
+
+        /**
+         * Merges two subtrees, all the rows of left being before the rows of right
+         */
+        private Node merge(Node left, Node right) {
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+            if (left.priority > right.priority) {
+                return copy(left, left.left, merge(left.right, right));
+            }
+            return copy(right, merge(left, right.left), right.right);
+        }
+
+        private Node copy(Node node, Node left, Node right) {
+            if (node.owner == owner) {
+                // the children may have been updated in place, hence the subtree size is updated in any case
+                node.setChildren(left, right);
+                return node;
+            }
+            if (node.left == left && node.right == right) {
+                // a shared node only has shared children, which are unchanged
+                return node;
+            }
+            return newNode(node.row, node.priority, left, right);
+        }
+
+        private Node newNode(int row, int priority, Node left, Node right) {
+            newNodes++;
+            return new Node(owner, row, priority, left, right);
+        }
+    }
+
+    /**
+     * Node of the treap. The mutable fields are only updated by the Editor owning the node, before the treap is built
+     * and published.
+     */
+    private static final class Node {
+        private final Object owner;
+        private final int row;
+        private final int priority;
+        private int size;
+        private Node left;
+        private Node right;
+
+        private Node(Object owner, int row, int priority, Node left, Node right) {
+            this.owner = owner;
+            this.row = row;
+            this.priority = priority;
+            setChildren(left, right);
+        }
+
+        private void setChildren(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.stock.orderbook.model;
 
-import com.stock.orderbook.utils.OutputFormatter;
 import lombok.Builder;
 import lombok.Data;
 
 /**
  * Quote Pojo  <br>
  * The fields in the class are present in input CSV quotes file. <br>
- * Each Quote object is created of each line in CSV quotes file. <br>
+ * Each Quote object represents one line in CSV quotes file. Quotes are stored by row in QuoteStore. <br>
  */
 @Data
 @Builder
@@ -23,16 +22,4 @@ public class Quote {
     private final String quoteConditions;
     private final Integer sipfeedSeq;
     private final String sipfeed;
-
-    public String askOutputFormat() {
-        return OutputFormatter.formatPrice(this.askPrice) + " (" + this.askQuantity + ")";
-    }
-
-    public String bidOutputFormat() {
-        return OutputFormatter.formatPrice(this.bidPrice) + " (" + this.bidQuantity + ")";
-    }
-
-    public Double getNegativeBidPrice() {
-        return -this.bidPrice;
-    }
 }
@@ -0,0 +1,612 @@
+package com.stock.orderbook.model;
+
+import com.stock.orderbook.utils.TimestampParser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * QuoteStore Class <br>
+ * Columnar storage of the quotes associated with a symbol. <br>
+ * - Each quote is identified by its row index, in the order the quotes are added i.e. CSV file order <br>
+ * - Start/end times (epoch nanoseconds), prices, quantities and sequence numbers are kept in parallel primitive
+ * arrays <br>
+ * - Market center, quote conditions and sipfeed are dictionary coded <br>
+ * - A secondary index keeps the rows in endTime order, see EndTimeIndex <br>
+ * - Quotes can be appended live with appendRows while the store is read: a single writer fills the rows, extends the
+ * endTime index and then publishes the new size, so readers never see a row before it is complete. The column arrays
+ * are held by one immutable Columns, published in a volatile field before the size, so a reader never pairs a size
+ * with columns missing its rows <br>
+ * - The columns and the index can be written to and read back from a ByteBuffer in bulk, e.g. a memory mapped
+ * snapshot file <br>
+ */
+public class QuoteStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StringDictionary marketCenterDictionary;
+    private final StringDictionary quoteConditionsDictionary;
+    private final StringDictionary sipfeedDictionary;
+
+    private volatile int size;
+    // replaced as a whole when the columns grow or are reordered, always written before size
+    private volatile Columns columns;
+    // rows in endTime order, built on first use
+    private volatile EndTimeIndex endTimeIndex;
+
+    public QuoteStore() {
+        this(new StringDictionary(), new StringDictionary(), new StringDictionary());
+    }
+
+    /**
+     * Creates a store sharing the given dictionaries, so that the distinct values are kept once for all symbols.
+     */
+    public QuoteStore(StringDictionary marketCenterDictionary, StringDictionary quoteConditionsDictionary,
+                      StringDictionary sipfeedDictionary) {
+        this.marketCenterDictionary = marketCenterDictionary;
+        this.quoteConditionsDictionary = quoteConditionsDictionary;
+        this.sipfeedDictionary = sipfeedDictionary;
+        this.columns = new Columns(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Appends the quote as a new row
+     * @param quote - quote to be added
+     * @return int - row index of the added quote
+     * @throws IllegalArgumentException - is thrown if start or end time of the quote is not a valid timestamp
+     */
+    public int add(Quote quote) {
+        long startTime = TimestampParser.parse(quote.getStartTime());
+        long endTime = TimestampParser.parse(quote.getEndTime());
+        if (startTime == TimestampParser.INVALID_TIMESTAMP || endTime == TimestampParser.INVALID_TIMESTAMP) {
+            throw new IllegalArgumentException("Invalid start/end time of quote: " + quote);
+        }
+        return add(marketCenterDictionary.encode(quote.getMarketCenter()), valueOrZero(quote.getBidQuantity()),
+                valueOrZero(quote.getAskQuantity()), valueOrZero(quote.getBidPrice()),
+                valueOrZero(quote.getAskPrice()), startTime, endTime,
+                quoteConditionsDictionary.encode(quote.getQuoteConditions()), valueOrZero(quote.getSipfeedSeq()),
+                sipfeedDictionary.encode(quote.getSipfeed()));
+    }
+
+    /**
+     * Appends a quote as a new row from its primitive values, in the column order of the CSV file.
+     * Dictionary coded columns are passed as codes of the dictionaries of this store.
+     * @return int - row index of the added quote
+     */
+    public int add(int marketCenter, int bidQuantity, int askQuantity, double bidPrice, double askPrice,
+                   long startTime, long endTime, int quoteConditions, int sipfeedSeq, int sipfeed) {
+        ensureCapacity(Math.max(INITIAL_CAPACITY, size + 1));
+        int row = size;
+        Columns columns = this.columns;
+        columns.marketCenters[row] = marketCenter;
+        columns.bidQuantities[row] = bidQuantity;
+        columns.askQuantities[row] = askQuantity;
+        columns.bidPrices[row] = bidPrice;
+        columns.askPrices[row] = askPrice;
+        columns.startTimes[row] = startTime;
+        columns.endTimes[row] = endTime;
+        columns.quoteConditions[row] = quoteConditions;
+        columns.sipfeedSeqs[row] = sipfeedSeq;
+        columns.sipfeeds[row] = sipfeed;
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * Appends all the rows of other store. Dictionary codes of other store are translated with the given code maps.
+     * @param other - store to be appended
+     * @param marketCenterCodes - code in this store of each market center code of other store
+     * @param quoteConditionsCodes - code in this store of each quote conditions code of other store
+     * @param sipfeedCodes - code in this store of each sipfeed code of other store
+     */
+    public void addAll(QuoteStore other, int[] marketCenterCodes, int[] quoteConditionsCodes, int[] sipfeedCodes) {
+        int rows = size;
+        int count = other.size;
+        ensureCapacity(rows + count);
+        Columns columns = this.columns;
+        Columns otherColumns = other.columns;
+        columns.copyRows(otherColumns, 0, rows, count);
+        for (int row = 0; row < count; row++) {
+            columns.marketCenters[rows + row] = translate(otherColumns.marketCenters[row], marketCenterCodes);
+            columns.quoteConditions[rows + row] = translate(otherColumns.quoteConditions[row], quoteConditionsCodes);
+            columns.sipfeeds[rows + row] = translate(otherColumns.sipfeeds[row], sipfeedCodes);
+        }
+        size = rows + count;
+    }
+
+    /**
+     * Appends rows [fromRow, toRow) of another store, while this store is read by other threads, e.g. the quotes
+     * ingested live. The rows are written first, then the endTime index is extended and the new size is published
+     * last, so readers reading size before the rows only see complete rows. Appends are serialized on the store.
+     * @param source - store with the same dictionaries as this store, its rows in startTime order
+     * @param fromRow - first row of source to append
+     * @param toRow - row of source after the last row to append
+     * @throws IllegalArgumentException - is thrown if the rows start before the last row of this store, are not in
+     * startTime order or end before they start
+     */
+    public synchronized void appendRows(QuoteStore source, int fromRow, int toRow) {
+        if (source.marketCenterDictionary != marketCenterDictionary
+                || source.quoteConditionsDictionary != quoteConditionsDictionary
+                || source.sipfeedDictionary != sipfeedDictionary) {
+            throw new IllegalArgumentException("Appended quotes must share the dictionaries of the store");
+        }
+        int count = toRow - fromRow;
+        if (count <= 0) {
+            return;
+        }
+        int rows = size;
+        Columns sourceColumns = source.columns;
+        long previousStartTime = rows > 0 ? this.columns.startTimes[rows - 1] : Long.MIN_VALUE;
+        for (int row = fromRow; row < toRow; row++) {
+            if (sourceColumns.startTimes[row] < previousStartTime
+                    || sourceColumns.endTimes[row] < sourceColumns.startTimes[row]) {
+                throw new IllegalArgumentException("Appended quote at row " + row
+                        + " starts before the last quote or ends before it starts");
+            }
+            previousStartTime = sourceColumns.startTimes[row];
+        }
+        EndTimeIndex index = getEndTimeIndex();
+        // a grown copy of the columns is published before the rows are written to it, and before the new size
+        ensureCapacity(rows + count);
+        Columns columns = this.columns;
+        columns.copyRows(sourceColumns, fromRow, rows, count);
+        System.arraycopy(sourceColumns.marketCenters, fromRow, columns.marketCenters, rows, count);
+        System.arraycopy(sourceColumns.quoteConditions, fromRow, columns.quoteConditions, rows, count);
+        System.arraycopy(sourceColumns.sipfeeds, fromRow, columns.sipfeeds, rows, count);
+        endTimeIndex = index.append(columns.endTimes, rows, rows + count, columns.startTimes[rows]);
+        size = rows + count;
+    }
+
+    /**
+     * Returns a store of the current rows sharing the columns and the endTime index of this store, e.g. to write the
+     * quotes to a file while quotes are appended. Appended rows are written past the rows of the view and into a
+     * new index version, so the view is not affected by them. Not to be called while quotes are appended.
+     * @param marketCenterDictionary - copy of the market center dictionary of this store, with the same codes
+     * @param quoteConditionsDictionary - copy of the quote conditions dictionary of this store, with the same codes
+     * @param sipfeedDictionary - copy of the sipfeed dictionary of this store, with the same codes
+     * @return QuoteStore - view of the current rows, not to be modified
+     */
+    public QuoteStore view(StringDictionary marketCenterDictionary, StringDictionary quoteConditionsDictionary,
+                           StringDictionary sipfeedDictionary) {
+        QuoteStore view = new QuoteStore(marketCenterDictionary, quoteConditionsDictionary, sipfeedDictionary);
+        view.endTimeIndex = getEndTimeIndex();
+        view.columns = columns;
+        view.size = size;
+        return view;
+    }
+
+    /**
+     * Removes the first rows, shifting the other rows down, e.g. the quotes released from a reorder buffer. Not to be
+     * called on a store read by other threads.
+     * @param count - number of rows to remove
+     */
+    public void removeFirstRows(int count) {
+        int remaining = size - count;
+        Columns columns = this.columns;
+        columns.copyRows(columns, count, 0, remaining);
+        System.arraycopy(columns.marketCenters, count, columns.marketCenters, 0, remaining);
+        System.arraycopy(columns.quoteConditions, count, columns.quoteConditions, 0, remaining);
+        System.arraycopy(columns.sipfeeds, count, columns.sipfeeds, 0, remaining);
+        size = remaining;
+        endTimeIndex = null;
+    }
+
+    private static int translate(int code, int[] codes) {
+        return code == StringDictionary.NULL_CODE ? code : codes[code];
+    }
+
+    /**
+     * Orders the rows by startTime, keeping the current order of rows with same startTime.
+     * @return boolean - true if rows were out of order and got reordered
+     */
+    public boolean sortByStartTime() {
+        long[] startTimes = columns.startTimes;
+        boolean sorted = true;
+        for (int row = 1; row < size && sorted; row++) {
+            sorted = startTimes[row - 1] <= startTimes[row];
+        }
+        if (sorted) {
+            return false;
+        }
+        int[] order = new int[size];
+        for (int row = 0; row < size; row++) {
+            order[row] = row;
+        }
+        mergeSortByTime(startTimes, order, new int[size], 0, size);
+
+        columns = columns.permute(order);
+        endTimeIndex = null;
+        return true;
+    }
+
+    /**
+     * Builds the index of rows in endTime order, from which the quotes ending between two timestamps are found
+     * without scanning the book. The index is also built on first use, or rebuilt after quotes are added with add,
+     * but building it once all the quotes are loaded keeps it off the request path. Rows appended with appendRows
+     * extend the index instead.
+     */
+    public void indexEndTimes() {
+        getEndTimeIndex();
+    }
+
+    /**
+     * @return EndTimeIndex - current version of the endTime index, with at least the rows of size(). A request reads
+     * all its positions from the same version.
+     */
+    public EndTimeIndex getEndTimeIndex() {
+        // size is published after the index it was appended to
+        int rows = size;
+        EndTimeIndex index = endTimeIndex;
+        if (index == null || index.size() < rows) {
+            synchronized (this) {
+                rows = size;
+                index = endTimeIndex;
+                if (index == null || index.size() < rows) {
+                    long[] startTimes = columns.startTimes;
+                    long[] endTimes = columns.endTimes;
+                    int[] sortedRows = new int[rows];
+                    long lastStartTime = Long.MIN_VALUE;
+                    for (int row = 0; row < rows; row++) {
+                        sortedRows[row] = row;
+                        lastStartTime = Math.max(lastStartTime, startTimes[row]);
+                    }
+                    mergeSortByTime(endTimes, sortedRows, new int[rows], 0, rows);
+                    index = EndTimeIndex.of(endTimes, sortedRows, lastStartTime);
+                    endTimeIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Binary search of the current endTime index
+     * @param timestamp - epoch nanoseconds
+     * @return int - first position in endTime order of a quote ending after timestamp, size if there is none
+     */
+    public int firstEndTimePositionAfter(long timestamp) {
+        return getEndTimeIndex().firstPositionAfter(timestamp);
+    }
+
+    /**
+     * @param position - position in endTime order of the current endTime index
+     * @return int - row of the quote at position in endTime order
+     */
+    public int getRowByEndTime(int position) {
+        return getEndTimeIndex().getRow(position);
+    }
+
+    // stable merge sort of row indices in order[from, to) by times of the rows
+    static void mergeSortByTime(long[] times, int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSortByTime(times, order, buffer, from, middle);
+        mergeSortByTime(times, order, buffer, middle, to);
+        if (times[order[middle - 1]] <= times[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && times[buffer[left]] <= times[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static long[] permute(long[] column, int[] order) {
+        long[] permuted = new long[column.length];
+        for (int row = 0; row < order.length; row++) {
+            permuted[row] = column[order[row]];
+        }
+        return permuted;
+    }
+
+    private static double[] permute(double[] column, int[] order) {
+        double[] permuted = new double[column.length];
+        for (int row = 0; row < order.length; row++) {
+            permuted[row] = column[order[row]];
+        }
+        return permuted;
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] permuted = new int[column.length];
+        for (int row = 0; row < order.length; row++) {
+            permuted[row] = column[order[row]];
+        }
+        return permuted;
+    }
+
+    /**
+     * Grows the columns to hold at least capacity rows
+     * @param capacity - required number of rows
+     */
+    public void ensureCapacity(int capacity) {
+        Columns columns = this.columns;
+        if (capacity > columns.capacity()) {
+            this.columns = columns.copyOf(Math.max(capacity, columns.capacity() * 2));
+        }
+    }
+
+    /**
+     * Releases the spare capacity of the columns once all the quotes are added
+     */
+    public void trimToSize() {
+        Columns columns = this.columns;
+        if (size != columns.capacity()) {
+            this.columns = columns.copyOf(size);
+        }
+    }
+
+    /**
+     * @param rows - number of rows
+     * @return long - bytes written by writeColumns for a store of rows quotes, with its endTime index
+     */
+    public static long columnBytes(int rows) {
+        return (long) rows * (4 * Long.BYTES + 7 * Integer.BYTES);
+    }
+
+    /**
+     * Writes the columns and the endTime index of the quotes at the position of buffer, in the byte order of buffer.
+     * Dictionary coded columns are written as codes of the dictionaries of this store. Not to be called while quotes
+     * are appended.
+     * @param buffer - buffer with at least columnBytes(size()) remaining bytes
+     */
+    public void writeColumns(ByteBuffer buffer) {
+        int size = this.size;
+        Columns columns = this.columns;
+        int[] index = new int[size];
+        getEndTimeIndex().copyRows(index);
+        buffer.asLongBuffer().put(columns.startTimes, 0, size).put(columns.endTimes, 0, size);
+        skip(buffer, 2L * Long.BYTES * size);
+        buffer.asDoubleBuffer().put(columns.bidPrices, 0, size).put(columns.askPrices, 0, size);
+        skip(buffer, 2L * Double.BYTES * size);
+        buffer.asIntBuffer().put(columns.bidQuantities, 0, size).put(columns.askQuantities, 0, size)
+                .put(columns.sipfeedSeqs, 0, size).put(columns.marketCenters, 0, size)
+                .put(columns.quoteConditions, 0, size).put(columns.sipfeeds, 0, size).put(index);
+        skip(buffer, 7L * Integer.BYTES * size);
+    }
+
+    /**
+     * Reads a store written by writeColumns from the position of buffer, with the dictionaries the codes of the
+     * written store refer to
+     * @param buffer - buffer positioned at the columns
+     * @param rows - number of rows of the written store
+     * @return QuoteStore - store of the quotes, indexed by endTime
+     */
+    public static QuoteStore readColumns(ByteBuffer buffer, int rows, StringDictionary marketCenterDictionary,
+                                         StringDictionary quoteConditionsDictionary,
+                                         StringDictionary sipfeedDictionary) {
+        QuoteStore quoteStore = new QuoteStore(marketCenterDictionary, quoteConditionsDictionary, sipfeedDictionary);
+        Columns columns = new Columns(rows);
+        buffer.asLongBuffer().get(columns.startTimes).get(columns.endTimes);
+        skip(buffer, 2L * Long.BYTES * rows);
+        buffer.asDoubleBuffer().get(columns.bidPrices).get(columns.askPrices);
+        skip(buffer, 2L * Double.BYTES * rows);
+        int[] index = new int[rows];
+        buffer.asIntBuffer().get(columns.bidQuantities).get(columns.askQuantities).get(columns.sipfeedSeqs)
+                .get(columns.marketCenters).get(columns.quoteConditions).get(columns.sipfeeds).get(index);
+        skip(buffer, 7L * Integer.BYTES * rows);
+        quoteStore.columns = columns;
+        quoteStore.endTimeIndex = EndTimeIndex.of(columns.endTimes, index,
+                rows > 0 ? columns.startTimes[rows - 1] : Long.MIN_VALUE);
+        quoteStore.size = rows;
+        return quoteStore;
+    }
+
+    private static void skip(ByteBuffer buffer, long bytes) {
+        buffer.position(Math.toIntExact(buffer.position() + bytes));
+    }
+
+    private static double valueOrZero(Double value) {
+        return value == null ? 0 : value;
+    }
+
+    private static int valueOrZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Binary search of the quotes, which must be sorted by startTime
+     * @param timestamp - epoch nanoseconds
+     * @param fromRow - first row to search from
+     * @return int - first row from fromRow with startTime at or after timestamp, size if there is none
+     */
+    public int firstRowStartingFrom(long timestamp, int fromRow) {
+        long[] startTimes = columns.startTimes;
+        int low = fromRow;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startTimes[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public long getStartTime(int row) {
+        return columns.startTimes[row];
+    }
+
+    public long getEndTime(int row) {
+        return columns.endTimes[row];
+    }
+
+    public double getBidPrice(int row) {
+        return columns.bidPrices[row];
+    }
+
+    public double getAskPrice(int row) {
+        return columns.askPrices[row];
+    }
+
+    public int getBidQuantity(int row) {
+        return columns.bidQuantities[row];
+    }
+
+    public int getAskQuantity(int row) {
+        return columns.askQuantities[row];
+    }
+
+    public int getSipfeedSeq(int row) {
+        return columns.sipfeedSeqs[row];
+    }
+
+    public String getMarketCenter(int row) {
+        return marketCenterDictionary.decode(columns.marketCenters[row]);
+    }
+
+    public String getQuoteConditions(int row) {
+        return quoteConditionsDictionary.decode(columns.quoteConditions[row]);
+    }
+
+    public String getSipfeed(int row) {
+        return sipfeedDictionary.decode(columns.sipfeeds[row]);
+    }
+
+    public StringDictionary getMarketCenterDictionary() {
+        return marketCenterDictionary;
+    }
+
+    public StringDictionary getQuoteConditionsDictionary() {
+        return quoteConditionsDictionary;
+    }
+
+    public StringDictionary getSipfeedDictionary() {
+        return sipfeedDictionary;
+    }
+
+    /**
+     * Bids are ordered from high to low price. In case of tie, the older startTime is selected.
+     * @return int - negative if the bid at row1 is better than the bid at row2, positive if worse, 0 if equal
+     */
+    public int compareBids(int row1, int row2) {
+        Columns columns = this.columns;
+        int result = Double.compare(columns.bidPrices[row2], columns.bidPrices[row1]);
+        return result != 0 ? result : Long.compare(columns.startTimes[row1], columns.startTimes[row2]);
+    }
+
+    /**
+     * Asks are ordered from low to high price. In case of tie, the older startTime is selected.
+     * @return int - negative if the ask at row1 is better than the ask at row2, positive if worse, 0 if equal
+     */
+    public int compareAsks(int row1, int row2) {
+        Columns columns = this.columns;
+        int result = Double.compare(columns.askPrices[row1], columns.askPrices[row2]);
+        return result != 0 ? result : Long.compare(columns.startTimes[row1], columns.startTimes[row2]);
+    }
+
+    /**
+     * Materializes the row as a Quote object. Meant for debugging and tests, not for the request path.
+     * @param symbol - symbol of the store
+     * @param row - row index
+     * @return Quote - quote at the row
+     */
+    public Quote getQuote(String symbol, int row) {
+        return Quote.builder()
+                .symbol(symbol)
+                .marketCenter(getMarketCenter(row))
+                .bidQuantity(getBidQuantity(row))
+                .askQuantity(getAskQuantity(row))
+                .bidPrice(getBidPrice(row))
+                .askPrice(getAskPrice(row))
+                .startTime(TimestampParser.format(getStartTime(row)))
+                .endTime(TimestampParser.format(getEndTime(row)))
+                .quoteConditions(getQuoteConditions(row))
+                .sipfeedSeq(getSipfeedSeq(row))
+                .sipfeed(getSipfeed(row))
+                .build();
+    }
+
+    /**
+     * Column arrays of the quotes, never replaced once published: growing or reordering the columns creates new
+     * Columns. Rows may still be written past the size of the store.
+     */
+    private static final class Columns {
+        private final long[] startTimes;
+        private final long[] endTimes;
+        private final double[] bidPrices;
+        private final double[] askPrices;
+        private final int[] bidQuantities;
+        private final int[] askQuantities;
+        private final int[] sipfeedSeqs;
+        private final int[] marketCenters;
+        private final int[] quoteConditions;
+        private final int[] sipfeeds;
+
+        private Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new double[capacity], new double[capacity],
+                    new int[capacity], new int[capacity], new int[capacity], new int[capacity], new int[capacity],
+                    new int[capacity]);
+        }
+
+        private Columns(long[] startTimes, long[] endTimes, double[] bidPrices, double[] askPrices,
+                        int[] bidQuantities, int[] askQuantities, int[] sipfeedSeqs, int[] marketCenters,
+                        int[] quoteConditions, int[] sipfeeds) {
+            this.startTimes = startTimes;
+            this.endTimes = endTimes;
+            this.bidPrices = bidPrices;
+            this.askPrices = askPrices;
+            this.bidQuantities = bidQuantities;
+            this.askQuantities = askQuantities;
+            this.sipfeedSeqs = sipfeedSeqs;
+            this.marketCenters = marketCenters;
+            this.quoteConditions = quoteConditions;
+            this.sipfeeds = sipfeeds;
+        }
+
+        private int capacity() {
+            return startTimes.length;
+        }
+
+        /**
+         * @param capacity - number of rows of the copy
+         * @return Columns - copy of the columns, truncated or padded to capacity rows
+         */
+        private Columns copyOf(int capacity) {
+            return new Columns(Arrays.copyOf(startTimes, capacity), Arrays.copyOf(endTimes, capacity),
+                    Arrays.copyOf(bidPrices, capacity), Arrays.copyOf(askPrices, capacity),
+                    Arrays.copyOf(bidQuantities, capacity), Arrays.copyOf(askQuantities, capacity),
+                    Arrays.copyOf(sipfeedSeqs, capacity), Arrays.copyOf(marketCenters, capacity),
+                    Arrays.copyOf(quoteConditions, capacity), Arrays.copyOf(sipfeeds, capacity));
+        }
+
+        /**
+         * @param order - row of these columns at each row of the permuted columns
+         * @return Columns - columns of the same capacity with the rows in the given order
+         */
+        private Columns permute(int[] order) {
+            return new Columns(QuoteStore.permute(startTimes, order), QuoteStore.permute(endTimes, order),
+                    QuoteStore.permute(bidPrices, order), QuoteStore.permute(askPrices, order),
+                    QuoteStore.permute(bidQuantities, order), QuoteStore.permute(askQuantities, order),
+                    QuoteStore.permute(sipfeedSeqs, order), QuoteStore.permute(marketCenters, order),
+                    QuoteStore.permute(quoteConditions, order), QuoteStore.permute(sipfeeds, order));
+        }
+
+        /**
+         * Copies count rows of the columns which are not dictionary coded from source, the codes depending on the
+         * dictionaries of each store
+         */
+        private void copyRows(Columns source, int fromRow, int toRow, int count) {
+            System.arraycopy(source.startTimes, fromRow, startTimes, toRow, count);
+            System.arraycopy(source.endTimes, fromRow, endTimes, toRow, count);
+            System.arraycopy(source.bidPrices, fromRow, bidPrices, toRow, count);
+            System.arraycopy(source.askPrices, fromRow, askPrices, toRow, count);
+            System.arraycopy(source.bidQuantities, fromRow, bidQuantities, toRow, count);
+            System.arraycopy(source.askQuantities, fromRow, askQuantities, toRow, count);
+            System.arraycopy(source.sipfeedSeqs, fromRow, sipfeedSeqs, toRow, count);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.stock.orderbook.model;
+
+import lombok.Getter;
+
+/**
+ * RenderedOrderBook - Response of an order book request as sent, cached by OrderBookResponseCache <br>
+ * - body: UTF-8 bytes of the top bids and asks <br>
+ * - etag: strong entity tag of the body <br>
+ * - quotesIndex: first row of the quotes not started at the timestamp when the book was rendered, -1 if the timestamp
+ * is before the first snapshot. The response is current while no quote starting at or before the timestamp is
+ * appended from this row <br>
+ * - referenced: set by the hits, cleared by the clock hand of the cache before the response can be evicted <br>
+ */
+@Getter
+public class RenderedOrderBook {
+    private final byte[] body;
+    private final String etag;
+    private final int quotesIndex;
+    private volatile boolean referenced;
+
+    public RenderedOrderBook(byte[] body, String etag, int quotesIndex) {
+        this.body = body;
+        this.etag = etag;
+        this.quotesIndex = quotesIndex;
+    }
+
+    public void setReferenced(boolean referenced) {
+        this.referenced = referenced;
+    }
+
+    /**
+     * @param quotes - quote store of the symbol, in startTime order
+     * @param timestamp - epoch nanoseconds of the order book
+     * @return boolean - false if quotes starting at or before timestamp were appended after the book was rendered
+     */
+    public boolean isCurrent(QuoteStore quotes, long timestamp) {
+        return quotesIndex < 0 || OrdersSnapshot.isCurrent(quotes, quotesIndex, timestamp);
+    }
+}
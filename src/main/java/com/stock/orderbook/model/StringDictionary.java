@@ -0,0 +1,128 @@
+package com.stock.orderbook.model;
+
+import java.util.Arrays;
+
+/**
+ * StringDictionary Class <br>
+ * Dictionary encoding for low cardinality string columns (market center, quote conditions, sipfeed) and symbols. <br>
+ * Each distinct value is stored once and rows only keep the int code of the value. <br>
+ * Values are looked up by content of any CharSequence, so fields can be encoded straight from the bytes of the CSV
+ * file without creating a String, unless the value is seen for the first time. <br>
+ */
+public class StringDictionary {
+    /**
+     * Code of null value
+     */
+    public static final int NULL_CODE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size;
+    // open addressing table of code + 1 for each slot, 0 denoting an empty slot
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Returns the code of the value, adding the value to the dictionary if it is seen for the first time
+     * @param value - value to be encoded
+     * @return int - code of the value
+     */
+    public int encode(CharSequence value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        int slot = hash(value) & (table.length - 1);
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (contentEquals(values[code], value)) {
+                return code;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return add(value.toString(), slot);
+    }
+
+    /**
+     * Returns the value associated with the code
+     * @param code - code returned by encode
+     * @return String - value of the code
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    /**
+     * Encodes all the values of another dictionary, e.g. to translate the codes of quotes parsed with other
+     * dictionaries
+     * @param source - dictionary of the values to be encoded
+     * @return int[] - code in this dictionary of each code of source dictionary
+     */
+    public int[] encodeAll(StringDictionary source) {
+        int[] codes = new int[source.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = encode(source.decode(code));
+        }
+        return codes;
+    }
+
+    /**
+     * @return StringDictionary - dictionary of the current values with the same codes, not affected by values encoded
+     * later in this dictionary
+     */
+    public StringDictionary copy() {
+        StringDictionary copy = new StringDictionary();
+        copy.encodeAll(this);
+        return copy;
+    }
+
+    /**
+     * @return int - number of distinct values in dictionary
+     */
+    public int size() {
+        return size;
+    }
+
+    private int add(String value, int slot) {
+        int code = size++;
+        if (code == values.length) {
+            values = Arrays.copyOf(values, code * 2);
+        }
+        values[code] = value;
+        table[slot] = code + 1;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return code;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int code = 0; code < size; code++) {
+            int slot = hash(values[code]) & (capacity - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = code + 1;
+        }
+    }
+
+    private static int hash(CharSequence value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean contentEquals(String value, CharSequence other) {
+        if (value.length() != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,14 +3,13 @@ package com.stock.orderbook.model;
 import lombok.Builder;
 import lombok.Data;
 
-import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
 
 /**
  * Symbol Class
  * Stores the data associated with each symbol for calculating the top bids/asks.
+ * The cache is a concurrent navigable map of immutable snapshots, so request threads read it without locking
+ * and publish new snapshots with putIfAbsent.
  */
 @Data
 @Builder
@@ -20,25 +19,18 @@ public class Symbol {
      */
     private String symbol;
     /**
-     * quotes - List of quotes associated with symbol <br>
+     * quotes - Columnar store of quotes associated with symbol <br>
      */
-    private List<Quote> quotes;
+    private QuoteStore quotes;
     /**
-     * quotesIndex - Hashmap <br>
-     * key - timestamp <br>
-     * Integer - Index of timestamp equalling the start time in csv file <br>
+     * ordersCache - A concurrent skip list map to store the timestamps and snapshots of bids and asks <br>
+     * key - timestamp in epoch nanoseconds <br>
+     * value - Snapshot of active bids and asks at that timestamp and index of first quote after that timestamp <br>
      */
-    private Map<String, Integer> quotesIndex;
+    private ConcurrentNavigableMap<Long, OrdersSnapshot> ordersCache;
     /**
-     * asksCache - A treemap to store the timestamps and priority queues <br>
-     * key - String timestamp <br>
-     * value - Priority Queue of asks at that timestamp <br>
+     * topOfBook - Best bid and best ask series of the quotes, replaced by a new version as quotes are appended <br>
      */
-    private TreeMap<String, PriorityQueue<Quote>> asksCache;
-    /**
-     * bidsCache - A treemap to store the timestamps and priority queues <br>
-     * key - String timestamp <br>
-     * value - Priority Queue of bids at that timestamp <br>
-     */
-    private TreeMap<String, PriorityQueue<Quote>> bidsCache;
+    @Builder.Default
+    private volatile TopOfBookSeries topOfBook = TopOfBookSeries.EMPTY;
 }
@@ -0,0 +1,265 @@
+package com.stock.orderbook.model;
+
+import java.util.Arrays;
+
+/**
+ * TopOfBookSeries Class <br>
+ * Immutable version of the best bid and the best ask of a symbol over time, precomputed when the symbol is loaded, so
+ * that the top of the book at a timestamp is found by binary search instead of replaying quotes. <br>
+ * - Each side is a series of (timestamp, price, quantity) entries in primitive arrays, with an entry whenever the
+ * price or the quantity of its best order changes, and an entry without order (NaN price) when the side empties <br>
+ * - The best order is consolidated across market centers as the book is: it is the best of all the quotes of the
+ * symbol active at the timestamp, in the order of QuoteStore compareBids/compareAsks, then of their rows <br>
+ * - The series is built in a single sweep over the starts (startTime order of QuoteStore) and the ends (endTime
+ * index) of the quotes, the active quotes being kept in an OrdersTreap editor of each side <br>
+ * - Entries before the startTime of the last quote are settled, as quotes appended later start at or after it. They
+ * are kept in arrays shared by the versions, each version reading only its own settled count. The later entries are
+ * swept again, from the books saved at that startTime, when quotes are appended <br>
+ */
+public final class TopOfBookSeries {
+    public static final TopOfBookSeries EMPTY = new TopOfBookSeries(Side.EMPTY, Side.EMPTY, OrdersTreap.EMPTY,
+            OrdersTreap.EMPTY, 0, Long.MIN_VALUE);
+
+    private final Side bids;
+    private final Side asks;
+    // active quotes before resumeTime, from which the quotes are swept again once quotes are appended
+    private final OrdersTreap resumeBids;
+    private final OrdersTreap resumeAsks;
+    // first row starting at or after resumeTime
+    private final int resumeRow;
+    private final long resumeTime;
+
+    private TopOfBookSeries(Side bids, Side asks, OrdersTreap resumeBids, OrdersTreap resumeAsks, int resumeRow,
+                            long resumeTime) {
+        this.bids = bids;
+        this.asks = asks;
+        this.resumeBids = resumeBids;
+        this.resumeAsks = resumeAsks;
+        this.resumeRow = resumeRow;
+        this.resumeTime = resumeTime;
+    }
+
+    /**
+     * @param quotes - quotes of a symbol, in startTime order
+     * @return TopOfBookSeries - best bids and asks of the quotes
+     */
+    public static TopOfBookSeries of(QuoteStore quotes) {
+        return EMPTY.append(quotes);
+    }
+
+    /**
+     * Derives the series of the store once quotes are appended to it
+     * @param quotes - store of this series, with the appended quotes
+     * @return TopOfBookSeries - new version of the series, this version being unchanged
+     */
+    public TopOfBookSeries append(QuoteStore quotes) {
+        int size = quotes.size();
+        if (size == 0) {
+            return this;
+        }
+        // positions are read from one version of the index, while quotes may be appended
+        EndTimeIndex endTimeIndex = quotes.getEndTimeIndex();
+        int endPositions = endTimeIndex.size();
+        long settleBefore = quotes.getStartTime(size - 1);
+        OrdersTreap.Editor bidsEditor = resumeBids.edit(quotes::compareBids);
+        OrdersTreap.Editor asksEditor = resumeAsks.edit(quotes::compareAsks);
+        Side.Builder bidsBuilder = new Side.Builder(bids);
+        Side.Builder asksBuilder = new Side.Builder(asks);
+        OrdersTreap settledBids = null;
+        OrdersTreap settledAsks = null;
+        int settledRow = 0;
+        int row = resumeRow;
+        int position = resumeTime == Long.MIN_VALUE ? 0 : endTimeIndex.firstPositionAfter(resumeTime - 1);
+        while (true) {
+            long startTime = row < size ? quotes.getStartTime(row) : Long.MAX_VALUE;
+            long endTime = position < endPositions ? quotes.getEndTime(endTimeIndex.getRow(position))
+                    : Long.MAX_VALUE;
+            long timestamp = Math.min(startTime, endTime);
+            if (settledBids == null && timestamp >= settleBefore) {
+                settledBids = bidsEditor.build();
+                settledAsks = asksEditor.build();
+                settledRow = row;
+                bidsBuilder.settle();
+                asksBuilder.settle();
+            }
+            if (timestamp == Long.MAX_VALUE) {
+                break;
+            }
+            // a quote is active from its startTime until before its endTime
+            for (; position < endPositions; position++) {
+                int endingRow = endTimeIndex.getRow(position);
+                if (quotes.getEndTime(endingRow) != timestamp) {
+                    break;
+                }
+                // the quotes ending as they start were never inserted
+                if (quotes.getStartTime(endingRow) < timestamp) {
+                    bidsEditor.remove(endingRow);
+                    asksEditor.remove(endingRow);
+                }
+            }
+            for (; row < size && quotes.getStartTime(row) == timestamp; row++) {
+                if (quotes.getEndTime(row) > timestamp) {
+                    bidsEditor.insert(row);
+                    asksEditor.insert(row);
+                }
+            }
+            int bestBid = bidsEditor.bestRow();
+            int bestAsk = asksEditor.bestRow();
+            bidsBuilder.add(timestamp, bestBid < 0 ? Double.NaN : quotes.getBidPrice(bestBid),
+                    bestBid < 0 ? 0 : quotes.getBidQuantity(bestBid));
+            asksBuilder.add(timestamp, bestAsk < 0 ? Double.NaN : quotes.getAskPrice(bestAsk),
+                    bestAsk < 0 ? 0 : quotes.getAskQuantity(bestAsk));
+        }
+        return new TopOfBookSeries(bidsBuilder.build(), asksBuilder.build(), settledBids, settledAsks, settledRow,
+                settleBefore);
+    }
+
+    public Side getBids() {
+        return bids;
+    }
+
+    public Side getAsks() {
+        return asks;
+    }
+
+    /**
+     * Side Class <br>
+     * Series of the best order of one side: settled entries in arrays shared with the other versions, followed by the
+     * entries of this version only. <br>
+     */
+    public static final class Side {
+        static final Side EMPTY = new Side(new long[0], new double[0], new int[0], 0, new long[0], new double[0],
+                new int[0]);
+
+        private final long[] settledTimestamps;
+        private final double[] settledPrices;
+        private final int[] settledQuantities;
+        private final int settledCount;
+        private final long[] tailTimestamps;
+        private final double[] tailPrices;
+        private final int[] tailQuantities;
+
+        private Side(long[] settledTimestamps, double[] settledPrices, int[] settledQuantities, int settledCount,
+                     long[] tailTimestamps, double[] tailPrices, int[] tailQuantities) {
+            this.settledTimestamps = settledTimestamps;
+            this.settledPrices = settledPrices;
+            this.settledQuantities = settledQuantities;
+            this.settledCount = settledCount;
+            this.tailTimestamps = tailTimestamps;
+            this.tailPrices = tailPrices;
+            this.tailQuantities = tailQuantities;
+        }
+
+        /**
+         * @return int - number of entries
+         */
+        public int size() {
+            return settledCount + tailTimestamps.length;
+        }
+
+        /**
+         * Binary search of the series
+         * @param timestamp - epoch nanoseconds
+         * @return int - index of the entry in effect at timestamp, i.e. the last one at or before it, -1 if there is
+         * none
+         */
+        public int indexAt(long timestamp) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (getTimestamp(middle) <= timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        /**
+         * @param index - index of the entry
+         * @return long - epoch nanoseconds from which the entry is in effect
+         */
+        public long getTimestamp(int index) {
+            return index < settledCount ? settledTimestamps[index] : tailTimestamps[index - settledCount];
+        }
+
+        /**
+         * @param index - index of the entry
+         * @return double - price of the best order, NaN if the side has no order
+         */
+        public double getPrice(int index) {
+            return index < settledCount ? settledPrices[index] : tailPrices[index - settledCount];
+        }
+
+        /**
+         * @param index - index of the entry
+         * @return int - quantity of the best order, 0 if the side has no order
+         */
+        public int getQuantity(int index) {
+            return index < settledCount ? settledQuantities[index] : tailQuantities[index - settledCount];
+        }
+
+        /**
+         * @param index - index of the entry
+         * @return boolean - whether the side has an order at the entry
+         */
+        public boolean hasOrder(int index) {
+            return !Double.isNaN(getPrice(index));
+        }
+
+        /**
+         * Appends entries to the settled arrays of a side, past its settled count, which no published version reads
+         */
+        private static final class Builder {
+            private long[] timestamps;
+            private double[] prices;
+            private int[] quantities;
+            private int count;
+            private int settledCount;
+
+            private Builder(Side side) {
+                timestamps = side.settledTimestamps;
+                prices = side.settledPrices;
+                quantities = side.settledQuantities;
+                count = side.settledCount;
+                settledCount = side.settledCount;
+            }
+
+            /**
+             * Appends an entry, unless the best order has the same price and quantity as the last entry
+             */
+            private void add(long timestamp, double price, int quantity) {
+                if (count == 0 ? Double.isNaN(price)
+                        : Double.compare(prices[count - 1], price) == 0 && quantities[count - 1] == quantity) {
+                    return;
+                }
+                if (count == timestamps.length) {
+                    int capacity = Math.max(16, 2 * count);
+                    timestamps = Arrays.copyOf(timestamps, capacity);
+                    prices = Arrays.copyOf(prices, capacity);
+                    quantities = Arrays.copyOf(quantities, capacity);
+                }
+                timestamps[count] = timestamp;
+                prices[count] = price;
+                quantities[count] = quantity;
+                count++;
+            }
+
+            /**
+             * Marks the entries added so far as settled
+             */
+            private void settle() {
+                settledCount = count;
+            }
+
+            private Side build() {
+                return new Side(timestamps, prices, quantities, settledCount,
+                        Arrays.copyOfRange(timestamps, settledCount, count),
+                        Arrays.copyOfRange(prices, settledCount, count),
+                        Arrays.copyOfRange(quantities, settledCount, count));
+            }
+        }
+    }
+}
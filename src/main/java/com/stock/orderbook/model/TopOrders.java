@@ -0,0 +1,29 @@
+package com.stock.orderbook.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * TopOrders - Response of a query of the binary protocol, read by BinaryOrderBookClient <br>
+ * - requestId: id of the query the response answers <br>
+ * - status: one of the BinaryProtocol statuses, the orders being empty unless it is STATUS_OK <br>
+ * - bidPrices/bidQuantities: top bids, best first <br>
+ * - askPrices/askQuantities: top asks, best first <br>
+ */
+@Data
+@Builder
+public class TopOrders {
+    private static final double[] NO_PRICES = new double[0];
+    private static final int[] NO_QUANTITIES = new int[0];
+
+    private final int requestId;
+    private final byte status;
+    @Builder.Default
+    private final double[] bidPrices = NO_PRICES;
+    @Builder.Default
+    private final int[] bidQuantities = NO_QUANTITIES;
+    @Builder.Default
+    private final double[] askPrices = NO_PRICES;
+    @Builder.Default
+    private final int[] askQuantities = NO_QUANTITIES;
+}
@@ -0,0 +1,141 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * CheckpointBuilder precomputes pinned snapshots of the bids and asks of a symbol at a fixed spacing of its quotes. <br>
+ * - A checkpoint is taken every orders.checkpoint.interval.quotes quotes and/or every orders.checkpoint.interval.time
+ * of market time, whichever comes first <br>
+ * - Each checkpoint is computed from the previous one by TopOrdersFinder, so building all the checkpoints of a symbol
+ * is a single pass over its quotes <br>
+ * - Checkpoints are extended as quotes are appended live, from the last checkpoint of the symbol <br>
+ * - Building and extending the checkpoints of a symbol are serialized on the symbol, so a build running in the
+ * background while quotes are ingested never overwrites the checkpoints extended over the appended quotes with
+ * checkpoints missing them <br>
+ * With an interval of N quotes, a request replays at most about N quotes from the checkpoint before its timestamp,
+ * whatever the time of day. <br>
+ */
+@Component
+public class CheckpointBuilder {
+    private final TopOrdersFinder topOrdersFinder;
+
+    private final OrdersCacheManager ordersCacheManager;
+
+    /**
+     * Number of quotes between checkpoints, 0 to disable
+     */
+    private final int intervalQuotes;
+
+    /**
+     * Market time in nanoseconds between checkpoints, 0 to disable
+     */
+    private final long intervalNanos;
+
+    public CheckpointBuilder(TopOrdersFinder topOrdersFinder, OrdersCacheManager ordersCacheManager,
+                             @Value("${orders.checkpoint.interval.quotes:10000}") int intervalQuotes,
+                             @Value("${orders.checkpoint.interval.time:0s}") Duration intervalTime) {
+        this.topOrdersFinder = topOrdersFinder;
+        this.ordersCacheManager = ordersCacheManager;
+        this.intervalQuotes = intervalQuotes;
+        this.intervalNanos = intervalTime.toNanos();
+    }
+
+    public int getIntervalQuotes() {
+        return intervalQuotes;
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Pins checkpoints in the ordersCache of the symbol, starting from its latest snapshot at or before the first
+     * quote.
+     * @param symbol - symbol with loaded quotes and initialized cache
+     * @return int - number of checkpoints built
+     */
+    public int buildCheckpoints(Symbol symbol) {
+        QuoteStore quotes = symbol.getQuotes();
+        if (quotes.size() == 0 || (intervalQuotes <= 0 && intervalNanos <= 0)) {
+            return 0;
+        }
+        synchronized (symbol) {
+            Map.Entry<Long, OrdersSnapshot> ordersEntry = symbol.getOrdersCache().floorEntry(quotes.getStartTime(0));
+            if (ordersEntry == null) {
+                return 0;
+            }
+            // the size is read under the lock, so the quotes appended before are covered as well
+            return pinCheckpoints(symbol, ordersEntry.getValue(), ordersEntry.getKey(), quotes.getStartTime(0),
+                    quotes.size());
+        }
+    }
+
+    /**
+     * Pins the checkpoints of the quotes appended to the symbol since its latest checkpoint. Quotes starting at the
+     * startTime of the last quote get no checkpoint yet, since more quotes may still be appended at that startTime.
+     * @param symbol - symbol with initialized cache
+     * @return int - number of checkpoints built
+     */
+    public int extendCheckpoints(Symbol symbol) {
+        QuoteStore quotes = symbol.getQuotes();
+        int size = quotes.size();
+        if (size == 0 || (intervalQuotes <= 0 && intervalNanos <= 0)) {
+            return 0;
+        }
+        long lastStartTime = quotes.getStartTime(size - 1);
+        synchronized (symbol) {
+            // the snapshots after the latest checkpoint are the ones published by requests since then
+            for (Map.Entry<Long, OrdersSnapshot> ordersEntry : symbol.getOrdersCache().headMap(lastStartTime, true)
+                    .descendingMap().entrySet()) {
+                if (ordersEntry.getValue().isPinned()) {
+                    OrdersSnapshot orders = ordersEntry.getValue();
+                    return pinCheckpoints(symbol, orders, ordersEntry.getKey(), ordersEntry.getKey(),
+                            quotes.firstRowStartingFrom(lastStartTime, Math.min(orders.getQuotesIndex(), size)));
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Pins checkpoints from the orders at ordersTime, at the startTime of quotes before endRow
+     * @return int - number of checkpoints built
+     */
+    private int pinCheckpoints(Symbol symbol, OrdersSnapshot orders, long ordersTime, long checkpointTime,
+                               int endRow) {
+        QuoteStore quotes = symbol.getQuotes();
+        int checkpointCount = 0;
+        while (true) {
+            int nextRow = nextCheckpointRow(quotes, orders.getQuotesIndex(), checkpointTime);
+            if (nextRow >= endRow) {
+                return checkpointCount;
+            }
+            checkpointTime = quotes.getStartTime(nextRow);
+            orders = topOrdersFinder.findTopOrders(orders, ordersTime, symbol, checkpointTime).pinned();
+            ordersTime = checkpointTime;
+            ordersCacheManager.pin(symbol, checkpointTime, orders);
+            checkpointCount++;
+        }
+    }
+
+    /**
+     * @return int - row of the quote starting the next checkpoint after the one at checkpointTime
+     */
+    private int nextCheckpointRow(QuoteStore quotes, int quotesIndex, long checkpointTime) {
+        int nextRow = quotes.size();
+        if (intervalQuotes > 0) {
+            nextRow = (int) Math.min(nextRow, (long) quotesIndex + intervalQuotes - 1);
+        }
+        if (intervalNanos > 0) {
+            nextRow = Math.min(nextRow, quotes.firstRowStartingFrom(checkpointTime + intervalNanos, quotesIndex));
+        }
+        return nextRow;
+    }
+}
@@ -0,0 +1,255 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrderBookKey;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.model.TopOfBookSeries;
+import com.stock.orderbook.utils.OutputFormatter;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * OrderBookFinder finds both sides of the order book of a symbol at a timestamp. <br>
+ * - A lookup in the ordersCache of the symbol finds the nearest snapshot of bids and asks, before or after the
+ * timestamp <br>
+ * - On a miss, TopOrdersFinder derives both sides in one scan of the quotes, and the snapshot is published for both
+ * <br>
+ * - A batch of requests is grouped by symbol and each group is answered in timestamp order by a single forward
+ * sweep, every book being derived from the previous one of the sweep, or from a nearer cached snapshot <br>
+ * - Concurrent misses at the same symbol and timestamp are coalesced: one request derives the snapshot, the others
+ * wait for it <br>
+ * The one sided TopOrdersFinderStrategy implementations take their side from the same snapshots. <br>
+ * The best bid and ask alone are read from the TopOfBookSeries of the symbol, without any snapshot. <br>
+ * The ordersCache of a symbol is only read through SymbolLanes, on the lane of the symbol when the lanes are enabled,
+ * so the binary server and the one sided strategies are served on the lanes as the REST requests. <br>
+ * The lookup, replay and format stages of the requests, and their cache hits and misses, are recorded in
+ * OrderBookMetrics. <br>
+ */
+@Component
+public class OrderBookFinder {
+    private static final Logger log = LoggerFactory.getLogger(OrderBookFinder.class);
+
+    private final TopOrdersFinder topOrdersFinder;
+
+    private final OrdersCacheManager ordersCacheManager;
+
+    private final OrderBookMetrics orderBookMetrics;
+
+    private final Map<String, Symbol> symbolMap;
+
+    private final int topOrdersLimit;
+
+    private final SymbolLanes symbolLanes;
+
+    // derivations of the orders running for a symbol and timestamp, joined by the concurrent identical requests
+    private final SingleFlight<OrderBookKey, OrdersSnapshot> ordersCalls;
+
+    public OrderBookFinder(TopOrdersFinder topOrdersFinder, OrdersCacheManager ordersCacheManager,
+                           OrderBookMetrics orderBookMetrics, Map<String, Symbol> symbolMap,
+                           @Value("${top.orders.limit}") int topOrdersLimit, SymbolLanes symbolLanes) {
+        this.topOrdersFinder = topOrdersFinder;
+        this.ordersCacheManager = ordersCacheManager;
+        this.orderBookMetrics = orderBookMetrics;
+        this.symbolMap = symbolMap;
+        this.topOrdersLimit = topOrdersLimit;
+        this.symbolLanes = symbolLanes;
+        this.ordersCalls = new SingleFlight<>(orderBookMetrics::recordCoalescedOrders);
+    }
+
+    /**
+     * Appends the top bids and the top asks of the symbol at timestamp, on two lines
+     * @param symbolName - name of the symbol for which the order book is to be calculated
+     * @param timestamp - time in epoch nanoseconds at which the order book is to be calculated
+     * @param buffer - buffer the formatted top 5 bids and asks are appended to
+     * @return OrdersSnapshot - the appended orders, null if timestamp is before the first cached snapshot
+     */
+    public OrdersSnapshot appendOrderBook(String symbolName, long timestamp, ResponseBuffer buffer) {
+        log.debug("Processing order book for symbol: {} at timestamp: {}", symbolName, timestamp);
+        Symbol symbol = symbolMap.get(symbolName);
+        OrdersSnapshot orders = findOrders(symbol, timestamp);
+        long formatStartNanos = System.nanoTime();
+        appendOrderBook(symbol, orders, buffer);
+        orderBookMetrics.recordStage(OrderBookMetrics.Stage.FORMAT, System.nanoTime() - formatStartNanos);
+        return orders;
+    }
+
+    /**
+     * Appends the best bid and the best ask of the symbol at timestamp, on two lines, as appendOrderBook with a
+     * top.orders.limit of 1. They are found by binary search of the TopOfBookSeries of the symbol.
+     * @param symbolName - name of the symbol for which the top of the book is to be found
+     * @param timestamp - time in epoch nanoseconds at which the top of the book is to be found
+     * @param buffer - buffer the formatted best bid and ask are appended to
+     */
+    public void appendTopOfBook(String symbolName, long timestamp, ResponseBuffer buffer) {
+        long startNanos = System.nanoTime();
+        Symbol symbol = symbolMap.get(symbolName);
+        // too old for the book is too old for its top
+        TopOfBookSeries topOfBook = symbolLanes.call(symbolName,
+                () -> symbol.getOrdersCache().floorKey(timestamp) == null ? null : symbol.getTopOfBook());
+        OutputFormatter.appendTopBid(buffer, topOfBook == null ? null : topOfBook.getBids(), timestamp);
+        buffer.append('\n');
+        OutputFormatter.appendTopAsk(buffer, topOfBook == null ? null : topOfBook.getAsks(), timestamp);
+        orderBookMetrics.recordStage(OrderBookMetrics.Stage.LOOKUP, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Finds the order books of a batch of requests. The requests of each symbol are sorted by timestamp and
+     * answered by a forward sweep over the quotes of the symbol on its lane, the symbols being swept in parallel. <br>
+     * The books of the sweep are not published in ordersCache, so that a batch does not evict the snapshots of
+     * the other requests. <br>
+     * @param symbolNames - valid symbol of each request, null for the requests to skip
+     * @param timestamps - time in epoch nanoseconds of each request
+     * @return String[] - formatted top bids and asks of each request as appendOrderBook, in request order, null for
+     * the skipped requests
+     */
+    public String[] findOrderBooks(String[] symbolNames, long[] timestamps) {
+        Map<String, List<Integer>> requestsBySymbol = IntStream.range(0, symbolNames.length)
+                .filter(request -> symbolNames[request] != null)
+                .boxed()
+                .collect(Collectors.groupingBy(request -> symbolNames[request]));
+        log.info("Processing order books of {} requests for {} symbols", symbolNames.length,
+                requestsBySymbol.size());
+
+        String[] orderBooks = new String[symbolNames.length];
+        requestsBySymbol.entrySet()
+                .parallelStream()
+                .forEach(entry -> {
+                    Symbol symbol = symbolMap.get(entry.getKey());
+                    symbolLanes.run(entry.getKey(), () -> sweepOrderBooks(symbol, entry.getValue(), timestamps,
+                            orderBooks));
+                });
+        return orderBooks;
+    }
+
+    /**
+     * Answers the requests of a symbol in timestamp order, each book being derived from the previous one unless the
+     * cache has a later snapshot at or before the timestamp
+     */
+    private void sweepOrderBooks(Symbol symbol, List<Integer> requests, long[] timestamps, String[] orderBooks) {
+        requests.sort(Comparator.comparingLong(request -> timestamps[request]));
+        ResponseBuffer buffer = new ResponseBuffer();
+        OrdersSnapshot orders = null;
+        long ordersTimestamp = Long.MIN_VALUE;
+        for (int request : requests) {
+            long timestamp = timestamps[request];
+            if (orders == null || ordersTimestamp != timestamp) {
+                Map.Entry<Long, OrdersSnapshot> nearestEntry = symbol.getOrdersCache().floorEntry(timestamp);
+                if (nearestEntry != null && (orders == null || nearestEntry.getKey() > ordersTimestamp)) {
+                    orders = nearestEntry.getValue();
+                    ordersTimestamp = nearestEntry.getKey();
+                }
+                if (orders != null
+                        && (ordersTimestamp != timestamp || !orders.isCurrent(symbol.getQuotes(), timestamp))) {
+                    orders = topOrdersFinder.findTopOrders(orders, ordersTimestamp, symbol, timestamp);
+                    ordersTimestamp = timestamp;
+                }
+            }
+            appendOrderBook(symbol, orders, buffer.reset());
+            orderBooks[request] = buffer.toString();
+        }
+    }
+
+    private void appendOrderBook(Symbol symbol, OrdersSnapshot orders, ResponseBuffer buffer) {
+        OutputFormatter.appendBids(buffer, symbol.getQuotes(), orders, topOrdersLimit);
+        buffer.append('\n');
+        OutputFormatter.appendAsks(buffer, symbol.getQuotes(), orders, topOrdersLimit);
+    }
+
+    /**
+     * findOrders performs following steps in finding the bids and asks <br>
+     * 1. Finds the floorEntry timestamp (i.e. greatest timestamp less than or equal to input timestamp) in
+     * ordersCache. If it is the input timestamp, returns already calculated orders, unless quotes were appended since
+     * at or before the timestamp <br>
+     * 2. If not, calculates the bids and asks from the snapshot of floorEntry timestamp, or from the snapshot of the
+     * next cached timestamp backwards if fewer quotes started in between <br>
+     * 3. Caches the snapshot in ordersCache for the input timestamp through OrdersCacheManager, unless a concurrent
+     * request already did, or replaces the cached snapshot it was refreshed from <br>
+     * Concurrent requests missing the same timestamp wait for the first one to derive the snapshot. <br>
+     * Snapshots in ordersCache are immutable, hence this method is safe to be called by concurrent requests. It runs
+     * on the lane of the symbol when SymbolLanes is enabled. <br>
+     * @param symbol - symbol for which the orders are to be calculated
+     * @param timestamp - time in epoch nanoseconds at which the orders are to be calculated
+     * @return OrdersSnapshot - bids and asks at timestamp, null if timestamp is before the first cached snapshot
+     */
+    public OrdersSnapshot findOrders(Symbol symbol, long timestamp) {
+        return symbolLanes.call(symbol.getSymbol(), () -> findOrdersOnLane(symbol, timestamp));
+    }
+
+    private OrdersSnapshot findOrdersOnLane(Symbol symbol, long timestamp) {
+        orderBookMetrics.trackSymbol(symbol.getSymbol());
+        long lookupStartNanos = System.nanoTime();
+        Map.Entry<Long, OrdersSnapshot> nearestEntry = nearestEntry(symbol, timestamp);
+        orderBookMetrics.recordStage(OrderBookMetrics.Stage.LOOKUP, System.nanoTime() - lookupStartNanos);
+        if (nearestEntry == null) {
+            log.debug("{}@{}: {}", symbol.getSymbol(), timestamp, OutputFormatter.TOO_OLD_TIMESTAMP);
+            return null;
+        }
+
+        OrdersSnapshot nearestOrders = nearestEntry.getValue();
+        long nearestTimestamp = nearestEntry.getKey();
+        if (nearestTimestamp == timestamp && nearestOrders.isCurrent(symbol.getQuotes(), timestamp)) {
+            log.debug("Request found in cache - returning result from cache");
+            ordersCacheManager.recordHit(nearestOrders);
+            orderBookMetrics.recordCacheRequest(true);
+            return nearestOrders;
+        }
+        return ordersCalls.execute(new OrderBookKey(symbol.getSymbol(), timestamp),
+                () -> deriveOrders(symbol, timestamp, nearestTimestamp, nearestOrders));
+    }
+
+    /**
+     * Finds the cached snapshot nearest to timestamp, i.e. with the fewest quotes started in between: the snapshot at
+     * or before timestamp, or the one after timestamp, which is run backwards, if it is current and nearer
+     * @return Map.Entry - nearest snapshot, null if timestamp is before the first cached snapshot
+     */
+    private Map.Entry<Long, OrdersSnapshot> nearestEntry(Symbol symbol, long timestamp) {
+        ConcurrentNavigableMap<Long, OrdersSnapshot> ordersCache = symbol.getOrdersCache();
+        Map.Entry<Long, OrdersSnapshot> floorEntry = ordersCache.floorEntry(timestamp);
+        if (floorEntry == null || floorEntry.getKey() == timestamp) {
+            return floorEntry;
+        }
+        Map.Entry<Long, OrdersSnapshot> higherEntry = ordersCache.higherEntry(timestamp);
+        QuoteStore quotes = symbol.getQuotes();
+        // a stale snapshot misses quotes appended since, which cannot be run backwards
+        if (higherEntry == null || !higherEntry.getValue().isCurrent(quotes, higherEntry.getKey())) {
+            return floorEntry;
+        }
+        int floorQuotesIndex = floorEntry.getValue().getQuotesIndex();
+        int quotesIndex = quotes.firstRowStartingFrom(timestamp + 1, floorQuotesIndex);
+        int higherQuotesIndex = higherEntry.getValue().getQuotesIndex();
+        return higherQuotesIndex - quotesIndex < quotesIndex - floorQuotesIndex ? higherEntry : floorEntry;
+    }
+
+    /**
+     * Derives the orders at timestamp from the nearest cached snapshot, and caches them
+     */
+    private OrdersSnapshot deriveOrders(Symbol symbol, long timestamp, long nearestTimestamp,
+                                        OrdersSnapshot nearestOrders) {
+        ordersCacheManager.recordMiss(nearestOrders);
+        orderBookMetrics.recordCacheRequest(false);
+        if (nearestTimestamp != timestamp) {
+            log.debug("Finding orders with info: timestamp: {}, nearestTimestamp: {}, quotesStartIndex: {}",
+                    timestamp, nearestTimestamp, nearestOrders.getQuotesIndex());
+            OrdersSnapshot orders = topOrdersFinder.findTopOrders(nearestOrders, nearestTimestamp, symbol, timestamp,
+                    orderBookMetrics);
+            return ordersCacheManager.publish(symbol, timestamp, orders);
+        }
+        log.debug("Refreshing cached orders at timestamp: {} with appended quotes from quotesStartIndex: {}",
+                timestamp, nearestOrders.getQuotesIndex());
+        OrdersSnapshot orders = topOrdersFinder.findTopOrders(nearestOrders, timestamp, symbol, timestamp,
+                orderBookMetrics);
+        return ordersCacheManager.refresh(symbol, timestamp, nearestOrders, orders);
+    }
+}
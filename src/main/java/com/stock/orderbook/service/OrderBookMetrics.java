@@ -0,0 +1,192 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * OrderBookMetrics records the metrics of the order book requests in the Micrometer registry, exposed by the
+ * actuator e.g. at /actuator/prometheus. <br>
+ * - orderbook.request.stage: latency of each stage of a request, as HDR histogram percentiles and Prometheus
+ * buckets <br>
+ * - orderbook.cache.requests: requests answered from the cached snapshot at their timestamp (hit) or computed from
+ * an earlier one (miss) <br>
+ * - orderbook.replay.quotes: number of quotes replayed from the cached snapshot by the missed requests <br>
+ * - orderbook.cache.symbol.bytes: estimated bytes of the cached snapshots of each requested symbol, only the
+ * requested symbols having a gauge so that the number of series stays bounded by the traffic <br>
+ * - orderbook.cache.*: the CacheStats of OrdersCacheManager <br>
+ * - orderbook.response.cache.requests: order book requests answered from the rendered response cache (hit) or
+ * rendered (miss) <br>
+ * - orderbook.requests.coalesced: requests which waited for a concurrent identical request to derive the orders
+ * (cache=orders) or render the response (cache=response), instead of computing them again <br>
+ * - orderbook.lane.queue.depth: tasks waiting on each lane of SymbolLanes, and orderbook.lane.moves: symbols moved
+ * to another lane by the rebalancing <br>
+ * The meters of the hot path are registered upfront, so recording a value does not look up the registry. <br>
+ */
+@Component
+public class OrderBookMetrics {
+    /**
+     * Stages of a request: validation, lookup of the nearest cached snapshot, removal of the expired quotes and
+     * insertion of the started quotes of a miss, and rendering of the response
+     */
+    public enum Stage {
+        VALIDATE,
+        LOOKUP,
+        EXPIRY,
+        REPLAY,
+        FORMAT
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final OrdersCacheManager ordersCacheManager;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final DistributionSummary replayedQuotes;
+    private final Counter responseHits;
+    private final Counter responseMisses;
+    private final Counter coalescedOrders;
+    private final Counter coalescedResponses;
+    private final Map<String, Gauge> symbolGauges = new ConcurrentHashMap<>();
+
+    public OrderBookMetrics(MeterRegistry meterRegistry, OrdersCacheManager ordersCacheManager,
+                            SymbolLanes symbolLanes) {
+        this.meterRegistry = meterRegistry;
+        this.ordersCacheManager = ordersCacheManager;
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("orderbook.request.stage")
+                    .description("Latency of a stage of the order book requests")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(meterRegistry);
+        }
+        cacheHits = cacheRequests("hit");
+        cacheMisses = cacheRequests("miss");
+        replayedQuotes = DistributionSummary.builder("orderbook.replay.quotes")
+                .description("Quotes replayed from the cached snapshot by a missed request")
+                .baseUnit("quotes")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1_000_000.0)
+                .register(meterRegistry);
+        responseHits = responseCacheRequests("hit");
+        responseMisses = responseCacheRequests("miss");
+        coalescedOrders = coalescedRequests("orders");
+        coalescedResponses = coalescedRequests("response");
+        cacheGauge("orderbook.cache.entries", "Cached snapshots which can be evicted", CacheStats::getEntryCount);
+        cacheGauge("orderbook.cache.pinned", "Pinned checkpoint snapshots", CacheStats::getPinnedCount);
+        cacheGauge("orderbook.cache.bytes", "Estimated bytes of all cached snapshots", CacheStats::getEstimatedBytes);
+        cacheGauge("orderbook.cache.evictions", "Snapshots evicted so far", CacheStats::getEvictions);
+        for (int i = 0; i < symbolLanes.getLaneCount(); i++) {
+            int lane = i;
+            Gauge.builder("orderbook.lane.queue.depth", symbolLanes, lanes -> lanes.getQueueDepth(lane))
+                    .description("Tasks waiting on the lane")
+                    .tag("lane", Integer.toString(lane))
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("orderbook.lane.moves", symbolLanes, SymbolLanes::getMoves)
+                .description("Symbols moved to another lane by the rebalancing of the hot symbols")
+                .register(meterRegistry);
+    }
+
+    private Counter cacheRequests(String result) {
+        return Counter.builder("orderbook.cache.requests")
+                .description("Requests answered from the snapshot cached at their timestamp or computed")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter responseCacheRequests(String result) {
+        return Counter.builder("orderbook.response.cache.requests")
+                .description("Order book requests answered from the rendered response cache or rendered")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter coalescedRequests(String cache) {
+        return Counter.builder("orderbook.requests.coalesced")
+                .description("Requests which waited for a concurrent identical request instead of computing again")
+                .tag("cache", cache)
+                .register(meterRegistry);
+    }
+
+    private void cacheGauge(String name, String description, ToDoubleFunction<CacheStats> statistic) {
+        Gauge.builder(name, ordersCacheManager, manager -> statistic.applyAsDouble(manager.getStats()))
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param stage - stage of the request
+     * @param nanos - duration of the stage in nanoseconds
+     */
+    public void recordStage(Stage stage, long nanos) {
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param hit - whether the snapshot was cached at the requested timestamp
+     */
+    public void recordCacheRequest(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    /**
+     * @param hit - whether the rendered response was cached and current
+     */
+    public void recordResponseCacheRequest(boolean hit) {
+        (hit ? responseHits : responseMisses).increment();
+    }
+
+    /**
+     * Records a request which waited for the orders derived by a concurrent request at the same timestamp
+     */
+    public void recordCoalescedOrders() {
+        coalescedOrders.increment();
+    }
+
+    /**
+     * Records a request which waited for the response rendered by a concurrent request at the same timestamp
+     */
+    public void recordCoalescedResponse() {
+        coalescedResponses.increment();
+    }
+
+    /**
+     * @param quotes - number of quotes replayed by a missed request
+     */
+    public void recordReplay(int quotes) {
+        replayedQuotes.record(quotes);
+    }
+
+    /**
+     * Registers the cache memory gauge of a symbol on its first request
+     * @param symbolName - name of the requested symbol
+     */
+    public void trackSymbol(String symbolName) {
+        if (!symbolGauges.containsKey(symbolName)) {
+            symbolGauges.computeIfAbsent(symbolName, name -> Gauge.builder("orderbook.cache.symbol.bytes",
+                    ordersCacheManager, manager -> manager.getEstimatedBytes(name))
+                    .description("Estimated bytes of the cached snapshots of the symbol")
+                    .baseUnit("bytes")
+                    .tag("symbol", name)
+                    .register(meterRegistry));
+        }
+    }
+}
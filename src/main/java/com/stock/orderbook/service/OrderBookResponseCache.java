@@ -0,0 +1,153 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrderBookKey;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.RenderedOrderBook;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.SingleFlight;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * OrderBookResponseCache holds the rendered responses of the order book requests of the hot symbols and timestamps,
+ * e.g. of the many clients replaying the same market event. <br>
+ * - A hit returns the bytes as rendered, with their entity tag, without finding or formatting the orders <br>
+ * - Concurrent misses at the same symbol and timestamp are coalesced: one request renders the response, the others
+ * wait for it <br>
+ * - A response is no longer served once quotes starting at or before its timestamp are appended, it is rendered
+ * again instead <br>
+ * - The bytes of the responses are bounded by orders.response.cache.max.bytes (0 disables the cache). The request
+ * exceeding the bound evicts responses with the CLOCK algorithm, as OrdersCacheManager <br>
+ */
+@Component
+public class OrderBookResponseCache {
+    /**
+     * Estimated bytes of a cached response besides its body: key, entity tag, map and clock nodes
+     */
+    static final long ENTRY_OVERHEAD_BYTES = 192;
+
+    private final OrderBookFinder orderBookFinder;
+
+    private final Map<String, Symbol> symbolMap;
+
+    private final OrderBookMetrics orderBookMetrics;
+
+    private final long maxBytes;
+
+    private final Map<OrderBookKey, RenderedOrderBook> responses = new ConcurrentHashMap<>();
+    // clock of the cached keys, the head being the position of the clock hand
+    private final Queue<OrderBookKey> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final SingleFlight<OrderBookKey, RenderedOrderBook> renders;
+
+    public OrderBookResponseCache(OrderBookFinder orderBookFinder, Map<String, Symbol> symbolMap,
+                                  OrderBookMetrics orderBookMetrics,
+                                  @Value("${orders.response.cache.max.bytes:16777216}") long maxBytes) {
+        this.orderBookFinder = orderBookFinder;
+        this.symbolMap = symbolMap;
+        this.orderBookMetrics = orderBookMetrics;
+        this.maxBytes = maxBytes;
+        this.renders = new SingleFlight<>(orderBookMetrics::recordCoalescedResponse);
+    }
+
+    /**
+     * @param symbolName - valid symbol of the order book
+     * @param timestamp - time in epoch nanoseconds of the order book
+     * @return RenderedOrderBook - top bids and asks of the symbol at timestamp, rendered as OrderBookFinder
+     * appendOrderBook
+     */
+    public RenderedOrderBook getOrderBook(String symbolName, long timestamp) {
+        Symbol symbol = symbolMap.get(symbolName);
+        OrderBookKey key = new OrderBookKey(symbolName, timestamp);
+        RenderedOrderBook orderBook = responses.get(key);
+        if (orderBook != null && orderBook.isCurrent(symbol.getQuotes(), timestamp)) {
+            orderBook.setReferenced(true);
+            orderBookMetrics.recordResponseCacheRequest(true);
+            return orderBook;
+        }
+        return renders.execute(key, () -> render(key));
+    }
+
+    private RenderedOrderBook render(OrderBookKey key) {
+        orderBookMetrics.recordResponseCacheRequest(false);
+        ResponseBuffer buffer = ResponseBuffer.forCurrentThread();
+        OrdersSnapshot orders = orderBookFinder.appendOrderBook(key.getSymbol(), key.getTimestamp(), buffer);
+        byte[] body = buffer.toByteArray();
+        CRC32C checksum = new CRC32C();
+        checksum.update(body);
+        String etag = "\"" + Long.toHexString(checksum.getValue()) + '-' + Integer.toHexString(body.length) + "\"";
+        RenderedOrderBook orderBook = new RenderedOrderBook(body, etag, orders == null ? -1 : orders.getQuotesIndex());
+        if (maxBytes > 0) {
+            cache(key, orderBook);
+        }
+        return orderBook;
+    }
+
+    private void cache(OrderBookKey key, RenderedOrderBook orderBook) {
+        RenderedOrderBook replaced = responses.put(key, orderBook);
+        if (replaced == null) {
+            clock.add(key);
+            cachedBytes.addAndGet(estimatedBytes(orderBook));
+        } else {
+            cachedBytes.addAndGet(estimatedBytes(orderBook) - estimatedBytes(replaced));
+        }
+        if (cachedBytes.get() > maxBytes && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Sweeps the clock until the responses are within the bound, visiting each response at most twice
+     */
+    private void evict() {
+        long visits = 2L * responses.size();
+        OrderBookKey key;
+        while (cachedBytes.get() > maxBytes && visits-- > 0 && (key = clock.poll()) != null) {
+            RenderedOrderBook orderBook = responses.get(key);
+            if (orderBook == null) {
+                continue;
+            }
+            if (orderBook.isReferenced()) {
+                orderBook.setReferenced(false);
+                clock.add(key);
+            } else if (responses.remove(key, orderBook)) {
+                cachedBytes.addAndGet(-estimatedBytes(orderBook));
+            } else {
+                // replaced by a newer rendering meanwhile
+                clock.add(key);
+            }
+        }
+    }
+
+    private static long estimatedBytes(RenderedOrderBook orderBook) {
+        return orderBook.getBody().length + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * @return long - estimated bytes of the cached responses
+     */
+    public long getCachedBytes() {
+        return cachedBytes.get();
+    }
+
+    /**
+     * @return int - number of cached responses
+     */
+    public int size() {
+        return responses.size();
+    }
+}
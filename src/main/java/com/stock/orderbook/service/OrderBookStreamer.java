@@ -0,0 +1,131 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrderType;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.OutputFormatter;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.TimestampParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * OrderBookStreamer streams the top bids and asks of a symbol over a range of market time as newline delimited JSON,
+ * one line per point e.g. <br>
+ * {"timestamp":"2021-02-18T10:10:10Z","bids":[{"price":128.31,"quantity":100}],"asks":[{"price":128.33,...}]} <br>
+ * - Points are every step of market time, or every change of the top orders <br>
+ * - The book is replayed forward once, from the cached snapshot at or before the start, or from the first quote if
+ * the start is before the first cached snapshot, by a single pair of treap editors, which update their own nodes in
+ * place. Memory does not depend on the length of the range <br>
+ * - Only the lookup of the starting snapshot reads the ordersCache, through SymbolLanes, so a stream does not hold
+ * the lane of its symbol while it is written <br>
+ * - Lines are written in chunks to the blocking output stream, so a slow client pauses the replay <br>
+ */
+@Component
+public class OrderBookStreamer {
+    private static final Logger log = LoggerFactory.getLogger(OrderBookStreamer.class);
+
+    /**
+     * Rendered lines are written to the output stream once they reach this size
+     */
+    private static final int WRITE_CHUNK_BYTES = 8192;
+
+    private final TopOrdersFinder topOrdersFinder;
+
+    private final Map<String, Symbol> symbolMap;
+
+    private final int topOrdersLimit;
+
+    private final SymbolLanes symbolLanes;
+
+    public OrderBookStreamer(TopOrdersFinder topOrdersFinder, Map<String, Symbol> symbolMap,
+                             @Value("${top.orders.limit}") int topOrdersLimit, SymbolLanes symbolLanes) {
+        this.topOrdersFinder = topOrdersFinder;
+        this.symbolMap = symbolMap;
+        this.topOrdersLimit = topOrdersLimit;
+        this.symbolLanes = symbolLanes;
+    }
+
+    /**
+     * Writes the top orders of the symbol from start to end
+     * @param symbolName - name of the symbol of the order book
+     * @param start - epoch nanoseconds of the first point
+     * @param end - epoch nanoseconds after which no point is written
+     * @param stepNanos - market time between points, 0 for a point at every change of the top orders
+     * @param outputStream - stream the lines are written to
+     * @return long - number of points written
+     * @throws IOException - if the stream fails, e.g. the client disconnected
+     */
+    public long streamOrderBooks(String symbolName, long start, long end, long stepNanos,
+                                 OutputStream outputStream) throws IOException {
+        Symbol symbol = symbolMap.get(symbolName);
+        log.info("Streaming order books for symbol: {} from: {} to: {}", symbol.getSymbol(), start, end);
+        QuoteStore quotes = symbol.getQuotes();
+        Map.Entry<Long, OrdersSnapshot> nearestEntry = symbolLanes.call(symbolName,
+                () -> symbol.getOrdersCache().floorEntry(start));
+        // before the first cached snapshot, the quotes are replayed from the first one on an empty book
+        OrdersSnapshot orders = nearestEntry != null ? nearestEntry.getValue()
+                : new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0);
+        OrdersTreap.Editor bids = orders.getBids().edit(quotes::compareBids);
+        OrdersTreap.Editor asks = orders.getAsks().edit(quotes::compareAsks);
+        int quotesIndex = orders.getQuotesIndex();
+        long ordersTimestamp = nearestEntry != null ? nearestEntry.getKey() : start;
+
+        ResponseBuffer buffer = new ResponseBuffer(2 * WRITE_CHUNK_BYTES);
+        ResponseBuffer levels = new ResponseBuffer();
+        ResponseBuffer previousLevels = new ResponseBuffer();
+        long pointCount = 0;
+        long timestamp = start;
+        while (timestamp <= end) {
+            quotesIndex = topOrdersFinder.advanceOrders(bids, asks, quotesIndex, quotes, ordersTimestamp, timestamp);
+            ordersTimestamp = timestamp;
+
+            levels.reset().appendAscii("\"bids\":");
+            OutputFormatter.appendJsonOrders(levels, quotes, bids.topRows(topOrdersLimit), OrderType.BIDS);
+            levels.appendAscii(",\"asks\":");
+            OutputFormatter.appendJsonOrders(levels, quotes, asks.topRows(topOrdersLimit), OrderType.ASKS);
+            if (stepNanos > 0 || !levels.contentEquals(previousLevels)) {
+                buffer.appendAscii("{\"timestamp\":\"");
+                TimestampParser.append(buffer, timestamp);
+                buffer.appendAscii("\",").append(levels).append('}').append('\n');
+                pointCount++;
+                if (buffer.length() >= WRITE_CHUNK_BYTES) {
+                    buffer.writeTo(outputStream);
+                    buffer.reset();
+                }
+                ResponseBuffer swapped = previousLevels;
+                previousLevels = levels;
+                levels = swapped;
+            }
+
+            if (stepNanos > 0) {
+                if (timestamp > end - stepNanos) {
+                    break;
+                }
+                timestamp += stepNanos;
+            } else {
+                timestamp = nextChangeTimestamp(quotes, quotesIndex, timestamp);
+            }
+        }
+        buffer.writeTo(outputStream);
+        outputStream.flush();
+        return pointCount;
+    }
+
+    /**
+     * @return long - earliest epoch nanoseconds after timestamp at which a quote starts or ends, Long.MAX_VALUE if
+     * none
+     */
+    private long nextChangeTimestamp(QuoteStore quotes, int quotesIndex, long timestamp) {
+        long nextStart = quotesIndex < quotes.size() ? quotes.getStartTime(quotesIndex) : Long.MAX_VALUE;
+        return Math.min(nextStart, quotes.getEndTimeIndex().nextEndTimeAfter(timestamp));
+    }
+}
@@ -0,0 +1,363 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.CacheStats;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OrdersCacheManager bounds the memory of the ordersCache snapshots of all the symbols. <br>
+ * - Snapshots computed by requests are published through the manager, which accounts their estimated bytes and
+ * the number of entries of each symbol <br>
+ * - When the global memory budget or the entry cap of a symbol is exceeded, a single background thread evicts
+ * snapshots with the CLOCK algorithm (second chance LRU): readers only set the referenced flag of a snapshot,
+ * which the clock hand clears once before the snapshot can be evicted <br>
+ * - Pinned checkpoints (e.g. the initial empty snapshot) are never evicted, and a snapshot is only evicted if the
+ * requests falling back to the snapshot before it replay at most maxReplayQuotes quotes <br>
+ * - Hits, misses and evictions are counted for CacheStats, and the estimated bytes of each symbol for the metrics
+ * of the symbols <br>
+ * - All the snapshots of a symbol are dropped when it is unloaded <br>
+ * - The eviction thread reads and removes the snapshots of a symbol through SymbolLanes, on the lane of the symbol
+ * when the lanes are enabled <br>
+ * - A snapshot which is no longer current after quotes are appended is replaced by its refreshed snapshot <br>
+ * Request threads never wait for eviction, so the caches may briefly exceed the limits. <br>
+ */
+@Component
+public class OrdersCacheManager implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(OrdersCacheManager.class);
+    // a sweep which could not get within limits is retried once the entries grow by 1/SWEEP_RETRY_GROWTH
+    private static final int SWEEP_RETRY_GROWTH = 8;
+
+    private final long maxBytes;
+    private final int maxEntriesPerSymbol;
+    private final int maxReplayQuotes;
+    private final SymbolLanes symbolLanes;
+    private final Executor evictionExecutor;
+
+    // clock of evictable entries, the head being the position of the clock hand
+    private final Queue<CacheEntry> clock = new ConcurrentLinkedQueue<>();
+    private final Map<String, SymbolUsage> symbolUsages = new ConcurrentHashMap<>();
+    private final AtomicInteger symbolsOverCap = new AtomicInteger();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private volatile long sweepRetryEntryCount;
+
+    @Autowired
+    public OrdersCacheManager(@Value("${orders.cache.max.bytes:268435456}") long maxBytes,
+                              @Value("${orders.cache.max.entries.per.symbol:100000}") int maxEntriesPerSymbol,
+                              @Value("${orders.cache.max.replay.quotes:10000}") int maxReplayQuotes,
+                              SymbolLanes symbolLanes) {
+        this(maxBytes, maxEntriesPerSymbol, maxReplayQuotes, symbolLanes,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "orders-cache-evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    OrdersCacheManager(long maxBytes, int maxEntriesPerSymbol, int maxReplayQuotes, SymbolLanes symbolLanes,
+                       Executor evictionExecutor) {
+        this.maxBytes = maxBytes;
+        this.maxEntriesPerSymbol = maxEntriesPerSymbol;
+        this.maxReplayQuotes = maxReplayQuotes;
+        this.symbolLanes = symbolLanes;
+        this.evictionExecutor = evictionExecutor;
+    }
+
+    /**
+     * Stores a checkpoint snapshot which is never evicted
+     * @param symbol - symbol of the cache
+     * @param timestamp - epoch nanoseconds of the snapshot
+     * @param snapshot - pinned snapshot
+     */
+    public void pin(Symbol symbol, long timestamp, OrdersSnapshot snapshot) {
+        OrdersSnapshot replaced = symbol.getOrdersCache().put(timestamp, snapshot);
+        SymbolUsage symbolUsage = symbolUsage(symbol);
+        addBytes(symbolUsage, snapshot.estimatedBytes());
+        if (replaced != null && replaced.isPinned()) {
+            addBytes(symbolUsage, -replaced.estimatedBytes());
+        } else {
+            // a replaced evictable snapshot is released when the clock reaches it
+            pinnedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all the snapshots of an unloaded symbol, pinned or not, on the eviction thread. Snapshots published later
+     * by requests still running on the symbol are evicted as usual.
+     * @param symbol - symbol of the cache
+     */
+    public void discard(Symbol symbol) {
+        evictionExecutor.execute(() -> {
+            clock.removeIf(entry -> {
+                if (entry.symbol != symbol) {
+                    return false;
+                }
+                release(entry);
+                return true;
+            });
+            SymbolUsage symbolUsage = symbolUsage(symbol);
+            symbolLanes.run(symbol.getSymbol(), () -> {
+                for (OrdersSnapshot snapshot : symbol.getOrdersCache().values()) {
+                    if (snapshot.isPinned()) {
+                        pinnedCount.decrementAndGet();
+                        addBytes(symbolUsage, -snapshot.estimatedBytes());
+                    }
+                }
+                symbol.getOrdersCache().clear();
+            });
+        });
+    }
+
+    /**
+     * Counts a request answered from the snapshot cached at its timestamp
+     * @param snapshot - snapshot read from cache
+     */
+    public void recordHit(OrdersSnapshot snapshot) {
+        hits.increment();
+        snapshot.setReferenced(true);
+    }
+
+    /**
+     * Counts a request computed from the snapshot cached at an earlier timestamp
+     * @param baseSnapshot - snapshot read from cache from where the quotes are replayed
+     */
+    public void recordMiss(OrdersSnapshot baseSnapshot) {
+        misses.increment();
+        baseSnapshot.setReferenced(true);
+    }
+
+    /**
+     * Publishes a computed snapshot in cache, unless a concurrent request already published one for the timestamp,
+     * and schedules eviction if the cache limits are exceeded.
+     * @param symbol - symbol of the cache
+     * @param timestamp - epoch nanoseconds of the snapshot
+     * @param snapshot - computed snapshot
+     * @return OrdersSnapshot - the snapshot in cache for timestamp
+     */
+    public OrdersSnapshot publish(Symbol symbol, long timestamp, OrdersSnapshot snapshot) {
+        // concurrent requests for the same timestamp compute equal snapshots, the first published one is kept
+        OrdersSnapshot publishedSnapshot = symbol.getOrdersCache().putIfAbsent(timestamp, snapshot);
+        if (publishedSnapshot != null) {
+            return publishedSnapshot;
+        }
+        track(symbol, timestamp, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Replaces a snapshot which is no longer current with the snapshot derived from it with the appended quotes,
+     * unless a concurrent request already replaced it. A pinned snapshot stays pinned.
+     * @param symbol - symbol of the cache
+     * @param timestamp - epoch nanoseconds of the snapshot
+     * @param staleSnapshot - snapshot read from cache at timestamp
+     * @param snapshot - refreshed snapshot
+     * @return OrdersSnapshot - the snapshot in cache for timestamp
+     */
+    public OrdersSnapshot refresh(Symbol symbol, long timestamp, OrdersSnapshot staleSnapshot,
+                                  OrdersSnapshot snapshot) {
+        if (staleSnapshot.isPinned()) {
+            snapshot = snapshot.pinned();
+        }
+        if (!symbol.getOrdersCache().replace(timestamp, staleSnapshot, snapshot)) {
+            OrdersSnapshot publishedSnapshot = symbol.getOrdersCache().get(timestamp);
+            return publishedSnapshot != null ? publishedSnapshot : snapshot;
+        }
+        if (snapshot.isPinned()) {
+            addBytes(symbolUsage(symbol), snapshot.estimatedBytes() - staleSnapshot.estimatedBytes());
+        } else {
+            // the stale snapshot is released when the clock reaches it
+            track(symbol, timestamp, snapshot);
+        }
+        return snapshot;
+    }
+
+    private void track(Symbol symbol, long timestamp, OrdersSnapshot snapshot) {
+        SymbolUsage symbolUsage = symbolUsage(symbol);
+        clock.add(new CacheEntry(symbol, timestamp, snapshot, symbolUsage));
+        long entries = entryCount.incrementAndGet();
+        addBytes(symbolUsage, snapshot.estimatedBytes());
+        if (symbolUsage.entries.incrementAndGet() == maxEntriesPerSymbol + 1) {
+            symbolsOverCap.incrementAndGet();
+        }
+        if (isOverLimits() && entries >= sweepRetryEntryCount && evictionScheduled.compareAndSet(false, true)) {
+            evictionExecutor.execute(this::evict);
+        }
+    }
+
+    private SymbolUsage symbolUsage(Symbol symbol) {
+        return symbolUsages.computeIfAbsent(symbol.getSymbol(), name -> new SymbolUsage());
+    }
+
+    private void addBytes(SymbolUsage symbolUsage, long bytes) {
+        estimatedBytes.addAndGet(bytes);
+        symbolUsage.bytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param symbolName - name of the symbol
+     * @return long - estimated heap bytes of the cached snapshots of the symbol, pinned or not
+     */
+    public long getEstimatedBytes(String symbolName) {
+        SymbolUsage symbolUsage = symbolUsages.get(symbolName);
+        return symbolUsage == null ? 0 : symbolUsage.bytes.get();
+    }
+
+    /**
+     * @return CacheStats - current metrics of the caches
+     */
+    public CacheStats getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requestCount = hitCount + missCount;
+        return CacheStats.builder()
+                .entryCount(entryCount.get())
+                .pinnedCount(pinnedCount.get())
+                .estimatedBytes(estimatedBytes.get())
+                .maxBytes(maxBytes)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRatio(requestCount == 0 ? 0 : (double) hitCount / requestCount)
+                .evictions(evictions.sum())
+                .build();
+    }
+
+    /**
+     * Sweeps the clock until the caches are within limits, visiting each entry at most twice. Runs on the single
+     * eviction thread.
+     */
+    void evict() {
+        try {
+            long remainingSteps = 2 * entryCount.get();
+            while (remainingSteps-- > 0 && isOverLimits()) {
+                CacheEntry entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                symbolLanes.run(entry.symbol.getSymbol(), () -> sweep(entry));
+            }
+            if (isOverLimits()) {
+                // the remaining entries are needed to bound the replay, wait for more entries before sweeping again
+                long entries = entryCount.get();
+                sweepRetryEntryCount = entries + Math.max(1, entries / SWEEP_RETRY_GROWTH);
+                log.warn("Orders cache is over limits after eviction: {}", getStats());
+            }
+        } finally {
+            evictionScheduled.set(false);
+        }
+    }
+
+    /**
+     * Releases, keeps or evicts the entry under the clock hand
+     */
+    private void sweep(CacheEntry entry) {
+        if (entry.cache().get(entry.timestamp) != entry.snapshot) {
+            // replaced by a pinned checkpoint or a refreshed snapshot
+            release(entry);
+            return;
+        }
+        boolean overBudget = estimatedBytes.get() > maxBytes;
+        if ((!overBudget && entry.symbolUsage.entries.get() <= maxEntriesPerSymbol) || !isEvictable(entry)) {
+            clock.add(entry);
+        } else if (entry.snapshot.isReferenced()) {
+            // second chance for recently read snapshots
+            entry.snapshot.setReferenced(false);
+            clock.add(entry);
+        } else {
+            remove(entry);
+        }
+    }
+
+    private boolean isOverLimits() {
+        return estimatedBytes.get() > maxBytes || symbolsOverCap.get() > 0;
+    }
+
+    /**
+     * An entry is evictable if requests between the previous and next cached snapshots replay at most
+     * maxReplayQuotes quotes from the previous snapshot once the entry is removed
+     */
+    private boolean isEvictable(CacheEntry entry) {
+        Map.Entry<Long, OrdersSnapshot> previousEntry = entry.cache().lowerEntry(entry.timestamp);
+        if (previousEntry == null) {
+            return false;
+        }
+        Map.Entry<Long, OrdersSnapshot> nextEntry = entry.cache().higherEntry(entry.timestamp);
+        int replayEnd = nextEntry != null ? nextEntry.getValue().getQuotesIndex()
+                : entry.symbol.getQuotes().size();
+        return replayEnd - previousEntry.getValue().getQuotesIndex() <= maxReplayQuotes;
+    }
+
+    private void remove(CacheEntry entry) {
+        if (entry.cache().remove(entry.timestamp, entry.snapshot)) {
+            evictions.increment();
+        }
+        release(entry);
+    }
+
+    private void release(CacheEntry entry) {
+        entryCount.decrementAndGet();
+        addBytes(entry.symbolUsage, -entry.snapshot.estimatedBytes());
+        if (entry.symbolUsage.entries.decrementAndGet() == maxEntriesPerSymbol) {
+            symbolsOverCap.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (evictionExecutor instanceof ExecutorService) {
+            ((ExecutorService) evictionExecutor).shutdownNow();
+        }
+    }
+
+    /**
+     * Number of evictable entries and estimated bytes of all the snapshots of a symbol
+     */
+    private static final class SymbolUsage {
+        private final AtomicInteger entries = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    /**
+     * Evictable snapshot in the clock with the symbol it is published for
+     */
+    private static final class CacheEntry {
+        private final Symbol symbol;
+        private final long timestamp;
+        private final OrdersSnapshot snapshot;
+        private final SymbolUsage symbolUsage;
+
+        private CacheEntry(Symbol symbol, long timestamp, OrdersSnapshot snapshot, SymbolUsage symbolUsage) {
+            this.symbol = symbol;
+            this.timestamp = timestamp;
+            this.snapshot = snapshot;
+            this.symbolUsage = symbolUsage;
+        }
+
+        private ConcurrentNavigableMap<Long, OrdersSnapshot> cache() {
+            return symbol.getOrdersCache();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.config.CsvQuoteFileLoader;
+import com.stock.orderbook.config.CsvQuoteParser;
+import com.stock.orderbook.config.LazySymbolMap;
+import com.stock.orderbook.config.QuoteJournal;
+import com.stock.orderbook.config.QuoteSnapshotFile;
+import com.stock.orderbook.model.IngestResult;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuoteIngester appends quotes received live to the quote stores of their symbols, while requests are served. <br>
+ * - A batch of lines in the format of the quotes file is parsed by CsvQuoteParser into a store per symbol <br>
+ * - The quotes of each symbol go through a reorder buffer: quotes are held until quotes starting
+ * quotes.ingest.reorder.window later arrive, and are then appended in startTime order. Quotes arriving after quotes
+ * starting later than them were appended are rejected <br>
+ * - QuoteStore.appendRows extends the endTime index incrementally and publishes the appended quotes atomically, so
+ * requests never wait for ingestion. Cached snapshots missing the appended quotes are refreshed by the requests
+ * reading them, and checkpoints and the TopOfBookSeries are extended over the appended quotes <br>
+ * - The symbols of a batch are appended in parallel, each on its lane of SymbolLanes when the lanes are enabled, the
+ * batches one at a time <br>
+ * - Each batch is appended to the QuoteJournal before it is applied, in the same order, and the request returns once
+ * the journal is forced to disk. The journal is replayed through the same reorder buffers when the ingester is
+ * created, and compacted into the snapshot file by a background thread <br>
+ * Quotes of a symbol missing from the symbolMap create the symbol, unless the symbols are lazily loaded. <br>
+ */
+@Component
+public class QuoteIngester implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(QuoteIngester.class);
+    private static final long COMPACTION_CHECK_PERIOD_SECONDS = 1;
+
+    private final Map<String, Symbol> symbolMap;
+
+    private final OrdersCacheManager ordersCacheManager;
+
+    private final CheckpointBuilder checkpointBuilder;
+
+    private final String delimiter;
+
+    private final long reorderWindowNanos;
+
+    private final QuoteJournal quoteJournal;
+
+    private final SymbolLanes symbolLanes;
+
+    private final Map<String, ReorderBuffer> reorderBuffers = new ConcurrentHashMap<>();
+
+    // held while a batch is journaled and applied, so that batches are replayed in the order they were applied
+    private final Object ingestLock = new Object();
+
+    private final ScheduledExecutorService compactor;
+
+    /**
+     * Creates the ingester and replays the journal on top of the loaded symbols
+     * @throws IOException - is thrown if the journal cannot be replayed
+     */
+    public QuoteIngester(Map<String, Symbol> symbolMap, OrdersCacheManager ordersCacheManager,
+                         CheckpointBuilder checkpointBuilder, QuoteJournal quoteJournal, SymbolLanes symbolLanes,
+                         @Value("${quotes.input.csv.file.delimiter}") String delimiter,
+                         @Value("${quotes.ingest.reorder.window:0s}") Duration reorderWindow) throws IOException {
+        this.symbolMap = symbolMap;
+        this.ordersCacheManager = ordersCacheManager;
+        this.checkpointBuilder = checkpointBuilder;
+        this.quoteJournal = quoteJournal;
+        this.symbolLanes = symbolLanes;
+        this.delimiter = delimiter;
+        this.reorderWindowNanos = reorderWindow.toNanos();
+
+        quoteJournal.replay(this::apply);
+        if (quoteJournal.isEnabled()) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "quote-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfDue, COMPACTION_CHECK_PERIOD_SECONDS,
+                    COMPACTION_CHECK_PERIOD_SECONDS, TimeUnit.SECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * Appends a batch of quotes. Either all the lines are valid quotes and the batch is ingested, or nothing is.
+     * @param lines - lines of quotes in the format of the quotes file, optionally starting with the header line
+     * @return IngestResult - number of quotes appended, still buffered and rejected
+     * @throws IOException - is thrown if a line is not a valid quote
+     * @throws UncheckedIOException - is thrown if the batch cannot be journaled, the batch being applied unless its
+     * record could not be written
+     */
+    public IngestResult ingest(ByteBuffer lines) throws IOException {
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(delimiter);
+        csvQuoteParser.parse(lines, headerEnd(lines), lines.limit(), 0);
+        Map<String, QuoteStore> symbolToQuotesMap = csvQuoteParser.getSymbolToQuotesMap();
+        for (Map.Entry<String, QuoteStore> entry : symbolToQuotesMap.entrySet()) {
+            QuoteStore quotes = entry.getValue();
+            for (int row = 0; row < quotes.size(); row++) {
+                if (quotes.getEndTime(row) < quotes.getStartTime(row)) {
+                    throw new IOException("Quote of " + entry.getKey() + " ends before it starts: "
+                            + quotes.getQuote(entry.getKey(), row));
+                }
+            }
+        }
+
+        long[] counts;
+        try {
+            long journalPosition;
+            synchronized (ingestLock) {
+                journalPosition = quoteJournal.append(symbolToQuotesMap, false);
+                counts = apply(symbolToQuotesMap);
+            }
+            quoteJournal.awaitDurable(journalPosition);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal ingested quotes", e);
+        }
+        log.info("Ingested {} quotes of {} symbols: {} appended, {} buffered, {} rejected",
+                csvQuoteParser.getRowCount(), symbolToQuotesMap.size(), counts[0], counts[1], counts[2]);
+        return IngestResult.builder()
+                .appended(counts[0])
+                .buffered(counts[1])
+                .rejected(counts[2])
+                .build();
+    }
+
+    /**
+     * Appends the quotes of each symbol through its reorder buffer, in parallel
+     * @return long[] - number of quotes appended, still buffered and rejected
+     */
+    private long[] apply(Map<String, QuoteStore> symbolToQuotesMap) {
+        return symbolToQuotesMap.entrySet()
+                .parallelStream()
+                .map(entry -> ingest(entry.getKey(), entry.getValue()))
+                .reduce(new long[3], (counts1, counts2) -> new long[]{counts1[0] + counts2[0],
+                        counts1[1] + counts2[1], counts1[2] + counts2[2]});
+    }
+
+    /**
+     * Appends the quotes of a symbol through its reorder buffer, on the lane of the symbol
+     * @return long[] - number of quotes appended, still buffered and rejected
+     */
+    private long[] ingest(String symbolName, QuoteStore batch) {
+        Symbol symbol = symbolOf(symbolName);
+        if (symbol == null) {
+            log.warn("Rejected {} quotes of unknown symbol {}", batch.size(), symbolName);
+            return new long[]{0, 0, batch.size()};
+        }
+        return symbolLanes.call(symbolName, () -> append(symbol, batch));
+    }
+
+    private long[] append(Symbol symbol, QuoteStore batch) {
+        ReorderBuffer reorderBuffer = reorderBuffers.compute(symbol.getSymbol(), (name, buffer) ->
+                // a reloaded symbol has a new store, the quotes still pending for the unloaded store were journaled
+                buffer != null && buffer.quotes == symbol.getQuotes() ? buffer : new ReorderBuffer(symbol, buffer));
+        long[] counts;
+        synchronized (reorderBuffer) {
+            counts = reorderBuffer.add(batch);
+        }
+        if (counts[0] > 0) {
+            checkpointBuilder.extendCheckpoints(symbol);
+            symbol.setTopOfBook(symbol.getTopOfBook().append(symbol.getQuotes()));
+        }
+        return counts;
+    }
+
+    /**
+     * @return Symbol - symbol of the name, added to symbolMap if missing, null if the symbols are lazily loaded and
+     * none has the name
+     */
+    private Symbol symbolOf(String symbolName) {
+        if (symbolMap instanceof LazySymbolMap) {
+            return symbolMap.get(symbolName);
+        }
+        return symbolMap.computeIfAbsent(symbolName, this::newSymbol);
+    }
+
+    /**
+     * @return Symbol - symbol without quotes, sharing the dictionaries of the other symbols, with the initial empty
+     * snapshot
+     */
+    private Symbol newSymbol(String symbolName) {
+        log.info("Adding symbol {} of ingested quotes", symbolName);
+        QuoteStore quotes = symbolMap.values().stream()
+                .map(Symbol::getQuotes)
+                .map(anyQuotes -> new QuoteStore(anyQuotes.getMarketCenterDictionary(),
+                        anyQuotes.getQuoteConditionsDictionary(), anyQuotes.getSipfeedDictionary()))
+                .findAny()
+                .orElseGet(QuoteStore::new);
+        Symbol symbol = Symbol.builder()
+                .symbol(symbolName)
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, CsvQuoteFileLoader.TIMESTAMP_01_JAN_2021,
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        return symbol;
+    }
+
+    /**
+     * Compacts the journal into the snapshot file when due. The symbols are frozen and a new journal segment is
+     * started between two batches, then the frozen symbols are written while quotes are ingested.
+     */
+    synchronized void compactIfDue() {
+        if (!quoteJournal.isCompactionDue()) {
+            return;
+        }
+        try {
+            Map<String, Symbol> frozenSymbols;
+            long journalPosition;
+            long bufferedPosition;
+            synchronized (ingestLock) {
+                // frozen between two batches
+                frozenSymbols = QuoteSnapshotFile.frozenSymbols(symbolMap,
+                        QuoteSnapshotFile.freezeQuotes(symbolMap), symbolLanes);
+                journalPosition = quoteJournal.startSegment();
+                Map<String, QuoteStore> bufferedQuotes = new HashMap<>();
+                reorderBuffers.forEach((symbolName, reorderBuffer) -> {
+                    if (reorderBuffer.pending.size() > 0) {
+                        bufferedQuotes.put(symbolName, reorderBuffer.pending);
+                    }
+                });
+                bufferedPosition = bufferedQuotes.isEmpty() ? journalPosition
+                        : quoteJournal.append(bufferedQuotes, true);
+            }
+            quoteJournal.awaitDurable(bufferedPosition);
+            quoteJournal.compact(frozenSymbols, journalPosition);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to compact quote journal. {}", e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return int - index after the header line if lines start with it, 0 otherwise
+     */
+    private int headerEnd(ByteBuffer lines) {
+        byte[] header = ("symbol" + delimiter).getBytes(StandardCharsets.US_ASCII);
+        if (lines.limit() < header.length) {
+            return 0;
+        }
+        for (int i = 0; i < header.length; i++) {
+            if (lines.get(i) != header[i]) {
+                return 0;
+            }
+        }
+        int lineEnd = header.length;
+        while (lineEnd < lines.limit() && lines.get(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        return Math.min(lineEnd + 1, lines.limit());
+    }
+
+    /**
+     * Quotes of a symbol received but not appended yet, in a store sharing the dictionaries of the symbol store
+     */
+    private final class ReorderBuffer {
+        private final String symbolName;
+        private final QuoteStore quotes;
+        private final QuoteStore pending;
+        private long maxStartTime = Long.MIN_VALUE;
+
+        /**
+         * @param symbol - symbol the quotes are appended to
+         * @param previous - buffer of the previous store of the symbol before it was unloaded and reloaded, whose
+         * pending quotes are carried over, null if none
+         */
+        private ReorderBuffer(Symbol symbol, ReorderBuffer previous) {
+            this.symbolName = symbol.getSymbol();
+            this.quotes = symbol.getQuotes();
+            this.pending = new QuoteStore(quotes.getMarketCenterDictionary(), quotes.getQuoteConditionsDictionary(),
+                    quotes.getSipfeedDictionary());
+            if (previous != null) {
+                synchronized (previous) {
+                    addPending(previous.pending);
+                    maxStartTime = previous.maxStartTime;
+                }
+            }
+        }
+
+        /**
+         * Adds the batch to the pending quotes and appends the ones starting at least reorderWindow before the latest
+         * quote
+         * @return long[] - number of quotes appended, still buffered and rejected
+         */
+        private long[] add(QuoteStore batch) {
+            addPending(batch);
+
+            int size = quotes.size();
+            int rejected = size == 0 ? 0 : pending.firstRowStartingFrom(quotes.getStartTime(size - 1), 0);
+            if (rejected > 0) {
+                log.warn("Rejected {} quotes of {} starting before its last appended quote", rejected, symbolName);
+                pending.removeFirstRows(rejected);
+            }
+            if (pending.size() == 0) {
+                return new long[]{0, 0, rejected};
+            }
+            maxStartTime = Math.max(maxStartTime, pending.getStartTime(pending.size() - 1));
+            // quotes starting at or before the watermark are released
+            long watermark = maxStartTime - reorderWindowNanos;
+            int released = pending.firstRowStartingFrom(watermark + 1, 0);
+            quotes.appendRows(pending, 0, released);
+            pending.removeFirstRows(released);
+            return new long[]{released, pending.size(), rejected};
+        }
+
+        /**
+         * Adds the quotes to the pending quotes in startTime order, translating the codes of their dictionaries
+         */
+        private void addPending(QuoteStore batch) {
+            int[][] codes;
+            // dictionaries may be shared with the stores of other symbols
+            synchronized (quotes.getMarketCenterDictionary()) {
+                codes = new int[][]{
+                        quotes.getMarketCenterDictionary().encodeAll(batch.getMarketCenterDictionary()),
+                        quotes.getQuoteConditionsDictionary().encodeAll(batch.getQuoteConditionsDictionary()),
+                        quotes.getSipfeedDictionary().encodeAll(batch.getSipfeedDictionary())};
+            }
+            pending.addAll(batch, codes[0], codes[1], codes[2]);
+            pending.sortByStartTime();
+        }
+    }
+}
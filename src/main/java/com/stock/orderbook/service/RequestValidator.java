@@ -8,5 +8,10 @@ import org.springframework.stereotype.Service;
 @Service
 public interface RequestValidator {
     String validateSymbol(String symbol);
-    // TODO Add Timestamp validator
+
+    String validateTimestamp(String timestamp);
+
+    String validateStep(String step);
+
+    String validateRange(String start, String end);
 }
@@ -1,10 +1,13 @@
 package com.stock.orderbook.service;
 
 import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.TimestampParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -14,6 +17,11 @@ import java.util.Map;
 public class RequestValidatorImpl implements RequestValidator {
     private static final Logger log = LoggerFactory.getLogger(RequestValidatorImpl.class);
 
+    /**
+     * Step of a stream request with a point at every change of the top orders
+     */
+    public static final String ON_CHANGE_STEP = "change";
+
     private final Map<String, Symbol> symbolMap;
 
     public RequestValidatorImpl(Map<String, Symbol> symbolMap) {
@@ -27,7 +35,7 @@ public class RequestValidatorImpl implements RequestValidator {
      */
     @Override
     public String validateSymbol(String symbol) {
-        if (symbolMap.containsKey(symbol)) {
+        if (symbol != null && symbolMap.containsKey(symbol)) {
             return "";
         }
 
@@ -35,4 +43,63 @@ public class RequestValidatorImpl implements RequestValidator {
         log.error(invalidSymbolResponse);
         return invalidSymbolResponse;
     }
+
+    /**
+     * Validates the timestamp passed in request is an ISO-8601 timestamp e.g. 2021-02-18T10:10:10.522Z
+     * @param timestamp - input timestamp
+     * @return String - Returns empty string if timestamp is valid else returns invalidTimestampResponse.
+     */
+    @Override
+    public String validateTimestamp(String timestamp) {
+        if (TimestampParser.parse(timestamp) != TimestampParser.INVALID_TIMESTAMP) {
+            return "";
+        }
+
+        String invalidTimestampResponse = String.format("Request validation failed: '%s' timestamp is not valid",
+                timestamp);
+        log.error(invalidTimestampResponse);
+        return invalidTimestampResponse;
+    }
+
+    /**
+     * Validates the step of a stream request is a positive duration e.g. 1s, 500ms or PT1S, or ON_CHANGE_STEP
+     * @param step - input step
+     * @return String - Returns empty string if step is valid else returns invalidStepResponse.
+     */
+    @Override
+    public String validateStep(String step) {
+        if (step == null || ON_CHANGE_STEP.equals(step)) {
+            return "";
+        }
+        try {
+            Duration duration = DurationStyle.detectAndParse(step);
+            if (!duration.isNegative() && !duration.isZero()) {
+                return "";
+            }
+        } catch (IllegalArgumentException e) {
+            // not a duration
+        }
+
+        String invalidStepResponse = String.format("Request validation failed: '%s' step is not valid", step);
+        log.error(invalidStepResponse);
+        return invalidStepResponse;
+    }
+
+    /**
+     * Validates the start of a stream request is not after its end. Both must be valid timestamps.
+     * @param start - input start timestamp
+     * @param end - input end timestamp
+     * @return String - Returns empty string if range is valid else returns invalidRangeResponse.
+     */
+    @Override
+    public String validateRange(String start, String end) {
+        if (TimestampParser.parse(start) <= TimestampParser.parse(end)) {
+            return "";
+        }
+
+        String invalidRangeResponse = String.format("Request validation failed: start '%s' is after end '%s'",
+                start, end);
+        log.error(invalidRangeResponse);
+        return invalidRangeResponse;
+    }
 }
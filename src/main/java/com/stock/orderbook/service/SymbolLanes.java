@@ -0,0 +1,279 @@
+package com.stock.orderbook.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SymbolLanes runs the tasks reading or mutating the ordersCache of each symbol on the single thread of its lane, so
+ * that the tasks of a symbol never compete for its snapshots and the lanes do not share the symbols they mutate. <br>
+ * - Disabled unless orders.lanes.count is set, -1 creating a lane per processor. Disabled, every task runs on the
+ * calling thread, on the concurrent caches <br>
+ * - Enabled, the requests, the batch sweeps, the streams, the ingestion, the background checkpoint build and the
+ * eviction all read the caches through the lanes <br>
+ * - A symbol is assigned a lane by the hash of its name on its first task <br>
+ * - A task submitted from the lane of its symbol runs in place. The tasks of a lane never wait for another lane, so
+ * the lanes cannot deadlock <br>
+ * - Every orders.lanes.rebalance.interval, the tasks of the interval are summed by lane, and the hottest symbol of
+ * the busiest lane which narrows the gap with the idlest lane is moved to the idlest lane <br>
+ * - A symbol is moved by a task running on its old lane, after the tasks queued before it. The tasks of the symbol
+ * queued after it are forwarded to the new lane when they are reached, so that a symbol is only on one lane at a
+ * time <br>
+ * - The queue depth of each lane and the moves are exposed by OrderBookMetrics <br>
+ */
+@Component
+public class SymbolLanes implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SymbolLanes.class);
+
+    /**
+     * A symbol is only moved if its lane ran at least this many tasks more than the idlest lane during the interval
+     */
+    private static final long MIN_REBALANCE_GAP = 100;
+
+    private final ThreadPoolExecutor[] lanes;
+
+    // thread of each lane, set by the thread factory of the lane before the thread starts
+    private final Thread[] laneThreads;
+
+    private final Map<String, SymbolRoute> symbolRoutes = new ConcurrentHashMap<>();
+
+    private final LongAdder moves = new LongAdder();
+
+    private final ScheduledExecutorService rebalancer;
+
+    public SymbolLanes(@Value("${orders.lanes.count:0}") int laneCount,
+                       @Value("${orders.lanes.rebalance.interval:10s}") Duration rebalanceInterval) {
+        lanes = new ThreadPoolExecutor[laneCount < 0 ? Runtime.getRuntime().availableProcessors() : laneCount];
+        laneThreads = new Thread[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            int lane = i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "symbol-lane-" + lane);
+                        thread.setDaemon(true);
+                        laneThreads[lane] = thread;
+                        return thread;
+                    });
+        }
+        if (lanes.length > 1 && !rebalanceInterval.isZero()) {
+            rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "symbol-lane-rebalancer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = rebalanceInterval.toMillis();
+            rebalancer.scheduleWithFixedDelay(this::rebalance, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            rebalancer = null;
+        }
+        if (lanes.length > 0) {
+            log.info("Serving the tasks of each symbol on one of {} lanes", lanes.length);
+        }
+    }
+
+    /**
+     * @return boolean - whether the tasks are run on the lanes of their symbols
+     */
+    public boolean isEnabled() {
+        return lanes.length > 0;
+    }
+
+    /**
+     * @return int - number of lanes, 0 if disabled
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @param lane - index of the lane
+     * @return int - number of tasks waiting on the lane
+     */
+    public int getQueueDepth(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    /**
+     * @return long - number of symbols moved to another lane by the rebalancing
+     */
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    /**
+     * Runs a task on the lane of a symbol, after the tasks of the lane submitted before it. The task runs in place
+     * if the lanes are disabled, or if it is submitted from the lane of the symbol.
+     * @param symbolName - symbol the task reads and mutates
+     * @param task - task of the symbol
+     * @return CompletableFuture - completed with the result of the task, or its failure
+     */
+    public <T> CompletableFuture<T> submit(String symbolName, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (!isEnabled()) {
+            complete(result, task);
+            return result;
+        }
+        SymbolRoute symbolRoute = symbolRoutes.computeIfAbsent(symbolName,
+                name -> new SymbolRoute(Math.floorMod(name.hashCode(), lanes.length)));
+        if (Thread.currentThread() == laneThreads[symbolRoute.lane]) {
+            // a move of the symbol runs on this lane after the running task
+            complete(result, task);
+            return result;
+        }
+        symbolRoute.requests.increment();
+        execute(symbolRoute, () -> complete(result, task));
+        return result;
+    }
+
+    /**
+     * Runs a task on the lane of a symbol as submit, and waits for its result. Must not be called from the lane of
+     * another symbol.
+     * @param symbolName - symbol the task reads and mutates
+     * @param task - task of the symbol
+     * @return T - result of the task
+     * @throws RuntimeException - failure of the task, as thrown by the task
+     */
+    public <T> T call(String symbolName, Supplier<T> task) {
+        if (!isEnabled()) {
+            return task.get();
+        }
+        try {
+            return submit(symbolName, task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a task on the lane of a symbol as call, and waits for it
+     * @param symbolName - symbol the task reads and mutates
+     * @param task - task of the symbol
+     */
+    public void run(String symbolName, Runnable task) {
+        call(symbolName, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, Supplier<T> task) {
+        try {
+            result.complete(task.get());
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void execute(SymbolRoute symbolRoute, Runnable task) {
+        int lane = symbolRoute.lane;
+        lanes[lane].execute(() -> {
+            if (symbolRoute.lane != lane) {
+                // the symbol was moved after the task was queued
+                execute(symbolRoute, task);
+            } else {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * @param symbolName - name of a symbol
+     * @return int - lane of the symbol, -1 if it never had a task
+     */
+    int laneOf(String symbolName) {
+        SymbolRoute symbolRoute = symbolRoutes.get(symbolName);
+        return symbolRoute == null ? -1 : symbolRoute.lane;
+    }
+
+    /**
+     * Moves the hottest symbol of the busiest lane which narrows the gap with the idlest lane, from the tasks since
+     * the previous rebalance
+     */
+    void rebalance() {
+        long[] laneRequests = new long[lanes.length];
+        Map<String, Long> symbolRequests = new HashMap<>();
+        symbolRoutes.forEach((symbolName, symbolRoute) -> {
+            long requests = symbolRoute.requests.sumThenReset();
+            laneRequests[symbolRoute.lane] += requests;
+            symbolRequests.put(symbolName, requests);
+        });
+        int busiestLane = 0;
+        int idlestLane = 0;
+        for (int lane = 1; lane < lanes.length; lane++) {
+            busiestLane = laneRequests[lane] > laneRequests[busiestLane] ? lane : busiestLane;
+            idlestLane = laneRequests[lane] < laneRequests[idlestLane] ? lane : idlestLane;
+        }
+        long gap = laneRequests[busiestLane] - laneRequests[idlestLane];
+        if (gap < MIN_REBALANCE_GAP) {
+            return;
+        }
+        // moving requests r changes the gap to |gap - 2r|, narrower as long as r < gap
+        String movedSymbol = null;
+        long movedRequests = 0;
+        for (Map.Entry<String, Long> entry : symbolRequests.entrySet()) {
+            long requests = entry.getValue();
+            if (symbolRoutes.get(entry.getKey()).lane == busiestLane && requests < gap && requests > movedRequests) {
+                movedSymbol = entry.getKey();
+                movedRequests = requests;
+            }
+        }
+        if (movedSymbol != null) {
+            move(movedSymbol, busiestLane, idlestLane);
+            log.info("Moving symbol {} ({} tasks) from lane {} ({} tasks) to lane {} ({} tasks)", movedSymbol,
+                    movedRequests, busiestLane, laneRequests[busiestLane], idlestLane, laneRequests[idlestLane]);
+        }
+    }
+
+    private void move(String symbolName, int fromLane, int toLane) {
+        SymbolRoute symbolRoute = symbolRoutes.get(symbolName);
+        // no task of the symbol runs on its old lane while the move runs there
+        lanes[fromLane].execute(() -> symbolRoute.lane = toLane);
+        moves.increment();
+    }
+
+    /**
+     * Stops the lanes, the queued tasks being run
+     */
+    @Override
+    public void close() {
+        if (rebalancer != null) {
+            rebalancer.shutdownNow();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Lane of a symbol, only changed on the lane of the symbol, and tasks of the symbol since the last rebalance
+     */
+    private static final class SymbolRoute {
+        private volatile int lane;
+        private final LongAdder requests = new LongAdder();
+
+        private SymbolRoute(int lane) {
+            this.lane = lane;
+        }
+    }
+}
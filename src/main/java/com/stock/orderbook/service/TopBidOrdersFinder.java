@@ -1,85 +1,53 @@
 package com.stock.orderbook.service;
 
 import com.stock.orderbook.model.OrderType;
-import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.OrdersSnapshot;
 import com.stock.orderbook.model.Symbol;
 import com.stock.orderbook.utils.OutputFormatter;
+import com.stock.orderbook.utils.ResponseBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.TreeMap;
 
 /**
  * TopBidOrdersFinder implements the TopOrdersFinderStrategy for BIDS strategy orderType. <br>
- * - Implements topOrders method to find top ask orders <br>
- * - Implements getStrategyOrderType method to return asks order type <br>
+ * - Implements appendTopOrders method to find top bid orders <br>
+ * - Implements getStrategyOrderType method to return bids order type <br>
  */
 @Component
 public class TopBidOrdersFinder implements TopOrdersFinderStrategy {
     private static final Logger log = LoggerFactory.getLogger(TopBidOrdersFinder.class);
 
-    @Value("${top.orders.limit}")
-    private Integer TOP_ORDERS_LIMIT;
+    private final int topOrdersLimit;
 
-    private final TopOrdersFinder topOrdersFinder;
+    private final OrderBookFinder orderBookFinder;
 
     private final Map<String, Symbol> symbolMap;
 
-    public TopBidOrdersFinder(TopOrdersFinder topOrdersFinder, Map<String, Symbol> symbolMap) {
-        this.topOrdersFinder = topOrdersFinder;
+    public TopBidOrdersFinder(OrderBookFinder orderBookFinder, Map<String, Symbol> symbolMap,
+                              @Value("${top.orders.limit}") int topOrdersLimit) {
+        this.orderBookFinder = orderBookFinder;
         this.symbolMap = symbolMap;
+        this.topOrdersLimit = topOrdersLimit;
     }
 
     /**
-     * topOrders method performs following steps in finding top bid orders <br>
-     * 1. Checks if the timestamp is already in bidsCache. If so, returns already calculated top bids <br>
-     * 2. If not, finds the floorKey timestamp (i.e. greatest timestamp less than input timestamp) and calculates the
-     * top bids <br>
-     * 3. Caches the top bids result in bidsCache for the input timestamp <br>
-     * 4. Returns the top bids in required output format using OutputFormatter <br>
+     * appendTopOrders method finds the snapshot of the orders of the symbol at timestamp with OrderBookFinder, which
+     * computes and caches both sides in one snapshot on a miss, and appends only the top bids in required output format
+     * using OutputFormatter. The bids are not replayed separately from the other side. <br>
      * @param symbolName - name of the symbol for which the top orders to be calculated
-     * @param timestamp - time at which the top orders to be calculated
-     * @return String - returns formatted string with top 5 bids
+     * @param timestamp - time in epoch nanoseconds at which the top orders to be calculated
+     * @param buffer - buffer the formatted top 5 bids are appended to
      */
     @Override
-    public String topOrders(String symbolName, String timestamp) {
-        log.info("Processing top bids for symbol: {} at timestamp: {}", symbolName, timestamp);
-
+    public void appendTopOrders(String symbolName, long timestamp, ResponseBuffer buffer) {
+        log.debug("Processing top bids for symbol: {} at timestamp: {}", symbolName, timestamp);
         Symbol symbol = symbolMap.get(symbolName);
-
-        TreeMap<String, PriorityQueue<Quote>> bidsCache = symbol.getBidsCache();
-        if (bidsCache.containsKey(timestamp)) {
-            log.info("Request found in cache - returning result from cache");
-            return OutputFormatter.topBidsFormat(OutputFormatter.getTopOrdersFromQueue(
-                    bidsCache.get(timestamp), TOP_ORDERS_LIMIT));
-        }
-
-        log.info("Request not found in cache - finding top orders for request");
-        String nearestTimestamp = bidsCache.floorKey(timestamp);
-        if (nearestTimestamp == null) {
-            log.info(symbolName + "@" + timestamp + ": " + OutputFormatter.TOO_OLD_TIMESTAMP_FOR_BIDS);
-            return OutputFormatter.BIDS_PREFIX + OutputFormatter.TOO_OLD_TIMESTAMP_FOR_BIDS;
-        }
-
-        PriorityQueue<Quote> bidsQueue = new PriorityQueue<>(symbol.getBidsCache().get(nearestTimestamp));
-        int quotesStartIndex = symbol.getQuotesIndex().get(nearestTimestamp);
-
-        log.info("Finding bids with info: timestamp: {}, nearestTimestamp: {}, " +
-                "quotesStartIndex: {}", timestamp, nearestTimestamp, quotesStartIndex);
-        PriorityQueue<Quote> topOrdersQueue = topOrdersFinder.findTopOrders(bidsQueue, quotesStartIndex, symbol, timestamp);
-        log.debug("Previous Cache Record: {}, New record: {}", new PriorityQueue<>(bidsQueue),
-                new PriorityQueue<>(topOrdersQueue));
-
-        if (topOrdersQueue.isEmpty()) {
-            log.info(symbolName + "@" + timestamp + ": " + OutputFormatter.NO_BIDS_FOUND);
-            return OutputFormatter.BIDS_PREFIX + OutputFormatter.NO_BIDS_FOUND;
-        }
-        bidsCache.put(timestamp, topOrdersQueue);
-        return OutputFormatter.topBidsFormat(OutputFormatter.getTopOrdersFromQueue(topOrdersQueue, TOP_ORDERS_LIMIT));
+        OrdersSnapshot orders = orderBookFinder.findOrders(symbol, timestamp);
+        OutputFormatter.appendBids(buffer, symbol.getQuotes(), orders, topOrdersLimit);
     }
 
     /**
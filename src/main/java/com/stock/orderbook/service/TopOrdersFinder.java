@@ -1,84 +1,231 @@
 package com.stock.orderbook.service;
 
-import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.EndTimeIndex;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.QuoteStore;
 import com.stock.orderbook.model.Symbol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.PriorityQueue;
-
 /**
- * TopOrdersFinder contains the logic for finding the top orders in a given priority queue. <br>
- * This is the common implementation for both asks and bids. <br>
+ * TopOrdersFinder contains the logic for finding the top orders from a cached snapshot of orders. <br>
+ * Both sides of the book are derived together: the quotes between the cached timestamp and the requested timestamp
+ * are scanned once, and each of them is removed from or inserted into the bids and the asks. <br>
+ * The orders are persistent treaps of row indices of the symbol QuoteStore, so no Quote objects are created while
+ * finding orders. <br>
+ * The cached snapshot is only read, the new snapshot is derived from it by path copying and shares all the unchanged
+ * nodes with it. Only the quotes starting (startTime order of QuoteStore) or ending (endTime index of QuoteStore)
+ * between the cached timestamp and the requested timestamp are visited, so finding orders costs
+ * O(changes * log n) instead of O(book size). <br>
+ * The cached snapshot may also be after the requested timestamp: the quotes are then run backwards, the quotes
+ * started in between being removed and the quotes ended in between being restored. <br>
  */
 @Component
 public class TopOrdersFinder {
     private static final Logger log = LoggerFactory.getLogger(TopOrdersFinder.class);
 
     /**
-     * findTopOrders performs the core logic for finding top orders in the queue
-     * @param ordersQueue - contains the orders from cache
-     * @param quotesStartIndex - index at which the ordersQueue is cached
+     * findTopOrders performs the core logic for finding top bids and asks from the cached orders
+     * @param cachedOrders - contains the orders from cache and index at which they are cached
+     * @param cachedTimestamp - epoch nanoseconds at which the orders are cached, before or after timestamp
+     * @param symbol - contains symbol data
+     * @param timestamp - epoch nanoseconds at which the top orders are needed
+     * @return OrdersSnapshot - returns snapshot with the rows of active quotes at timestamp
+     */
+    public OrdersSnapshot findTopOrders(OrdersSnapshot cachedOrders, long cachedTimestamp, Symbol symbol,
+                                        long timestamp) {
+        return findTopOrders(cachedOrders, cachedTimestamp, symbol, timestamp, null);
+    }
+
+    /**
+     * findTopOrders of a request, recording the latency of the expiry and replay stages and the number of replayed
+     * quotes
+     * @param cachedOrders - contains the orders from cache and index at which they are cached
+     * @param cachedTimestamp - epoch nanoseconds at which the orders are cached, before or after timestamp
      * @param symbol - contains symbol data
-     * @param timestamp - at which the top orders are needed
-     * @return PriorityQueue<Quote> - returns queue with the active quotes at timestamp
+     * @param timestamp - epoch nanoseconds at which the top orders are needed
+     * @param orderBookMetrics - metrics of the requests, null not to record them
+     * @return OrdersSnapshot - returns snapshot with the rows of active quotes at timestamp
      */
-    public PriorityQueue<Quote> findTopOrders(PriorityQueue<Quote> ordersQueue, int quotesStartIndex, Symbol symbol,
-                                     String timestamp) {
-        log.info("Finding top orders for symbol: {} at timestamp: {}", symbol.getSymbol(), timestamp);
+    public OrdersSnapshot findTopOrders(OrdersSnapshot cachedOrders, long cachedTimestamp, Symbol symbol,
+                                        long timestamp, OrderBookMetrics orderBookMetrics) {
+        log.debug("Finding top orders for symbol: {} at timestamp: {}", symbol.getSymbol(), timestamp);
+        QuoteStore quotes = symbol.getQuotes();
+        OrdersTreap.Editor bids = cachedOrders.getBids().edit(quotes::compareBids);
+        OrdersTreap.Editor asks = cachedOrders.getAsks().edit(quotes::compareAsks);
+        int cachedQuotesIndex = cachedOrders.getQuotesIndex();
+        int quotesIndex = cachedTimestamp <= timestamp
+                ? advanceOrders(bids, asks, cachedQuotesIndex, quotes, cachedTimestamp, timestamp, orderBookMetrics)
+                : rewindOrders(bids, asks, cachedQuotesIndex, quotes, cachedTimestamp, timestamp, orderBookMetrics);
+        if (orderBookMetrics != null) {
+            orderBookMetrics.recordReplay(Math.abs(quotesIndex - cachedQuotesIndex));
+        }
+        return new OrdersSnapshot(bids.build(), asks.build(), quotesIndex);
+    }
 
-        // remove inactive quotes from cached queue
-        PriorityQueue<Quote> topOrdersQueue = removeInactiveQuotes(ordersQueue, timestamp);
+    /**
+     * advanceOrders edits the bids and asks active at cachedTimestamp into the ones active at timestamp. Called
+     * repeatedly on the same editors, it replays the quotes forward one interval at a time.
+     * @param bids - editor of the bids at cachedTimestamp
+     * @param asks - editor of the asks at cachedTimestamp
+     * @param quotesIndex - index of the first quote after cachedTimestamp
+     * @param quotes - quote store of the symbol
+     * @param cachedTimestamp - epoch nanoseconds of the orders being edited
+     * @param timestamp - epoch nanoseconds at or after cachedTimestamp at which the orders are needed
+     * @return int - index of the first quote after timestamp
+     */
+    public int advanceOrders(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex, QuoteStore quotes,
+                             long cachedTimestamp, long timestamp) {
+        return advanceOrders(bids, asks, quotesIndex, quotes, cachedTimestamp, timestamp, null);
+    }
+
+    /**
+     * advanceOrders recording the latency of the expiry and replay stages in orderBookMetrics, unless it is null
+     */
+    private int advanceOrders(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex, QuoteStore quotes,
+                              long cachedTimestamp, long timestamp, OrderBookMetrics orderBookMetrics) {
+        long startNanos = orderBookMetrics != null ? System.nanoTime() : 0;
+        // remove the quotes of cached orders which ended before timestamp
+        removeInactiveQuotes(bids, asks, quotesIndex, quotes, cachedTimestamp, timestamp);
+        long expiryEndNanos = orderBookMetrics != null ? System.nanoTime() : 0;
+
+        // load the quotes starting from quotesIndex of cached orders which occurred before timestamp
+        int timestampQuotesIndex = updateOrders(bids, asks, quotesIndex, quotes, timestamp);
+        recordStages(orderBookMetrics, startNanos, expiryEndNanos);
+        return timestampQuotesIndex;
+    }
+
+    /**
+     * rewindOrders edits the bids and asks active at cachedTimestamp into the ones active at an earlier timestamp,
+     * running the quotes backwards
+     * @param bids - editor of the bids at cachedTimestamp
+     * @param asks - editor of the asks at cachedTimestamp
+     * @param quotesIndex - index of the first quote after cachedTimestamp
+     * @param quotes - quote store of the symbol
+     * @param cachedTimestamp - epoch nanoseconds of the orders being edited
+     * @param timestamp - epoch nanoseconds before cachedTimestamp at which the orders are needed
+     * @return int - index of the first quote after timestamp
+     */
+    public int rewindOrders(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex, QuoteStore quotes,
+                            long cachedTimestamp, long timestamp) {
+        return rewindOrders(bids, asks, quotesIndex, quotes, cachedTimestamp, timestamp, null);
+    }
 
-        // load the quotes starting from quotesStartIndex which occurred before timestamp
-        updateOrdersQueue(topOrdersQueue, quotesStartIndex, symbol, timestamp);
+    /**
+     * rewindOrders recording the latency of the expiry and replay stages in orderBookMetrics, unless it is null
+     */
+    private int rewindOrders(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex, QuoteStore quotes,
+                             long cachedTimestamp, long timestamp, OrderBookMetrics orderBookMetrics) {
+        long startNanos = orderBookMetrics != null ? System.nanoTime() : 0;
+        int timestampQuotesIndex = quotes.firstRowStartingFrom(timestamp + 1, 0);
+        restoreEndedQuotes(bids, asks, timestampQuotesIndex, quotes, timestamp, cachedTimestamp);
+        long expiryEndNanos = orderBookMetrics != null ? System.nanoTime() : 0;
+        removeStartedQuotes(bids, asks, timestampQuotesIndex, quotesIndex, quotes, cachedTimestamp);
+        recordStages(orderBookMetrics, startNanos, expiryEndNanos);
+        return timestampQuotesIndex;
+    }
 
-        return topOrdersQueue;
+    /**
+     * Records the expiry stage from startNanos to expiryEndNanos and the replay stage from expiryEndNanos to now
+     */
+    private static void recordStages(OrderBookMetrics orderBookMetrics, long startNanos, long expiryEndNanos) {
+        if (orderBookMetrics != null) {
+            orderBookMetrics.recordStage(OrderBookMetrics.Stage.EXPIRY, expiryEndNanos - startNanos);
+            orderBookMetrics.recordStage(OrderBookMetrics.Stage.REPLAY, System.nanoTime() - expiryEndNanos);
+        }
     }
 
     /**
-     * removeInactiveQuotes removes inactive quotes from cached queue
-     * @param ordersQueue - cached priority queue
-     * @param timestamp - reference timestamp to find inactive quotes
-     * @return PriorityQueue<Quote> - returns queue with only active quotes at timestamp
+     * restoreEndedQuotes inserts the quotes which started at or before timestamp and ended after timestamp and at or
+     * before cachedTimestamp, found from the endTime index, hence which are active at timestamp only
+     * @param bids - editor of the cached bids
+     * @param asks - editor of the cached asks
+     * @param quotesIndex - index of the first quote after timestamp
+     * @param quotes - quote store of the symbol
+     * @param timestamp - epoch nanoseconds at which the orders are needed
+     * @param cachedTimestamp - epoch nanoseconds after timestamp of the cached orders
      */
-    private PriorityQueue<Quote> removeInactiveQuotes(PriorityQueue<Quote> ordersQueue, String timestamp) {
-        PriorityQueue<Quote> activeOrdersQueue = new PriorityQueue<>(ordersQueue);
-        activeOrdersQueue.clear();
-        Quote quote;
+    private void restoreEndedQuotes(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex,
+                                    QuoteStore quotes, long timestamp, long cachedTimestamp) {
+        EndTimeIndex endTimeIndex = quotes.getEndTimeIndex();
+        int endPosition = endTimeIndex.firstPositionAfter(cachedTimestamp);
+        for (int position = endTimeIndex.firstPositionAfter(timestamp); position < endPosition; position++) {
+            int row = endTimeIndex.getRow(position);
+            if (row < quotesIndex) {
+                bids.insert(row);
+                asks.insert(row);
+            }
+        }
+    }
 
-        while ((quote = ordersQueue.poll()) != null) {
-            // checks if quote is active at timestamp
-            if (quote.getEndTime().compareTo(timestamp) > 0) {
-                activeOrdersQueue.add(quote);
+    /**
+     * removeStartedQuotes removes the cached orders which started after timestamp, i.e. from quotesIndex, and at or
+     * before cachedTimestamp
+     * @param bids - editor of the cached bids
+     * @param asks - editor of the cached asks
+     * @param quotesIndex - index of the first quote after timestamp
+     * @param cachedQuotesIndex - index of the first quote after cachedTimestamp
+     * @param quotes - quote store of the symbol
+     * @param cachedTimestamp - epoch nanoseconds after timestamp of the cached orders
+     */
+    private void removeStartedQuotes(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex,
+                                     int cachedQuotesIndex, QuoteStore quotes, long cachedTimestamp) {
+        for (int row = quotesIndex; row < cachedQuotesIndex; row++) {
+            // the quotes which ended at or before cachedTimestamp are not in the cached orders
+            if (quotes.getEndTime(row) > cachedTimestamp) {
+                bids.remove(row);
+                asks.remove(row);
             }
         }
+    }
 
-        return activeOrdersQueue;
+    /**
+     * removeInactiveQuotes removes the cached orders which ended after cachedTimestamp and at or before timestamp,
+     * found from the endTime index.
+     * @param bids - editor of the cached bids
+     * @param asks - editor of the cached asks
+     * @param quotesIndex - index of the first quote after cachedTimestamp, the quotes before it being the ones
+     *                    which started at or before cachedTimestamp
+     * @param quotes - quote store of the symbol
+     * @param cachedTimestamp - epoch nanoseconds of the cached orders
+     * @param timestamp - reference epoch nanoseconds to find inactive quotes
+     */
+    private void removeInactiveQuotes(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesIndex,
+                                      QuoteStore quotes, long cachedTimestamp, long timestamp) {
+        // positions are read from one version of the index, while quotes may be appended
+        EndTimeIndex endTimeIndex = quotes.getEndTimeIndex();
+        int endPosition = endTimeIndex.firstPositionAfter(timestamp);
+        for (int position = endTimeIndex.firstPositionAfter(cachedTimestamp); position < endPosition; position++) {
+            int row = endTimeIndex.getRow(position);
+            // quotes starting after cachedTimestamp are not in the cached orders
+            if (row < quotesIndex) {
+                bids.remove(row);
+                asks.remove(row);
+            }
+        }
     }
 
     /**
-     * updateOrdersQueue loads the ordersQueue with additional quotes from quotesStartIndex to timestamp.
-     * @param ordersQueue - queue with active quotes at timestamp
+     * updateOrders loads the orders with additional quotes from quotesStartIndex to timestamp.
+     * @param bids - editor of the bids with active quotes at timestamp
+     * @param asks - editor of the asks with active quotes at timestamp
      * @param quotesStartIndex - starting index for loading quotes
-     * @param symbol - contains symbol data
-     * @param timestamp - until which the quotes are loaded to find top orders
+     * @param quotes - quote store of the symbol
+     * @param timestamp - epoch nanoseconds until which the quotes are loaded to find top orders
+     * @return int - index of the first quote after timestamp, for using as quotesStartIndex for future requests
      */
-    private void updateOrdersQueue(PriorityQueue<Quote> ordersQueue, int quotesStartIndex, Symbol symbol,
-                                   String timestamp) {
-        List<Quote> quotes = symbol.getQuotes();
-
+    private int updateOrders(OrdersTreap.Editor bids, OrdersTreap.Editor asks, int quotesStartIndex,
+                             QuoteStore quotes, long timestamp) {
         int index = quotesStartIndex;
-        for (;index < quotes.size() && quotes.get(index).getStartTime().compareTo(timestamp) <= 0; index++) {
-            Quote quote = quotes.get(index);
-            // checks if the quote is active for adding to the queue
-            if (quote.getEndTime().compareTo(timestamp) > 0) {
-                ordersQueue.add(quote);
+        for (;index < quotes.size() && quotes.getStartTime(index) <= timestamp; index++) {
+            // checks if the quote is active for adding to the orders
+            if (quotes.getEndTime(index) > timestamp) {
+                bids.insert(index);
+                asks.insert(index);
             }
         }
-        // notes the index of for using as quotesStartIndex for future requests
-        symbol.getQuotesIndex().put(timestamp, index);
+        return index;
     }
 }
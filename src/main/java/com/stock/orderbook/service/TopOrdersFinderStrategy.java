@@ -1,6 +1,7 @@
 package com.stock.orderbook.service;
 
 import com.stock.orderbook.model.OrderType;
+import com.stock.orderbook.utils.ResponseBuffer;
 import org.springframework.stereotype.Service;
 
 /**
@@ -9,12 +10,24 @@ import org.springframework.stereotype.Service;
 @Service
 public interface TopOrdersFinderStrategy {
     /**
-     * topOrders method to be implemented for getting top orders for each strategy <br>
+     * topOrders method gets the top orders of the strategy as a String <br>
      * @param symbolName - name of the symbol for which the top orders to be calculated
-     * @param timestamp - time at which the top orders to be calculated
+     * @param timestamp - time in epoch nanoseconds at which the top orders to be calculated
      * @return String - Returns string with top orders in required format
      */
-    String topOrders(String symbolName, String timestamp);
+    default String topOrders(String symbolName, long timestamp) {
+        ResponseBuffer buffer = new ResponseBuffer();
+        appendTopOrders(symbolName, timestamp, buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * appendTopOrders method to be implemented for rendering top orders for each strategy <br>
+     * @param symbolName - name of the symbol for which the top orders to be calculated
+     * @param timestamp - time in epoch nanoseconds at which the top orders to be calculated
+     * @param buffer - buffer the top orders are appended to in required format
+     */
+    void appendTopOrders(String symbolName, long timestamp, ResponseBuffer buffer);
 
     /**
      * getStrategyOrderType returns the OrderType enum of the corresponding strategy <br>
@@ -0,0 +1,53 @@
+package com.stock.orderbook.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ByteCharSequence is a reusable CharSequence view over a range of single byte (ASCII) characters of a ByteBuffer. <br>
+ * It lets the CSV fields be decoded and looked up in place, without creating a String for each field. <br>
+ * An instance is not thread safe and is meant to be reused by a single parser thread. <br>
+ */
+public class ByteCharSequence implements CharSequence {
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Points the view to the given range of the buffer
+     * @param buffer - buffer holding the characters
+     * @param offset - absolute index of first character in buffer
+     * @param length - number of characters
+     * @return ByteCharSequence - this view
+     */
+    public ByteCharSequence set(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,14 +1,11 @@
 package com.stock.orderbook.utils;
 
-import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.OrderType;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.TopOfBookSeries;
 import lombok.experimental.UtilityClass;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.PriorityQueue;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-
 /***
  * Utility Class for Formatting Output per requirements
  *
@@ -29,58 +26,178 @@ public class OutputFormatter {
     public static final String TOO_OLD_TIMESTAMP_FOR_ASKS = TOO_OLD_TIMESTAMP + NO_ASKS_FOUND;
 
     /**
-     * Converts list of quotes to string according to outputFormat provided
-     * @param quotes - list of quotes
-     * @param outputFormat - formatting function
-     * @return String concatenated using delimiter
+     * Cents of prices below this bound are exact in a double, hence rendered without String.format
      */
-    public String formatQuotesToString(List<Quote> quotes, Function<Quote, String> outputFormat) {
-        return quotes
-                .stream()
-                .map(outputFormat)
-                .collect(Collectors.joining(DELIMITER));
-    }
+    private static final double MAX_FAST_PRICE = 1e12;
+
+    /**
+     * Whether "%.2f" formats with '.' and ASCII digits in the default locale, as rendered by appendPrice
+     */
+    private static final boolean PLAIN_DECIMAL_FORMAT = "-1234.50".equals(String.format("%.2f", -1234.5));
 
     /**
      * Formats Double price variable values into 2 decimal values
      * @param price - double value
      * @return price in string format with 2 decimals
      */
-    public String formatPrice(Double price) {
+    public String formatPrice(double price) {
         return String.format("%.2f", price);
     }
 
     /**
-     * Output format for top asks
-     * @param topAsks - list of top asks
-     * @return String - formatted string with top asks
+     * Appends a price with 2 decimals, the same as formatPrice, without creating a String. <br>
+     * Prices with at most 2 decimals, i.e. all the quoted prices, are rendered from their cents. Any other value
+     * falls back to formatPrice, which rounds half up. <br>
+     * @param buffer - buffer of the response
+     * @param price - double value
+     */
+    public void appendPrice(ResponseBuffer buffer, double price) {
+        double absolutePrice = Math.abs(price);
+        long cents = Math.round(absolutePrice * 100);
+        if (!PLAIN_DECIMAL_FORMAT || !(absolutePrice < MAX_FAST_PRICE) || cents / 100.0 != absolutePrice) {
+            buffer.appendAscii(formatPrice(price));
+            return;
+        }
+        // the sign bit, so that -0.0 is rendered as -0.00 as well
+        if (Double.doubleToRawLongBits(price) < 0) {
+            buffer.append('-');
+        }
+        buffer.appendDigits(cents / 100, 1).append('.').appendDigits(cents % 100, 2);
+    }
+
+    /**
+     * Appends an order i.e. price (quantity)
+     * @param buffer - buffer of the response
+     * @param price - price of the order
+     * @param quantity - quantity of the order
+     */
+    public void appendOrder(ResponseBuffer buffer, double price, int quantity) {
+        appendPrice(buffer, price);
+        buffer.appendAscii(" (").appendLong(quantity).append(')');
+    }
+
+    /**
+     * Appends top asks i.e. prefix followed by the asks separated by the delimiter
+     * @param buffer - buffer of the response
+     * @param quotes - quote store of the symbol
+     * @param topAsks - rows of top asks
+     */
+    public void appendTopAsks(ResponseBuffer buffer, QuoteStore quotes, int[] topAsks) {
+        buffer.appendAscii(ASKS_PREFIX);
+        for (int i = 0; i < topAsks.length; i++) {
+            if (i > 0) {
+                buffer.appendAscii(DELIMITER);
+            }
+            appendOrder(buffer, quotes.getAskPrice(topAsks[i]), quotes.getAskQuantity(topAsks[i]));
+        }
+    }
+
+    /**
+     * Appends top bids i.e. prefix followed by the bids separated by the delimiter
+     * @param buffer - buffer of the response
+     * @param quotes - quote store of the symbol
+     * @param topBids - rows of top bids
+     */
+    public void appendTopBids(ResponseBuffer buffer, QuoteStore quotes, int[] topBids) {
+        buffer.appendAscii(BIDS_PREFIX);
+        for (int i = 0; i < topBids.length; i++) {
+            if (i > 0) {
+                buffer.appendAscii(DELIMITER);
+            }
+            appendOrder(buffer, quotes.getBidPrice(topBids[i]), quotes.getBidQuantity(topBids[i]));
+        }
+    }
+
+    /**
+     * Appends orders as a JSON array of objects e.g. [{"price":128.31,"quantity":100}]
+     * @param buffer - buffer of the response
+     * @param quotes - quote store of the symbol
+     * @param rows - rows of the orders in quote store
+     * @param orderType - side of the orders
+     */
+    public void appendJsonOrders(ResponseBuffer buffer, QuoteStore quotes, int[] rows, OrderType orderType) {
+        boolean isBid = orderType == OrderType.BIDS;
+        buffer.append('[');
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            buffer.appendAscii("{\"price\":");
+            appendPrice(buffer, isBid ? quotes.getBidPrice(rows[i]) : quotes.getAskPrice(rows[i]));
+            buffer.appendAscii(",\"quantity\":")
+                    .appendLong(isBid ? quotes.getBidQuantity(rows[i]) : quotes.getAskQuantity(rows[i]))
+                    .append('}');
+        }
+        buffer.append(']');
+    }
+
+    /**
+     * Appends the top asks of a book, or why there are none
+     * @param buffer - buffer of the response
+     * @param quotes - quote store of the symbol
+     * @param orders - book at the requested timestamp, null if the timestamp is before the first cached book
+     * @param limit - maximum number of asks
+     */
+    public void appendAsks(ResponseBuffer buffer, QuoteStore quotes, OrdersSnapshot orders, int limit) {
+        if (orders == null) {
+            buffer.appendAscii(ASKS_PREFIX).appendAscii(TOO_OLD_TIMESTAMP_FOR_ASKS);
+        } else if (orders.getAsks().size() == 0) {
+            buffer.appendAscii(ASKS_PREFIX).appendAscii(NO_ASKS_FOUND);
+        } else {
+            appendTopAsks(buffer, quotes, orders.getAsks().topRows(limit));
+        }
+    }
+
+    /**
+     * Appends the top bids of a book, or why there are none
+     * @param buffer - buffer of the response
+     * @param quotes - quote store of the symbol
+     * @param orders - book at the requested timestamp, null if the timestamp is before the first cached book
+     * @param limit - maximum number of bids
      */
-    public String topAsksFormat(List<Quote> topAsks) {
-        return OutputFormatter.ASKS_PREFIX + OutputFormatter.formatQuotesToString(topAsks, Quote::askOutputFormat);
+    public void appendBids(ResponseBuffer buffer, QuoteStore quotes, OrdersSnapshot orders, int limit) {
+        if (orders == null) {
+            buffer.appendAscii(BIDS_PREFIX).appendAscii(TOO_OLD_TIMESTAMP_FOR_BIDS);
+        } else if (orders.getBids().size() == 0) {
+            buffer.appendAscii(BIDS_PREFIX).appendAscii(NO_BIDS_FOUND);
+        } else {
+            appendTopBids(buffer, quotes, orders.getBids().topRows(limit));
+        }
     }
 
     /**
-     * Output format for top bids
-     * @param topBids - list of top bids
-     * @return String - formatted string with top bids
+     * Appends the best ask at a timestamp, or why there is none, as appendAsks with a limit of 1
+     * @param buffer - buffer of the response
+     * @param asks - best ask series of the symbol, null if the timestamp is before the first cached book
+     * @param timestamp - epoch nanoseconds of the requested book
      */
-    public String topBidsFormat(List<Quote> topBids) {
-        return OutputFormatter.BIDS_PREFIX + OutputFormatter.formatQuotesToString(topBids, Quote::bidOutputFormat);
+    public void appendTopAsk(ResponseBuffer buffer, TopOfBookSeries.Side asks, long timestamp) {
+        buffer.appendAscii(ASKS_PREFIX);
+        int index = asks == null ? -1 : asks.indexAt(timestamp);
+        if (asks == null) {
+            buffer.appendAscii(TOO_OLD_TIMESTAMP_FOR_ASKS);
+        } else if (index < 0 || !asks.hasOrder(index)) {
+            buffer.appendAscii(NO_ASKS_FOUND);
+        } else {
+            appendOrder(buffer, asks.getPrice(index), asks.getQuantity(index));
+        }
     }
 
     /**
-     * Retrieves upto topNLimit orders from priority queues
-     * @param ordersQueue - queue with processed top orders
-     * @param topNLimit - number of top orders to be returned
-     * @return List<Quote> - Returns list of top N orders
+     * Appends the best bid at a timestamp, or why there is none, as appendBids with a limit of 1
+     * @param buffer - buffer of the response
+     * @param bids - best bid series of the symbol, null if the timestamp is before the first cached book
+     * @param timestamp - epoch nanoseconds of the requested book
      */
-    public static List<Quote> getTopOrdersFromQueue(PriorityQueue<Quote> ordersQueue, Integer topNLimit) {
-        List<Quote> orders = new ArrayList<>();
-        Quote quote;
-        while (orders.size() < topNLimit && (quote = ordersQueue.poll()) != null)
-            orders.add(quote);
-
-        ordersQueue.addAll(orders);
-        return orders;
+    public void appendTopBid(ResponseBuffer buffer, TopOfBookSeries.Side bids, long timestamp) {
+        buffer.appendAscii(BIDS_PREFIX);
+        int index = bids == null ? -1 : bids.indexAt(timestamp);
+        if (bids == null) {
+            buffer.appendAscii(TOO_OLD_TIMESTAMP_FOR_BIDS);
+        } else if (index < 0 || !bids.hasOrder(index)) {
+            buffer.appendAscii(NO_BIDS_FOUND);
+        } else {
+            appendOrder(buffer, bids.getPrice(index), bids.getQuantity(index));
+        }
     }
 }
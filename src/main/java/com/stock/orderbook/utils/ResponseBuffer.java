@@ -0,0 +1,177 @@
+package com.stock.orderbook.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ResponseBuffer is a growable byte buffer a response is rendered into, before it is written to the output stream. <br>
+ * - Appends ASCII text and decimal integers in place, without creating intermediate Strings <br>
+ * - forCurrentThread returns a buffer reused by the requests served by the same thread <br>
+ * An instance is not thread safe and is meant to be used by a single request at a time. <br>
+ */
+public class ResponseBuffer {
+    private static final int INITIAL_CAPACITY = 512;
+
+    /**
+     * Buffers grown above this capacity are not kept for reuse, so that a large response does not stay allocated
+     * per thread
+     */
+    private static final int MAX_REUSED_CAPACITY = 1 << 16;
+
+    private static final ThreadLocal<ResponseBuffer> THREAD_BUFFER = ThreadLocal.withInitial(ResponseBuffer::new);
+
+    private byte[] bytes;
+    private int length;
+
+    public ResponseBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ResponseBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    /**
+     * @return ResponseBuffer - empty buffer of the current thread
+     */
+    public static ResponseBuffer forCurrentThread() {
+        ResponseBuffer buffer = THREAD_BUFFER.get();
+        if (buffer.bytes.length > MAX_REUSED_CAPACITY) {
+            buffer = new ResponseBuffer();
+            THREAD_BUFFER.set(buffer);
+        }
+        return buffer.reset();
+    }
+
+    public ResponseBuffer reset() {
+        length = 0;
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public ResponseBuffer append(char c) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends the content of another buffer
+     * @param other - buffer to copy
+     * @return ResponseBuffer - this buffer
+     */
+    public ResponseBuffer append(ResponseBuffer other) {
+        ensureCapacity(other.length);
+        System.arraycopy(other.bytes, 0, bytes, length, other.length);
+        length += other.length;
+        return this;
+    }
+
+    /**
+     * Appends the characters of an ASCII string, one byte each
+     * @param text - string of ASCII characters
+     * @return ResponseBuffer - this buffer
+     */
+    public ResponseBuffer appendAscii(String text) {
+        int textLength = text.length();
+        ensureCapacity(textLength);
+        for (int i = 0; i < textLength; i++) {
+            bytes[length++] = (byte) text.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a string of any characters encoded in UTF-8
+     * @param text - string
+     * @return ResponseBuffer - this buffer
+     */
+    public ResponseBuffer appendUtf8(String text) {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        return this;
+    }
+
+    /**
+     * Appends the decimal digits of value, with a leading '-' if negative
+     * @param value - integer value
+     * @return ResponseBuffer - this buffer
+     */
+    public ResponseBuffer appendLong(long value) {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) {
+                // its absolute value is not a long
+                return appendAscii("9223372036854775808");
+            }
+            value = -value;
+        }
+        return appendDigits(value, 1);
+    }
+
+    /**
+     * Appends the decimal digits of a non negative value, left padded with zeros to minDigits digits
+     * @param value - non negative value
+     * @param minDigits - minimum number of digits
+     * @return ResponseBuffer - this buffer
+     */
+    public ResponseBuffer appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        ensureCapacity(digits);
+        length += digits;
+        for (int i = length - 1; i >= length - digits; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the content of the buffer
+     * @param outputStream - stream to write to
+     * @throws IOException - if the stream fails
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(bytes, 0, length);
+    }
+
+    /**
+     * @param other - buffer to compare with
+     * @return boolean - true if both buffers have the same content
+     */
+    public boolean contentEquals(ResponseBuffer other) {
+        return Arrays.equals(bytes, 0, length, other.bytes, 0, other.length);
+    }
+
+    /**
+     * @return byte[] - copy of the content of the buffer
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * @return String - content of the buffer decoded as UTF-8
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int extraBytes) {
+        if (length + extraBytes > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extraBytes));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.stock.orderbook.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight collapses concurrent computations of the same key into one: the first caller computes the value, and
+ * the callers arriving while it runs wait for its value instead of computing it again. <br>
+ * Nothing is retained once the computation completes, caching the value is left to the caller. <br>
+ * @param <K> - type of the keys, with equals and hashCode
+ * @param <V> - type of the computed values
+ */
+public final class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final Runnable joinListener;
+
+    /**
+     * @param joinListener - called by each call which waits for the computation of another call, e.g. to count them
+     */
+    public SingleFlight(Runnable joinListener) {
+        this.joinListener = joinListener;
+    }
+
+    /**
+     * @param key - key of the computation
+     * @param computation - computes the value of the key, only called if no computation of the key is running
+     * @return V - value computed by this call or by the running computation of the key
+     */
+    public V execute(K key, Supplier<V> computation) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> runningCall = calls.putIfAbsent(key, call);
+        if (runningCall != null) {
+            joinListener.run();
+            try {
+                return runningCall.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            V value = computation.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+}
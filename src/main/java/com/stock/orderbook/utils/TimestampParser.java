@@ -0,0 +1,196 @@
+package com.stock.orderbook.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.Instant;
+
+/***
+ * Utility Class for decoding ISO-8601 timestamps into epoch nanoseconds
+ *
+ * Accepted format is yyyy-MM-ddTHH:mm:ss followed by an optional fraction of up to 9 digits and an optional zone
+ * i.e. Z or +HH:MM/-HH:MM. Timestamps without zone are treated as UTC. The decoding does not allocate, so that it can
+ * be used once per CSV line at load time and once per request.
+ */
+@UtilityClass
+public class TimestampParser {
+    /**
+     * Returned for malformed timestamps
+     */
+    public static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+
+    public static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    // years for which epoch nanoseconds fit into a long
+    private static final int MIN_YEAR = 1678;
+    private static final int MAX_YEAR = 2261;
+    private static final int MAX_FRACTION_DIGITS = 9;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L,
+            10_000_000L, 100_000_000L, 1_000_000_000L};
+
+    /**
+     * Decodes ISO-8601 timestamp to nanoseconds since epoch
+     * @param text - timestamp e.g. 2021-02-18T10:10:10.522Z
+     * @return long - nanoseconds since epoch or INVALID_TIMESTAMP if text is not a valid timestamp
+     */
+    public long parse(CharSequence text) {
+        if (text == null || text.length() < 19) {
+            return INVALID_TIMESTAMP;
+        }
+        int length = text.length();
+        if (text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':'
+                || text.charAt(16) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return INVALID_TIMESTAMP;
+        }
+
+        int position = 19;
+        long nanos = 0;
+        if (position < length && text.charAt(position) == '.') {
+            position++;
+            int fractionDigits = 0;
+            while (position < length && isDigit(text.charAt(position))) {
+                // digits after nanosecond precision are truncated
+                if (fractionDigits < MAX_FRACTION_DIGITS) {
+                    nanos = nanos * 10 + (text.charAt(position) - '0');
+                    fractionDigits++;
+                }
+                position++;
+            }
+            if (fractionDigits == 0) {
+                return INVALID_TIMESTAMP;
+            }
+            nanos *= POWERS_OF_TEN[MAX_FRACTION_DIGITS - fractionDigits];
+        }
+
+        int offsetSeconds = 0;
+        if (position < length) {
+            char zone = text.charAt(position);
+            if (zone == 'Z') {
+                position++;
+            } else if ((zone == '+' || zone == '-') && position + 6 == length && text.charAt(position + 3) == ':') {
+                int offsetHours = digits(text, position + 1, 2);
+                int offsetMinutes = digits(text, position + 4, 2);
+                if ((offsetHours | offsetMinutes) < 0 || offsetHours > 18 || offsetMinutes > 59) {
+                    return INVALID_TIMESTAMP;
+                }
+                offsetSeconds = (zone == '+' ? 1 : -1) * (offsetHours * 3600 + offsetMinutes * 60);
+                position = length;
+            }
+        }
+        if (position != length) {
+            return INVALID_TIMESTAMP;
+        }
+        return toEpochNanos(year, month, day, hour, minute, second, nanos, offsetSeconds);
+    }
+
+    /**
+     * Formats epoch nanoseconds in ISO-8601 format, e.g. 2021-02-18T10:10:10.522Z. Not meant for the request path.
+     * @param epochNanos - nanoseconds since epoch
+     * @return String - ISO-8601 timestamp
+     */
+    public String format(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND)).toString();
+    }
+
+    /**
+     * Appends epoch nanoseconds in the ISO-8601 format of format, e.g. 2021-02-18T10:10:10.522Z, without creating a
+     * String. The fraction has 3, 6 or 9 digits, as needed.
+     * @param buffer - buffer of the response
+     * @param epochNanos - nanoseconds since epoch
+     */
+    public void append(ResponseBuffer buffer, long epochNanos) {
+        long epochSeconds = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+        long nanos = Math.floorMod(epochNanos, NANOS_PER_SECOND);
+        long secondOfDay = Math.floorMod(epochSeconds, SECONDS_PER_DAY);
+        // civil date of the epoch day, the inverse of epochDay
+        long shiftedDay = Math.floorDiv(epochSeconds, SECONDS_PER_DAY) + 719_468L;
+        long era = Math.floorDiv(shiftedDay, 146_097L);
+        long dayOfEra = shiftedDay - era * 146_097L;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+
+        buffer.appendDigits(year, 4).append('-').appendDigits(month, 2).append('-').appendDigits(day, 2)
+                .append('T').appendDigits(secondOfDay / 3600, 2).append(':').appendDigits(secondOfDay / 60 % 60, 2)
+                .append(':').appendDigits(secondOfDay % 60, 2);
+        if (nanos % 1_000_000 == 0) {
+            if (nanos > 0) {
+                buffer.append('.').appendDigits(nanos / 1_000_000, 3);
+            }
+        } else if (nanos % 1_000 == 0) {
+            buffer.append('.').appendDigits(nanos / 1_000, 6);
+        } else {
+            buffer.append('.').appendDigits(nanos, 9);
+        }
+        buffer.append('Z');
+    }
+
+    static long toEpochNanos(int year, int month, int day, int hour, int minute, int second, long nanos,
+                             int offsetSeconds) {
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 || day < 1
+                || day > daysInMonth(year, month) || hour > 23 || minute > 59 || second > 59) {
+            return INVALID_TIMESTAMP;
+        }
+        long epochSeconds = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return epochSeconds * NANOS_PER_SECOND + nanos;
+    }
+
+    /**
+     * Days since 1970-01-01 of the civil date (proleptic Gregorian calendar)
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return int - value of count digits starting at offset or -1 if any of the characters is not a digit
+     */
+    private static int digits(CharSequence text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
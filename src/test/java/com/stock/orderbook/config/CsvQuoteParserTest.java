@@ -0,0 +1,96 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.utils.TimestampParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+public class CsvQuoteParserTest {
+    private static final String LINES =
+            "AAPL,Q,100,200,128.25,128.27,2021-02-18T10:10:10.001Z,2021-02-18T10:10:10.101Z,R,1,A\r\n" +
+            "MSFT,N,300,400,243.1,243.15,2021-02-18T10:10:10.002Z,2021-02-18T10:10:10.202Z,R,2,A\r\n" +
+            "\r\n" +
+            "AAPL,N,500,600,128.26,128.28,2021-02-18T10:10:10.003Z,2021-02-18T10:10:10.303Z,O,3,B";
+
+    private ByteBuffer buffer(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testParseLinesIntoStoresOfSymbols() throws IOException {
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        csvQuoteParser.parse(buffer(LINES), 0, LINES.length(), 0);
+
+        Map<String, QuoteStore> symbolToQuotesMap = csvQuoteParser.getSymbolToQuotesMap();
+        Assertions.assertEquals(3, csvQuoteParser.getRowCount());
+        Assertions.assertEquals(2, symbolToQuotesMap.size());
+
+        QuoteStore aapl = symbolToQuotesMap.get("AAPL");
+        Assertions.assertEquals(2, aapl.size());
+        Assertions.assertEquals(128.26, aapl.getBidPrice(1));
+        Assertions.assertEquals(600, aapl.getAskQuantity(1));
+        Assertions.assertEquals(TimestampParser.parse("2021-02-18T10:10:10.303Z"), aapl.getEndTime(1));
+        Assertions.assertEquals("N", aapl.getMarketCenter(1));
+        Assertions.assertEquals("O", aapl.getQuoteConditions(1));
+        Assertions.assertEquals(3, aapl.getSipfeedSeq(1));
+        Assertions.assertEquals("B", aapl.getSipfeed(1));
+        Assertions.assertEquals(243.15, symbolToQuotesMap.get("MSFT").getAskPrice(0));
+    }
+
+    @Test
+    public void testIndexLinesBySymbol() throws IOException {
+        String lines = LINES + "\r\nAAPL,N,700,800,128.27,128.29,2021-02-18T10:10:10.004Z,2021-02-18T10:10:10.404Z,O,4,B\n";
+        CsvQuoteParser csvQuoteIndexer = new CsvQuoteParser(",");
+        csvQuoteIndexer.index(buffer(lines), 0, lines.length(), 1000);
+
+        Map<String, QuoteLineRanges> symbolToLineRanges = csvQuoteIndexer.getSymbolToLineRangesMap();
+        Assertions.assertEquals(4, csvQuoteIndexer.getRowCount());
+        QuoteLineRanges aapl = symbolToLineRanges.get("AAPL");
+        Assertions.assertEquals(3, aapl.getRowCount());
+        // the last 2 lines of AAPL are adjacent, hence merged into one range
+        Assertions.assertEquals(2, aapl.size());
+        Assertions.assertEquals(1000, aapl.getStart(0));
+        Assertions.assertEquals(1000 + lines.length(), aapl.getEnd(1));
+        Assertions.assertEquals(1, symbolToLineRanges.get("MSFT").getRowCount());
+
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        for (int range = 0; range < aapl.size(); range++) {
+            csvQuoteParser.parse(buffer(lines), (int) aapl.getStart(range) - 1000, (int) aapl.getEnd(range) - 1000,
+                    0);
+        }
+        Map<String, QuoteStore> symbolToQuotesMap = csvQuoteParser.getSymbolToQuotesMap();
+        Assertions.assertEquals(Set.of("AAPL"), symbolToQuotesMap.keySet());
+        Assertions.assertEquals(3, symbolToQuotesMap.get("AAPL").size());
+        Assertions.assertEquals(800, symbolToQuotesMap.get("AAPL").getAskQuantity(2));
+    }
+
+    @Test
+    public void testParseMalformedLine() {
+        String line = "AAPL,Q,100,200,128.25,128.27,2021-02-18T10:10:10.001Z,bad,R,1,A\n";
+        CsvQuoteParser csvQuoteParser = new CsvQuoteParser(",");
+        Assertions.assertThrows(IOException.class, () -> csvQuoteParser.parse(buffer(line), 0, line.length(), 0));
+    }
+
+    @Test
+    public void testParseDoubleMatchesDoubleParseDouble() {
+        for (String price : new String[]{"128.25", "0.01", "5", "5.", "-1.5", "99999.9999", "0.1", "1e3",
+                "12345678901234567890.5"}) {
+            Assertions.assertEquals(Double.parseDouble(price), CsvQuoteParser.parseDouble(price));
+        }
+        Assertions.assertTrue(Double.isNaN(CsvQuoteParser.parseDouble("")));
+        Assertions.assertTrue(Double.isNaN(CsvQuoteParser.parseDouble("1.2.3")));
+    }
+
+    @Test
+    public void testParseInt() {
+        Assertions.assertEquals(2147483647, CsvQuoteParser.parseInt("2147483647"));
+        Assertions.assertEquals(-1, CsvQuoteParser.parseInt("2147483648"));
+        Assertions.assertEquals(-1, CsvQuoteParser.parseInt("1a"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LazySymbolMapTest {
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final List<Symbol> unloadedSymbols = new ArrayList<>();
+
+    private Symbol load(String symbolName) {
+        loadCount.incrementAndGet();
+        return Symbol.builder()
+                .symbol(symbolName)
+                .quotes(new QuoteStore())
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+    }
+
+    @Test
+    public void testLoadsSymbolOnceOnFirstGet() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        LazySymbolMap symbolMap = new LazySymbolMap(Set.of("AAPL", "MSFT"), symbolName -> {
+            try {
+                // holds the first load, so that the other requests arrive while it is in progress
+                loading.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return load(symbolName);
+        }, unloadedSymbols::add, 0);
+
+        Assertions.assertTrue(symbolMap.containsKey("AAPL"));
+        Assertions.assertFalse(symbolMap.containsKey("GOOG"));
+        Assertions.assertNull(symbolMap.get("GOOG"));
+        Assertions.assertEquals(Set.of("AAPL", "MSFT"), symbolMap.keySet());
+        Assertions.assertEquals(0, loadCount.get());
+
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Symbol>> symbols = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                symbols.add(requests.submit(() -> symbolMap.get("AAPL")));
+            }
+            loading.countDown();
+            for (Future<Symbol> symbol : symbols) {
+                Assertions.assertSame(symbols.get(0).get(), symbol.get());
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+        Assertions.assertEquals(1, loadCount.get());
+        Assertions.assertEquals(1, symbolMap.getLoadedCount());
+    }
+
+    @Test
+    public void testUnloadsIdleSymbols() {
+        LazySymbolMap symbolMap = new LazySymbolMap(Set.of("AAPL", "MSFT"), this::load, unloadedSymbols::add,
+                TimeUnit.MINUTES.toNanos(10));
+        try {
+            Symbol aapl = symbolMap.get("AAPL");
+            symbolMap.get("MSFT");
+            long nowNanos = System.nanoTime();
+            Assertions.assertEquals(0, symbolMap.unloadIdleSymbols(nowNanos));
+            Assertions.assertEquals(2, symbolMap.unloadIdleSymbols(nowNanos + TimeUnit.MINUTES.toNanos(11)));
+            Assertions.assertEquals(2, unloadedSymbols.size());
+            Assertions.assertTrue(unloadedSymbols.contains(aapl));
+            Assertions.assertEquals(0, symbolMap.getLoadedCount());
+
+            Assertions.assertNotSame(aapl, symbolMap.get("AAPL"));
+            Assertions.assertEquals(3, loadCount.get());
+        } finally {
+            symbolMap.close();
+        }
+    }
+}
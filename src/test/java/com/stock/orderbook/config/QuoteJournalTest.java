@@ -0,0 +1,135 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class QuoteJournalTest {
+
+    private QuoteStore quotes(int count, double bidPrice) {
+        QuoteStore quotes = new QuoteStore();
+        for (int i = 0; i < count; i++) {
+            quotes.add(Quote.builder().marketCenter(i % 2 == 0 ? "Q" : "N").bidQuantity(100 * i).askQuantity(50 + i)
+                    .bidPrice(bidPrice + i * 0.01).askPrice(bidPrice + 1).startTime("2021-02-18T10:10:1" + i + "Z")
+                    .endTime("2021-02-18T10:10:20Z").quoteConditions("R").sipfeedSeq(i).sipfeed(i < 1 ? "A" : null)
+                    .build());
+        }
+        return quotes;
+    }
+
+    private List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<Map<String, QuoteStore>> replay(Path directory) throws IOException {
+        List<Map<String, QuoteStore>> records = new ArrayList<>();
+        try (QuoteJournal quoteJournal = new QuoteJournal(directory, 1, 0, Long.MAX_VALUE)) {
+            quoteJournal.open(0, null, null);
+            quoteJournal.replay(records::add);
+        }
+        return records;
+    }
+
+    private void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testReplayRecordsOfAllSegments() throws IOException {
+        Path directory = Files.createTempDirectory("quotes-journal");
+        try {
+            List<QuoteStore> appended = List.of(quotes(3, 99.5), quotes(1, 98.5), quotes(2, 97.5));
+            // a new segment is started for each record
+            try (QuoteJournal quoteJournal = new QuoteJournal(directory, 1, 0, Long.MAX_VALUE)) {
+                quoteJournal.open(0, null, null);
+                long position = 0;
+                for (int i = 0; i < appended.size(); i++) {
+                    long nextPosition = quoteJournal.append(Map.of("AAPL", appended.get(i), "MSFT", quotes(i, 1)),
+                            false);
+                    Assertions.assertTrue(nextPosition > position);
+                    position = nextPosition;
+                }
+                quoteJournal.awaitDurable(position);
+            }
+            Assertions.assertEquals(3, segments(directory).size());
+
+            List<Map<String, QuoteStore>> records = replay(directory);
+            Assertions.assertEquals(3, records.size());
+            for (int i = 0; i < appended.size(); i++) {
+                QuoteStore quotes = records.get(i).get("AAPL");
+                Assertions.assertEquals(appended.get(i).size(), quotes.size());
+                for (int row = 0; row < quotes.size(); row++) {
+                    Assertions.assertEquals(appended.get(i).getQuote("AAPL", row), quotes.getQuote("AAPL", row));
+                }
+                Assertions.assertEquals(i, records.get(i).get("MSFT").size());
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsTruncated() throws IOException {
+        Path directory = Files.createTempDirectory("quotes-journal");
+        try {
+            try (QuoteJournal quoteJournal = new QuoteJournal(directory, Long.MAX_VALUE, 0, Long.MAX_VALUE)) {
+                quoteJournal.open(0, null, null);
+                quoteJournal.append(Map.of("AAPL", quotes(2, 99.5)), false);
+                quoteJournal.awaitDurable(quoteJournal.append(Map.of("AAPL", quotes(3, 98.5)), false));
+            }
+            Path segment = segments(directory).get(0);
+            long size = Files.size(segment);
+            // a record partially written by a crash
+            try (SeekableByteChannel channel = Files.newByteChannel(segment, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[]{100, 0, 0, 0, 1, 2, 3}));
+            }
+
+            List<Map<String, QuoteStore>> records = replay(directory);
+            Assertions.assertEquals(2, records.size());
+            Assertions.assertEquals(size, Files.size(segment));
+
+            // records are appended after the truncated one
+            try (QuoteJournal quoteJournal = new QuoteJournal(directory, Long.MAX_VALUE, 0, Long.MAX_VALUE)) {
+                quoteJournal.open(0, null, null);
+                quoteJournal.awaitDurable(quoteJournal.append(Map.of("MSFT", quotes(1, 10)), false));
+            }
+            records = replay(directory);
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(1, records.get(2).get("MSFT").size());
+
+            // a corrupted record of a segment before the last one fails the replay
+            try (QuoteJournal quoteJournal = new QuoteJournal(directory, 1, 0, Long.MAX_VALUE)) {
+                quoteJournal.open(0, null, null);
+                quoteJournal.awaitDurable(quoteJournal.append(Map.of("MSFT", quotes(2, 10)), false));
+            }
+            Assertions.assertEquals(2, segments(directory).size());
+            Assertions.assertEquals(4, replay(directory).size());
+            try (SeekableByteChannel channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+                channel.position(size - 8).write(ByteBuffer.wrap(new byte[]{42}));
+            }
+            Assertions.assertThrows(IOException.class, () -> replay(directory));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+}
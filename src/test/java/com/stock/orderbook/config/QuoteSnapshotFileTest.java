@@ -0,0 +1,179 @@
+package com.stock.orderbook.config;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.service.CheckpointBuilder;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.SymbolLanes;
+import com.stock.orderbook.service.TopOrdersFinder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class QuoteSnapshotFileTest {
+    private static final String CSV = "symbol,marketCenter,bidQuantity,askQuantity,bidPrice,askPrice,startTime," +
+            "endTime,quoteConditions,sipfeedSeq,sipfeed\n";
+
+    private final SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+
+    private Symbol symbol(String name, QuoteStore quotes, int checkpointIntervalQuotes) {
+        Symbol symbol = Symbol.builder()
+                .symbol(name)
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes);
+        ordersCacheManager.pin(symbol, 0L, new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        new CheckpointBuilder(new TopOrdersFinder(), ordersCacheManager, checkpointIntervalQuotes, Duration.ZERO)
+                .buildCheckpoints(symbol);
+        return symbol;
+    }
+
+    private QuoteStore quotes(QuoteStore anyStore) {
+        QuoteStore quotes = new QuoteStore(anyStore.getMarketCenterDictionary(),
+                anyStore.getQuoteConditionsDictionary(), anyStore.getSipfeedDictionary());
+        List<String> startTimes = List.of("2021-02-18T10:10:10.001Z", "2021-02-18T10:10:10.002Z",
+                "2021-02-18T10:10:10.103Z", "2021-02-18T10:10:10.304Z", "2021-02-18T10:10:11.001Z");
+        List<String> endTimes = List.of("2021-02-18T10:10:10.101Z", "2021-02-18T10:10:12.202Z",
+                "2021-02-18T10:10:10.303Z", "2021-02-18T10:10:11.404Z", "2021-02-18T10:10:12.404Z");
+        for (int i = 0; i < startTimes.size(); i++) {
+            quotes.add(Quote.builder().marketCenter(i % 2 == 0 ? "Q" : "N").bidQuantity(100 * i).askQuantity(50 + i)
+                    .bidPrice(128.25 + i * 0.01).askPrice(128.5 - i * 0.02).startTime(startTimes.get(i))
+                    .endTime(endTimes.get(i)).quoteConditions("R").sipfeedSeq(i).sipfeed(i < 3 ? "A" : null)
+                    .build());
+        }
+        return quotes;
+    }
+
+    @Test
+    public void testLoadWrittenQuotesAndCheckpoints() throws IOException {
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        Path snapshotPath = Files.createTempFile("quotes", ".snapshot");
+        try {
+            Files.writeString(csvFile, CSV);
+            QuoteStore aaplQuotes = quotes(new QuoteStore());
+            Map<String, Symbol> symbolMap = Map.of("AAPL", symbol("AAPL", aaplQuotes, 2),
+                    "MSFT", symbol("MSFT", quotes(aaplQuotes), 2));
+            QuoteSnapshotFile snapshotFile = new QuoteSnapshotFile(snapshotPath, 2, 0);
+            snapshotFile.write(new QuoteSnapshotFile.Source(csvFile, ','), symbolMap, 4096);
+
+            QuoteSnapshotFile.Contents contents = snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ','));
+            Assertions.assertTrue(contents.isWithCheckpoints());
+            Assertions.assertEquals(4096, contents.getJournalPosition());
+            Assertions.assertEquals(symbolMap.keySet(), contents.getQuotes().keySet());
+            QuoteStore quotes = contents.getQuotes().get("AAPL");
+            Assertions.assertEquals(aaplQuotes.size(), quotes.size());
+            for (int row = 0; row < quotes.size(); row++) {
+                Assertions.assertEquals(aaplQuotes.getQuote("AAPL", row), quotes.getQuote("AAPL", row));
+                Assertions.assertEquals(aaplQuotes.getRowByEndTime(row), quotes.getRowByEndTime(row));
+            }
+
+            NavigableMap<Long, OrdersSnapshot> checkpoints = contents.getCheckpoints().get("MSFT");
+            Map<Long, OrdersSnapshot> writtenCheckpoints = symbolMap.get("MSFT").getOrdersCache();
+            Assertions.assertEquals(writtenCheckpoints.keySet(), checkpoints.keySet());
+            Assertions.assertEquals(3, checkpoints.size());
+            writtenCheckpoints.forEach((timestamp, written) -> {
+                OrdersSnapshot checkpoint = checkpoints.get(timestamp);
+                Assertions.assertTrue(checkpoint.isPinned());
+                Assertions.assertEquals(written.getQuotesIndex(), checkpoint.getQuotesIndex());
+                Assertions.assertArrayEquals(written.getBids().topRows(5), checkpoint.getBids().topRows(5));
+                Assertions.assertArrayEquals(written.getAsks().topRows(5), checkpoint.getAsks().topRows(5));
+            });
+
+            // checkpoints built with other intervals are not loaded
+            contents = new QuoteSnapshotFile(snapshotPath, 3, 0).load(new QuoteSnapshotFile.Source(csvFile, ','));
+            Assertions.assertFalse(contents.isWithCheckpoints());
+            Assertions.assertEquals(5, contents.getQuotes().get("MSFT").size());
+            Assertions.assertTrue(contents.getCheckpoints().isEmpty());
+        } finally {
+            Files.deleteIfExists(csvFile);
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+
+    @Test
+    public void testWriteFrozenSymbols() throws IOException {
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        Path snapshotPath = Files.createTempFile("quotes", ".snapshot");
+        try {
+            Files.writeString(csvFile, CSV);
+            QuoteStore quotes = quotes(new QuoteStore());
+            Symbol symbol = symbol("AAPL", quotes, 2);
+            Map<String, Symbol> symbolMap = Map.of("AAPL", symbol);
+            Map<String, QuoteStore> frozenQuotes = QuoteSnapshotFile.freezeQuotes(symbolMap);
+            int checkpointCount = symbol.getOrdersCache().size();
+
+            // quotes and checkpoints added once frozen, with a new market center
+            for (int i = 0; i < 100; i++) {
+                quotes.add(Quote.builder().marketCenter("X" + i).bidQuantity(100).askQuantity(100).bidPrice(128.25)
+                        .askPrice(128.5).startTime("2021-02-18T10:10:13Z").endTime("2021-02-18T10:10:14Z")
+                        .quoteConditions("R").sipfeedSeq(i).build());
+            }
+            new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes).pin(symbol, Long.MAX_VALUE,
+                    new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, quotes.size(), true));
+
+            QuoteSnapshotFile snapshotFile = new QuoteSnapshotFile(snapshotPath, 2, 0);
+            snapshotFile.write(new QuoteSnapshotFile.Source(csvFile, ','),
+                    QuoteSnapshotFile.frozenSymbols(symbolMap, frozenQuotes, symbolLanes));
+
+            QuoteSnapshotFile.Contents contents = snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ','));
+            Assertions.assertEquals(5, contents.getQuotes().get("AAPL").size());
+            Assertions.assertEquals(2, contents.getQuotes().get("AAPL").getMarketCenterDictionary().size());
+            Assertions.assertEquals(checkpointCount, contents.getCheckpoints().get("AAPL").size());
+        } finally {
+            Files.deleteIfExists(csvFile);
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+
+    @Test
+    public void testStaleOrCorruptedSnapshot() throws IOException {
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        Path snapshotPath = Files.createTempFile("quotes", ".snapshot");
+        try {
+            Files.writeString(csvFile, CSV);
+            QuoteSnapshotFile snapshotFile = new QuoteSnapshotFile(snapshotPath, 2, 0);
+            snapshotFile.write(new QuoteSnapshotFile.Source(csvFile, ','),
+                    Map.of("AAPL", symbol("AAPL", quotes(new QuoteStore()), 2)));
+
+            Assertions.assertNull(snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ';')));
+            // same size and content, but another last modified time
+            Files.setLastModifiedTime(csvFile, FileTime.fromMillis(Duration.ofDays(1).toMillis()));
+            Assertions.assertNotNull(snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ',')));
+            Files.writeString(csvFile, CSV.toUpperCase());
+            Assertions.assertNull(snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ',')));
+            Files.writeString(csvFile, CSV + "AAPL");
+            Assertions.assertNull(snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ',')));
+
+            Files.writeString(csvFile, CSV);
+            snapshotFile.write(new QuoteSnapshotFile.Source(csvFile, ','),
+                    Map.of("AAPL", symbol("AAPL", quotes(new QuoteStore()), 2)));
+            try (SeekableByteChannel channel = Files.newByteChannel(snapshotPath, StandardOpenOption.WRITE)) {
+                channel.position(100).write(ByteBuffer.wrap(new byte[]{42}));
+            }
+            Assertions.assertThrows(IOException.class,
+                    () -> snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ',')));
+
+            Files.delete(snapshotPath);
+            Assertions.assertNull(snapshotFile.load(new QuoteSnapshotFile.Source(csvFile, ',')));
+        } finally {
+            Files.deleteIfExists(csvFile);
+            Files.deleteIfExists(snapshotPath);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.stock.orderbook.controller;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.model.TopOrders;
+import com.stock.orderbook.service.OrderBookFinder;
+import com.stock.orderbook.service.OrderBookMetrics;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.SymbolLanes;
+import com.stock.orderbook.service.TopOrdersFinder;
+import com.stock.orderbook.utils.TimestampParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BinaryOrderBookServerTest {
+    private static final long FIRST_TIMESTAMP = TimestampParser.parse("2021-02-18T10:10:10.000Z");
+
+    private BinaryOrderBookServer startServer() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        quotes.add(Quote.builder().bidPrice(99.75).bidQuantity(300).askPrice(100.25).askQuantity(400)
+                .startTime("2021-02-18T10:10:10.002Z").endTime("2021-02-18T10:10:10.500Z").build());
+        return startServer(quotes, 5);
+    }
+
+    private BinaryOrderBookServer startServer(QuoteStore quotes, int topOrdersLimit) {
+        return startServer(quotes, topOrdersLimit, null);
+    }
+
+    /**
+     * @param loadingLatch - latch the SLOW symbol waits for when it is looked up, as when it is loaded, null for no
+     *                     such symbol
+     */
+    private BinaryOrderBookServer startServer(QuoteStore quotes, int topOrdersLimit, CountDownLatch loadingLatch) {
+        Symbol symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        // as LazySymbolMap, containsKey does not load the symbol
+        Map<String, Symbol> symbolMap = new HashMap<>(Map.of("TEST", symbol)) {
+            @Override
+            public Symbol get(Object symbolName) {
+                if ("SLOW".equals(symbolName)) {
+                    try {
+                        loadingLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return symbol;
+                }
+                return super.get(symbolName);
+            }
+        };
+        if (loadingLatch != null) {
+            symbolMap.put("SLOW", symbol);
+        }
+        SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+        OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes);
+        ordersCacheManager.pin(symbol, FIRST_TIMESTAMP, new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0,
+                true));
+        OrderBookFinder orderBookFinder = new OrderBookFinder(new TopOrdersFinder(), ordersCacheManager,
+                new OrderBookMetrics(new SimpleMeterRegistry(), ordersCacheManager, symbolLanes), symbolMap,
+                topOrdersLimit, symbolLanes);
+        return new BinaryOrderBookServer(orderBookFinder, symbolMap, topOrdersLimit, 0, 1, 2);
+    }
+
+    @Test
+    public void testPipelinedQueries() throws IOException {
+        try (BinaryOrderBookServer server = startServer();
+             BinaryOrderBookClient client = new BinaryOrderBookClient("localhost", server.getPort())) {
+            int symbolId = client.symbolId("TEST");
+            Assertions.assertEquals(0, symbolId);
+            Assertions.assertEquals(-1, client.symbolId("UNKNOWN"));
+
+            // more queries than are pipelined at once, the book changing every millisecond of the first second
+            long[] timestamps = new long[5000];
+            for (int i = 0; i < timestamps.length; i++) {
+                timestamps[i] = FIRST_TIMESTAMP - 1_000_000L + i * 1_000_000L;
+            }
+            TopOrders[] topOrders = client.query(symbolId, timestamps);
+            Assertions.assertEquals(BinaryProtocol.STATUS_TOO_OLD_TIMESTAMP, topOrders[0].getStatus());
+            for (int i = 1; i < timestamps.length; i++) {
+                Assertions.assertEquals(BinaryProtocol.STATUS_OK, topOrders[i].getStatus());
+            }
+            TopOrders bothQuotes = topOrders[4];
+            Assertions.assertArrayEquals(new double[]{99.75, 99.5}, bothQuotes.getBidPrices());
+            Assertions.assertArrayEquals(new int[]{300, 100}, bothQuotes.getBidQuantities());
+            Assertions.assertArrayEquals(new double[]{100.25, 100.5}, bothQuotes.getAskPrices());
+            Assertions.assertArrayEquals(new int[]{400, 200}, bothQuotes.getAskQuantities());
+            // the second quote ended at 500ms, the first one at 1001ms
+            Assertions.assertArrayEquals(new double[]{99.5}, topOrders[502].getBidPrices());
+            Assertions.assertEquals(0, topOrders[1003].getBidPrices().length);
+            Assertions.assertEquals(0, topOrders[4999].getAskPrices().length);
+
+            Assertions.assertEquals(BinaryProtocol.STATUS_UNKNOWN_SYMBOL,
+                    client.query(7, FIRST_TIMESTAMP).getStatus());
+        }
+    }
+
+    @Test
+    public void testSlowQueryDoesNotStallOtherConnections() throws Exception {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        CountDownLatch loadingLatch = new CountDownLatch(1);
+        // a single IO loop serves both connections
+        try (BinaryOrderBookServer server = startServer(quotes, 5, loadingLatch);
+             BinaryOrderBookClient slowClient = new BinaryOrderBookClient("localhost", server.getPort());
+             BinaryOrderBookClient client = new BinaryOrderBookClient("localhost", server.getPort())) {
+            int slowSymbolId = slowClient.symbolId("SLOW");
+            CompletableFuture<TopOrders> slowQuery = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return slowClient.query(slowSymbolId, FIRST_TIMESTAMP + 2_000_000L);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            TopOrders topOrders = client.query(client.symbolId("TEST"), FIRST_TIMESTAMP + 2_000_000L);
+            Assertions.assertArrayEquals(new double[]{99.5}, topOrders.getBidPrices());
+            Assertions.assertFalse(slowQuery.isDone());
+
+            loadingLatch.countDown();
+            Assertions.assertArrayEquals(new double[]{99.5}, slowQuery.get(10, TimeUnit.SECONDS).getBidPrices());
+        }
+    }
+
+    @Test
+    public void testTopOrdersLimitBeyondByteRange() throws IOException {
+        QuoteStore quotes = new QuoteStore();
+        for (int i = 0; i < 20_000; i++) {
+            quotes.add(Quote.builder().bidPrice(50 + i / 1000.0).bidQuantity(i + 1).askPrice(100 + i / 1000.0)
+                    .askQuantity(i + 1).startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z")
+                    .build());
+        }
+        try (BinaryOrderBookServer server = startServer(quotes, 15_000);
+             BinaryOrderBookClient client = new BinaryOrderBookClient("localhost", server.getPort())) {
+            TopOrders topOrders = client.query(client.symbolId("TEST"), FIRST_TIMESTAMP + 2_000_000L);
+            Assertions.assertEquals(15_000, topOrders.getBidPrices().length);
+            Assertions.assertEquals(15_000, topOrders.getAskPrices().length);
+            Assertions.assertEquals(20_000, topOrders.getBidQuantities()[0]);
+            Assertions.assertEquals(1, topOrders.getAskQuantities()[0]);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> startServer(quotes, BinaryProtocol.MAX_ORDER_COUNT + 1));
+    }
+
+    @Test
+    public void testMalformedFrameClosesConnection() throws IOException {
+        try (BinaryOrderBookServer server = startServer();
+             SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            channel.write(ByteBuffer.wrap(new byte[]{42, 0, 0, 0, 1}));
+            Assertions.assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        }
+    }
+}
@@ -1,22 +1,47 @@
 package com.stock.orderbook.controller;
 
-import com.stock.orderbook.config.TopOrderFinderStrategyFactory;
+import com.stock.orderbook.service.OrderBookFinder;
+import com.stock.orderbook.service.OrderBookMetrics;
+import com.stock.orderbook.service.OrderBookResponseCache;
+import com.stock.orderbook.service.OrderBookStreamer;
+import com.stock.orderbook.service.OrdersCacheManager;
+import com.stock.orderbook.service.QuoteIngester;
 import com.stock.orderbook.service.RequestValidator;
+import com.stock.orderbook.service.SymbolLanes;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.mock.mockito.MockBean;
 
 public class OrderBookControllerTest {
     @MockBean
-    private TopOrderFinderStrategyFactory topOrderFinderStrategyFactory;
+    private OrderBookFinder orderBookFinder;
 
     @MockBean
     private RequestValidator requestValidator;
 
+    @MockBean
+    private OrderBookStreamer orderBookStreamer;
+
+    @MockBean
+    private OrdersCacheManager ordersCacheManager;
+
+    @MockBean
+    private QuoteIngester quoteIngester;
+
+    @MockBean
+    private OrderBookMetrics orderBookMetrics;
+
+    @MockBean
+    private OrderBookResponseCache orderBookResponseCache;
+
+    @MockBean
+    private SymbolLanes symbolLanes;
+
     @Test
     public void testOrderBookControllerWelcome() {
-        OrderBookController orderBookController = new OrderBookController(topOrderFinderStrategyFactory,
-                requestValidator);
+        OrderBookController orderBookController = new OrderBookController(orderBookFinder, requestValidator,
+                orderBookStreamer, ordersCacheManager, quoteIngester, orderBookMetrics,
+                orderBookResponseCache, symbolLanes);
         String welcomeResponse = orderBookController.welcome();
         Assertions.assertEquals("Welcome to the restful implementation of Order Book", welcomeResponse);
     }
@@ -0,0 +1,80 @@
+package com.stock.orderbook.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class OrdersTreapTest {
+    private static final int ROW_COUNT = 2000;
+
+    // prices with many ties, so that the order falls back to row
+    private final int[] prices = new Random(7).ints(ROW_COUNT, 0, 50).toArray();
+
+    private int compareByPrice(int row1, int row2) {
+        return Integer.compare(prices[row1], prices[row2]);
+    }
+
+    private int[] expectedRows(IntStream rows) {
+        return rows.boxed()
+                .sorted(Comparator.<Integer>comparingInt(row -> prices[row]).thenComparingInt(row -> row))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private OrdersTreap allRows() {
+        OrdersTreap.Editor editor = OrdersTreap.EMPTY.edit(this::compareByPrice);
+        IntStream.range(0, ROW_COUNT).forEach(editor::insert);
+        return editor.build();
+    }
+
+    @Test
+    public void testInsertKeepsPriorityOrder() {
+        OrdersTreap orders = allRows();
+
+        int[] expected = expectedRows(IntStream.range(0, ROW_COUNT));
+        Assertions.assertEquals(ROW_COUNT, orders.size());
+        Assertions.assertArrayEquals(expected, orders.topRows(ROW_COUNT));
+        Assertions.assertArrayEquals(Arrays.copyOf(expected, 5), orders.topRows(5));
+        Assertions.assertEquals(expected[1234], orders.getRow(1234));
+    }
+
+    @Test
+    public void testRemoveSharesNodesAndLeavesSourceUnchanged() {
+        OrdersTreap orders = allRows();
+        int[] allRows = orders.topRows(ROW_COUNT);
+
+        OrdersTreap.Editor editor = orders.edit(this::compareByPrice);
+        IntStream.range(0, ROW_COUNT).filter(row -> row % 100 == 0).forEach(editor::remove);
+        OrdersTreap activeOrders = editor.build();
+
+        Assertions.assertArrayEquals(expectedRows(IntStream.range(0, ROW_COUNT).filter(row -> row % 100 != 0)),
+                activeOrders.topRows(ROW_COUNT));
+        Assertions.assertArrayEquals(allRows, orders.topRows(ROW_COUNT));
+        // 1% of the rows are removed, each copying a path of the treap instead of the whole treap
+        Assertions.assertTrue(activeOrders.getNewNodes() < ROW_COUNT / 4);
+        Assertions.assertEquals(0, activeOrders.edit(this::compareByPrice).remove(0).build().getNewNodes());
+    }
+
+    @Test
+    public void testEditCopiesEachNodeAtMostOnce() {
+        OrdersTreap.Editor editor = OrdersTreap.EMPTY.edit(this::compareByPrice);
+        IntStream.range(0, ROW_COUNT / 2).forEach(editor::insert);
+        OrdersTreap orders = editor.build();
+
+        OrdersTreap.Editor nextEditor = orders.edit(this::compareByPrice);
+        IntStream.range(0, ROW_COUNT / 2).filter(row -> row % 2 == 0).forEach(nextEditor::remove);
+        IntStream.range(ROW_COUNT / 2, ROW_COUNT).forEach(nextEditor::insert);
+        OrdersTreap nextOrders = nextEditor.build();
+
+        Assertions.assertArrayEquals(expectedRows(IntStream.range(0, ROW_COUNT)
+                        .filter(row -> row >= ROW_COUNT / 2 || row % 2 != 0)),
+                nextOrders.topRows(ROW_COUNT));
+        // each of the shared nodes is copied at most once, besides the inserted nodes
+        Assertions.assertTrue(nextOrders.getNewNodes() <= orders.size() + ROW_COUNT / 2);
+        Assertions.assertEquals(ROW_COUNT / 2, orders.size());
+    }
+}
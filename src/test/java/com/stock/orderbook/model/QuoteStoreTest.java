@@ -0,0 +1,162 @@
+package com.stock.orderbook.model;
+
+import com.stock.orderbook.utils.TimestampParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QuoteStoreTest {
+
+    private Quote quote(String marketCenter, double bidPrice, double askPrice, String startTime) {
+        return Quote.builder()
+                .symbol("TEST")
+                .marketCenter(marketCenter)
+                .bidQuantity(100)
+                .askQuantity(200)
+                .bidPrice(bidPrice)
+                .askPrice(askPrice)
+                .startTime(startTime)
+                .endTime("2021-02-18T10:10:11.500Z")
+                .quoteConditions("R")
+                .sipfeedSeq(1)
+                .sipfeed("A")
+                .build();
+    }
+
+    @Test
+    public void testAddAndReadRows() {
+        QuoteStore quoteStore = new QuoteStore();
+        for (int i = 0; i < 40; i++) {
+            Assertions.assertEquals(i, quoteStore.add(quote(i % 2 == 0 ? "Q" : "N", 100 + i, 101 + i,
+                    "2021-02-18T10:10:10.001Z")));
+        }
+        quoteStore.trimToSize();
+
+        Assertions.assertEquals(40, quoteStore.size());
+        Assertions.assertEquals(139.0, quoteStore.getBidPrice(39));
+        Assertions.assertEquals(200, quoteStore.getAskQuantity(39));
+        Assertions.assertEquals("N", quoteStore.getMarketCenter(39));
+        Assertions.assertEquals(quote("Q", 100, 101, "2021-02-18T10:10:10.001Z"), quoteStore.getQuote("TEST", 0));
+    }
+
+    @Test
+    public void testSharedDictionaries() {
+        StringDictionary marketCenters = new StringDictionary();
+        QuoteStore first = new QuoteStore(marketCenters, new StringDictionary(), new StringDictionary());
+        QuoteStore second = new QuoteStore(marketCenters, new StringDictionary(), new StringDictionary());
+        first.add(quote("Q", 1, 2, "2021-02-18T10:10:10.001Z"));
+        second.add(quote("Q", 1, 2, "2021-02-18T10:10:10.001Z"));
+        second.add(quote("N", 1, 2, "2021-02-18T10:10:10.001Z"));
+
+        Assertions.assertEquals(2, marketCenters.size());
+        Assertions.assertEquals("Q", second.getMarketCenter(0));
+    }
+
+    @Test
+    public void testBidsAndAsksComparators() {
+        QuoteStore quoteStore = new QuoteStore();
+        quoteStore.add(quote("Q", 10.1, 10.3, "2021-02-18T10:10:10.002Z"));
+        quoteStore.add(quote("Q", 10.2, 10.4, "2021-02-18T10:10:10.003Z"));
+        quoteStore.add(quote("Q", 10.1, 10.3, "2021-02-18T10:10:10.001Z"));
+
+        OrdersTreap.Editor bids = OrdersTreap.EMPTY.edit(quoteStore::compareBids);
+        OrdersTreap.Editor asks = OrdersTreap.EMPTY.edit(quoteStore::compareAsks);
+        for (int row = 0; row < quoteStore.size(); row++) {
+            bids.insert(row);
+            asks.insert(row);
+        }
+
+        Assertions.assertArrayEquals(new int[]{1, 2}, bids.build().topRows(2));
+        Assertions.assertArrayEquals(new int[]{2, 0}, asks.build().topRows(2));
+    }
+
+    @Test
+    public void testAddAllTranslatesCodesAndSortByStartTimeIsStable() {
+        QuoteStore first = new QuoteStore();
+        first.add(quote("Q", 1, 2, "2021-02-18T10:10:10.002Z"));
+        first.add(quote("N", 2, 3, "2021-02-18T10:10:10.003Z"));
+        QuoteStore second = new QuoteStore();
+        second.add(quote("N", 3, 4, "2021-02-18T10:10:10.001Z"));
+        second.add(quote("N", 4, 5, "2021-02-18T10:10:10.002Z"));
+
+        QuoteStore merged = new QuoteStore();
+        int[] marketCenterCodes = {merged.getMarketCenterDictionary().encode("N")};
+        int[] quoteConditionsCodes = {merged.getQuoteConditionsDictionary().encode("R")};
+        int[] sipfeedCodes = {merged.getSipfeedDictionary().encode("A")};
+        merged.addAll(first, new int[]{merged.getMarketCenterDictionary().encode("Q"), marketCenterCodes[0]},
+                quoteConditionsCodes, sipfeedCodes);
+        merged.addAll(second, marketCenterCodes, quoteConditionsCodes, sipfeedCodes);
+
+        Assertions.assertTrue(merged.sortByStartTime());
+        Assertions.assertFalse(merged.sortByStartTime());
+        Assertions.assertEquals(4, merged.size());
+        Assertions.assertEquals(3.0, merged.getBidPrice(0));
+        Assertions.assertEquals(1.0, merged.getBidPrice(1));
+        Assertions.assertEquals("Q", merged.getMarketCenter(1));
+        Assertions.assertEquals(4.0, merged.getBidPrice(2));
+        Assertions.assertEquals("N", merged.getMarketCenter(3));
+        Assertions.assertEquals("R", merged.getQuoteConditions(3));
+    }
+
+    @Test
+    public void testEndTimeIndex() {
+        QuoteStore quoteStore = new QuoteStore();
+        String[] endTimes = {"2021-02-18T10:10:12.000Z", "2021-02-18T10:10:11.000Z", "2021-02-18T10:10:13.000Z",
+                "2021-02-18T10:10:11.000Z"};
+        for (String endTime : endTimes) {
+            quoteStore.add(Quote.builder()
+                    .startTime("2021-02-18T10:10:10.001Z")
+                    .endTime(endTime)
+                    .build());
+        }
+        quoteStore.indexEndTimes();
+
+        Assertions.assertEquals(1, quoteStore.getRowByEndTime(0));
+        Assertions.assertEquals(3, quoteStore.getRowByEndTime(1));
+        Assertions.assertEquals(0, quoteStore.getRowByEndTime(2));
+        Assertions.assertEquals(2, quoteStore.getRowByEndTime(3));
+        Assertions.assertEquals(2, quoteStore.firstEndTimePositionAfter(TimestampParser.parse("2021-02-18T10:10:11Z")));
+        Assertions.assertEquals(4, quoteStore.firstEndTimePositionAfter(TimestampParser.parse("2021-02-18T10:10:13Z")));
+
+        // the index follows rows added later
+        quoteStore.add(quote("Q", 1, 2, "2021-02-18T10:10:10.001Z"));
+        Assertions.assertEquals(4, quoteStore.getRowByEndTime(2));
+    }
+
+    @Test
+    public void testAppendRowsExtendsEndTimeIndex() {
+        QuoteStore quoteStore = new QuoteStore();
+        QuoteStore appended = new QuoteStore(quoteStore.getMarketCenterDictionary(),
+                quoteStore.getQuoteConditionsDictionary(), quoteStore.getSipfeedDictionary());
+        QuoteStore rebuilt = new QuoteStore();
+        for (int i = 0; i < 60; i++) {
+            long startTime = TimestampParser.parse("2021-02-18T10:10:10Z") + i * 1_000_000L;
+            Quote quote = Quote.builder()
+                    .marketCenter(i % 3 == 0 ? "Q" : "N")
+                    .bidPrice(100.0 + i)
+                    .startTime(TimestampParser.format(startTime))
+                    .endTime(TimestampParser.format(startTime + (i * 7919L % 13) * 1_000_000L))
+                    .build();
+            (i < 20 ? quoteStore : appended).add(quote);
+            rebuilt.add(quote);
+        }
+        quoteStore.indexEndTimes();
+        EndTimeIndex firstIndex = quoteStore.getEndTimeIndex();
+        quoteStore.appendRows(appended, 0, 25);
+        quoteStore.appendRows(appended, 25, 40);
+
+        Assertions.assertEquals(60, quoteStore.size());
+        Assertions.assertEquals(rebuilt.getQuote("TEST", 45), quoteStore.getQuote("TEST", 45));
+        Assertions.assertEquals(20, firstIndex.size());
+        EndTimeIndex index = quoteStore.getEndTimeIndex();
+        Assertions.assertEquals(60, index.size());
+        for (int position = 0; position < 60; position++) {
+            Assertions.assertEquals(rebuilt.getRowByEndTime(position), index.getRow(position));
+        }
+        long timestamp = quoteStore.getStartTime(30);
+        Assertions.assertEquals(rebuilt.firstEndTimePositionAfter(timestamp), index.firstPositionAfter(timestamp));
+
+        // quotes starting before the last quote are not appended
+        Assertions.assertThrows(IllegalArgumentException.class, () -> quoteStore.appendRows(appended, 0, 1));
+        Assertions.assertEquals(60, quoteStore.size());
+    }
+}
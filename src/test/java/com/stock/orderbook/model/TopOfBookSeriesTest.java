@@ -0,0 +1,121 @@
+package com.stock.orderbook.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TopOfBookSeriesTest {
+    private static final long FIRST_TIMESTAMP = 1_613_643_010_000_000_000L;
+
+    /**
+     * Quotes often starting and ending together, at few prices, some ending as they start
+     */
+    private static QuoteStore randomQuotes(Random random, int count) {
+        QuoteStore quotes = new QuoteStore();
+        long startTime = FIRST_TIMESTAMP;
+        for (int i = 0; i < count; i++) {
+            startTime += random.nextInt(3) * 1000L;
+            double price = 100 + random.nextInt(10) / 100.0;
+            quotes.add(StringDictionary.NULL_CODE, 100 + random.nextInt(3), 200 + random.nextInt(3), price,
+                    price + 0.05, startTime, startTime + random.nextInt(20) * 1000L, StringDictionary.NULL_CODE, 0,
+                    StringDictionary.NULL_CODE);
+        }
+        return quotes;
+    }
+
+    /**
+     * @return int - row of the best active quote at timestamp in the order of the book, -1 if there is none
+     */
+    private static int bestRow(QuoteStore quotes, long timestamp, boolean bids) {
+        int bestRow = -1;
+        for (int row = 0; row < quotes.size(); row++) {
+            if (quotes.getStartTime(row) > timestamp || quotes.getEndTime(row) <= timestamp) {
+                continue;
+            }
+            if (bestRow < 0 || (bids ? quotes.compareBids(row, bestRow) : quotes.compareAsks(row, bestRow)) < 0) {
+                bestRow = row;
+            }
+        }
+        return bestRow;
+    }
+
+    private static void assertTopOfBook(QuoteStore quotes, TopOfBookSeries series, long timestamp) {
+        int bestBid = bestRow(quotes, timestamp, true);
+        int index = series.getBids().indexAt(timestamp);
+        Assertions.assertEquals(bestBid >= 0, index >= 0 && series.getBids().hasOrder(index));
+        if (bestBid >= 0) {
+            Assertions.assertEquals(quotes.getBidPrice(bestBid), series.getBids().getPrice(index));
+            Assertions.assertEquals(quotes.getBidQuantity(bestBid), series.getBids().getQuantity(index));
+        }
+        int bestAsk = bestRow(quotes, timestamp, false);
+        index = series.getAsks().indexAt(timestamp);
+        Assertions.assertEquals(bestAsk >= 0, index >= 0 && series.getAsks().hasOrder(index));
+        if (bestAsk >= 0) {
+            Assertions.assertEquals(quotes.getAskPrice(bestAsk), series.getAsks().getPrice(index));
+            Assertions.assertEquals(quotes.getAskQuantity(bestAsk), series.getAsks().getQuantity(index));
+        }
+    }
+
+    @Test
+    public void testSeriesMatchesBestActiveQuotes() {
+        QuoteStore quotes = randomQuotes(new Random(20210218L), 500);
+        TopOfBookSeries series = TopOfBookSeries.of(quotes);
+        Assertions.assertTrue(series.getBids().size() > 10);
+        Assertions.assertTrue(series.getBids().size() < quotes.size());
+        for (long timestamp = FIRST_TIMESTAMP - 1000; timestamp <= quotes.getEndTime(quotes.size() - 1) + 20_000;
+             timestamp += 500) {
+            assertTopOfBook(quotes, series, timestamp);
+        }
+        // consecutive entries differ
+        for (int i = 1; i < series.getBids().size(); i++) {
+            Assertions.assertTrue(series.getBids().getTimestamp(i - 1) < series.getBids().getTimestamp(i));
+            Assertions.assertFalse(series.getBids().getPrice(i - 1) == series.getBids().getPrice(i)
+                    && series.getBids().getQuantity(i - 1) == series.getBids().getQuantity(i));
+        }
+    }
+
+    @Test
+    public void testAppendMatchesSeriesOfAllQuotes() {
+        Random random = new Random(7L);
+        QuoteStore allQuotes = randomQuotes(random, 1000);
+        QuoteStore quotes = new QuoteStore(allQuotes.getMarketCenterDictionary(),
+                allQuotes.getQuoteConditionsDictionary(), allQuotes.getSipfeedDictionary());
+        TopOfBookSeries series = TopOfBookSeries.EMPTY;
+        TopOfBookSeries halfSeries = null;
+        int halfSize = 0;
+        for (int row = 0; row < allQuotes.size(); ) {
+            int toRow = Math.min(allQuotes.size(), row + 1 + random.nextInt(40));
+            quotes.appendRows(allQuotes, row, toRow);
+            series = series.append(quotes);
+            row = toRow;
+            if (halfSeries == null && row >= allQuotes.size() / 2) {
+                halfSeries = series;
+                halfSize = row;
+            }
+        }
+
+        TopOfBookSeries expectedSeries = TopOfBookSeries.of(allQuotes);
+        Assertions.assertEquals(expectedSeries.getBids().size(), series.getBids().size());
+        Assertions.assertEquals(expectedSeries.getAsks().size(), series.getAsks().size());
+        for (int i = 0; i < expectedSeries.getBids().size(); i++) {
+            Assertions.assertEquals(expectedSeries.getBids().getTimestamp(i), series.getBids().getTimestamp(i));
+            Assertions.assertEquals(expectedSeries.getBids().getPrice(i), series.getBids().getPrice(i));
+            Assertions.assertEquals(expectedSeries.getBids().getQuantity(i), series.getBids().getQuantity(i));
+        }
+        for (int i = 0; i < expectedSeries.getAsks().size(); i++) {
+            Assertions.assertEquals(expectedSeries.getAsks().getTimestamp(i), series.getAsks().getTimestamp(i));
+            Assertions.assertEquals(expectedSeries.getAsks().getPrice(i), series.getAsks().getPrice(i));
+            Assertions.assertEquals(expectedSeries.getAsks().getQuantity(i), series.getAsks().getQuantity(i));
+        }
+
+        // an earlier version still answers for the quotes it was built from
+        QuoteStore halfQuotes = new QuoteStore(allQuotes.getMarketCenterDictionary(),
+                allQuotes.getQuoteConditionsDictionary(), allQuotes.getSipfeedDictionary());
+        halfQuotes.appendRows(allQuotes, 0, halfSize);
+        for (long timestamp = FIRST_TIMESTAMP; timestamp <= halfQuotes.getEndTime(halfSize - 1) + 20_000;
+             timestamp += 700) {
+            assertTopOfBook(halfQuotes, halfSeries, timestamp);
+        }
+    }
+}
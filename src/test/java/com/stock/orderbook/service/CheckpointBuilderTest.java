@@ -0,0 +1,89 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.TimestampParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+public class CheckpointBuilderTest {
+    Symbol symbol;
+    QuoteStore quotes;
+    TopOrdersFinder topOrdersFinder = new TopOrdersFinder();
+    OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100,
+            new SymbolLanes(0, Duration.ZERO), Runnable::run);
+
+    public void initialize() {
+        List<String> startTimes = List.of(
+                "2021-02-18T10:10:10.001Z",
+                "2021-02-18T10:10:10.002Z",
+                "2021-02-18T10:10:10.103Z",
+                "2021-02-18T10:10:10.304Z",
+                "2021-02-18T10:10:11.001Z");
+        List<String> endTimes = List.of(
+                "2021-02-18T10:10:10.101Z",
+                "2021-02-18T10:10:10.202Z",
+                "2021-02-18T10:10:10.303Z",
+                "2021-02-18T10:10:11.404Z",
+                "2021-02-18T10:10:12.404Z");
+
+        List<Double> askPrices = List.of(100.10, 100.20, 100.30, 100.40, 100.50);
+        quotes = new QuoteStore();
+        IntStream.range(0, startTimes.size())
+                .mapToObj(i -> Quote.builder()
+                        .startTime(startTimes.get(i))
+                        .endTime(endTimes.get(i))
+                        .askPrice(askPrices.get(i))
+                        .bidPrice(askPrices.get(i) - 1)
+                        .build())
+                .forEach(quotes::add);
+
+        symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, 0L, new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+    }
+
+    @Test
+    public void testCheckpointsEveryNQuotes() {
+        initialize();
+        CheckpointBuilder checkpointBuilder = new CheckpointBuilder(topOrdersFinder, ordersCacheManager, 2,
+                Duration.ZERO);
+        Assertions.assertEquals(2, checkpointBuilder.buildCheckpoints(symbol));
+
+        OrdersSnapshot orders = symbol.getOrdersCache().get(TimestampParser.parse("2021-02-18T10:10:10.002Z"));
+        Assertions.assertTrue(orders.isPinned());
+        Assertions.assertEquals(2, orders.getQuotesIndex());
+        Assertions.assertArrayEquals(new int[]{0, 1}, orders.getAsks().topRows(5));
+        Assertions.assertArrayEquals(new int[]{1, 0}, orders.getBids().topRows(5));
+
+        orders = symbol.getOrdersCache().get(TimestampParser.parse("2021-02-18T10:10:10.304Z"));
+        Assertions.assertEquals(4, orders.getQuotesIndex());
+        Assertions.assertArrayEquals(new int[]{3}, orders.getAsks().topRows(5));
+        Assertions.assertEquals(3, symbol.getOrdersCache().size());
+    }
+
+    @Test
+    public void testCheckpointsEveryIntervalOfMarketTime() {
+        initialize();
+        CheckpointBuilder checkpointBuilder = new CheckpointBuilder(topOrdersFinder, ordersCacheManager, 0,
+                Duration.ofMillis(250));
+        Assertions.assertEquals(2, checkpointBuilder.buildCheckpoints(symbol));
+
+        OrdersSnapshot orders = symbol.getOrdersCache().get(TimestampParser.parse("2021-02-18T10:10:10.304Z"));
+        Assertions.assertArrayEquals(new int[]{3}, orders.getBids().topRows(5));
+        orders = symbol.getOrdersCache().get(TimestampParser.parse("2021-02-18T10:10:11.001Z"));
+        Assertions.assertArrayEquals(new int[]{4, 3}, orders.getBids().topRows(5));
+        Assertions.assertEquals(5, orders.getQuotesIndex());
+    }
+}
@@ -0,0 +1,175 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.TimestampParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OrderBookFinderTest {
+    SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+    OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes,
+            Runnable::run);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Symbol symbol;
+    OrderBookFinder orderBookFinder;
+
+    public void initialize() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        quotes.add(Quote.builder().bidPrice(99.75).bidQuantity(300).askPrice(100.25).askQuantity(400)
+                .startTime("2021-02-18T10:10:10.002Z").endTime("2021-02-18T10:10:10.500Z").build());
+        symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, TimestampParser.parse("2021-02-18T10:10:10.000Z"),
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        orderBookFinder = new OrderBookFinder(new TopOrdersFinder(), ordersCacheManager,
+                new OrderBookMetrics(meterRegistry, ordersCacheManager, symbolLanes), Map.of("TEST", symbol), 5,
+                symbolLanes);
+    }
+
+    private String orderBook(String timestamp) {
+        ResponseBuffer buffer = new ResponseBuffer();
+        orderBookFinder.appendOrderBook("TEST", TimestampParser.parse(timestamp), buffer);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testBothSidesShareOneSnapshot() {
+        initialize();
+        Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)\nBest Asks: 100.25 (400); 100.50 (200)",
+                orderBook("2021-02-18T10:10:10.100Z"));
+        Assertions.assertEquals(2, symbol.getOrdersCache().size());
+        Assertions.assertEquals(1, ordersCacheManager.getStats().getMisses());
+
+        // a later request finds the same snapshot
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.100Z");
+        Assertions.assertSame(symbol.getOrdersCache().get(timestamp), orderBookFinder.findOrders(symbol, timestamp));
+        Assertions.assertEquals(1, ordersCacheManager.getStats().getHits());
+    }
+
+    @Test
+    public void testOneSidedStrategiesShareTheSnapshot() {
+        initialize();
+        TopOrdersFinderStrategy bids = new TopBidOrdersFinder(orderBookFinder, Map.of("TEST", symbol), 5);
+        TopOrdersFinderStrategy asks = new TopAskOrdersFinder(orderBookFinder, Map.of("TEST", symbol), 5);
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.100Z");
+        Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)", bids.topOrders("TEST", timestamp));
+        Assertions.assertEquals("Best Asks: 100.25 (400); 100.50 (200)", asks.topOrders("TEST", timestamp));
+
+        // the asks are taken from the snapshot the bids request derived
+        Assertions.assertEquals(1, ordersCacheManager.getStats().getMisses());
+        Assertions.assertEquals(1, ordersCacheManager.getStats().getHits());
+    }
+
+    @Test
+    public void testRequestMetrics() {
+        initialize();
+        orderBook("2021-02-18T10:10:10.100Z");
+        orderBook("2021-02-18T10:10:10.100Z");
+        orderBookFinder.findOrders(symbol, TimestampParser.parse("2021-02-18T10:10:10.100Z"));
+        Assertions.assertEquals(1, meterRegistry.get("orderbook.cache.requests").tag("result", "miss").counter()
+                .count());
+        Assertions.assertEquals(2, meterRegistry.get("orderbook.cache.requests").tag("result", "hit").counter()
+                .count());
+
+        // both quotes started before the timestamp are replayed by the miss
+        Assertions.assertEquals(1, meterRegistry.get("orderbook.replay.quotes").summary().count());
+        Assertions.assertEquals(2, meterRegistry.get("orderbook.replay.quotes").summary().totalAmount());
+        Assertions.assertEquals(3, meterRegistry.get("orderbook.request.stage").tag("stage", "lookup").timer()
+                .count());
+        Assertions.assertEquals(2, meterRegistry.get("orderbook.request.stage").tag("stage", "format").timer()
+                .count());
+        Assertions.assertEquals(ordersCacheManager.getStats().getEstimatedBytes(),
+                meterRegistry.get("orderbook.cache.symbol.bytes").tag("symbol", "TEST").gauge().value());
+    }
+
+    @Test
+    public void testFindOrderBooksInRequestOrder() {
+        initialize();
+        String[] timestamps = {"2021-02-18T10:10:10.600Z", "2021-02-18T10:10:09.000Z", "2021-02-18T10:10:10.002Z",
+                "2021-02-18T10:10:12.000Z", "2021-02-18T10:10:10.600Z", "2021-02-18T10:10:10.001Z"};
+        String[] symbolNames = new String[timestamps.length + 1];
+        long[] epochNanos = new long[timestamps.length + 1];
+        for (int i = 0; i < timestamps.length; i++) {
+            symbolNames[i] = "TEST";
+            epochNanos[i] = TimestampParser.parse(timestamps[i]);
+        }
+
+        String[] orderBooks = orderBookFinder.findOrderBooks(symbolNames, epochNanos);
+
+        // the sweep does not publish its books
+        Assertions.assertEquals(1, symbol.getOrdersCache().size());
+        for (int i = 0; i < timestamps.length; i++) {
+            Assertions.assertEquals(orderBook(timestamps[i]), orderBooks[i]);
+        }
+        Assertions.assertNull(orderBooks[timestamps.length]);
+    }
+
+    @Test
+    public void testCacheIsReadOnTheLaneOfTheSymbol() {
+        try (SymbolLanes lanes = new SymbolLanes(2, Duration.ZERO)) {
+            symbolLanes = lanes;
+            ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, lanes, Runnable::run);
+            initialize();
+            Set<String> readerThreads = ConcurrentHashMap.newKeySet();
+            ConcurrentSkipListMap<Long, OrdersSnapshot> ordersCache = new ConcurrentSkipListMap<>(
+                    symbol.getOrdersCache()) {
+                @Override
+                public Map.Entry<Long, OrdersSnapshot> floorEntry(Long key) {
+                    readerThreads.add(Thread.currentThread().getName());
+                    return super.floorEntry(key);
+                }
+            };
+            symbol.setOrdersCache(ordersCache);
+
+            Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)\nBest Asks: 100.25 (400); 100.50 (200)",
+                    orderBook("2021-02-18T10:10:10.100Z"));
+            long timestamp = TimestampParser.parse("2021-02-18T10:10:10.600Z");
+            Assertions.assertEquals("Best Bids: 99.50 (100)\nBest Asks: 100.50 (200)",
+                    orderBookFinder.findOrderBooks(new String[]{"TEST"}, new long[]{timestamp})[0]);
+            Assertions.assertEquals(Set.of("symbol-lane-" + lanes.laneOf("TEST")), readerThreads);
+        }
+    }
+
+    @Test
+    public void testTooOldAndEmptyOrderBook() {
+        initialize();
+        Assertions.assertEquals("Best Bids: Too old timestamp provided. No bids found. \n"
+                + "Best Asks: Too old timestamp provided. No asks found. ", orderBook("2021-02-18T10:10:09.000Z"));
+        Assertions.assertEquals("Best Bids: No bids found. \nBest Asks: No asks found. ",
+                orderBook("2021-02-18T10:10:12.000Z"));
+    }
+
+    @Test
+    public void testNearerLaterSnapshotIsRunBackwards() {
+        initialize();
+        Assertions.assertEquals("Best Bids: 99.50 (100)\nBest Asks: 100.50 (200)",
+                orderBook("2021-02-18T10:10:10.600Z"));
+        Assertions.assertEquals(2, meterRegistry.get("orderbook.replay.quotes").summary().totalAmount());
+
+        // no quote started between the timestamp and the later snapshot, which is nearer than the first snapshot:
+        // the quote ended in between is restored instead of replaying both quotes again
+        Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)\nBest Asks: 100.25 (400); 100.50 (200)",
+                orderBook("2021-02-18T10:10:10.003Z"));
+        Assertions.assertEquals(2, meterRegistry.get("orderbook.replay.quotes").summary().totalAmount());
+        Assertions.assertEquals(2, symbol.getOrdersCache()
+                .get(TimestampParser.parse("2021-02-18T10:10:10.003Z")).getQuotesIndex());
+    }
+}
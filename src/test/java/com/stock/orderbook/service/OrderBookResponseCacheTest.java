@@ -0,0 +1,97 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.RenderedOrderBook;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.TimestampParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OrderBookResponseCacheTest {
+    SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+    OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes,
+            Runnable::run);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    QuoteStore quotes;
+
+    private OrderBookResponseCache responseCache(long maxBytes) {
+        quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        Symbol symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, TimestampParser.parse("2021-02-18T10:10:10.000Z"),
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        OrderBookMetrics orderBookMetrics = new OrderBookMetrics(meterRegistry, ordersCacheManager, symbolLanes);
+        OrderBookFinder orderBookFinder = new OrderBookFinder(new TopOrdersFinder(), ordersCacheManager,
+                orderBookMetrics, Map.of("TEST", symbol), 5, symbolLanes);
+        return new OrderBookResponseCache(orderBookFinder, Map.of("TEST", symbol), orderBookMetrics, maxBytes);
+    }
+
+    private double responseRequests(String result) {
+        return meterRegistry.get("orderbook.response.cache.requests").tag("result", result).counter().count();
+    }
+
+    @Test
+    public void testHitServesRenderedBytes() {
+        OrderBookResponseCache responseCache = responseCache(1024 * 1024);
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.500Z");
+        RenderedOrderBook orderBook = responseCache.getOrderBook("TEST", timestamp);
+        Assertions.assertEquals("Best Bids: 99.50 (100)\nBest Asks: 100.50 (200)",
+                new String(orderBook.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertSame(orderBook, responseCache.getOrderBook("TEST", timestamp));
+        Assertions.assertEquals(1, responseRequests("hit"));
+        Assertions.assertEquals(1, responseRequests("miss"));
+
+        // a quote started before the timestamp is appended: the response is rendered again, with another tag
+        quotes.add(Quote.builder().bidPrice(99.75).bidQuantity(300).askPrice(100.25).askQuantity(400)
+                .startTime("2021-02-18T10:10:10.100Z").endTime("2021-02-18T10:10:11.000Z").build());
+        RenderedOrderBook refreshedOrderBook = responseCache.getOrderBook("TEST", timestamp);
+        Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)\nBest Asks: 100.25 (400); 100.50 (200)",
+                new String(refreshedOrderBook.getBody(), StandardCharsets.UTF_8));
+        Assertions.assertNotEquals(orderBook.getEtag(), refreshedOrderBook.getEtag());
+        Assertions.assertEquals(1, responseCache.size());
+
+        // the too old responses stay current
+        long tooOldTimestamp = TimestampParser.parse("2021-02-18T10:10:09.000Z");
+        Assertions.assertSame(responseCache.getOrderBook("TEST", tooOldTimestamp),
+                responseCache.getOrderBook("TEST", tooOldTimestamp));
+    }
+
+    @Test
+    public void testCachedBytesAreBounded() {
+        // room for about 10 responses
+        long maxBytes = 10 * (OrderBookResponseCache.ENTRY_OVERHEAD_BYTES + 50);
+        OrderBookResponseCache responseCache = responseCache(maxBytes);
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.500Z");
+        for (int i = 0; i < 100; i++) {
+            responseCache.getOrderBook("TEST", timestamp + i);
+            Assertions.assertTrue(responseCache.getCachedBytes() <= maxBytes);
+        }
+        Assertions.assertTrue(responseCache.size() >= 5);
+        Assertions.assertEquals(100, responseRequests("miss"));
+    }
+
+    @Test
+    public void testDisabledCacheRendersEveryRequest() {
+        OrderBookResponseCache responseCache = responseCache(0);
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.500Z");
+        RenderedOrderBook orderBook = responseCache.getOrderBook("TEST", timestamp);
+        Assertions.assertNotSame(orderBook, responseCache.getOrderBook("TEST", timestamp));
+        Assertions.assertEquals(orderBook.getEtag(), responseCache.getOrderBook("TEST", timestamp).getEtag());
+        Assertions.assertEquals(0, responseCache.size());
+    }
+}
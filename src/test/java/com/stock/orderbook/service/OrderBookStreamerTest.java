@@ -0,0 +1,73 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.TimestampParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OrderBookStreamerTest {
+    OrderBookStreamer orderBookStreamer;
+
+    public void initialize() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        quotes.add(Quote.builder().bidPrice(99.75).bidQuantity(300).askPrice(100.25).askQuantity(400)
+                .startTime("2021-02-18T10:10:10.002Z").endTime("2021-02-18T10:10:10.500Z").build());
+        Symbol symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        symbol.getOrdersCache().put(TimestampParser.parse("2021-02-18T10:10:10.000Z"),
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        orderBookStreamer = new OrderBookStreamer(new TopOrdersFinder(), Map.of("TEST", symbol), 1,
+                new SymbolLanes(0, Duration.ZERO));
+    }
+
+    private String stream(String start, String end, long stepNanos) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        orderBookStreamer.streamOrderBooks("TEST", TimestampParser.parse(start), TimestampParser.parse(end),
+                stepNanos, outputStream);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStreamOnEveryChange() throws IOException {
+        initialize();
+        // the stream starts before the first cached snapshot, replaying the quotes from the first one
+        Assertions.assertEquals(
+                "{\"timestamp\":\"2021-02-18T10:10:09.500Z\",\"bids\":[],\"asks\":[]}\n"
+                + "{\"timestamp\":\"2021-02-18T10:10:10.001Z\",\"bids\":[{\"price\":99.50,\"quantity\":100}],"
+                + "\"asks\":[{\"price\":100.50,\"quantity\":200}]}\n"
+                + "{\"timestamp\":\"2021-02-18T10:10:10.002Z\",\"bids\":[{\"price\":99.75,\"quantity\":300}],"
+                + "\"asks\":[{\"price\":100.25,\"quantity\":400}]}\n"
+                + "{\"timestamp\":\"2021-02-18T10:10:10.500Z\",\"bids\":[{\"price\":99.50,\"quantity\":100}],"
+                + "\"asks\":[{\"price\":100.50,\"quantity\":200}]}\n"
+                + "{\"timestamp\":\"2021-02-18T10:10:11.001Z\",\"bids\":[],\"asks\":[]}\n",
+                stream("2021-02-18T10:10:09.500Z", "2021-02-18T10:10:12.000Z", 0));
+    }
+
+    @Test
+    public void testStreamEveryStep() throws IOException {
+        initialize();
+        String lines = stream("2021-02-18T10:10:10.000Z", "2021-02-18T10:10:11.000Z",
+                Duration.ofMillis(100).toNanos());
+        Assertions.assertEquals(11, lines.split("\n").length);
+        Assertions.assertTrue(lines.startsWith("{\"timestamp\":\"2021-02-18T10:10:10Z\",\"bids\":[],\"asks\":[]}\n"
+                + "{\"timestamp\":\"2021-02-18T10:10:10.100Z\",\"bids\":[{\"price\":99.75,\"quantity\":300}]"));
+        Assertions.assertTrue(lines.endsWith("{\"timestamp\":\"2021-02-18T10:10:11Z\","
+                + "\"bids\":[{\"price\":99.50,\"quantity\":100}],\"asks\":[{\"price\":100.50,\"quantity\":200}]}\n"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.model.CacheStats;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class OrdersCacheManagerTest {
+    private static final long SNAPSHOT_BYTES = snapshot(0).estimatedBytes();
+
+    ConcurrentNavigableMap<Long, OrdersSnapshot> ordersCache = new ConcurrentSkipListMap<>();
+    Symbol symbol;
+
+    public void initialize(int quoteCount) {
+        QuoteStore quotes = new QuoteStore();
+        for (int i = 0; i < quoteCount; i++) {
+            quotes.add(Quote.builder()
+                    .startTime("2021-02-18T10:10:10.001Z")
+                    .endTime("2021-02-18T10:10:11.001Z")
+                    .build());
+        }
+        symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(ordersCache)
+                .build();
+    }
+
+    private static OrdersSnapshot snapshot(int quotesIndex) {
+        return new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, quotesIndex);
+    }
+
+    private OrdersCacheManager cacheManager(long maxBytes, int maxEntriesPerSymbol, int maxReplayQuotes) {
+        // evicts on the publishing thread
+        OrdersCacheManager cacheManager = new OrdersCacheManager(maxBytes, maxEntriesPerSymbol, maxReplayQuotes,
+                new SymbolLanes(0, Duration.ZERO), Runnable::run);
+        cacheManager.pin(symbol, 0L, snapshot(0).pinned());
+        return cacheManager;
+    }
+
+    @Test
+    public void testPublishKeepsFirstSnapshotAndCountsHitRatio() {
+        initialize(10);
+        OrdersCacheManager cacheManager = cacheManager(Long.MAX_VALUE, 100, 10);
+        OrdersSnapshot first = snapshot(5);
+        Assertions.assertSame(first, cacheManager.publish(symbol, 5L, first));
+        Assertions.assertSame(first, cacheManager.publish(symbol, 5L, snapshot(5)));
+
+        cacheManager.recordMiss(ordersCache.get(0L));
+        cacheManager.recordHit(first);
+        cacheManager.recordHit(first);
+        cacheManager.recordHit(first);
+
+        CacheStats stats = cacheManager.getStats();
+        Assertions.assertEquals(1, stats.getEntryCount());
+        Assertions.assertEquals(1, stats.getPinnedCount());
+        Assertions.assertEquals(2 * SNAPSHOT_BYTES, stats.getEstimatedBytes());
+        Assertions.assertEquals(0.75, stats.getHitRatio());
+    }
+
+    @Test
+    public void testEvictionKeepsPinnedAndReferencedSnapshotsWithinBudget() {
+        initialize(10);
+        OrdersCacheManager cacheManager = cacheManager(4 * SNAPSHOT_BYTES, 100, 10);
+        for (int i = 1; i <= 3; i++) {
+            cacheManager.publish(symbol, i, snapshot(i));
+        }
+        cacheManager.recordHit(ordersCache.get(1L));
+        cacheManager.publish(symbol, 4L, snapshot(4));
+
+        // the oldest unreferenced snapshot is evicted
+        Assertions.assertEquals(4, ordersCache.size());
+        Assertions.assertTrue(ordersCache.containsKey(0L));
+        Assertions.assertTrue(ordersCache.containsKey(1L));
+        Assertions.assertFalse(ordersCache.containsKey(2L));
+        Assertions.assertEquals(1, cacheManager.getStats().getEvictions());
+        Assertions.assertEquals(4 * SNAPSHOT_BYTES, cacheManager.getStats().getEstimatedBytes());
+    }
+
+    @Test
+    public void testEvictionAndDiscardRunOnTheLaneOfTheSymbol() {
+        Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+        ordersCache = new ConcurrentSkipListMap<>() {
+            @Override
+            public boolean remove(Object key, Object value) {
+                writerThreads.add(Thread.currentThread().getName());
+                return super.remove(key, value);
+            }
+
+            @Override
+            public void clear() {
+                writerThreads.add(Thread.currentThread().getName());
+                super.clear();
+            }
+        };
+        initialize(10);
+        try (SymbolLanes symbolLanes = new SymbolLanes(2, Duration.ZERO)) {
+            OrdersCacheManager cacheManager = new OrdersCacheManager(2 * SNAPSHOT_BYTES, 100, 10, symbolLanes,
+                    Runnable::run);
+            cacheManager.pin(symbol, 0L, snapshot(0).pinned());
+            cacheManager.publish(symbol, 1L, snapshot(1));
+            cacheManager.publish(symbol, 2L, snapshot(2));
+            Assertions.assertEquals(1, cacheManager.getStats().getEvictions());
+
+            cacheManager.discard(symbol);
+            Assertions.assertTrue(ordersCache.isEmpty());
+            Assertions.assertEquals(0, cacheManager.getStats().getEstimatedBytes());
+            Assertions.assertEquals(Set.of("symbol-lane-" + symbolLanes.laneOf("TEST")), writerThreads);
+        }
+    }
+
+    @Test
+    public void testSnapshotIsChargedTheNodesSharedWithEvictedSnapshot() {
+        initialize(10);
+        OrdersCacheManager cacheManager = cacheManager(Long.MAX_VALUE, 1, 10);
+        OrdersTreap.Editor editor = OrdersTreap.EMPTY.edit(Integer::compare);
+        for (int row = 0; row < 8; row++) {
+            editor.insert(row);
+        }
+        OrdersTreap orders = editor.build();
+        OrdersTreap nextOrders = orders.edit(Integer::compare).insert(8).build();
+        cacheManager.publish(symbol, 4L, new OrdersSnapshot(orders, orders, 8));
+        cacheManager.publish(symbol, 6L, new OrdersSnapshot(nextOrders, nextOrders, 9));
+
+        // the snapshot at 4 is evicted, the nodes it shares with the snapshot at 6 are still charged by 6
+        Assertions.assertFalse(ordersCache.containsKey(4L));
+        Assertions.assertEquals(SNAPSHOT_BYTES + 2 * 9 * OrdersTreap.NODE_BYTES + SNAPSHOT_BYTES,
+                cacheManager.getStats().getEstimatedBytes());
+    }
+
+    @Test
+    public void testEvictionKeepsSnapshotsNeededToBoundReplay() {
+        initialize(10);
+        OrdersCacheManager cacheManager = cacheManager(Long.MAX_VALUE, 1, 4);
+        cacheManager.publish(symbol, 4L, snapshot(4));
+        cacheManager.publish(symbol, 6L, snapshot(6));
+
+        // evicting 6 would replay 6 quotes from 4 to the end, evicting 4 replays 6 quotes from 0 to 6
+        Assertions.assertEquals(3, ordersCache.size());
+
+        cacheManager.publish(symbol, 8L, snapshot(8));
+        // 6 is evicted as requests between 4 and 8 replay 4 quotes
+        Assertions.assertEquals(3, ordersCache.size());
+        Assertions.assertFalse(ordersCache.containsKey(6L));
+    }
+
+    @Test
+    public void testDiscardDropsAllSnapshotsOfSymbol() {
+        initialize(10);
+        OrdersCacheManager cacheManager = cacheManager(Long.MAX_VALUE, 100, 10);
+        for (int i = 1; i <= 3; i++) {
+            cacheManager.publish(symbol, i, snapshot(i));
+        }
+        cacheManager.pin(symbol, 4L, snapshot(4).pinned());
+        cacheManager.discard(symbol);
+
+        CacheStats stats = cacheManager.getStats();
+        Assertions.assertTrue(ordersCache.isEmpty());
+        Assertions.assertEquals(0, stats.getEntryCount());
+        Assertions.assertEquals(0, stats.getPinnedCount());
+        Assertions.assertEquals(0, stats.getEstimatedBytes());
+    }
+}
@@ -0,0 +1,241 @@
+package com.stock.orderbook.service;
+
+import com.stock.orderbook.config.QuoteJournal;
+import com.stock.orderbook.config.QuoteSnapshotFile;
+import com.stock.orderbook.model.IngestResult;
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.ResponseBuffer;
+import com.stock.orderbook.utils.TimestampParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class QuoteIngesterTest {
+    SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO);
+    OrdersCacheManager ordersCacheManager = new OrdersCacheManager(Long.MAX_VALUE, 100, 100, symbolLanes,
+            Runnable::run);
+    TopOrdersFinder topOrdersFinder = new TopOrdersFinder();
+    Map<String, Symbol> symbolMap = new ConcurrentHashMap<>();
+    Symbol symbol;
+    OrderBookFinder orderBookFinder;
+
+    public void initialize() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(99.5).bidQuantity(100).askPrice(100.5).askQuantity(200)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        quotes.add(Quote.builder().bidPrice(99.75).bidQuantity(300).askPrice(100.25).askQuantity(400)
+                .startTime("2021-02-18T10:10:10.002Z").endTime("2021-02-18T10:10:10.500Z").build());
+        quotes.indexEndTimes();
+        symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        ordersCacheManager.pin(symbol, TimestampParser.parse("2021-02-18T10:10:10.000Z"),
+                new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0, true));
+        symbolMap.put("TEST", symbol);
+        orderBookFinder = new OrderBookFinder(topOrdersFinder, ordersCacheManager,
+                new OrderBookMetrics(new SimpleMeterRegistry(), ordersCacheManager, symbolLanes), symbolMap, 5,
+                symbolLanes);
+    }
+
+    private QuoteIngester quoteIngester(Duration reorderWindow) throws IOException {
+        return quoteIngester(reorderWindow, new QuoteJournal(null, 0, 0, 0));
+    }
+
+    private QuoteIngester quoteIngester(Duration reorderWindow, QuoteJournal quoteJournal) throws IOException {
+        return new QuoteIngester(symbolMap, ordersCacheManager, new CheckpointBuilder(topOrdersFinder,
+                ordersCacheManager, 2, Duration.ZERO), quoteJournal, symbolLanes, ",", reorderWindow);
+    }
+
+    private IngestResult ingest(QuoteIngester quoteIngester, String... lines) throws IOException {
+        return quoteIngester.ingest(ByteBuffer.wrap(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String line(String symbolName, double bidPrice, String startTime, String endTime) {
+        return symbolName + ",Q,500," + "600," + bidPrice + ",100.75," + startTime + "," + endTime + ",R,1,A";
+    }
+
+    private String orderBook(String symbolName, String timestamp) {
+        ResponseBuffer buffer = new ResponseBuffer();
+        orderBookFinder.appendOrderBook(symbolName, TimestampParser.parse(timestamp), buffer);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testIngestedQuotesRefreshCachedOrders() throws IOException {
+        initialize();
+        QuoteIngester quoteIngester = quoteIngester(Duration.ZERO);
+        Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100)\nBest Asks: 100.25 (400); 100.50 (200)",
+                orderBook("TEST", "2021-02-18T10:10:10.100Z"));
+
+        IngestResult ingestResult = ingest(quoteIngester,
+                "symbol,marketCenter,bidQuantity,askQuantity,bidPrice,askPrice,startTime,endTime,quoteConditions,"
+                        + "sipfeedSeq,sipfeed",
+                line("TEST", 99.9, "2021-02-18T10:10:10.003Z", "2021-02-18T10:10:11.000Z"),
+                line("TEST", 99.1, "2021-02-18T10:10:10.200Z", "2021-02-18T10:10:11.000Z"),
+                line("NEW", 10.5, "2021-02-18T10:10:10.003Z", "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(3, ingestResult.getAppended());
+        Assertions.assertEquals(0, ingestResult.getRejected());
+        Assertions.assertEquals(4, symbol.getQuotes().size());
+
+        // the cached orders at the timestamp are refreshed with the appended quote starting before it
+        long timestamp = TimestampParser.parse("2021-02-18T10:10:10.100Z");
+        Assertions.assertEquals("Best Bids: 99.90 (500); 99.75 (300); 99.50 (100)\n"
+                + "Best Asks: 100.25 (400); 100.50 (200); 100.75 (600)", orderBook("TEST", "2021-02-18T10:10:10.100Z"));
+        Assertions.assertEquals(3, symbol.getOrdersCache().get(timestamp).getQuotesIndex());
+        Assertions.assertEquals("Best Bids: 99.50 (100)\nBest Asks: 100.50 (200)",
+                orderBook("TEST", "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals("Best Bids: 10.50 (500)\nBest Asks: 100.75 (600)",
+                orderBook("NEW", "2021-02-18T10:10:10.500Z"));
+
+        // checkpoints are extended over the appended quotes, every 2 quotes
+        Assertions.assertTrue(symbol.getOrdersCache().get(TimestampParser.parse("2021-02-18T10:10:10.002Z"))
+                .isPinned());
+
+        // quotes starting before the last appended quote are rejected
+        ingestResult = ingest(quoteIngester, line("TEST", 99.2, "2021-02-18T10:10:10.100Z",
+                "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(1, ingestResult.getRejected());
+        Assertions.assertEquals(4, symbol.getQuotes().size());
+        Assertions.assertThrows(IOException.class, () -> ingest(quoteIngester, "TEST,Q,1"));
+    }
+
+    @Test
+    public void testReorderBufferAppendsInStartTimeOrder() throws IOException {
+        initialize();
+        QuoteIngester quoteIngester = quoteIngester(Duration.ofMillis(10));
+        IngestResult ingestResult = ingest(quoteIngester,
+                line("TEST", 99.1, "2021-02-18T10:10:10.020Z", "2021-02-18T10:10:11.000Z"),
+                line("TEST", 99.2, "2021-02-18T10:10:10.005Z", "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(1, ingestResult.getAppended());
+        Assertions.assertEquals(1, ingestResult.getBuffered());
+
+        ingestResult = ingest(quoteIngester, line("TEST", 99.3, "2021-02-18T10:10:10.015Z",
+                "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(0, ingestResult.getAppended());
+        Assertions.assertEquals(2, ingestResult.getBuffered());
+
+        ingestResult = ingest(quoteIngester, line("TEST", 99.4, "2021-02-18T10:10:10.040Z",
+                "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(2, ingestResult.getAppended());
+        Assertions.assertEquals(1, ingestResult.getBuffered());
+        QuoteStore quotes = symbol.getQuotes();
+        Assertions.assertEquals(5, quotes.size());
+        Assertions.assertEquals(99.2, quotes.getBidPrice(2));
+        Assertions.assertEquals(99.3, quotes.getBidPrice(3));
+        Assertions.assertEquals(99.1, quotes.getBidPrice(4));
+    }
+
+    @Test
+    public void testPendingQuotesAreCarriedOverToReloadedSymbol() throws IOException {
+        initialize();
+        QuoteIngester quoteIngester = quoteIngester(Duration.ofMillis(10));
+        Assertions.assertEquals(1, ingest(quoteIngester, line("TEST", 99.1, "2021-02-18T10:10:10.020Z",
+                "2021-02-18T10:10:11.000Z")).getBuffered());
+
+        // the symbol is unloaded and loaded again from the quotes file, into a new store
+        QuoteStore reloadedQuotes = new QuoteStore();
+        reloadedQuotes.addAll(symbol.getQuotes(), new int[]{0}, new int[]{0}, new int[]{0});
+        Symbol reloadedSymbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(reloadedQuotes)
+                .ordersCache(new ConcurrentSkipListMap<>())
+                .build();
+        symbolMap.put("TEST", reloadedSymbol);
+
+        IngestResult ingestResult = ingest(quoteIngester, line("TEST", 99.2, "2021-02-18T10:10:10.040Z",
+                "2021-02-18T10:10:11.000Z"));
+        Assertions.assertEquals(1, ingestResult.getAppended());
+        Assertions.assertEquals(1, ingestResult.getBuffered());
+        Assertions.assertEquals(3, reloadedQuotes.size());
+        Assertions.assertEquals(99.1, reloadedQuotes.getBidPrice(2));
+    }
+
+    @Test
+    public void testJournalIsReplayedOnTopOfCompactedSnapshot() throws IOException {
+        Path csvFile = Files.createTempFile("quotes", ".csv");
+        Path snapshotPath = Files.createTempFile("quotes", ".snapshot");
+        Path journalDirectory = Files.createTempDirectory("quotes-journal");
+        try {
+            initialize();
+            QuoteSnapshotFile snapshotFile = new QuoteSnapshotFile(snapshotPath, 2, 0);
+            QuoteSnapshotFile.Source source = new QuoteSnapshotFile.Source(csvFile, ',');
+            QuoteJournal quoteJournal = new QuoteJournal(journalDirectory, 1 << 20, 0, 1 << 30);
+            quoteJournal.open(0, snapshotFile, source);
+            quoteJournal.setBaseLoaded(false);
+            QuoteIngester quoteIngester = quoteIngester(Duration.ofMillis(10), quoteJournal);
+            ingest(quoteIngester, line("TEST", 99.1, "2021-02-18T10:10:10.020Z", "2021-02-18T10:10:11.000Z"),
+                    line("TEST", 99.2, "2021-02-18T10:10:10.005Z", "2021-02-18T10:10:11.000Z"));
+            // the snapshot gets the appended quote, the buffered quote is journaled again after it
+            quoteIngester.compactIfDue();
+            Assertions.assertFalse(quoteJournal.isCompactionDue());
+            IngestResult ingestResult = ingest(quoteIngester, line("TEST", 99.3, "2021-02-18T10:10:10.040Z",
+                    "2021-02-18T10:10:11.000Z"));
+            Assertions.assertEquals(1, ingestResult.getAppended());
+            quoteIngester.close();
+            quoteJournal.close();
+            QuoteStore ingestedQuotes = symbol.getQuotes();
+            Assertions.assertEquals(4, ingestedQuotes.size());
+
+            QuoteSnapshotFile.Contents contents = snapshotFile.load(source);
+            QuoteStore recoveredQuotes = contents.getQuotes().get("TEST");
+            Assertions.assertEquals(3, recoveredQuotes.size());
+            symbolMap.clear();
+            symbol = Symbol.builder()
+                    .symbol("TEST")
+                    .quotes(recoveredQuotes)
+                    .ordersCache(new ConcurrentSkipListMap<>())
+                    .build();
+            contents.getCheckpoints().get("TEST").forEach((timestamp, checkpoint) ->
+                    ordersCacheManager.pin(symbol, timestamp, checkpoint));
+            symbolMap.put("TEST", symbol);
+            quoteJournal = new QuoteJournal(journalDirectory, 1 << 20, 0, 1 << 30);
+            quoteJournal.open(contents.getJournalPosition(), snapshotFile, source);
+            quoteIngester = quoteIngester(Duration.ofMillis(10), quoteJournal);
+            try {
+                Assertions.assertEquals(4, recoveredQuotes.size());
+                for (int row = 0; row < recoveredQuotes.size(); row++) {
+                    Assertions.assertEquals(ingestedQuotes.getQuote("TEST", row),
+                            recoveredQuotes.getQuote("TEST", row));
+                }
+                Assertions.assertEquals("Best Bids: 99.75 (300); 99.50 (100); 99.20 (500); 99.10 (500)\n"
+                        + "Best Asks: 100.25 (400); 100.50 (200); 100.75 (600); 100.75 (600)",
+                        orderBook("TEST", "2021-02-18T10:10:10.030Z"));
+                // the quote buffered before the crash is released by the next quotes
+                ingestResult = ingest(quoteIngester, line("TEST", 99.4, "2021-02-18T10:10:10.050Z",
+                        "2021-02-18T10:10:11.000Z"));
+                Assertions.assertEquals(1, ingestResult.getAppended());
+                Assertions.assertEquals(99.3, recoveredQuotes.getBidPrice(4));
+            } finally {
+                quoteIngester.close();
+                quoteJournal.close();
+            }
+        } finally {
+            Files.deleteIfExists(csvFile);
+            Files.deleteIfExists(snapshotPath);
+            try (Stream<Path> files = Files.walk(journalDirectory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
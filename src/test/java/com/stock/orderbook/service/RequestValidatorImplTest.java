@@ -30,4 +30,41 @@ public class RequestValidatorImplTest {
         String invalidSymbolResponse = String.format("Request validation failed: '%s' symbol is not valid", "INVALIDKEY");
         Assertions.assertEquals(invalidSymbolResponse, requestValidator.validateSymbol("INVALIDKEY"));
     }
+
+    @Test
+    public void testValidateTimestampWithValidTimestamp() {
+        RequestValidatorImpl requestValidator = new RequestValidatorImpl(symbolMap);
+        Assertions.assertEquals("", requestValidator.validateTimestamp("2021-02-18T10:10:10.522Z"));
+    }
+
+    @Test
+    public void testValidateTimestampWithInvalidTimestamp() {
+        RequestValidatorImpl requestValidator = new RequestValidatorImpl(symbolMap);
+        String invalidTimestampResponse = String.format("Request validation failed: '%s' timestamp is not valid",
+                "2021-02-30T10:10:10.522Z");
+        Assertions.assertEquals(invalidTimestampResponse,
+                requestValidator.validateTimestamp("2021-02-30T10:10:10.522Z"));
+    }
+
+    @Test
+    public void testValidateStep() {
+        RequestValidatorImpl requestValidator = new RequestValidatorImpl(symbolMap);
+        for (String step : new String[]{null, "change", "1s", "500ms", "PT1M"}) {
+            Assertions.assertEquals("", requestValidator.validateStep(step), step);
+        }
+        Assertions.assertEquals("Request validation failed: '0s' step is not valid",
+                requestValidator.validateStep("0s"));
+        Assertions.assertEquals("Request validation failed: 'often' step is not valid",
+                requestValidator.validateStep("often"));
+    }
+
+    @Test
+    public void testValidateRange() {
+        RequestValidatorImpl requestValidator = new RequestValidatorImpl(symbolMap);
+        Assertions.assertEquals("", requestValidator.validateRange("2021-02-18T10:10:10Z", "2021-02-18T10:10:10Z"));
+        Assertions.assertEquals("", requestValidator.validateRange("2021-02-18T10:10:10Z", "2021-02-18T10:10:11Z"));
+        Assertions.assertEquals("Request validation failed: start '2021-02-18T10:10:11Z' is after end "
+                + "'2021-02-18T10:10:10Z'", requestValidator.validateRange("2021-02-18T10:10:11Z",
+                "2021-02-18T10:10:10Z"));
+    }
 }
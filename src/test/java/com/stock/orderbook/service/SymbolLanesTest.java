@@ -0,0 +1,99 @@
+package com.stock.orderbook.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SymbolLanesTest {
+
+    @Test
+    public void testTasksOfSymbolRunInOrderOnOneThread() {
+        try (SymbolLanes symbolLanes = new SymbolLanes(4, Duration.ZERO)) {
+            Assertions.assertTrue(symbolLanes.isEnabled());
+            // only mutated by the lane of the symbol
+            List<Integer> order = new ArrayList<>();
+            List<CompletableFuture<String>> threadNames = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int task = i;
+                threadNames.add(symbolLanes.submit("TEST", () -> {
+                    order.add(task);
+                    return Thread.currentThread().getName();
+                }));
+            }
+            String threadName = threadNames.get(0).join();
+            for (CompletableFuture<String> name : threadNames) {
+                Assertions.assertEquals(threadName, name.join());
+            }
+            Assertions.assertEquals("symbol-lane-" + symbolLanes.laneOf("TEST"), threadName);
+            for (int i = 0; i < order.size(); i++) {
+                Assertions.assertEquals(i, order.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testTaskOfSymbolOnItsLaneRunsInPlace() {
+        try (SymbolLanes symbolLanes = new SymbolLanes(2, Duration.ZERO)) {
+            String nestedThreadName = symbolLanes.call("TEST",
+                    () -> symbolLanes.call("TEST", () -> Thread.currentThread().getName()));
+            Assertions.assertEquals("symbol-lane-" + symbolLanes.laneOf("TEST"), nestedThreadName);
+        }
+        try (SymbolLanes symbolLanes = new SymbolLanes(0, Duration.ZERO)) {
+            Assertions.assertFalse(symbolLanes.isEnabled());
+            Assertions.assertEquals(Thread.currentThread().getName(),
+                    symbolLanes.call("TEST", () -> Thread.currentThread().getName()));
+            Assertions.assertEquals(-1, symbolLanes.laneOf("TEST"));
+        }
+    }
+
+    @Test
+    public void testFailureCompletesFuture() {
+        try (SymbolLanes symbolLanes = new SymbolLanes(2, Duration.ZERO)) {
+            CompletableFuture<String> failed = symbolLanes.submit("TEST", () -> {
+                throw new IllegalStateException("failed");
+            });
+            Assertions.assertTrue(failed.handle((value, e) -> e != null).join());
+            Assertions.assertThrows(IllegalStateException.class, () -> symbolLanes.run("TEST", () -> {
+                throw new IllegalStateException("failed");
+            }));
+            Assertions.assertEquals("ok", symbolLanes.submit("TEST", () -> "ok").join());
+        }
+    }
+
+    @Test
+    public void testRebalanceMovesHotSymbolToIdlestLane() {
+        try (SymbolLanes symbolLanes = new SymbolLanes(2, Duration.ZERO)) {
+            // two symbols sharing a lane, the other lane being idle
+            String hotSymbol = "S0";
+            symbolLanes.submit(hotSymbol, () -> null).join();
+            int busiestLane = symbolLanes.laneOf(hotSymbol);
+            String coldSymbol = null;
+            for (int i = 1; coldSymbol == null; i++) {
+                symbolLanes.submit("S" + i, () -> null).join();
+                coldSymbol = symbolLanes.laneOf("S" + i) == busiestLane ? "S" + i : null;
+            }
+            symbolLanes.rebalance();
+
+            for (int i = 0; i < 300; i++) {
+                symbolLanes.submit(hotSymbol, () -> null);
+            }
+            symbolLanes.submit(coldSymbol, () -> null);
+            symbolLanes.rebalance();
+            String threadName = symbolLanes.submit(hotSymbol, () -> Thread.currentThread().getName()).join();
+
+            Assertions.assertEquals(1 - busiestLane, symbolLanes.laneOf(hotSymbol));
+            Assertions.assertEquals("symbol-lane-" + (1 - busiestLane), threadName);
+            Assertions.assertEquals(busiestLane, symbolLanes.laneOf(coldSymbol));
+            Assertions.assertEquals(1, symbolLanes.getMoves());
+
+            // under the minimal gap, nothing is moved
+            symbolLanes.submit(hotSymbol, () -> null);
+            symbolLanes.rebalance();
+            Assertions.assertEquals(1 - busiestLane, symbolLanes.laneOf(hotSymbol));
+        }
+    }
+}
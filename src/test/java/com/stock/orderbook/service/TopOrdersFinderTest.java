@@ -1,25 +1,25 @@
 package com.stock.orderbook.service;
 
+import com.stock.orderbook.model.OrdersSnapshot;
+import com.stock.orderbook.model.OrdersTreap;
 import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.StringDictionary;
 import com.stock.orderbook.model.Symbol;
+import com.stock.orderbook.utils.TimestampParser;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.stream.Collectors;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 public class TopOrdersFinderTest {
-    PriorityQueue<Quote> ordersQueue;
     Symbol symbol;
-    Map<String, Integer> quotesIndex;
+    QuoteStore quotes;
     TopOrdersFinder topOrdersFinder = new TopOrdersFinder();
 
-    public void initialize(int initialQuoteCount) {
+    public void initialize() {
         List<String> startTimes = List.of(
                 "2021-02-18T10:10:10.001Z",
                 "2021-02-18T10:10:10.002Z",
@@ -32,58 +32,106 @@ public class TopOrdersFinderTest {
                 "2021-02-18T10:10:10.404Z");
 
         List<Double> askPrices = List.of(100.10, 100.20, 100.30, 100.40);
-        List<Quote> quotes = IntStream.range(0, startTimes.size())
+        quotes = new QuoteStore();
+        IntStream.range(0, startTimes.size())
                 .mapToObj(i -> Quote.builder()
                         .startTime(startTimes.get(i))
                         .endTime(endTimes.get(i))
                         .askPrice(askPrices.get(i))
+                        .bidPrice(askPrices.get(i) - 1)
                         .build())
-                .collect(Collectors.toList());
-
-        ordersQueue = new PriorityQueue<>(Comparator.comparing(Quote::getAskPrice));
-        ordersQueue.addAll(quotes.subList(0, initialQuoteCount));
-
-        quotesIndex = new HashMap<>();
+                .forEach(quotes::add);
 
         symbol = Symbol.builder()
                 .symbol("TEST")
                 .quotes(quotes)
-                .quotesIndex(quotesIndex)
                 .build();
     }
 
+    private OrdersSnapshot cachedOrders(int initialQuoteCount, int quotesStartIndex) {
+        OrdersTreap.Editor bids = OrdersTreap.EMPTY.edit(quotes::compareBids);
+        OrdersTreap.Editor asks = OrdersTreap.EMPTY.edit(quotes::compareAsks);
+        IntStream.range(0, initialQuoteCount).forEach(bids::insert);
+        IntStream.range(0, initialQuoteCount).forEach(asks::insert);
+        return new OrdersSnapshot(bids.build(), asks.build(), quotesStartIndex);
+    }
+
+    private OrdersSnapshot findTopOrders(OrdersSnapshot cachedOrders, String timestamp) {
+        // orders are cached before any of the quotes ended
+        return topOrdersFinder.findTopOrders(cachedOrders, TimestampParser.parse("2021-02-18T10:10:09.000Z"),
+                symbol, TimestampParser.parse(timestamp));
+    }
+
     @Test
     public void testRemoveInactiveQuotesWhenAllQuotesAreInactive() {
-        initialize(4);
-        int quotesStartIndex = 4;
-
-        String timestamp = "2021-02-18T10:10:11.000Z";
+        initialize();
+        OrdersSnapshot cachedOrders = cachedOrders(4, 4);
 
-        PriorityQueue<Quote> outputQueue = topOrdersFinder.findTopOrders(ordersQueue, quotesStartIndex, symbol, timestamp);
+        OrdersSnapshot outputOrders = findTopOrders(cachedOrders, "2021-02-18T10:10:11.000Z");
 
-        Assertions.assertEquals(0, outputQueue.size());
+        Assertions.assertEquals(0, outputOrders.getBids().size());
+        Assertions.assertEquals(0, outputOrders.getAsks().size());
+        Assertions.assertEquals(4, cachedOrders.getAsks().size());
     }
 
     @Test
     public void testRemoveInactiveQuotesWhenAllQuotesAreActive() {
-        initialize(4);
-        int quotesStartIndex = 4;
-        String timestamp = "2021-02-18T10:10:09.000Z";
+        initialize();
+        OrdersSnapshot cachedOrders = cachedOrders(4, 4);
 
-        PriorityQueue<Quote> outputQueue = topOrdersFinder.findTopOrders(ordersQueue, quotesStartIndex, symbol, timestamp);
+        OrdersSnapshot outputOrders = findTopOrders(cachedOrders, "2021-02-18T10:10:09.000Z");
 
-        Assertions.assertEquals(4, outputQueue.size());
+        Assertions.assertEquals(4, outputOrders.getAsks().size());
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3}, outputOrders.getAsks().topRows(5));
+        Assertions.assertArrayEquals(new int[]{3, 2, 1, 0}, outputOrders.getBids().topRows(5));
     }
 
     @Test
     public void testUpdateOrdersQueueToAddNewQuote() {
-        initialize(2);
-        int quotesStartIndex = 3;
-        String timestamp = "2021-02-18T10:10:10.103Z";
+        initialize();
+        OrdersSnapshot cachedOrders = cachedOrders(2, 3);
 
-        PriorityQueue<Quote> outputQueue = topOrdersFinder.findTopOrders(ordersQueue, quotesStartIndex, symbol, timestamp);
+        OrdersSnapshot outputOrders = findTopOrders(cachedOrders, "2021-02-18T10:10:10.103Z");
 
-        Assertions.assertEquals(1, outputQueue.size());
-        Assertions.assertEquals(3, symbol.getQuotesIndex().get(timestamp));
+        Assertions.assertEquals(1, outputOrders.getAsks().size());
+        Assertions.assertArrayEquals(new int[]{1}, outputOrders.getBids().topRows(5));
+        Assertions.assertEquals(3, outputOrders.getQuotesIndex());
+    }
+
+    @Test
+    public void testRewindOrdersMatchesForwardReplay() {
+        Random random = new Random(20210218L);
+        quotes = new QuoteStore();
+        long firstTimestamp = TimestampParser.parse("2021-02-18T10:10:10.000Z");
+        long startTime = firstTimestamp;
+        for (int i = 0; i < 1000; i++) {
+            startTime += random.nextInt(1_000_000);
+            double price = 100 + random.nextInt(100) / 100.0;
+            quotes.add(StringDictionary.NULL_CODE, 100, 100, price, price + 0.01, startTime,
+                    startTime + 1 + random.nextInt(50_000_000), StringDictionary.NULL_CODE, 0,
+                    StringDictionary.NULL_CODE);
+        }
+        symbol = Symbol.builder()
+                .symbol("TEST")
+                .quotes(quotes)
+                .build();
+        OrdersSnapshot firstOrders = new OrdersSnapshot(OrdersTreap.EMPTY, OrdersTreap.EMPTY, 0);
+        long cachedTimestamp = firstTimestamp + 400_000_000L;
+        OrdersSnapshot cachedOrders = topOrdersFinder.findTopOrders(firstOrders, firstTimestamp, symbol,
+                cachedTimestamp);
+
+        for (int i = 0; i < 50; i++) {
+            long timestamp = cachedTimestamp - random.nextInt(100_000_000);
+            OrdersSnapshot forwardOrders = topOrdersFinder.findTopOrders(firstOrders, firstTimestamp, symbol,
+                    timestamp);
+            OrdersSnapshot rewoundOrders = topOrdersFinder.findTopOrders(cachedOrders, cachedTimestamp, symbol,
+                    timestamp);
+            Assertions.assertEquals(forwardOrders.getQuotesIndex(), rewoundOrders.getQuotesIndex());
+            Assertions.assertEquals(forwardOrders.getBids().size(), rewoundOrders.getBids().size());
+            Assertions.assertArrayEquals(forwardOrders.getBids().topRows(Integer.MAX_VALUE),
+                    rewoundOrders.getBids().topRows(Integer.MAX_VALUE));
+            Assertions.assertArrayEquals(forwardOrders.getAsks().topRows(Integer.MAX_VALUE),
+                    rewoundOrders.getAsks().topRows(Integer.MAX_VALUE));
+        }
     }
 }
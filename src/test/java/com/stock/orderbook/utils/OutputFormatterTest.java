@@ -0,0 +1,77 @@
+package com.stock.orderbook.utils;
+
+import com.stock.orderbook.model.Quote;
+import com.stock.orderbook.model.QuoteStore;
+import com.stock.orderbook.model.TopOfBookSeries;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class OutputFormatterTest {
+
+    private String appendPrice(double price) {
+        ResponseBuffer buffer = new ResponseBuffer(4);
+        OutputFormatter.appendPrice(buffer, price);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testAppendPriceMatchesFormatPrice() {
+        double[] prices = {0, -0.0, 0.01, 0.1, 0.125, 1.005, 2.675, 128.31, 99999.99, -12.5, -0.001, 0.004999,
+                1e12, 1e15 + 0.25, 123456789.125, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double price : prices) {
+            Assertions.assertEquals(OutputFormatter.formatPrice(price), appendPrice(price));
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            double cents = random.nextInt(100000000) / 100.0;
+            Assertions.assertEquals(OutputFormatter.formatPrice(cents), appendPrice(cents));
+            double price = random.nextDouble() * 1000;
+            Assertions.assertEquals(OutputFormatter.formatPrice(price), appendPrice(price));
+        }
+    }
+
+    @Test
+    public void testAppendTopOrders() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(128.31).bidQuantity(100).askPrice(128.33).askQuantity(700)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        quotes.add(Quote.builder().bidPrice(128.3).bidQuantity(2147483647).askPrice(128.4).askQuantity(0)
+                .startTime("2021-02-18T10:10:10.002Z").endTime("2021-02-18T10:10:11.001Z").build());
+
+        ResponseBuffer buffer = new ResponseBuffer();
+        OutputFormatter.appendTopBids(buffer, quotes, new int[]{0, 1});
+        buffer.append('\n');
+        OutputFormatter.appendTopAsks(buffer, quotes, new int[]{1});
+        Assertions.assertEquals("Best Bids: 128.31 (100); 128.30 (2147483647)\nBest Asks: 128.40 (0)",
+                buffer.toString());
+
+        buffer.reset().appendLong(Long.MIN_VALUE).append(' ').appendLong(-7).append(' ').appendDigits(5, 3);
+        Assertions.assertEquals(Long.MIN_VALUE + " -7 005", buffer.toString());
+    }
+
+    @Test
+    public void testAppendTopOfBook() {
+        QuoteStore quotes = new QuoteStore();
+        quotes.add(Quote.builder().bidPrice(128.31).bidQuantity(100).askPrice(128.33).askQuantity(700)
+                .startTime("2021-02-18T10:10:10.001Z").endTime("2021-02-18T10:10:11.001Z").build());
+        TopOfBookSeries series = TopOfBookSeries.of(quotes);
+        ResponseBuffer buffer = new ResponseBuffer();
+        OutputFormatter.appendTopBid(buffer, series.getBids(), TimestampParser.parse("2021-02-18T10:10:10.500Z"));
+        OutputFormatter.appendTopAsk(buffer.append('\n'), series.getAsks(),
+                TimestampParser.parse("2021-02-18T10:10:10.500Z"));
+        Assertions.assertEquals("Best Bids: 128.31 (100)\nBest Asks: 128.33 (700)", buffer.toString());
+
+        OutputFormatter.appendTopBid(buffer.reset(), series.getBids(), TimestampParser.parse("2021-02-18T10:10:10Z"));
+        OutputFormatter.appendTopAsk(buffer.append('\n'), series.getAsks(),
+                TimestampParser.parse("2021-02-18T10:10:11.001Z"));
+        Assertions.assertEquals(OutputFormatter.BIDS_PREFIX + OutputFormatter.NO_BIDS_FOUND + "\n"
+                + OutputFormatter.ASKS_PREFIX + OutputFormatter.NO_ASKS_FOUND, buffer.toString());
+
+        OutputFormatter.appendTopBid(buffer.reset(), null, 0);
+        Assertions.assertEquals(OutputFormatter.BIDS_PREFIX + OutputFormatter.TOO_OLD_TIMESTAMP_FOR_BIDS,
+                buffer.toString());
+    }
+}
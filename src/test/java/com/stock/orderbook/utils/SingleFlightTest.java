@@ -0,0 +1,50 @@
+package com.stock.orderbook.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsOfAKeyComputeOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(joined::countDown);
+        AtomicInteger computations = new AtomicInteger();
+
+        // the first call completes only once the second call waits for it
+        CompletableFuture<String> firstCall = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            try {
+                joined.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "value";
+        }));
+        started.await();
+        Assertions.assertEquals("value", singleFlight.execute("key", () -> {
+            computations.incrementAndGet();
+            return "computed again";
+        }));
+        Assertions.assertEquals("value", firstCall.get());
+        Assertions.assertEquals(1, computations.get());
+
+        // nothing is retained once the computation completes
+        Assertions.assertEquals("again", singleFlight.execute("key", () -> "again"));
+    }
+
+    @Test
+    public void testFailureIsThrownToTheCallers() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(() -> { });
+        Assertions.assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("failed");
+        }));
+        Assertions.assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+}
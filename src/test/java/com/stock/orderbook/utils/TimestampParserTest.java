@@ -0,0 +1,70 @@
+package com.stock.orderbook.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Random;
+
+public class TimestampParserTest {
+
+    private long epochNanos(Instant instant) {
+        return instant.getEpochSecond() * TimestampParser.NANOS_PER_SECOND + instant.getNano();
+    }
+
+    @Test
+    public void testParseMatchesInstantForAllPrecisions() {
+        for (String timestamp : new String[]{"2021-02-18T10:10:10Z", "2021-02-18T10:10:10.5Z",
+                "2021-02-18T10:10:10.522Z", "2021-02-18T10:10:10.522123Z", "2021-02-18T10:10:10.522123456Z",
+                "2020-02-29T23:59:59.999999999Z", "1970-01-01T00:00:00Z", "1969-12-31T23:59:59.1Z"}) {
+            Assertions.assertEquals(epochNanos(Instant.parse(timestamp)), TimestampParser.parse(timestamp), timestamp);
+        }
+    }
+
+    @Test
+    public void testParseMixedPrecisionComparesNumerically() {
+        Assertions.assertTrue(TimestampParser.parse("2021-02-18T10:10:10.522Z")
+                < TimestampParser.parse("2021-02-18T10:10:10.522000001Z"));
+        Assertions.assertEquals(TimestampParser.parse("2021-02-18T10:10:10.5Z"),
+                TimestampParser.parse("2021-02-18T10:10:10.500000Z"));
+    }
+
+    @Test
+    public void testParseWithoutZoneAndWithOffset() {
+        Assertions.assertEquals(TimestampParser.parse("2021-01-01T00:00:00Z"),
+                TimestampParser.parse("2021-01-01T00:00:00"));
+        Assertions.assertEquals(epochNanos(OffsetDateTime.parse("2021-02-18T05:10:10.522-05:00").toInstant()),
+                TimestampParser.parse("2021-02-18T05:10:10.522-05:00"));
+    }
+
+    @Test
+    public void testParseInvalidTimestamps() {
+        for (String timestamp : new String[]{null, "", "2021-02-18", "2021-02-18 10:10:10Z", "2021-02-30T10:10:10Z",
+                "2021-02-18T24:10:10Z", "2021-02-18T10:10:10.Z", "2021-02-18T10:10:10.522X", "2021-0a-18T10:10:10Z"}) {
+            Assertions.assertEquals(TimestampParser.INVALID_TIMESTAMP, TimestampParser.parse(timestamp), timestamp);
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        Assertions.assertEquals("2021-02-18T10:10:10.522Z",
+                TimestampParser.format(TimestampParser.parse("2021-02-18T10:10:10.522Z")));
+    }
+
+    @Test
+    public void testAppendMatchesFormat() {
+        ResponseBuffer buffer = new ResponseBuffer();
+        Random random = new Random(5);
+        for (int i = 0; i < 10000; i++) {
+            long epochNanos = random.nextLong();
+            if (i % 3 == 0) {
+                epochNanos -= epochNanos % 1_000_000;
+            } else if (i % 3 == 1) {
+                epochNanos -= epochNanos % 1_000_000_000;
+            }
+            TimestampParser.append(buffer.reset(), epochNanos);
+            Assertions.assertEquals(TimestampParser.format(epochNanos), buffer.toString());
+        }
+    }
+}